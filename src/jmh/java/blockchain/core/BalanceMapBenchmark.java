@@ -0,0 +1,100 @@
+package blockchain.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Replays balances of a large chain, the way import and full verification do, with the boxed HashMap path used
+ * before BalanceMap and with BalanceMap. Signatures are dummy, only balance accounting is measured. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceMapBenchmark {
+    @Param({"10000"})
+    private int addresses;
+
+    @Param({"1000"})
+    private int blocks;
+
+    @Param({"200"})
+    private int transactionsPerBlock;
+
+    private List<Block> chain;
+    private final TransactionValidator validator = new TransactionValidator();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] names = new String[addresses];
+        for (int i = 0; i < addresses; i++) {
+            names[i] = "benchmarkAddress" + i;
+        }
+        byte[] dummyBytes = new byte[]{1};
+        chain = new ArrayList<>(blocks);
+        for (int id = 1; id <= blocks; id++) {
+            List<SignedTransaction> transactions = new ArrayList<>(transactionsPerBlock);
+            for (int i = 0; i < transactionsPerBlock; i++) {
+                Transaction transaction = new Transaction(names[random.nextInt(addresses)], names[random.nextInt(addresses)], 1 + random.nextInt(100));
+                transactions.add(new SignedTransaction(transaction, id * 1000L + i, dummyBytes, dummyBytes));
+            }
+            chain.add(Block.newBuilder()
+                    .setId(id)
+                    .setMinerReward(new MinerReward(names[random.nextInt(addresses)], Blockchain.REWARD_VALUE))
+                    .setTransactions(transactions)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public BalanceMap balanceMap() {
+        BalanceMap balances = new BalanceMap();
+        for (Block block : chain) {
+            validator.updateBalanceMap(block, balances);
+            validator.updateBalanceMap(block.getMinerReward(), balances);
+        }
+        return balances;
+    }
+
+    @Benchmark
+    public Map<Integer, Long> boxedHashMap() {
+        Map<Integer, Long> balances = new HashMap<>();
+        for (Block block : chain) {
+            for (SignedTransaction signedTransaction : block.getTransactions()) {
+                Transaction transaction = signedTransaction.getTransaction();
+                addBoxed(balances, transaction.getReceiverId(), transaction.getAmount());
+                addBoxed(balances, transaction.getSenderId(), -transaction.getAmount());
+            }
+            MinerReward reward = block.getMinerReward();
+            addBoxed(balances, reward.getMinerId(), reward.getReward());
+        }
+        return balances;
+    }
+
+    /* Previous update pattern: containsKey, get and replace, boxing the result */
+    private static void addBoxed(Map<Integer, Long> balances, int address, long amount) {
+        if (balances.containsKey(address)) {
+            long prevBalance = balances.get(address);
+            balances.replace(address, prevBalance + amount);
+        } else {
+            balances.put(address, amount);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package blockchain.encryption;
+
+import org.bitcoinj.core.Base58;
+import org.bouncycastle.crypto.digests.RIPEMD160Digest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Hex codec, hashing and address validation, each next to the implementation used before (legacy* methods,
+ * copied from the previous EncryptionUtils): hex through a String per byte and a digest looked up on every call. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionUtilsBenchmark {
+    /* Size of an RSA signature and of an X.509 encoded RSA public key */
+    @Param({"128", "162"})
+    private int size;
+
+    private byte[] bytes;
+    private String hex;
+    private String address;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        hex = EncryptionUtils.encodeIntoHex(bytes);
+        address = AddressGenerator.GenerateAddressFromPublicKey(bytes);
+    }
+
+    @Benchmark
+    public String encodeHex() {
+        return EncryptionUtils.encodeIntoHex(bytes);
+    }
+
+    @Benchmark
+    public String legacyEncodeHex() {
+        return legacyEncodeIntoHex(bytes);
+    }
+
+    @Benchmark
+    public byte[] decodeHex() {
+        return EncryptionUtils.decodeHexString(hex);
+    }
+
+    @Benchmark
+    public byte[] legacyDecodeHex() {
+        return legacyDecodeHexString(hex);
+    }
+
+    @Benchmark
+    public byte[] sha256() {
+        return EncryptionUtils.applySha256toBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] legacySha256() {
+        return legacySha256toBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] hash160() {
+        return EncryptionUtils.applyHash160(bytes);
+    }
+
+    @Benchmark
+    public byte[] legacyHash160() {
+        return legacyRIPEMD160(legacySha256toBytes(bytes));
+    }
+
+    @Benchmark
+    public boolean validateAddress() {
+        return AddressValidator.isValid(address);
+    }
+
+    /* What validation costs without the cache: Base58 decoding and the checksum */
+    @Benchmark
+    public boolean validateAddressUncached() {
+        byte[] decoded = Base58.decode(address);
+        byte[] checksum = EncryptionUtils.generateChecksum(Arrays.copyOf(decoded, decoded.length - 4));
+        return MessageDigest.isEqual(checksum, Arrays.copyOfRange(decoded, decoded.length - 4, decoded.length));
+    }
+
+    private static String legacyEncodeIntoHex(byte[] input) {
+        StringBuilder output = new StringBuilder();
+        for (byte b : input) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) output.append('0');
+            output.append(hex);
+        }
+        return output.toString();
+    }
+
+    private static byte[] legacyDecodeHexString(String hexString) {
+        byte[] bytes = new byte[hexString.length() / 2];
+        for (int i = 0; i < hexString.length(); i += 2) {
+            String pair = hexString.substring(i, i + 2);
+            bytes[i / 2] = (byte) ((Character.digit(pair.charAt(0), 16) << 4) + Character.digit(pair.charAt(1), 16));
+        }
+        return bytes;
+    }
+
+    private static byte[] legacySha256toBytes(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] legacyRIPEMD160(byte[] input) {
+        RIPEMD160Digest digest = new RIPEMD160Digest();
+        digest.update(input, 0, input.length);
+        byte[] hash = new byte[20];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+}
@@ -0,0 +1,62 @@
+package blockchain.encryption;
+
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/* Key generation, signing and verification throughput of each signature scheme. Verification gets an encoded key,
+ * the way transactions carry it. Key and signature sizes, which make most of a transaction, are printed on setup. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureSchemeBenchmark {
+    @Param({"RSA", "ECDSA_SECP256K1", "ED25519"})
+    private SignatureScheme scheme;
+
+    private KeyPair keyPair;
+    private byte[] publicKey;
+    private byte[] payload;
+    private byte[] signature;
+
+    @Setup
+    public void setUp() {
+        keyPair = scheme.generateKeyPair();
+        publicKey = keyPair.getPublic().getEncoded();
+        Transaction transaction = new Transaction("19o1nYPBbEg3YCLVVKz5xiJ4vWDKopCSxa", "157mSkBby2tXzSjxUx8PzMVQXJvzZ4rpqH", 28);
+        payload = SignedTransaction.signingPayload(SignedTransaction.CURRENT_VERSION, transaction, 1624901479687L);
+        signature = scheme.sign(keyPair.getPrivate(), payload);
+        System.out.printf("%n%s: public key %d bytes, signature %d bytes, signed transaction %d bytes%n",
+                scheme, publicKey.length, signature.length, payload.length + publicKey.length + signature.length);
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() {
+        return scheme.generateKeyPair();
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return scheme.sign(keyPair.getPrivate(), payload);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return scheme.verify(publicKey, payload, signature);
+    }
+}
@@ -1,10 +1,19 @@
 package blockchain;
 
 import blockchain.simulation.BlockchainSimulator;
+import blockchain.simulation.NetworkSimulator;
+import blockchain.simulation.config.Configuration;
+
+import java.io.IOException;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Configuration config = BlockchainSimulator.getConfiguration();
+        if (config.getNumberOfNodes() > 1) {
+            new NetworkSimulator(config).run();
+            return;
+        }
         BlockchainSimulator simulator = new BlockchainSimulator();
         simulator.run();
     }
-}
\ No newline at end of file
+}
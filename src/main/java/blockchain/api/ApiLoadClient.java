@@ -0,0 +1,121 @@
+package blockchain.api;
+
+import blockchain.core.Blockchain;
+import blockchain.core.SignedTransaction;
+import blockchain.core.SimpleWallet;
+import blockchain.serialization.TransactionSerializer;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Load test of the API. Keeps a given number of requests in flight for a given time, so the client opens about as
+ * many connections, and reports throughput and latency percentiles. Requests are a mix of mempool, block and balance
+ * queries and transaction submissions. Submitted transactions spend coins of new wallets, so they're rejected after
+ * full validation, signature check included. Without a URL an API of a new, empty blockchain is started in-process.
+ * Usage: ApiLoadClient [concurrent requests] [seconds] [url] */
+public final class ApiLoadClient {
+    private static final int WALLETS = 8;
+
+    private final String url;
+    private final int concurrency;
+    private final HttpClient client;
+    private final List<String> transactions = new ArrayList<>();
+    private final List<String> addresses = new ArrayList<>();
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong errors = new AtomicLong();
+
+    public ApiLoadClient(String url, int concurrency) {
+        this.url = url;
+        this.concurrency = concurrency;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Gson gson = new GsonBuilder().registerTypeAdapter(SignedTransaction.class, new TransactionSerializer()).create();
+        for (int i = 0; i < WALLETS; i++) {
+            SimpleWallet wallet = new SimpleWallet();
+            addresses.add(wallet.getAddress());
+            transactions.add(gson.toJson(wallet.createTransaction(new SimpleWallet().getAddress(), 1), SignedTransaction.class));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        if (args.length > 2) {
+            new ApiLoadClient(args[2], concurrency).run(seconds);
+            return;
+        }
+        try (ApiServer server = new ApiServer(Blockchain.newInstance(), 0)) {
+            new ApiLoadClient("http://127.0.0.1:" + server.getPort(), concurrency).run(seconds);
+        }
+    }
+
+    public void run(int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        Random random = new Random();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            HttpRequest request = nextRequest(random);
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        if (failure != null || response.statusCode() >= 500) {
+                            errors.incrementAndGet();
+                        } else {
+                            latencies.add(System.nanoTime() - sent);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(concurrency);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            System.out.printf("No successful requests, %d errors.%n", errors.get());
+            return;
+        }
+        System.out.printf("%d concurrent requests: %d done in %.1f s, %.0f requests/s, %d errors, " +
+                        "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms.%n",
+                concurrency, sorted.size(), elapsed, sorted.size() / elapsed, errors.get(),
+                percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6, sorted.get(sorted.size() - 1) / 1e6);
+    }
+
+    private HttpRequest nextRequest(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return get("/mempool");
+            case 1:
+                return get("/blocks/0");
+            case 2:
+                return get("/balances/" + addresses.get(random.nextInt(addresses.size())));
+            default:
+                return HttpRequest.newBuilder(URI.create(url + "/transactions"))
+                        .POST(HttpRequest.BodyPublishers.ofString(transactions.get(random.nextInt(transactions.size()))))
+                        .build();
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(url + path)).GET().build();
+    }
+
+    private static double percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
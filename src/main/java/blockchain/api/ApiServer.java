@@ -0,0 +1,225 @@
+package blockchain.api;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.SignedTransaction;
+import blockchain.serialization.BlockSerializer;
+import blockchain.serialization.TransactionDeserializer;
+import blockchain.serialization.TransactionSerializer;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/* Local JSON API of a blockchain, on the JDK's HTTP server bound to the loopback address:
+ * - POST /transactions - submits a signed transaction, in the same JSON form as in exported blocks
+ * - GET /balances/{address} - confirmed balance minus coins spent by pending transactions
+ * - GET /blocks/{id or hash} - block of the main chain, with its transactions
+ * - GET /mempool - number and total amount of pending transactions, chain height and tip
+ * Each request runs on its own virtual thread where the runtime has them, otherwise on a cached thread pool. */
+public final class ApiServer implements Closeable {
+    /* Pending connections the listening socket queues, lets thousands of clients connect at once */
+    public static final int BACKLOG = 4096;
+    public static final int MAX_BODY_SIZE = 64 * 1024;
+
+    private final Blockchain blockchain;
+    private final Predicate<SignedTransaction> submitter;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Block.class, new BlockSerializer())
+            .registerTypeAdapter(SignedTransaction.class, new TransactionSerializer())
+            .registerTypeAdapter(SignedTransaction.class, new TransactionDeserializer())
+            .create();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApiServer.class);
+
+    static {
+        /* The server writes response headers and body separately, with Nagle's algorithm on the body waits for
+         * the client's delayed ack, about 40 ms per request. Above 200 idle keep-alive connections, the default limit,
+         * the server closes them while clients may be reusing them. Both are read when the first server is created. */
+        setDefault("sun.net.httpserver.nodelay", "true");
+        setDefault("sun.net.httpserver.maxIdleConnections", String.valueOf(BACKLOG));
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    /* Submitted transactions go to a given submitter, e.g. a network node which also relays them. Port 0 picks a free one */
+    public ApiServer(Blockchain blockchain, Predicate<SignedTransaction> submitter, int port) throws IOException {
+        this.blockchain = blockchain;
+        this.submitter = submitter;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = newPerRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/transactions", handler(this::submitTransaction));
+        server.createContext("/balances/", handler(this::getBalance));
+        server.createContext("/blocks/", handler(this::getBlock));
+        server.createContext("/mempool", handler(this::getMempool));
+        server.start();
+        LOGGER.info("API listening on " + server.getAddress());
+    }
+
+    public ApiServer(Blockchain blockchain, int port) throws IOException {
+        this(blockchain, blockchain::addTransaction, port);
+    }
+
+    /* Virtual threads are looked up reflectively, the project targets a release which doesn't have them */
+    static ExecutorService newPerRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.info("Virtual threads not available, API requests run on a cached thread pool.");
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "api-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private Response submitTransaction(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return Response.error(405, "Use POST");
+        }
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            return Response.error(413, "Transaction exceeds " + MAX_BODY_SIZE + " bytes");
+        }
+        SignedTransaction transaction;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+            transaction = gson.fromJson(reader, SignedTransaction.class);
+        } catch (RuntimeException e) {
+            /* Missing fields and invalid hex show up as various runtime exceptions of the deserializer */
+            return Response.error(400, "Malformed transaction");
+        }
+        if (transaction == null) {
+            return Response.error(400, "Malformed transaction");
+        }
+        JsonObject result = new JsonObject();
+        result.addProperty("id", transaction.getId().toHex());
+        boolean accepted = submitter.test(transaction);
+        result.addProperty("accepted", accepted);
+        return new Response(accepted ? 202 : 422, result.toString());
+    }
+
+    private Response getBalance(HttpExchange exchange) {
+        String address = lastSegment(exchange, "/balances/");
+        if (address.isEmpty()) {
+            return Response.error(404, "No address given");
+        }
+        JsonObject result = new JsonObject();
+        result.addProperty("address", address);
+        result.addProperty("balance", blockchain.coinsOfClient(address));
+        return new Response(200, result.toString());
+    }
+
+    /* Hashes are 64 hex digits, anything shorter is read as a block id */
+    private Response getBlock(HttpExchange exchange) {
+        String key = lastSegment(exchange, "/blocks/");
+        Block block = null;
+        try {
+            if (key.length() == 2 * Hash256.LENGTH) {
+                block = blockchain.getBlock(Hash256.fromHex(key));
+            } else {
+                int id = Integer.parseInt(key);
+                List<Block> found = id < 0 ? List.of() : blockchain.getBlocks(id, 1);
+                block = found.isEmpty() ? null : found.get(0);
+            }
+        } catch (IllegalArgumentException e) {
+            return Response.error(400, "Invalid block id or hash");
+        }
+        if (block == null) {
+            return Response.error(404, "Block not found");
+        }
+        return new Response(200, gson.toJson(block, Block.class));
+    }
+
+    private Response getMempool(HttpExchange exchange) {
+        List<SignedTransaction> pending = blockchain.getTransactionsToPublish();
+        Block last = blockchain.getLast();
+        JsonObject result = new JsonObject();
+        result.addProperty("pendingTransactions", pending.size());
+        result.addProperty("pendingAmount", pending.stream().mapToLong(SignedTransaction::getAmount).sum());
+        result.addProperty("height", last.getId());
+        result.addProperty("tip", last.getBlockHash().toHex());
+        return new Response(200, result.toString());
+    }
+
+    private static String lastSegment(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        return path.length() > prefix.length() ? path.substring(prefix.length()) : "";
+    }
+
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            Response response;
+            try {
+                response = endpoint.handle(exchange);
+            } catch (RuntimeException e) {
+                LOGGER.warn("API request " + exchange.getRequestURI() + " failed", e);
+                response = Response.error(500, "Internal error");
+            }
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        private static Response error(int status, String message) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", message);
+            return new Response(status, error.toString());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package blockchain.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Maps each distinct address to a compact int id on first use, so transactions, rewards and balance maps don't
+ * have to keep and compare full Base58 strings. Ids are assigned in order of appearance and are valid only within
+ * one run of the simulation, anything persisted keeps addresses as strings. Transactions register their addresses
+ * only once accepted, see Transaction, validation looks them up with find. */
+public final class AddressRegistry {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final AddressRegistry INSTANCE = new AddressRegistry();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] addresses = new String[INITIAL_CAPACITY];
+    private int size;
+
+    private AddressRegistry() {
+    }
+
+    public static AddressRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /* Lock free for addresses already known, first registration of an address is synchronized */
+    public int intern(String address) {
+        Integer id = ids.get(address);
+        if (id != null) {
+            return id;
+        }
+        return register(address);
+    }
+
+    private synchronized int register(String address) {
+        Integer id = ids.get(address);
+        if (id != null) {
+            return id;
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        int newId = size++;
+        /* Array slot is written before id gets published through the map, so any thread which has the id sees the address */
+        addresses[newId] = address;
+        ids.put(address, newId);
+        return newId;
+    }
+
+    public String getAddress(int id) {
+        String[] current = addresses;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown address id " + id);
+        }
+        return current[id];
+    }
+
+    /* Returns -1 for an address which has never been seen, without registering it */
+    public int find(String address) {
+        return ids.getOrDefault(address, -1);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
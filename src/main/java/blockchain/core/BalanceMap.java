@@ -0,0 +1,207 @@
+package blockchain.core;
+
+import java.util.Arrays;
+
+/* Open addressing hash map from address id to a primitive long, used for balance accounting. Values are updated in
+ * place with a single probe sequence, nothing is boxed. Ids are non-negative, entries are never removed, so linear
+ * probing needs no tombstones. Not thread safe. */
+public final class BalanceMap {
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    private int shift;
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int addressId, long value);
+    }
+
+    public BalanceMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /* Expected number of entries, the table is kept at most half full */
+    public BalanceMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private BalanceMap(BalanceMap other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+        this.mask = other.mask;
+        this.shift = other.shift;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    /* Fibonacci hashing, consecutive ids given by AddressRegistry are spread over the table */
+    private int slot(int addressId) {
+        return (addressId * 0x9E3779B9) >>> shift;
+    }
+
+    private int indexOf(int addressId) {
+        int index = slot(addressId);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == addressId) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    /* Returns index of the entry, creating it with value 0 if absent */
+    private int entryIndex(int addressId) {
+        if (addressId < 0) {
+            throw new IllegalArgumentException("Address id can't be negative: " + addressId);
+        }
+        int index = indexOf(addressId);
+        if (index >= 0) {
+            return index;
+        }
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+            index = indexOf(addressId);
+        }
+        index = -index - 1;
+        keys[index] = addressId;
+        values[index] = 0;
+        size++;
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = -indexOf(oldKeys[i]) - 1;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public boolean containsKey(int addressId) {
+        return addressId >= 0 && indexOf(addressId) >= 0;
+    }
+
+    public long get(int addressId) {
+        return getOrDefault(addressId, 0);
+    }
+
+    public long getOrDefault(int addressId, long defaultValue) {
+        if (addressId < 0) {
+            return defaultValue;
+        }
+        int index = indexOf(addressId);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(int addressId, long value) {
+        values[entryIndex(addressId)] = value;
+    }
+
+    /* Adds delta to the value (absent entry counts as 0), returns the new value */
+    public long add(int addressId, long delta) {
+        int index = entryIndex(addressId);
+        values[index] += delta;
+        return values[index];
+    }
+
+    /* Keeps the lower of the current and given value, absent entry takes the given one */
+    public void putMin(int addressId, long value) {
+        int index = indexOf(addressId);
+        if (index >= 0) {
+            values[index] = Math.min(values[index], value);
+        } else {
+            put(addressId, value);
+        }
+    }
+
+    /* Lowest value of all entries, Long.MAX_VALUE for an empty map */
+    public long minValue() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] < min) {
+                min = values[i];
+            }
+        }
+        return min;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public BalanceMap copy() {
+        return new BalanceMap(this);
+    }
+
+    /* Entry with zero value equals a missing one, a reverted block leaves zero balances which were never there before */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BalanceMap that = (BalanceMap) o;
+        return containsAllOf(that) && that.containsAllOf(this);
+    }
+
+    private boolean containsAllOf(BalanceMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY && other.values[i] != 0 && getOrDefault(other.keys[i], 0) != other.values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Independent of the order of entries and of zero ones, so equal maps with different capacities have equal hashes */
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] != 0) {
+                result += keys[i] ^ Long.hashCode(values[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((addressId, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(addressId).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+}
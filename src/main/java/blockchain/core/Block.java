@@ -1,24 +1,54 @@
 package blockchain.core;
 
+import blockchain.encryption.EncryptionUtils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+/* Fields are not final only because of custom deserialization, block is immutable. */
 public final class Block implements Serializable {
-    private final int id;
-    private final long timestamp;
-    private final String transactionsHash;
-    private final int nonce;
-    private final String previousBlockHash;
-    private final String blockHash;
-    private final String minerName;
-    private final MinerReward minerReward;
-    private final List<SignedTransaction> transactions;
+    private int version;
+    private int id;
+    private long timestamp;
+    private Hash256 transactionsHash;
+    private int nonce;
+    private Hash256 previousBlockHash;
+    private Hash256 blockHash;
+    private String minerName;
+    private MinerReward minerReward;
+    private List<SignedTransaction> transactions;
+    private transient BlockBodySource bodySource;
 
     private static final long serialVersionUID = 1L;
 
-    protected Block(int id, long timestamp, String transactionsHash, int nonce, String previousBlockHash, String blockHash, String minerName, MinerReward minerReward, List<SignedTransaction> transactions) {
+    /* Hashes are serialized as hex strings, so the format stays compatible with previously saved simulations */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("version", int.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("timestamp", long.class),
+            new ObjectStreamField("transactionsHash", String.class),
+            new ObjectStreamField("nonce", int.class),
+            new ObjectStreamField("previousBlockHash", String.class),
+            new ObjectStreamField("blockHash", String.class),
+            new ObjectStreamField("minerName", String.class),
+            new ObjectStreamField("minerReward", MinerReward.class),
+            new ObjectStreamField("transactions", List.class)
+    };
+
+    /* Protocol versions, they differ in a way transactions hash is calculated */
+    public static final int LIST_HASH_VERSION = 1;
+    public static final int MERKLE_ROOT_VERSION = 2;
+
+    protected Block(int version, int id, long timestamp, Hash256 transactionsHash, int nonce, Hash256 previousBlockHash, Hash256 blockHash, String minerName, MinerReward minerReward, List<SignedTransaction> transactions) {
+        this.version = version;
         this.id = id;
         this.timestamp = timestamp;
         this.nonce = nonce;
@@ -30,6 +60,11 @@ public final class Block implements Serializable {
         this.transactions = transactions;
     }
 
+    /* Blocks saved before versioning was introduced have no version, they use the list hash */
+    public int getVersion() {
+        return version == 0 ? LIST_HASH_VERSION : version;
+    }
+
     public int getId() {
         return id;
     }
@@ -38,11 +73,11 @@ public final class Block implements Serializable {
         return timestamp;
     }
 
-    public String getTransactionsHash() {
+    public Hash256 getTransactionsHash() {
         return transactionsHash;
     }
 
-    public String getBlockHash() {
+    public Hash256 getBlockHash() {
         return blockHash;
     }
 
@@ -50,12 +85,59 @@ public final class Block implements Serializable {
         return nonce;
     }
 
-    public String getPreviousBlockHash() {
+    public Hash256 getPreviousBlockHash() {
         return previousBlockHash;
     }
 
+    /* For header-only blocks transactions are loaded from the body source on each call */
     public List<SignedTransaction> getTransactions() {
-        return transactions;
+        if (transactions != null) {
+            return transactions;
+        }
+        if (bodySource == null) {
+            throw new IllegalStateException("Transactions of block " + id + " are not loaded and no body source is attached.");
+        }
+        return bodySource.loadTransactions(id);
+    }
+
+    /* Iterates transactions without materializing them when the body source keeps them in binary form.
+     * Records may be reused flyweights, they must not be kept after the call. */
+    public void forEachTransaction(Consumer<? super TransactionRecord> action) {
+        if (transactions != null) {
+            transactions.forEach(action);
+        } else if (bodySource != null) {
+            bodySource.forEachTransaction(id, action);
+        } else {
+            throw new IllegalStateException("Transactions of block " + id + " are not loaded and no body source is attached.");
+        }
+    }
+
+    /* Block hash input as defined in the protocol: <miner_reward><id><timestamp><nonce><previous_hash><transactions_hash> */
+    /* Reward is optional like everywhere else, a block without one hashes it as "null" */
+    public static Hash256 calculateHash(MinerReward reward, int id, long timestamp, int nonce, Hash256 previousHash, Hash256 transactionsHash) {
+        String input = String.valueOf(reward) + id + timestamp + nonce + previousHash.toHex() + transactionsHash.toHex();
+        return Hash256.wrap(EncryptionUtils.applySha256toBytes(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public boolean isHeaderOnly() {
+        return transactions == null;
+    }
+
+    /* Returns copy of this block without transactions list, which is loaded on demand from a given source. */
+    public Block toHeaderOnly(BlockBodySource source) {
+        Block header = new Block(version, id, timestamp, transactionsHash, nonce, previousBlockHash, blockHash, minerName, minerReward, null);
+        header.bodySource = source;
+        return header;
+    }
+
+    /* Returns copy of this block with a given transactions list, e.g. a received header completed with its body */
+    public Block withTransactions(List<SignedTransaction> transactions) {
+        return new Block(version, id, timestamp, transactionsHash, nonce, previousBlockHash, blockHash, minerName, minerReward,
+                Collections.unmodifiableList(transactions));
+    }
+
+    void attachBodySource(BlockBodySource source) {
+        this.bodySource = source;
     }
 
     public MinerReward getMinerReward() {
@@ -80,6 +162,7 @@ public final class Block implements Serializable {
         if (!(minerReward == null)) {
             result.append(minerReward.toString()).append("\n");
         }
+        result.append("Version: ").append(getVersion()).append("\n");
         result.append("Id: ").append(id).append("\n");
         result.append("Timestamp: ").append(timestamp).append("\n");
         result.append("Transactions hash:").append("\n");
@@ -95,24 +178,57 @@ public final class Block implements Serializable {
     }
 
     private String blockDataToString() {
-        return transactions.stream()
+        return getTransactions().stream()
                 .map(SignedTransaction::toString)
                 .reduce((sum, next) -> sum += "\n" + next)
                 .map(s -> "\n" + s)
                 .orElse("no transactions");
     }
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("version", version);
+        fields.put("id", id);
+        fields.put("timestamp", timestamp);
+        fields.put("transactionsHash", transactionsHash.toHex());
+        fields.put("nonce", nonce);
+        fields.put("previousBlockHash", previousBlockHash.toHex());
+        fields.put("blockHash", blockHash.toHex());
+        fields.put("minerName", minerName);
+        fields.put("minerReward", minerReward);
+        /* Bodies kept only in memory are written along with the header */
+        boolean inMemoryBody = transactions == null && bodySource != null && !bodySource.isPersistent();
+        fields.put("transactions", inMemoryBody ? getTransactions() : transactions);
+        oos.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = ois.readFields();
+        version = fields.get("version", 0);
+        id = fields.get("id", 0);
+        timestamp = fields.get("timestamp", 0L);
+        transactionsHash = Hash256.fromHex((String) fields.get("transactionsHash", ""));
+        nonce = fields.get("nonce", 0);
+        previousBlockHash = Hash256.fromHex((String) fields.get("previousBlockHash", ""));
+        blockHash = Hash256.fromHex((String) fields.get("blockHash", ""));
+        minerName = (String) fields.get("minerName", null);
+        minerReward = (MinerReward) fields.get("minerReward", null);
+        transactions = (List<SignedTransaction>) fields.get("transactions", null);
+    }
+
     public static Builder newBuilder() {
         return new BlockBuilder();
     }
 
     public interface Builder {
+        Builder setVersion(int version);
         Builder setId(int id);
         Builder setTimestamp(long timestamp);
-        Builder setTransactionsHash(String transactionsHash);
+        Builder setTransactionsHash(Hash256 transactionsHash);
         Builder setNonce(int nonce);
-        Builder setPreviousHash(String hash);
-        Builder setHash(String hash);
+        Builder setPreviousHash(Hash256 hash);
+        Builder setHash(Hash256 hash);
         Builder setMinerName(String name);
         Builder setTransactions(List<SignedTransaction> transactions);
         Builder setMinerReward(MinerReward reward);
@@ -120,24 +236,32 @@ public final class Block implements Serializable {
     }
 
     public static class BlockBuilder implements Builder {
+        private int version;
         private int id;
         private long timestamp;
-        private String transactionHash;
+        private Hash256 transactionHash;
         private int nonce;
-        private String previousHash;
-        private String hash;
+        private Hash256 previousHash;
+        private Hash256 hash;
         private String minerName;
         private List<SignedTransaction> transactions;
         private MinerReward minerReward;
 
         private BlockBuilder() {
-            this.transactionHash = "";
-            this.previousHash = "";
-            this.hash = "";
+            this.version = LIST_HASH_VERSION;
+            this.transactionHash = Hash256.ZERO;
+            this.previousHash = Hash256.ZERO;
+            this.hash = Hash256.ZERO;
             this.minerName = "Unknown";
             transactions = new ArrayList<>();
         }
 
+        @Override
+        public Builder setVersion(int version) {
+            this.version = version;
+            return this;
+        }
+
         @Override
         public Builder setId(int id) {
             this.id = id;
@@ -151,7 +275,7 @@ public final class Block implements Serializable {
         }
 
         @Override
-        public Builder setTransactionsHash(String transactionsHash) {
+        public Builder setTransactionsHash(Hash256 transactionsHash) {
             this.transactionHash = transactionsHash;
             return this;
         }
@@ -163,13 +287,13 @@ public final class Block implements Serializable {
         }
 
         @Override
-        public Builder setPreviousHash(String hash) {
+        public Builder setPreviousHash(Hash256 hash) {
             this.previousHash = hash;
             return this;
         }
 
         @Override
-        public Builder setHash(String hash) {
+        public Builder setHash(Hash256 hash) {
             this.hash = hash;
             return this;
         }
@@ -194,7 +318,7 @@ public final class Block implements Serializable {
 
         @Override
         public Block build() {
-            return new Block(id, timestamp, transactionHash, nonce, previousHash, hash, minerName, minerReward, transactions);
+            return new Block(version, id, timestamp, transactionHash, nonce, previousHash, hash, minerName, minerReward, transactions);
         }
     }
 }
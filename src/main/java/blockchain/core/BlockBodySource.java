@@ -0,0 +1,19 @@
+package blockchain.core;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/* Provides transactions of blocks which keep only their headers in memory. */
+public interface BlockBodySource {
+    List<SignedTransaction> loadTransactions(int blockId);
+
+    /* Sources may pass the same flyweight record for each transaction, records must not be kept after the call */
+    default void forEachTransaction(int blockId, Consumer<? super TransactionRecord> action) {
+        loadTransactions(blockId).forEach(action);
+    }
+
+    /* Sources which keep bodies only in memory return false, blocks using them are serialized along with transactions */
+    default boolean isPersistent() {
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package blockchain.core;
+
+import java.util.List;
+
+/* Body source which blockchain writes transactions of appended blocks into. */
+public interface BlockBodyStorage extends BlockBodySource {
+    void write(int blockId, List<SignedTransaction> transactions);
+}
@@ -0,0 +1,91 @@
+package blockchain.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Blocks off the main chain: side branches, which may still get more work than the main chain, and orphans, whose
+ * parent hasn't arrived yet. Side blocks keep their bodies in memory, each one knows the difficulty required after it
+ * and the total work of its branch from the genesis block. Orphans are bounded, the oldest are dropped first. */
+final class BlockTree {
+    static final int ORPHANS_CAPACITY = 256;
+
+    private final Map<Hash256, Entry> sideBlocks = new HashMap<>();
+    private final Map<Hash256, Block> orphans = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Hash256, Block> eldest) {
+            return size() > ORPHANS_CAPACITY;
+        }
+    };
+
+    Entry getSide(Hash256 hash) {
+        return sideBlocks.get(hash);
+    }
+
+    void addSide(Entry entry) {
+        sideBlocks.put(entry.block.getBlockHash(), entry);
+    }
+
+    void removeSide(Hash256 hash) {
+        sideBlocks.remove(hash);
+    }
+
+    /* Blocks of a branch ending with a given side block, from the one following the main chain on */
+    List<Entry> branchOf(Entry tip) {
+        List<Entry> branch = new ArrayList<>();
+        for (Entry entry = tip; entry != null; entry = sideBlocks.get(entry.block.getPreviousBlockHash())) {
+            branch.add(0, entry);
+        }
+        return branch;
+    }
+
+    /* Side blocks below a given height fork off too deep to ever win */
+    void pruneSide(int minId) {
+        sideBlocks.values().removeIf(entry -> entry.block.getId() < minId);
+    }
+
+    boolean containsOrphan(Hash256 hash) {
+        return orphans.containsKey(hash);
+    }
+
+    void addOrphan(Block block) {
+        orphans.put(block.getBlockHash(), block);
+    }
+
+    /* Removes and returns orphans which are children of a given block */
+    List<Block> takeOrphansOf(Hash256 parentHash) {
+        List<Block> children = new ArrayList<>();
+        orphans.values().removeIf(orphan -> {
+            if (!orphan.getPreviousBlockHash().equals(parentHash)) {
+                return false;
+            }
+            children.add(orphan);
+            return true;
+        });
+        return children;
+    }
+
+    int sideBlocksCount() {
+        return sideBlocks.size();
+    }
+
+    int orphansCount() {
+        return orphans.size();
+    }
+
+    static final class Entry {
+        final Block block;
+        final int difficulty;
+        final int nextDifficulty;
+        final long chainWork;
+
+        Entry(Block block, int difficulty, int nextDifficulty, long chainWork) {
+            this.block = block;
+            this.difficulty = difficulty;
+            this.nextDifficulty = nextDifficulty;
+            this.chainWork = chainWork;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package blockchain.core;
 
 import blockchain.encryption.EncryptionUtils;
+import blockchain.encryption.MerkleTree;
 import blockchain.serialization.BlockSerializer;
+import blockchain.serialization.BlockStreamReader;
 import blockchain.serialization.TransactionSerializer;
+import blockchain.storage.BlockBodyStore;
+import blockchain.storage.CheckpointStore;
+import blockchain.storage.FileRegion;
+import blockchain.storage.TransactionArena;
 import blockchain.utils.SerializationUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -12,58 +18,310 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 
-/* Singleton */
+/* Singleton used by the simulation, nodes of an in-process network create their own independent instances.
+ * Blocks of competing branches are kept in a block tree, the main chain is the one with the most work. */
 public final class Blockchain {
     private static final Blockchain blockChain = new Blockchain();
 
-    private LinkedList<Block> createdBlocks;
+    private List<Block> createdBlocks;
     private TransactionsManager transactionsManager;
     private DifficultyAdjuster difficultyAdjuster;
+    private final TransactionValidator validator;
+    private BlockBodyStorage bodyStorage;
+    private ChainState chainState;
+    private CheckpointStore checkpointStore;
+    private boolean fullCheckOnLoading;
+    private BlockTree blockTree;
+    /* Difficulty required after each block of the main chain and total work of the chain up to it, indexed by block id */
+    private List<Integer> nextDifficulties;
+    private List<Long> chainWork;
+    /* Undo data of the latest main chain blocks, the last one belongs to the tip. Blocks without it can't be
+     * disconnected, which limits how deep a reorganization can go. */
+    private final Deque<ChainState.Undo> undoData = new ArrayDeque<>();
+    private long reorganizations;
+    private int deepestReorganization;
 
     public static final long REWARD_VALUE = 100;
     public static final String KEYS_ALGORITHM = "RSA";
     public static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    public static final int IMPORT_BATCH_SIZE = 256;
+    public static final int MAX_REORGANIZATION_DEPTH = 100;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Blockchain.class);
 
     private Blockchain() {
-        this.createdBlocks = new LinkedList<>();
-        Block zeroBlock = Block.newBuilder()
+        this.createdBlocks = new ArrayList<>();
+        createdBlocks.add(createGenesis());
+        this.transactionsManager = new TransactionsManager(this);
+        this.difficultyAdjuster = new DifficultyAdjuster();
+        this.validator = new TransactionValidator();
+        this.chainState = new ChainState();
+        this.blockTree = new BlockTree();
+        this.nextDifficulties = new ArrayList<>(List.of(difficultyAdjuster.getDifficultyValue()));
+        this.chainWork = new ArrayList<>(List.of(0L));
+    }
+
+    /* Block 0, the same for every chain */
+    static Block createGenesis() {
+        return Block.newBuilder()
                 .setId(0)
                 .setTimestamp(0)
-                .setHash("0")
+                .setHash(Hash256.ZERO)
                 .setMinerName("")
                 .setTransactions(new ArrayList<>())
                 .setMinerReward(null)
                 .build();
-        createdBlocks.add(zeroBlock);
-        this.transactionsManager = new TransactionsManager(this);
-        this.difficultyAdjuster = new DifficultyAdjuster();
     }
 
     public static synchronized Blockchain getInstance() {
         return blockChain;
     }
 
+    /* Chain with its own blocks, pending transactions and difficulty, sharing nothing with the singleton */
+    public static Blockchain newInstance() {
+        return new Blockchain();
+    }
+
+    /* Appends a block which extends the main chain. A valid block of a competing branch is kept in the block tree and
+     * the chain switches to its branch once the branch has more work, on a tie the current chain stays. A block whose
+     * parent is unknown waits in the orphan pool until the parent arrives. Returns true if the block is on the main
+     * chain afterwards. */
     public synchronized boolean appendNextBlock(Block nextBlock) {
-        if (!checkIfNextBlockIsValid(nextBlock)) {
+        if (isKnown(nextBlock)) {
+            return false;
+        }
+        boolean onMainChain = connect(nextBlock);
+        connectOrphans(nextBlock.getBlockHash());
+        return onMainChain;
+    }
+
+    private boolean connect(Block block) {
+        if (block.getPreviousBlockHash().equals(getLast().getBlockHash())) {
+            return appendToTip(block);
+        }
+        BlockTree.Entry parent = blockTree.getSide(block.getPreviousBlockHash());
+        if (parent != null || isOnMainChain(block.getPreviousBlockHash(), block.getId() - 1)) {
+            return addToBranch(block, parent);
+        }
+        /* Only proof of work can be checked without the parent, it makes flooding the pool with orphans costly */
+        Hash256 hash = Block.calculateHash(block.getMinerReward(), block.getId(), block.getTimestamp(), block.getNonce(),
+                block.getPreviousBlockHash(), block.getTransactionsHash());
+        if (hash.equals(block.getBlockHash()) && hash.leadingZeroBits() >= 4 * DifficultyAdjuster.MIN_DIFFICULTY) {
+            blockTree.addOrphan(block);
+            LOGGER.info("Block " + block.getId() + " kept as an orphan, its parent is unknown.");
+        }
+        return false;
+    }
+
+    /* Orphans waiting for a block which is now known are connected, and then orphans waiting for them */
+    private void connectOrphans(Hash256 parentHash) {
+        Deque<Hash256> parents = new ArrayDeque<>();
+        parents.add(parentHash);
+        while (!parents.isEmpty()) {
+            Hash256 parent = parents.poll();
+            if (!isOnMainChain(parent) && blockTree.getSide(parent) == null) {
+                continue;
+            }
+            for (Block orphan : blockTree.takeOrphansOf(parent)) {
+                connect(orphan);
+                parents.add(orphan.getBlockHash());
+            }
+        }
+    }
+
+    /* Block with transactions which aren't all pending, e.g. mined by another node with a different pending list,
+     * is checked like an imported one, signatures included. Pending transactions were validated on their own, so
+     * order, replays and balances of the block's transactions are checked on both paths. */
+    private boolean appendToTip(Block nextBlock) {
+        if (!transactionsManager.checkNewBlockTransactions(nextBlock)) {
+            return appendBlocks(List.of(nextBlock), false);
+        }
+        if (!checkIfNextBlockIsValid(nextBlock) || !checkTransactions(new ChainStateView(chainState), nextBlock)) {
             return false;
         }
         LOGGER.info(nextBlock.toString());
         transactionsManager.removeTransactionsAddedInNewBlock(nextBlock);
 
-        boolean appended = createdBlocks.add(nextBlock);
+        int difficulty = difficultyAdjuster.getDifficultyValue();
+        applyToState(nextBlock);
+        boolean appended = createdBlocks.add(detachBody(nextBlock));
         difficultyAdjuster.adjustDifficulty(createdBlocks);
+        indexAppended(difficulty, difficultyAdjuster.getDifficultyValue());
+        checkpointIfDue();
         System.out.println();
         return appended;
     }
 
+    /* Block whose parent is a side block, given one, or a main chain block other than the tip. Such block is checked
+     * like a synchronized one, its balances are checked only when its branch is connected. */
+    private boolean addToBranch(Block block, BlockTree.Entry parent) {
+        int parentId = block.getId() - 1;
+        Block parentBlock = parent == null ? createdBlocks.get(parentId) : parent.block;
+        int difficulty = parent == null ? nextDifficulties.get(parentId) : parent.nextDifficulty;
+        long parentWork = parent == null ? chainWork.get(parentId) : parent.chainWork;
+        if (parentBlock.getId() != parentId || !checkHeader(block, parentBlock, difficulty) || !checkBody(block)) {
+            LOGGER.warn("Invalid block with id " + block.getId() + " found on a side branch.");
+            return false;
+        }
+        List<BlockTree.Entry> branch = blockTree.branchOf(parent);
+        List<Block> branchBlocks = new ArrayList<>(branch.size() + 1);
+        branch.forEach(entry -> branchBlocks.add(entry.block));
+        branchBlocks.add(block);
+        int nextDifficulty = difficultyAdjuster.nextDifficulty(block, branchView(branchBlocks), difficulty);
+        BlockTree.Entry entry = new BlockTree.Entry(block, difficulty, nextDifficulty, parentWork + DifficultyAdjuster.work(difficulty));
+        blockTree.addSide(entry);
+        branch.add(entry);
+        if (entry.chainWork <= chainWork.get(size())) {
+            LOGGER.info("Block " + block.getId() + " kept on a side branch, the main chain has at least as much work.");
+            return false;
+        }
+        return reorganize(branch);
+    }
+
+    /* Main chain up to the block a branch forks off at, followed by blocks of the branch, indexed by block id */
+    private List<Block> branchView(List<Block> branchBlocks) {
+        int forkId = branchBlocks.get(0).getId() - 1;
+        return new AbstractList<>() {
+            @Override
+            public Block get(int index) {
+                return index <= forkId ? createdBlocks.get(index) : branchBlocks.get(index - forkId - 1);
+            }
+
+            @Override
+            public int size() {
+                return forkId + 1 + branchBlocks.size();
+            }
+        };
+    }
+
+    /* Disconnects main chain blocks above the fork point and connects blocks of a given branch instead. Disconnected
+     * blocks stay in the block tree and their transactions, unless the branch has them too, are pending again. If the
+     * branch turns out to be invalid, e.g. it spends more coins than an address has, the previous chain is restored. */
+    private boolean reorganize(List<BlockTree.Entry> branch) {
+        Block first = branch.get(0).block;
+        Block tip = branch.get(branch.size() - 1).block;
+        int forkId = first.getId() - 1;
+        if (!isOnMainChain(first.getPreviousBlockHash(), forkId) || forkId < size() - undoData.size()) {
+            LOGGER.warn("Branch with tip " + tip.getId() + " forks off deeper than the chain can be reorganized.");
+            return false;
+        }
+        long start = System.nanoTime();
+        int depth = size() - forkId;
+        List<BlockTree.Entry> disconnected = disconnectAbove(forkId);
+        List<Block> connected = new ArrayList<>(branch.size());
+        branch.forEach(entry -> connected.add(entry.block));
+        branch.forEach(entry -> blockTree.removeSide(entry.block.getBlockHash()));
+        if (!appendBlocks(connected, true)) {
+            LOGGER.warn("Branch with tip " + tip.getId() + " can't be connected, the previous chain is restored.");
+            List<Block> restored = new ArrayList<>(disconnected.size());
+            disconnected.forEach(entry -> restored.add(entry.block));
+            if (!restored.isEmpty() && !appendBlocks(restored, true)) {
+                throw new IllegalStateException("Disconnected blocks can't be connected again.");
+            }
+            return false;
+        }
+        disconnected.forEach(blockTree::addSide);
+
+        Set<Hash256> confirmed = new HashSet<>();
+        connected.forEach(block -> block.getTransactions().forEach(transaction -> confirmed.add(transaction.getId())));
+        List<SignedTransaction> returned = new ArrayList<>();
+        disconnected.forEach(entry -> returned.addAll(entry.block.getTransactions()));
+        transactionsManager.restorePending(returned, confirmed);
+
+        reorganizations++;
+        deepestReorganization = Math.max(deepestReorganization, depth);
+        LOGGER.info(String.format("Reorganization at block %d: %d blocks disconnected, %d connected, new tip %s in %.2f ms.",
+                forkId, depth, connected.size(), tip.getBlockHash(), (System.nanoTime() - start) / 1e6));
+        return true;
+    }
+
+    /* Removes main chain blocks above a given one, returns them with their bodies, in chain order */
+    private List<BlockTree.Entry> disconnectAbove(int forkId) {
+        List<BlockTree.Entry> disconnected = new ArrayList<>(size() - forkId);
+        for (int id = size(); id > forkId; id--) {
+            Block block = createdBlocks.get(id);
+            /* Bodies in the store are replaced by the new branch, so they're loaded first */
+            Block full = block.isHeaderOnly() ? block.withTransactions(block.getTransactions()) : block;
+            chainState.revert(full, createdBlocks.get(id - 1).getBlockHash(), undoData.removeLast());
+            disconnected.add(new BlockTree.Entry(full, nextDifficulties.get(id - 1), nextDifficulties.get(id), chainWork.get(id)));
+        }
+        Collections.reverse(disconnected);
+        createdBlocks.subList(forkId + 1, createdBlocks.size()).clear();
+        nextDifficulties.subList(forkId + 1, nextDifficulties.size()).clear();
+        chainWork.subList(forkId + 1, chainWork.size()).clear();
+        difficultyAdjuster.setDifficultyValue(nextDifficulties.get(forkId));
+        return disconnected;
+    }
+
+    private void applyToState(Block block) {
+        undoData.addLast(chainState.applyWithUndo(block));
+        if (undoData.size() > MAX_REORGANIZATION_DEPTH) {
+            undoData.removeFirst();
+        }
+    }
+
+    /* Records difficulty and work of a block appended to the main chain, side blocks too deep to win are dropped */
+    private void indexAppended(int difficulty, int nextDifficulty) {
+        chainWork.add(chainWork.get(chainWork.size() - 1) + DifficultyAdjuster.work(difficulty));
+        nextDifficulties.add(nextDifficulty);
+        blockTree.pruneSide(size() - MAX_REORGANIZATION_DEPTH);
+    }
+
+    /* Difficulties and work of loaded blocks are replayed from the start, the same way as when appending them */
+    private void rebuildIndex() {
+        DifficultyAdjuster replay = new DifficultyAdjuster();
+        int difficulty = replay.getDifficultyValue();
+        nextDifficulties = new ArrayList<>(createdBlocks.size());
+        chainWork = new ArrayList<>(createdBlocks.size());
+        nextDifficulties.add(difficulty);
+        chainWork.add(0L);
+        for (int i = 1; i < createdBlocks.size(); i++) {
+            chainWork.add(chainWork.get(i - 1) + DifficultyAdjuster.work(difficulty));
+            difficulty = replay.nextDifficulty(createdBlocks.get(i), createdBlocks, difficulty);
+            nextDifficulties.add(difficulty);
+        }
+        difficultyAdjuster.setDifficultyValue(difficulty);
+        undoData.clear();
+        blockTree = new BlockTree();
+    }
+
+    private boolean isOnMainChain(Hash256 hash, int id) {
+        return id >= 0 && id < createdBlocks.size() && createdBlocks.get(id).getBlockHash().equals(hash);
+    }
+
+    private boolean isOnMainChain(Hash256 hash) {
+        for (int id = createdBlocks.size() - 1; id >= 0 && id >= createdBlocks.size() - 1 - MAX_REORGANIZATION_DEPTH; id--) {
+            if (createdBlocks.get(id).getBlockHash().equals(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isKnown(Block block) {
+        Hash256 hash = block.getBlockHash();
+        return isOnMainChain(hash, block.getId()) || blockTree.getSide(hash) != null || blockTree.containsOrphan(hash);
+    }
+
+    /* Block which appendNextBlock wouldn't drop right away: not known yet and not forking off deeper than
+     * a reorganization can reach. Lets a node skip downloading bodies of such blocks. */
+    public synchronized boolean isCandidate(Block header) {
+        return !isKnown(header) && header.getId() > size() - undoData.size();
+    }
+
     private synchronized boolean checkIfNextBlockIsValid(Block nextBlock) {
         boolean idValidity = nextBlock.getId() == size() + 1;
         boolean blockBaseValidity = checkBaseBlockData(nextBlock);
@@ -73,6 +331,19 @@ public final class Blockchain {
 
     private boolean checkBaseBlockData(Block nextBlock) {
         Block prevBlock = createdBlocks.get(nextBlock.getId() - 1);
+        return checkBaseBlockData(nextBlock, prevBlock, difficultyAdjuster.getDifficultyValue());
+    }
+
+    static boolean checkBaseBlockData(Block nextBlock, Block prevBlock, int difficulty) {
+        /* Check transactions hash */
+        Hash256 transactionsHash = hashTransactions(nextBlock.getVersion(), nextBlock.getTransactions());
+        boolean transactionHashCheck = nextBlock.getTransactionsHash().equals(transactionsHash);
+
+        return transactionHashCheck && checkHeader(nextBlock, prevBlock, difficulty);
+    }
+
+    /* Checks which don't need transactions of the block, so they can be done on headers alone */
+    public static boolean checkHeader(Block nextBlock, Block prevBlock, int difficulty) {
 
         /* Time check (timestamp of received block cant be lower than current moment)
          * This simple condition wouldn't work well in real blockchain but its enough for simulation purposes*/
@@ -80,29 +351,235 @@ public final class Blockchain {
         boolean timeCheck = currentTime > nextBlock.getTimestamp();
 
         /* Previous hash check */
-        String prevHash = prevBlock.getBlockHash();
+        Hash256 prevHash = prevBlock.getBlockHash();
         boolean prevHashCheck = nextBlock.getPreviousBlockHash().equals(prevHash);
 
-        /* Checks if new block hash starts with required number of zeros */
-        String startingHash = nextBlock.getBlockHash()
-                .substring(0, difficultyAdjuster.getDifficultyValue());
-        String startingZerosRequired = "0".repeat(Math.max(0, difficultyAdjuster.getDifficultyValue()));
-        boolean zerosCheck = startingHash.equals(startingZerosRequired);
-
-        /* Check transactions hash */
-        String transactionsHash = EncryptionUtils.hashListOfTransactions(nextBlock.getTransactions());
-        boolean transactionHashCheck = nextBlock.getTransactionsHash().equals(transactionsHash);
+        /* Checks if new block hash starts with required number of zeros, each zero of hex representation is 4 bits */
+        boolean zerosCheck = nextBlock.getBlockHash().leadingZeroBits() >= 4 * difficulty;
 
         /* Check if hash is correct */
-        String newHash = EncryptionUtils
-                .applySha256(nextBlock.getMinerReward().toString() + nextBlock.getId() + nextBlock.getTimestamp() + nextBlock.getNonce() + prevHash + transactionsHash);
+        Hash256 newHash = Block.calculateHash(nextBlock.getMinerReward(), nextBlock.getId(), nextBlock.getTimestamp(), nextBlock.getNonce(), prevHash, nextBlock.getTransactionsHash());
         boolean hashCheck = newHash.equals(nextBlock.getBlockHash());
 
-        return timeCheck && prevHashCheck && zerosCheck && transactionHashCheck && hashCheck;
+        return timeCheck && prevHashCheck && zerosCheck && hashCheck;
+    }
+
+    /* Checks of a block which don't depend on other blocks: transactions hash and signatures. Safe to call
+     * concurrently, bodies of different blocks can be checked in any order. */
+    public boolean checkBody(Block block) {
+        Hash256 transactionsHash = hashTransactions(block.getVersion(), block.getTransactions());
+        return block.getTransactionsHash().equals(transactionsHash) && validator.checkTransactionsSignatures(block);
+    }
+
+    /* Transactions hash according to a given block version, both ways take linear time */
+    static Hash256 hashTransactions(int version, List<SignedTransaction> transactions) {
+        if (version >= Block.MERKLE_ROOT_VERSION) {
+            return Hash256.wrap(MerkleTree.computeRoot(transactions));
+        }
+        return Hash256.fromHex(EncryptionUtils.hashListOfTransactions(transactions));
+    }
+
+    /* Bulk append path used by import. Each block is checked the same way as a mined one, except pending list
+     * membership, but difficulty and chain state are updated once per batch. Transactions are checked in order
+     * against the chain state and transactions before them in the batch, the batch is rejected as a whole if any
+     * of them is invalid. */
+    private synchronized boolean appendBlocks(List<Block> batch) {
+        return appendBlocks(batch, false);
+    }
+
+    /* Appends blocks received during synchronization, their bodies were already checked with checkBody */
+    public synchronized boolean appendCheckedBlocks(List<Block> batch) {
+        return appendBlocks(batch, true);
+    }
+
+    private synchronized boolean appendBlocks(List<Block> batch, boolean bodiesChecked) {
+        int sizeBeforeBatch = createdBlocks.size();
+        int difficulty = difficultyAdjuster.getDifficultyValue();
+        int[] difficulties = new int[batch.size() + 1];
+        ChainStateView view = new ChainStateView(chainState);
+        for (int i = 0; i < batch.size(); i++) {
+            Block block = batch.get(i);
+            Block prevBlock = createdBlocks.get(createdBlocks.size() - 1);
+            boolean idValidity = block.getId() == prevBlock.getId() + 1;
+            boolean baseValidity = bodiesChecked ? checkHeader(block, prevBlock, difficulty) : checkBaseBlockData(block, prevBlock, difficulty);
+            if (!idValidity || !baseValidity || (!bodiesChecked && !validator.checkTransactionsSignatures(block))
+                    || !checkTransactions(view, block)) {
+                LOGGER.warn("Invalid block with id " + block.getId() + " found in appended blocks.");
+                rollbackBatch(sizeBeforeBatch);
+                return false;
+            }
+            createdBlocks.add(block);
+            difficulties[i] = difficulty;
+            difficulty = difficultyAdjuster.nextDifficulty(block, createdBlocks, difficulty);
+            difficulties[i + 1] = difficulty;
+        }
+        difficultyAdjuster.setDifficultyValue(difficulty);
+        batch.forEach(transactionsManager::removeTransactionsAddedInNewBlock);
+        for (int i = sizeBeforeBatch; i < createdBlocks.size(); i++) {
+            Block block = createdBlocks.get(i);
+            applyToState(block);
+            createdBlocks.set(i, detachBody(block));
+            indexAppended(difficulties[i - sizeBeforeBatch], difficulties[i - sizeBeforeBatch + 1]);
+            checkpointIfDue();
+        }
+        return true;
+    }
+
+    private static boolean checkTransactions(ChainStateView view, Block block) {
+        TransactionResult result = view.apply(block);
+        if (result != TransactionResult.ACCEPTED) {
+            LOGGER.warn("Transaction of block " + block.getId() + " rejected: " + result);
+            return false;
+        }
+        return true;
+    }
+
+    private void rollbackBatch(int sizeBeforeBatch) {
+        createdBlocks.subList(sizeBeforeBatch, createdBlocks.size()).clear();
+    }
+
+    /* Imports blocks from a json file created by saveBlockchainAsJson. Blocks are streamed, so only one batch of them
+     * is kept in memory apart from the chain itself. Blocks already present in the chain are skipped.
+     * Returns number of appended blocks. */
+    public synchronized int importBlockchainFromJson(String path) {
+        int imported = 0;
+        List<Block> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        try (BlockStreamReader reader = new BlockStreamReader(path)) {
+            while (reader.hasNext()) {
+                Block block = reader.next();
+                if (block.getId() < createdBlocks.size()) {
+                    if (!createdBlocks.get(block.getId()).getBlockHash().equals(block.getBlockHash())) {
+                        LOGGER.warn("Imported block " + block.getId() + " differs from existing one, import stopped.");
+                        return imported;
+                    }
+                    continue;
+                }
+                batch.add(block);
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    if (!appendBlocks(batch)) {
+                        return imported;
+                    }
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty() && appendBlocks(batch)) {
+                imported += batch.size();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error importing Blockchain content, path" + path, e);
+        }
+        LOGGER.info("Imported " + imported + " blocks, blockchain size is " + size());
+        return imported;
+    }
+
+    /* Enables writing chain state checkpoints every given number of blocks. On loading, blockchain state is restored
+     * from the latest matching checkpoint and only blocks appended after it are replayed. */
+    public synchronized void useCheckpoints(String directory, String prefix, int interval) {
+        checkpointStore = new CheckpointStore(directory, prefix, interval);
+    }
+
+    private void checkpointIfDue() {
+        if (checkpointStore != null && checkpointStore.isDue(chainState.getHeight())) {
+            writeCheckpoint();
+        }
+    }
+
+    private void writeCheckpoint() {
+        try {
+            checkpointStore.write(chainState);
+        } catch (IOException e) {
+            LOGGER.error("Error writing checkpoint at height " + chainState.getHeight(), e);
+        }
+    }
+
+    private void restoreChainState() {
+        long start = System.nanoTime();
+        ChainState restored = null;
+        if (checkpointStore != null) {
+            restored = checkpointStore.loadLatest(state -> state.getHeight() < createdBlocks.size()
+                    && createdBlocks.get(state.getHeight()).getBlockHash().equals(state.getLastBlockHash()))
+                    .orElse(null);
+        }
+        chainState = restored == null ? new ChainState() : restored;
+        int checkpointHeight = chainState.getHeight();
+        for (int i = checkpointHeight + 1; i < createdBlocks.size(); i++) {
+            chainState.apply(createdBlocks.get(i));
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.info("Chain state restored in " + elapsed + " ms, " + (restored == null ? "no checkpoint found" : "checkpoint at height " + checkpointHeight)
+                + ", replayed " + (createdBlocks.size() - 1 - checkpointHeight) + " blocks.");
+    }
+
+    public synchronized void setFullCheckOnLoading(boolean fullCheckOnLoading) {
+        this.fullCheckOnLoading = fullCheckOnLoading;
+    }
+
+    private void verifyLoadedBlocks() {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            ChainVerifier verifier = new ChainVerifier(validator, pool);
+            if (!verifier.verify(createdBlocks, chainState)) {
+                throw new IllegalStateException("Loaded blockchain is invalid.");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* Switches blockchain into mode where only block headers are kept in memory. Transactions are written to the
+     * body store and loaded on demand through its LRU cache, capacity is given in number of transactions. */
+    public synchronized void useLazyTransactions(String storePath, long cacheCapacity) {
+        try {
+            bodyStorage = new BlockBodyStore(storePath, cacheCapacity);
+        } catch (IOException e) {
+            LOGGER.error("Error opening block bodies store, path" + storePath, e);
+            throw new RuntimeException(e);
+        }
+        detachBodies();
+    }
+
+    /* Keeps transactions of appended blocks off-heap in a transaction arena, block objects hold only headers.
+     * Unlike lazy mode nothing is stored in separate files, bodies are saved along with blocks. */
+    public synchronized void useOffHeapTransactions() {
+        bodyStorage = new TransactionArena();
+        detachBodies();
+    }
+
+    private void detachBodies() {
+        for (int i = 1; i < createdBlocks.size(); i++) {
+            Block block = createdBlocks.get(i);
+            if (block.isHeaderOnly()) {
+                if (bodyStorage == null || !bodyStorage.isPersistent()) {
+                    throw new IllegalStateException("Blockchain contains header-only blocks, lazy transactions mode must be enabled.");
+                }
+                block.attachBodySource(bodyStorage);
+            } else {
+                createdBlocks.set(i, detachBody(block));
+            }
+        }
+    }
+
+    private Block detachBody(Block block) {
+        if (bodyStorage == null || block.isHeaderOnly() || block.getId() == 0) {
+            return block;
+        }
+        bodyStorage.write(block.getId(), block.getTransactions());
+        return block.toHeaderOnly(bodyStorage);
+    }
+
+    public boolean addTransaction(SignedTransaction signedTransaction) {
+        return addTransactions(List.of(signedTransaction)).get(0) == TransactionResult.ACCEPTED;
     }
 
-    public synchronized boolean addTransaction(SignedTransaction signedTransaction) {
-        return transactionsManager.addTransaction(signedTransaction);
+    /* Signatures are verified before taking the lock, in parallel. Balances and times are then validated against one
+     * chain state and valid transactions added to the pending list under a single lock, so other threads see either
+     * none or all of them. Results are in order of the given transactions. */
+    public List<TransactionResult> addTransactions(List<SignedTransaction> transactions) {
+        TransactionResult[] signatureResults = validator.checkSignatures(transactions);
+        synchronized (this) {
+            return transactionsManager.addTransactions(transactions, signatureResults);
+        }
     }
 
     public synchronized long coinsOfClient(String client) {
@@ -113,8 +590,120 @@ public final class Blockchain {
         return transactionsManager.getPendingTransactions();
     }
 
+    public synchronized TransactionsTemplate getTransactionsTemplate() {
+        return transactionsManager.getTransactionsTemplate();
+    }
+
+    /* Blocks with ids from a given one, at most a given number of them. Genesis block has id 0 */
+    public synchronized List<Block> getBlocks(int fromId, int maxCount) {
+        int from = Math.max(0, fromId);
+        int to = (int) Math.min(createdBlocks.size(), (long) from + maxCount);
+        return from >= to ? new ArrayList<>() : new ArrayList<>(createdBlocks.subList(from, to));
+    }
+
+    /* Block of the main chain with a given hash, or null. Searched from the tip, where most lookups end */
+    public synchronized Block getBlock(Hash256 hash) {
+        for (int id = createdBlocks.size() - 1; id >= 0; id--) {
+            if (createdBlocks.get(id).getBlockHash().equals(hash)) {
+                return createdBlocks.get(id);
+            }
+        }
+        return null;
+    }
+
+    /* Same as getBlocks, but blocks come without transactions and detached from body storage, e.g. for light clients */
+    public synchronized List<Block> getHeaders(int fromId, int maxCount) {
+        List<Block> headers = getBlocks(fromId, maxCount);
+        headers.replaceAll(block -> block.toHeaderOnly(null));
+        return headers;
+    }
+
+    /* Proof of inclusion of a main chain transaction, searched from the tip down to a given block id, e.g. the height
+     * at which a wallet sent a payment. Null if it's not found or its block doesn't commit to a Merkle root. */
+    public synchronized TransactionProof getTransactionProof(Hash256 transactionId, int fromId) {
+        for (int id = createdBlocks.size() - 1; id >= Math.max(1, fromId); id--) {
+            Block block = createdBlocks.get(id);
+            if (block.getVersion() < Block.MERKLE_ROOT_VERSION) {
+                continue;
+            }
+            List<SignedTransaction> transactions = block.getTransactions();
+            for (int i = 0; i < transactions.size(); i++) {
+                if (transactions.get(i).getId().equals(transactionId)) {
+                    return TransactionProof.of(block, List.of(i)).get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    /* Proofs of all transactions sending coins from or to an address in blocks from a given id. Blocks are scanned
+     * without materializing their transactions, only blocks with a match are loaded to build the proofs. */
+    public synchronized List<TransactionProof> getAddressProofs(String address, int fromId) {
+        List<TransactionProof> proofs = new ArrayList<>();
+        int addressId = AddressRegistry.getInstance().find(address);
+        if (addressId < 0) {
+            return proofs;
+        }
+        List<Integer> indexes = new ArrayList<>();
+        for (int id = Math.max(1, fromId); id < createdBlocks.size(); id++) {
+            Block block = createdBlocks.get(id);
+            if (block.getVersion() < Block.MERKLE_ROOT_VERSION) {
+                continue;
+            }
+            indexes.clear();
+            int[] index = {0};
+            block.forEachTransaction(transaction -> {
+                if (involves(transaction, addressId)) {
+                    indexes.add(index[0]);
+                }
+                index[0]++;
+            });
+            if (!indexes.isEmpty()) {
+                proofs.addAll(TransactionProof.of(block, indexes));
+            }
+        }
+        return proofs;
+    }
+
+    private static boolean involves(TransactionRecord transaction, int addressId) {
+        if (transaction.getSenderId() == addressId) {
+            return true;
+        }
+        for (int i = 0; i < transaction.getOutputCount(); i++) {
+            if (transaction.getReceiverId(i) == addressId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Encoded transactions of a block, if they are kept in a body store on disk, otherwise null */
+    public synchronized FileRegion getStoredBody(int blockId) {
+        if (bodyStorage instanceof BlockBodyStore bodyStore) {
+            return bodyStore.getRegion(blockId);
+        }
+        return null;
+    }
+
+    public synchronized long getReorganizations() {
+        return reorganizations;
+    }
+
+    /* Largest number of blocks disconnected by one reorganization */
+    public synchronized int getDeepestReorganization() {
+        return deepestReorganization;
+    }
+
+    public synchronized int getSideBlocksCount() {
+        return blockTree.sideBlocksCount();
+    }
+
+    public synchronized int getOrphansCount() {
+        return blockTree.orphansCount();
+    }
+
     public synchronized Block getLast() {
-        return createdBlocks.getLast();
+        return createdBlocks.get(createdBlocks.size() - 1);
     }
 
     public int getNumberOfZerosRequired() {
@@ -125,9 +714,29 @@ public final class Blockchain {
         return createdBlocks.size() - 1;
     }
 
+    public synchronized void closeBodyStorage() {
+        if (bodyStorage instanceof BlockBodyStore bodyStore) {
+            try {
+                bodyStore.close();
+            } catch (IOException e) {
+                LOGGER.error("Error closing block bodies store", e);
+            }
+        }
+    }
+
     public void saveBlockchainContent(String blocksPath) {
         try {
-            SerializationUtils.serialize(createdBlocks, blocksPath);
+            /* LinkedList is kept as a file format for compatibility with previously saved simulations */
+            SerializationUtils.serialize(new LinkedList<>(createdBlocks), blocksPath);
+            if (bodyStorage instanceof BlockBodyStore bodyStore) {
+                bodyStore.flush();
+                LOGGER.info(bodyStore.getCache().toString());
+            } else if (bodyStorage != null) {
+                LOGGER.info(bodyStorage.toString());
+            }
+            if (checkpointStore != null) {
+                writeCheckpoint();
+            }
         } catch (IOException e) {
             LOGGER.error("Error saving Blockchain content, path" + blocksPath, e);
         }
@@ -142,11 +751,19 @@ public final class Blockchain {
     }
 
     @SuppressWarnings("unchecked")
-    public void loadBlockchainContent(String blocksPath) {
+    public synchronized void loadBlockchainContent(String blocksPath) {
+        long start = System.nanoTime();
         try {
-            createdBlocks = (LinkedList<Block>) SerializationUtils.deserialize(blocksPath);
+            createdBlocks = new ArrayList<>((LinkedList<Block>) SerializationUtils.deserialize(blocksPath));
+            detachBodies();
             difficultyAdjuster = new DifficultyAdjuster();
-            difficultyAdjuster.calculateCurrentDifficulty(createdBlocks);
+            rebuildIndex();
+            restoreChainState();
+            if (fullCheckOnLoading) {
+                verifyLoadedBlocks();
+            }
+            LOGGER.info("Blockchain of size " + size() + " loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            LOGGER.info(PublicKeyStore.getInstance().toString());
         } catch (IOException e) {
             LOGGER.error("Error loading Blockchain content, path" + blocksPath);
         } catch (ClassNotFoundException e) {
@@ -180,6 +797,10 @@ public final class Blockchain {
         }
     }
 
+    ChainState getChainState() {
+        return chainState;
+    }
+
     List<Block> getBlockList() {
         return new ArrayList<>(createdBlocks);
     }
@@ -0,0 +1,226 @@
+package blockchain.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* State derived from blocks appended so far: balance and time of the latest transaction of each address, with ids of
+ * the address's transactions made at that time. Lets validation answer balance and replay queries without scanning
+ * the whole blockchain. Maps are keyed by address ids, as the ids are valid only within one run, checkpoints keep
+ * addresses as strings. */
+public final class ChainState implements Serializable {
+    private int height;
+    private Hash256 lastBlockHash;
+    private BalanceMap balances;
+    private Map<Integer, Long> lastTransactionTimes;
+    private Map<Integer, List<Hash256>> lastTransactionIds;
+
+    /* Checkpoints written before ids of the latest transactions were kept fail to load and are skipped */
+    private static final long serialVersionUID = 4L;
+
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("height", int.class),
+            new ObjectStreamField("lastBlockHash", Hash256.class),
+            new ObjectStreamField("balances", Map.class),
+            new ObjectStreamField("lastTransactionTimes", Map.class),
+            new ObjectStreamField("lastTransactionIds", Map.class)
+    };
+
+    public ChainState() {
+        this.height = 0;
+        this.lastBlockHash = Hash256.ZERO;
+        this.balances = new BalanceMap();
+        this.lastTransactionTimes = new HashMap<>();
+        this.lastTransactionIds = new HashMap<>();
+    }
+
+    private ChainState(ChainState other) {
+        this.height = other.height;
+        this.lastBlockHash = other.lastBlockHash;
+        this.balances = other.balances.copy();
+        this.lastTransactionTimes = new HashMap<>(other.lastTransactionTimes);
+        this.lastTransactionIds = new HashMap<>(other.lastTransactionIds);
+    }
+
+    /* Blocks have to be applied in order, starting from the one following current height */
+    public void apply(Block block) {
+        apply(block, null);
+    }
+
+    /* Applies a block and returns what revert needs to undo it */
+    public Undo applyWithUndo(Block block) {
+        Undo undo = new Undo();
+        apply(block, undo);
+        return undo;
+    }
+
+    private void apply(Block block, Undo undo) {
+        if (block.getId() != height + 1) {
+            throw new IllegalArgumentException("Expected block " + (height + 1) + " but got " + block.getId());
+        }
+        block.forEachTransaction(transaction -> {
+            int sender = transaction.getSenderId();
+            balances.add(sender, -transaction.getAmount());
+            transaction.forEachOutput(balances::add);
+            Long previous = lastTransactionTimes.put(sender, transaction.getTimestamp());
+            List<Hash256> previousIds = previous != null && previous == transaction.getTimestamp() ? lastTransactionIds.get(sender) : null;
+            List<Hash256> ids;
+            if (previousIds == null) {
+                ids = List.of(transaction.getId());
+            } else {
+                ids = new ArrayList<>(previousIds.size() + 1);
+                ids.addAll(previousIds);
+                ids.add(transaction.getId());
+            }
+            List<Hash256> replaced = lastTransactionIds.put(sender, ids);
+            if (undo != null && !undo.previousTimes.containsKey(sender)) {
+                undo.previousTimes.put(sender, previous == null ? 0L : previous);
+                undo.previousIds.put(sender, replaced);
+            }
+        });
+        MinerReward reward = block.getMinerReward();
+        if (reward != null) {
+            balances.add(reward.getMinerId(), reward.getReward());
+        }
+        height = block.getId();
+        lastBlockHash = block.getBlockHash();
+    }
+
+    /* Reverts the block applied last, previous block hash comes from the chain, times and ids from applyWithUndo.
+     * Addresses seen only in the reverted block are left with zero balances, BalanceMap equals them to missing ones. */
+    public void revert(Block block, Hash256 previousBlockHash, Undo undo) {
+        if (block.getId() != height) {
+            throw new IllegalArgumentException("Expected block " + height + " but got " + block.getId());
+        }
+        block.forEachTransaction(transaction -> {
+            balances.add(transaction.getSenderId(), transaction.getAmount());
+            transaction.forEachOutput((receiver, amount) -> balances.add(receiver, -amount));
+        });
+        MinerReward reward = block.getMinerReward();
+        if (reward != null) {
+            balances.add(reward.getMinerId(), -reward.getReward());
+        }
+        undo.previousTimes.forEach((sender, time) -> {
+            if (time == 0L) {
+                lastTransactionTimes.remove(sender);
+            } else {
+                lastTransactionTimes.put(sender, time);
+            }
+            List<Hash256> ids = undo.previousIds.get(sender);
+            if (ids == null) {
+                lastTransactionIds.remove(sender);
+            } else {
+                lastTransactionIds.put(sender, ids);
+            }
+        });
+        height = block.getId() - 1;
+        lastBlockHash = previousBlockHash;
+    }
+
+    public long getBalance(String address) {
+        return getBalance(AddressRegistry.getInstance().find(address));
+    }
+
+    public long getBalance(int addressId) {
+        return balances.getOrDefault(addressId, 0L);
+    }
+
+    /* Returns 0 if address never sent any coins */
+    public long getLastTransactionTime(String address) {
+        return getLastTransactionTime(AddressRegistry.getInstance().find(address));
+    }
+
+    public long getLastTransactionTime(int addressId) {
+        return lastTransactionTimes.getOrDefault(addressId, 0L);
+    }
+
+    /* Transactions of a sender can't go back in time. Its confirmed transactions are never later than its latest
+     * time, so a transaction made at that time is checked against ids confirmed with it, earlier ones are stale.
+     * A sender which isn't registered has no coins, it's checked first so that validation doesn't register it. */
+    public TransactionResult checkOrder(TransactionRecord transaction) {
+        if (!transaction.isSenderRegistered()) {
+            return TransactionResult.INSUFFICIENT_BALANCE;
+        }
+        int sender = transaction.getSenderId();
+        long last = getLastTransactionTime(sender);
+        if (transaction.getTimestamp() < last) {
+            return TransactionResult.STALE_TIMESTAMP;
+        }
+        if (transaction.getTimestamp() == last && lastTransactionIds.getOrDefault(sender, List.of()).contains(transaction.getId())) {
+            return TransactionResult.DUPLICATE;
+        }
+        return TransactionResult.ACCEPTED;
+    }
+
+    /* Copy of balances keyed by address ids */
+    public BalanceMap getBalances() {
+        return balances.copy();
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Hash256 getLastBlockHash() {
+        return lastBlockHash;
+    }
+
+    public ChainState copy() {
+        return new ChainState(this);
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("height", height);
+        fields.put("lastBlockHash", lastBlockHash);
+        fields.put("balances", balancesToAddresses());
+        fields.put("lastTransactionTimes", toAddresses(lastTransactionTimes));
+        fields.put("lastTransactionIds", toAddresses(lastTransactionIds));
+        oos.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = ois.readFields();
+        height = fields.get("height", 0);
+        lastBlockHash = (Hash256) fields.get("lastBlockHash", Hash256.ZERO);
+        balances = new BalanceMap();
+        AddressRegistry registry = AddressRegistry.getInstance();
+        ((Map<String, Long>) fields.get("balances", null)).forEach((address, balance) -> balances.put(registry.intern(address), balance));
+        lastTransactionTimes = toIds((Map<String, Long>) fields.get("lastTransactionTimes", null));
+        lastTransactionIds = toIds((Map<String, List<Hash256>>) fields.get("lastTransactionIds", null));
+    }
+
+    private Map<String, Long> balancesToAddresses() {
+        AddressRegistry registry = AddressRegistry.getInstance();
+        Map<String, Long> converted = new HashMap<>();
+        balances.forEach((id, balance) -> converted.put(registry.getAddress(id), balance));
+        return converted;
+    }
+
+    private static <V> Map<String, V> toAddresses(Map<Integer, V> map) {
+        AddressRegistry registry = AddressRegistry.getInstance();
+        Map<String, V> converted = new HashMap<>();
+        map.forEach((id, value) -> converted.put(registry.getAddress(id), value));
+        return converted;
+    }
+
+    private static <V> Map<Integer, V> toIds(Map<String, V> map) {
+        AddressRegistry registry = AddressRegistry.getInstance();
+        Map<Integer, V> converted = new HashMap<>();
+        map.forEach((address, value) -> converted.put(registry.intern(address), value));
+        return converted;
+    }
+
+    /* Times and ids of the latest transactions of a block's senders before the block, time 0 for senders without any */
+    public static final class Undo {
+        private final Map<Integer, Long> previousTimes = new HashMap<>();
+        private final Map<Integer, List<Hash256>> previousIds = new HashMap<>();
+    }
+}
@@ -0,0 +1,65 @@
+package blockchain.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/* Chain state with blocks of a batch applied on top of it, without changing the state itself. Transactions of the
+ * batch are checked one by one in chain order, each against the state and the transactions before it: an id can't
+ * be confirmed twice, a sender's timestamps can't go back and each debit has to be covered at its point. */
+final class ChainStateView {
+    private final ChainState base;
+    private final BalanceMap changes = new BalanceMap();
+    private final Map<Integer, Long> lastTransactionTimes = new HashMap<>();
+    private final Set<Hash256> ids = new HashSet<>();
+
+    ChainStateView(ChainState base) {
+        this.base = base;
+    }
+
+    TransactionResult check(TransactionRecord transaction) {
+        TransactionResult result = base.checkOrder(transaction);
+        if (result != TransactionResult.ACCEPTED) {
+            return result;
+        }
+        int sender = transaction.getSenderId();
+        if (ids.contains(transaction.getId())) {
+            result = TransactionResult.DUPLICATE;
+        } else if (transaction.getTimestamp() < lastTransactionTimes.getOrDefault(sender, 0L)) {
+            result = TransactionResult.STALE_TIMESTAMP;
+        } else if (transaction.getAmount() <= 0 || transaction.getAmount() > getBalance(sender)) {
+            result = TransactionResult.INSUFFICIENT_BALANCE;
+        }
+        return result;
+    }
+
+    /* Checks and applies transactions of a block in order, then its miner reward. Returns the first failed result,
+     * the view is left partly updated then and shouldn't be used any further. */
+    TransactionResult apply(Block block) {
+        for (SignedTransaction transaction : block.getTransactions()) {
+            TransactionResult result = check(transaction);
+            if (result != TransactionResult.ACCEPTED) {
+                return result;
+            }
+            apply(transaction);
+        }
+        MinerReward reward = block.getMinerReward();
+        if (reward != null) {
+            changes.add(reward.getMinerId(), reward.getReward());
+        }
+        return TransactionResult.ACCEPTED;
+    }
+
+    private void apply(TransactionRecord transaction) {
+        int sender = transaction.getSenderId();
+        changes.add(sender, -transaction.getAmount());
+        transaction.forEachOutput(changes::add);
+        lastTransactionTimes.put(sender, transaction.getTimestamp());
+        ids.add(transaction.getId());
+    }
+
+    long getBalance(int addressId) {
+        return base.getBalance(addressId) + changes.getOrDefault(addressId, 0L);
+    }
+}
@@ -0,0 +1,167 @@
+package blockchain.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/* Full verification of a loaded blockchain. Proof of work, hash links, transactions hashes and signatures are checked
+ * for ranges of blocks in parallel. Each range also produces a summary of balance changes, summaries of neighbouring
+ * ranges are combined associatively, so the non-negative balance rule can be checked for the whole chain at the end. */
+public class ChainVerifier {
+    public static final int RANGE_THRESHOLD = 16;
+
+    private final TransactionValidator validator;
+    private final ForkJoinPool pool;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChainVerifier.class);
+
+    public ChainVerifier(TransactionValidator validator, ForkJoinPool pool) {
+        this.validator = validator;
+        this.pool = pool;
+    }
+
+    /* Blocks list has to start with the genesis block. Balances resulting from verification are compared with a given
+     * chain state, which may be restored from a checkpoint. */
+    public boolean verify(List<Block> blocks, ChainState chainState) {
+        List<Block> indexed = new ArrayList<>(blocks);
+        int[] difficulties = new int[indexed.size()];
+        DifficultyAdjuster difficultyAdjuster = new DifficultyAdjuster();
+        int difficulty = difficultyAdjuster.getDifficultyValue();
+        for (int i = 1; i < indexed.size(); i++) {
+            difficulties[i] = difficulty;
+            difficulty = difficultyAdjuster.nextDifficulty(indexed.get(i), indexed, difficulty);
+        }
+        return verify(indexed, difficulties, chainState);
+    }
+
+    /* Difficulties array holds required number of zeros for each block id */
+    boolean verify(List<Block> blocks, int[] difficulties, ChainState chainState) {
+        if (blocks.size() < 2) {
+            return true;
+        }
+        long start = System.nanoTime();
+        RangeSummary summary = pool.invoke(new RangeVerification(blocks, difficulties, 1, blocks.size()));
+        boolean valid = summary.valid;
+        if (!valid) {
+            LOGGER.error("Invalid block found, id " + summary.firstInvalidBlock);
+        }
+
+        /* Sequential part: lowest balance reached by any address during the whole chain can't be negative */
+        if (valid && !summary.lowestBalances.isEmpty() && !validator.checkBalanceMap(summary.lowestBalances)) {
+            LOGGER.error("Negative balance found in blockchain.");
+            valid = false;
+        }
+        if (valid && validator.hasDuplicatedTransactions(blocks)) {
+            LOGGER.error("Duplicated transactions found in blockchain.");
+            valid = false;
+        }
+        if (valid && !summary.balanceChanges.equals(chainState.getBalances())) {
+            LOGGER.error("Chain state doesn't match balances of verified blockchain.");
+            valid = false;
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1_000_000_000.0;
+        int blocksCount = blocks.size() - 1;
+        LOGGER.info(String.format("Verified %d blocks and %d transactions in %.3f s, %.1f blocks/s, %.1f tx/s",
+                blocksCount, summary.transactions, seconds, blocksCount / seconds, summary.transactions / seconds));
+        return valid;
+    }
+
+    /* Tasks run in the pool only and are never serialized */
+    @SuppressWarnings("serial")
+    private class RangeVerification extends RecursiveTask<RangeSummary> {
+        private final List<Block> blocks;
+        private final int[] difficulties;
+        private final int from;
+        private final int to;
+
+        private RangeVerification(List<Block> blocks, int[] difficulties, int from, int to) {
+            this.blocks = blocks;
+            this.difficulties = difficulties;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RangeSummary compute() {
+            if (to - from <= RANGE_THRESHOLD) {
+                return verifyRange();
+            }
+            int middle = (from + to) >>> 1;
+            RangeVerification left = new RangeVerification(blocks, difficulties, from, middle);
+            RangeVerification right = new RangeVerification(blocks, difficulties, middle, to);
+            left.fork();
+            RangeSummary rightSummary = right.compute();
+            return left.join().combine(rightSummary);
+        }
+
+        private RangeSummary verifyRange() {
+            RangeSummary summary = new RangeSummary();
+            for (int i = from; i < to; i++) {
+                Block block = blocks.get(i);
+                boolean blockValidity = block.getId() == i
+                        && Blockchain.checkBaseBlockData(block, blocks.get(i - 1), difficulties[i])
+                        && validator.checkTransactionsSignatures(block);
+                if (!blockValidity) {
+                    summary.valid = false;
+                    summary.firstInvalidBlock = i;
+                    return summary;
+                }
+                summary.apply(block);
+            }
+            return summary;
+        }
+    }
+
+    /* Balance changes of a range of blocks, keyed by address ids. Lowest balances are relative to balances before the range (so never above 0).
+     * Transactions are applied in chain order like in ChainStateView, so coins received in a block can be spent later in the same block. */
+    static class RangeSummary {
+        private boolean valid = true;
+        private int firstInvalidBlock = -1;
+        private long transactions;
+        private final BalanceMap balanceChanges = new BalanceMap();
+        private final BalanceMap lowestBalances = new BalanceMap();
+
+        void apply(Block block) {
+            block.forEachTransaction(transaction -> {
+                int sender = transaction.getSenderId();
+                long balance = balanceChanges.add(sender, -transaction.getAmount());
+                lowestBalances.putMin(sender, Math.min(balance, 0));
+                transaction.forEachOutput(balanceChanges::add);
+                transactions++;
+            });
+            MinerReward reward = block.getMinerReward();
+            if (reward != null) {
+                balanceChanges.add(reward.getMinerId(), reward.getReward());
+            }
+        }
+
+        /* Combines summary of this range with the one directly following it */
+        RangeSummary combine(RangeSummary next) {
+            RangeSummary combined = new RangeSummary();
+            combined.valid = valid && next.valid;
+            combined.firstInvalidBlock = valid ? next.firstInvalidBlock : firstInvalidBlock;
+            combined.transactions = transactions + next.transactions;
+            balanceChanges.forEach(combined.balanceChanges::put);
+            lowestBalances.forEach(combined.lowestBalances::put);
+            next.lowestBalances.forEach((address, lowest) -> {
+                long lowestAfterThisRange = balanceChanges.get(address) + lowest;
+                combined.lowestBalances.putMin(address, Math.min(lowestAfterThisRange, 0));
+            });
+            next.balanceChanges.forEach(combined.balanceChanges::add);
+            return combined;
+        }
+
+        BalanceMap getLowestBalances() {
+            return lowestBalances;
+        }
+
+        BalanceMap getBalanceChanges() {
+            return balanceChanges;
+        }
+    }
+}
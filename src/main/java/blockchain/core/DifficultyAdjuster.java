@@ -11,6 +11,7 @@ public class DifficultyAdjuster {
 
     public static final int DIFFICULTY_TARGET = 15;
     public static final int DIFFICULTY_TOLERANCE = 3;
+    public static final int MIN_DIFFICULTY = 2;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DifficultyAdjuster.class);
 
@@ -53,14 +54,29 @@ public class DifficultyAdjuster {
         return difficulty;
     }
 
+    /* Returns difficulty which applies after appending given block, current state of adjuster stays untouched.
+     * Used when appending blocks in bulk, where difficulty is updated only at batch boundaries. */
+    public int nextDifficulty(Block appended, List<Block> blocks, int currentDifficulty) {
+        if (appended.getId() % 3 != 0) {
+            return currentDifficulty;
+        }
+        long time = calcAverageCreationTime(appended, blocks) / 1000;
+        return currentDifficulty + difficultyCheck(time, currentDifficulty);
+    }
+
     private int difficultyCheck(long time, int currentDiff) {
         if (time < (DIFFICULTY_TARGET - DIFFICULTY_TOLERANCE) && currentDiff < 6) {
             return 1;
-        } else if (time > (DIFFICULTY_TARGET + DIFFICULTY_TOLERANCE) && currentDiff > 2) {
+        } else if (time > (DIFFICULTY_TARGET + DIFFICULTY_TOLERANCE) && currentDiff > MIN_DIFFICULTY) {
             return -1;
         } else return 0;
     }
 
+    /* Expected number of hashes needed to find a block of a given difficulty, each zero is 4 bits */
+    public static long work(int difficulty) {
+        return 1L << (4 * difficulty);
+    }
+
     public long calcAverageCreationTime(Block block, List<Block> blockList) {
         int start = block.getId();
         int end = Math.max(start - 3, 1);
@@ -77,4 +93,8 @@ public class DifficultyAdjuster {
     public synchronized int getDifficultyValue() {
         return difficultyValue;
     }
+
+    public synchronized void setDifficultyValue(int difficultyValue) {
+        this.difficultyValue = difficultyValue;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package blockchain.core;
+
+import blockchain.encryption.EncryptionUtils;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/* Immutable 32 bytes long sha256 hash, kept as four longs. Takes less memory than hex string and compares faster.
+ * All-zero hash is used only by the genesis block and, as the protocol defines, it is written as "0". */
+public final class Hash256 implements Serializable {
+    public static final int LENGTH = 32;
+    public static final Hash256 ZERO = new Hash256(0, 0, 0, 0);
+
+    private final long first;
+    private final long second;
+    private final long third;
+    private final long fourth;
+    private transient int hashCode;
+
+    private static final long serialVersionUID = 1L;
+
+    private Hash256(long first, long second, long third, long fourth) {
+        this.first = first;
+        this.second = second;
+        this.third = third;
+        this.fourth = fourth;
+    }
+
+    public static Hash256 wrap(byte[] bytes) {
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("Hash must be " + LENGTH + " bytes long, got " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Hash256(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    /* Accepts "0" (and empty string, used by older genesis blocks) as zero hash */
+    public static Hash256 fromHex(String hex) {
+        if (hex.isEmpty() || hex.equals("0")) {
+            return ZERO;
+        }
+        return wrap(EncryptionUtils.decodeHexString(hex));
+    }
+
+    public static Hash256 sha256(byte[] input) {
+        return wrap(EncryptionUtils.applySha256toBytes(input));
+    }
+
+    public byte[] getBytes() {
+        return ByteBuffer.allocate(LENGTH)
+                .putLong(first)
+                .putLong(second)
+                .putLong(third)
+                .putLong(fourth)
+                .array();
+    }
+
+    public String toHex() {
+        if (isZero()) {
+            return "0";
+        }
+        return EncryptionUtils.encodeIntoHex(getBytes());
+    }
+
+    /* First 8 bytes of the hash, big-endian */
+    public long getLeadingLong() {
+        return first;
+    }
+
+    public boolean isZero() {
+        return (first | second | third | fourth) == 0;
+    }
+
+    public int leadingZeroBits() {
+        if (first != 0) {
+            return Long.numberOfLeadingZeros(first);
+        }
+        if (second != 0) {
+            return Long.SIZE + Long.numberOfLeadingZeros(second);
+        }
+        if (third != 0) {
+            return 2 * Long.SIZE + Long.numberOfLeadingZeros(third);
+        }
+        return 3 * Long.SIZE + Long.numberOfLeadingZeros(fourth);
+    }
+
+    /* Constant time comparison */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Hash256 that = (Hash256) o;
+        return ((first ^ that.first) | (second ^ that.second) | (third ^ that.third) | (fourth ^ that.fourth)) == 0;
+    }
+
+    /* Last bytes are used, as block hashes start with zeros */
+    @Override
+    public int hashCode() {
+        int result = hashCode;
+        if (result == 0) {
+            result = Long.hashCode(fourth) * 31 + Long.hashCode(third);
+            hashCode = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -0,0 +1,129 @@
+package blockchain.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Block headers of the best chain a light client knows. Headers are checked the same way full nodes check them:
+ * hash, proof of work at the difficulty replayed from earlier headers and link to the previous block. Transactions
+ * are never downloaded, so memory grows with chain height only. A batch of headers forking off below the tip replaces
+ * the headers above the fork point if it ends with more work. */
+public final class HeaderChain {
+    private final List<Block> headers = new ArrayList<>();
+    /* Per header, indexed by block id: difficulty of the following block and work of the chain up to the header */
+    private final List<Integer> nextDifficulties = new ArrayList<>();
+    private final List<Long> chainWork = new ArrayList<>();
+    private final DifficultyAdjuster difficultyAdjuster = new DifficultyAdjuster();
+    private long reorganizations;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeaderChain.class);
+
+    public HeaderChain() {
+        headers.add(Blockchain.createGenesis().toHeaderOnly(null));
+        nextDifficulties.add(difficultyAdjuster.getDifficultyValue());
+        chainWork.add(0L);
+    }
+
+    /* Headers have to be consecutive. Leading headers the chain already has are skipped, the rest have to extend
+     * the chain or one of its headers. Returns true if the last header of the batch is the tip afterwards. An invalid
+     * header or a branch with no more work than the chain leaves the chain unchanged. */
+    public synchronized boolean addHeaders(List<Block> batch) {
+        int skipped = 0;
+        while (skipped < batch.size() && contains(batch.get(skipped))) {
+            skipped++;
+        }
+        if (skipped == batch.size()) {
+            return !batch.isEmpty() && batch.get(batch.size() - 1).getBlockHash().equals(getTip().getBlockHash());
+        }
+        List<Block> branch = batch.subList(skipped, batch.size());
+        int forkId = branch.get(0).getId() - 1;
+        if (forkId < 0 || forkId > getHeight() || !headers.get(forkId).getBlockHash().equals(branch.get(0).getPreviousBlockHash())) {
+            LOGGER.warn("Headers starting at " + (forkId + 1) + " don't link to the header chain.");
+            return false;
+        }
+        List<Block> view = branchView(forkId, branch);
+        int difficulty = nextDifficulties.get(forkId);
+        long work = chainWork.get(forkId);
+        List<Integer> branchDifficulties = new ArrayList<>(branch.size());
+        List<Long> branchWork = new ArrayList<>(branch.size());
+        for (int i = 0; i < branch.size(); i++) {
+            Block header = branch.get(i);
+            if (header.getId() != forkId + 1 + i || !Blockchain.checkHeader(header, view.get(header.getId() - 1), difficulty)) {
+                LOGGER.warn("Invalid header " + header.getId() + ", headers from it are dropped.");
+                return false;
+            }
+            work += DifficultyAdjuster.work(difficulty);
+            difficulty = difficultyAdjuster.nextDifficulty(header, view, difficulty);
+            branchDifficulties.add(difficulty);
+            branchWork.add(work);
+        }
+        if (forkId < getHeight()) {
+            if (work <= chainWork.get(getHeight())) {
+                return false;
+            }
+            LOGGER.info("Header chain reorganized at block " + (forkId + 1) + ", " + (getHeight() - forkId) + " headers replaced.");
+            reorganizations++;
+            headers.subList(forkId + 1, headers.size()).clear();
+            nextDifficulties.subList(forkId + 1, nextDifficulties.size()).clear();
+            chainWork.subList(forkId + 1, chainWork.size()).clear();
+        }
+        for (Block header : branch) {
+            headers.add(header.isHeaderOnly() ? header : header.toHeaderOnly(null));
+        }
+        nextDifficulties.addAll(branchDifficulties);
+        chainWork.addAll(branchWork);
+        return true;
+    }
+
+    /* Headers up to the fork point followed by headers of a branch, indexed by block id */
+    private List<Block> branchView(int forkId, List<Block> branch) {
+        return new AbstractList<>() {
+            @Override
+            public Block get(int index) {
+                return index <= forkId ? headers.get(index) : branch.get(index - forkId - 1);
+            }
+
+            @Override
+            public int size() {
+                return forkId + 1 + branch.size();
+            }
+        };
+    }
+
+    public synchronized boolean contains(Block header) {
+        int id = header.getId();
+        return id >= 0 && id < headers.size() && headers.get(id).getBlockHash().equals(header.getBlockHash());
+    }
+
+    /* Number of blocks from the proven transaction's block up to the tip, that block included. 0 if the proof is
+     * invalid or its block isn't on this chain. */
+    public synchronized int getConfirmations(TransactionProof proof) {
+        if (!contains(proof.getHeader()) || !proof.verify()) {
+            return 0;
+        }
+        return getHeight() - proof.getHeader().getId() + 1;
+    }
+
+    public synchronized Block getHeader(int id) {
+        return headers.get(id);
+    }
+
+    public synchronized Block getTip() {
+        return headers.get(headers.size() - 1);
+    }
+
+    public synchronized int getHeight() {
+        return headers.size() - 1;
+    }
+
+    public synchronized long getChainWork() {
+        return chainWork.get(chainWork.size() - 1);
+    }
+
+    public synchronized long getReorganizations() {
+        return reorganizations;
+    }
+}
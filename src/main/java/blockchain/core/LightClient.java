@@ -0,0 +1,111 @@
+package blockchain.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Light client of an address: follows block headers of a full node and learns about transactions of the address from
+ * inclusion proofs, without downloading blocks. Balance adds up miner rewards of the headers and outputs of proven
+ * transactions. Proofs show that a transaction is in the chain, not that a node returned all of them, so a dishonest
+ * node can still hide a payment. Memory grows with chain height and the number of the address's transactions. */
+public final class LightClient {
+    public static final int HEADERS_PER_REQUEST = 500;
+
+    private final String address;
+    private final HeaderChain headers = new HeaderChain();
+    /* Proven transactions of the address by id, in order of blocks */
+    private final Map<Hash256, TransactionProof> proofs = new LinkedHashMap<>();
+    /* Tip at the last sync, proofs were requested up to it */
+    private Block scannedTip;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LightClient.class);
+
+    public LightClient(String address) {
+        this.address = address;
+        this.scannedTip = headers.getTip();
+    }
+
+    /* Downloads new headers and proofs of the address's transactions in new blocks. If the node switched to another
+     * branch, headers are requested again from as deep as a reorganization can reach, proofs of blocks which are no
+     * longer on the chain are dropped. Returns the number of headers added. */
+    public synchronized int sync(Blockchain fullNode) {
+        int before = headers.getHeight();
+        int from = headers.getHeight() + 1;
+        List<Block> batch = fullNode.getHeaders(from, HEADERS_PER_REQUEST);
+        if (!batch.isEmpty() && !headers.addHeaders(batch)) {
+            from = Math.max(1, headers.getHeight() - Blockchain.MAX_REORGANIZATION_DEPTH);
+            batch = fullNode.getHeaders(from, HEADERS_PER_REQUEST);
+            if (!headers.addHeaders(batch)) {
+                LOGGER.warn("Headers of the full node don't extend the header chain of " + address);
+                return 0;
+            }
+        }
+        while (batch.size() == HEADERS_PER_REQUEST) {
+            batch = fullNode.getHeaders(headers.getHeight() + 1, HEADERS_PER_REQUEST);
+            if (!headers.addHeaders(batch)) {
+                break;
+            }
+        }
+        int scanFrom = scannedTip.getId() + 1;
+        if (!headers.contains(scannedTip)) {
+            proofs.values().removeIf(proof -> !headers.contains(proof.getHeader()));
+            scanFrom = Math.max(1, scannedTip.getId() - Blockchain.MAX_REORGANIZATION_DEPTH);
+        }
+        for (TransactionProof proof : fullNode.getAddressProofs(address, scanFrom)) {
+            if (headers.getConfirmations(proof) > 0) {
+                proofs.put(proof.getTransaction().getId(), proof);
+            } else {
+                LOGGER.warn("Invalid proof of transaction " + proof.getTransaction().getId() + " dropped.");
+            }
+        }
+        scannedTip = headers.getTip();
+        return headers.getHeight() - before;
+    }
+
+    /* Confirmations of a payment the full node proves, 0 if it's not in the chain yet or the proof doesn't check out */
+    public synchronized int confirmPayment(Blockchain fullNode, Hash256 transactionId, int sentAtHeight) {
+        TransactionProof proof = fullNode.getTransactionProof(transactionId, sentAtHeight);
+        return proof == null ? 0 : headers.getConfirmations(proof);
+    }
+
+    public synchronized long getBalance() {
+        int addressId = AddressRegistry.getInstance().find(address);
+        long balance = 0;
+        for (int id = 1; id <= headers.getHeight(); id++) {
+            MinerReward reward = headers.getHeader(id).getMinerReward();
+            if (reward != null && reward.getMinerId() == addressId) {
+                balance += reward.getReward();
+            }
+        }
+        for (TransactionProof proof : proofs.values()) {
+            SignedTransaction transaction = proof.getTransaction();
+            if (transaction.getSenderId() == addressId) {
+                balance -= transaction.getAmount();
+            }
+            for (int i = 0; i < transaction.getOutputCount(); i++) {
+                if (transaction.getReceiverId(i) == addressId) {
+                    balance += transaction.getAmount(i);
+                }
+            }
+        }
+        return balance;
+    }
+
+    public synchronized List<SignedTransaction> getTransactions() {
+        List<SignedTransaction> transactions = new ArrayList<>(proofs.size());
+        proofs.values().forEach(proof -> transactions.add(proof.getTransaction()));
+        return transactions;
+    }
+
+    public HeaderChain getHeaderChain() {
+        return headers;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+}
@@ -1,26 +1,72 @@
 package blockchain.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
+/* Miner address is kept as an id of AddressRegistry. Like in Transaction, a reward created from a string only looks
+ * the address up, an unknown one is kept as a string and registered on the first use of its id, so headers and
+ * orphans which are never applied don't grow the registry.
+ * Fields are not final only because of custom deserialization, reward is immutable. */
 public class MinerReward implements Serializable {
-    private final String miner;
-    private final long reward;
+    private int minerId;
+    private long reward;
+    /* Kept only when the miner wasn't registered on creation */
+    private transient volatile String miner;
+
+    private static final int UNREGISTERED = -1;
+    private static final long serialVersionUID = 3271722535820603135L;
+
+    /* Miner address is serialized as string, so the format stays compatible with previously saved simulations */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("miner", String.class),
+            new ObjectStreamField("reward", long.class)
+    };
 
     public MinerReward(String miner, long reward) {
-        this.miner = miner;
+        this.minerId = AddressRegistry.getInstance().find(miner);
+        if (minerId == UNREGISTERED) {
+            this.miner = miner;
+        }
         this.reward = reward;
     }
 
     public String getMiner() {
-        return miner;
+        int id = minerId;
+        return id == UNREGISTERED ? miner : AddressRegistry.getInstance().getAddress(id);
+    }
+
+    /* Registers the miner if it isn't yet, racing threads get the same id */
+    public int getMinerId() {
+        int id = minerId;
+        if (id == UNREGISTERED) {
+            id = AddressRegistry.getInstance().intern(miner);
+            minerId = id;
+        }
+        return id;
     }
 
     public long getReward() {
         return reward;
     }
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("miner", getMiner());
+        fields.put("reward", reward);
+        oos.writeFields();
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = ois.readFields();
+        minerId = AddressRegistry.getInstance().intern((String) fields.get("miner", null));
+        reward = fields.get("reward", 0L);
+    }
+
     @Override
     public String toString() {
-        return miner + " gets " + reward + " VC";
+        return getMiner() + " gets " + reward + " VC";
     }
 }
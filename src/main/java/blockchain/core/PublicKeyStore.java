@@ -0,0 +1,68 @@
+package blockchain.core;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Content addressed store of encoded public keys. Every client signs all of its transactions with the same key, so
+ * transactions reference one canonical array per distinct key instead of holding their own copies.
+ * Canonical arrays are shared, they must never be modified. */
+public final class PublicKeyStore {
+    private static final PublicKeyStore INSTANCE = new PublicKeyStore();
+
+    private final Map<ByteBuffer, byte[]> keys = new ConcurrentHashMap<>();
+    private final LongAdder deduplicatedKeys = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+
+    private PublicKeyStore() {
+    }
+
+    public static PublicKeyStore getInstance() {
+        return INSTANCE;
+    }
+
+    /* Returns the canonical instance of a given key, the given array itself becomes canonical if the key is new */
+    public byte[] canonical(byte[] key) {
+        byte[] canonical = keys.putIfAbsent(ByteBuffer.wrap(key), key);
+        if (canonical == null) {
+            return key;
+        }
+        if (canonical != key) {
+            deduplicatedKeys.increment();
+            deduplicatedBytes.add(key.length);
+        }
+        return canonical;
+    }
+
+    /* Same as above for a key given as a view, which is copied only if the key is new */
+    public byte[] canonical(ByteBuffer key) {
+        byte[] canonical = keys.get(key);
+        if (canonical != null) {
+            return canonical;
+        }
+        byte[] copy = new byte[key.remaining()];
+        key.duplicate().get(copy);
+        return canonical(copy);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /* Number of key copies replaced by a canonical instance so far */
+    public long getDeduplicatedKeys() {
+        return deduplicatedKeys.sum();
+    }
+
+    /* Payload bytes of those copies, array headers not included */
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Public keys: %d distinct, %d copies deduplicated, %d bytes saved",
+                size(), getDeduplicatedKeys(), getDeduplicatedBytes());
+    }
+}
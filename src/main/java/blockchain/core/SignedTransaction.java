@@ -1,38 +1,205 @@
 package blockchain.core;
 
+import blockchain.encryption.SignatureScheme;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Objects;
 
-public final class SignedTransaction implements Serializable {
+/* Public key is the canonical instance from PublicKeyStore, shared with other transactions of the same sender.
+ * It is not final only because of custom deserialization. Signature scheme is stored by its id, transactions saved
+ * before schemes were introduced read it as 0, which is RSA. */
+public final class SignedTransaction implements TransactionRecord, Serializable {
+    private final int version;
     private final Transaction transaction;
     private final long timestamp;
     private final byte[] signature;
-    private final byte[] publicKey;
+    private byte[] publicKey;
+    private final int signatureScheme;
+    private transient volatile Hash256 id;
+
+    /* Value generated for the class before versioning, keeps previously saved simulations readable */
+    private static final long serialVersionUID = -4134210004579876105L;
+
+    /* Versions differ by the payload which is signed and hashed into transaction id */
+    public static final int TEXT_PAYLOAD_VERSION = 1;
+    public static final int BINARY_PAYLOAD_VERSION = 2;
+    /* Binary payload with a list of outputs, the only version multi-output transactions can have */
+    public static final int MULTI_OUTPUT_VERSION = 3;
+    public static final int CURRENT_VERSION = BINARY_PAYLOAD_VERSION;
+    /* Outputs are counted with 2 bytes in encodings, the limit keeps a transaction well below that */
+    public static final int MAX_OUTPUTS = 1024;
 
     public SignedTransaction(Transaction transaction, long timestamp, byte[] signature, byte[] publicKey) {
+        this(TEXT_PAYLOAD_VERSION, transaction, timestamp, signature, publicKey);
+    }
+
+    public SignedTransaction(int version, Transaction transaction, long timestamp, byte[] signature, byte[] publicKey) {
+        this(version, transaction, timestamp, signature, publicKey, SignatureScheme.RSA);
+    }
+
+    public SignedTransaction(int version, Transaction transaction, long timestamp, byte[] signature, byte[] publicKey,
+                             SignatureScheme signatureScheme) {
+        this.version = version;
+        this.signatureScheme = signatureScheme.getId();
         this.transaction = transaction;
         this.timestamp = timestamp;
         this.signature = signature;
-        this.publicKey = publicKey;
+        this.publicKey = PublicKeyStore.getInstance().canonical(publicKey);
+    }
+
+    /* Transactions saved before versioning was introduced have no version, they use the text payload */
+    @Override
+    public int getVersion() {
+        return version == 0 ? TEXT_PAYLOAD_VERSION : version;
+    }
+
+    @Override
+    public SignatureScheme getSignatureScheme() {
+        return SignatureScheme.fromId(signatureScheme);
     }
 
     public byte[] getSignature() {
         return Arrays.copyOf(signature, signature.length);
     }
 
+    /* Read only view, doesn't copy the signature */
+    @Override
+    public ByteBuffer getSignatureView() {
+        return ByteBuffer.wrap(signature).asReadOnlyBuffer();
+    }
+
     public Transaction getTransaction() {
         return transaction;
     }
 
+    @Override
     public long getTimestamp() {
         return timestamp;
     }
 
+    @Override
+    public int getSenderId() {
+        return transaction.getSenderId();
+    }
+
+    @Override
+    public boolean isSenderRegistered() {
+        return transaction.isSenderRegistered();
+    }
+
+    @Override
+    public int getReceiverId() {
+        return transaction.getReceiverId();
+    }
+
+    @Override
+    public long getAmount() {
+        return transaction.getAmount();
+    }
+
+    @Override
+    public int getOutputCount() {
+        return transaction.getOutputCount();
+    }
+
+    @Override
+    public int getReceiverId(int output) {
+        return transaction.getReceiverId(output);
+    }
+
+    @Override
+    public long getAmount(int output) {
+        return transaction.getAmount(output);
+    }
+
     public byte[] getPublicKey() {
         return Arrays.copyOf(publicKey, publicKey.length);
     }
 
+    /* Read only view, doesn't copy the key */
+    @Override
+    public ByteBuffer getPublicKeyView() {
+        return ByteBuffer.wrap(publicKey).asReadOnlyBuffer();
+    }
+
+    /* Package private access for signature verification, returned arrays must not be modified */
+    byte[] signatureBytes() {
+        return signature;
+    }
+
+    byte[] publicKeyBytes() {
+        return publicKey;
+    }
+
+    /* Signature, key and scheme aren't part of the id, two transactions with the same id may differ in them */
+    public boolean hasSameWitness(SignedTransaction other) {
+        return getSignatureScheme() == other.getSignatureScheme() && Arrays.equals(signature, other.signature)
+                && Arrays.equals(publicKey, other.publicKey);
+    }
+
+    /* Sha256 of the signing payload, calculated once */
+    @Override
+    public Hash256 getId() {
+        Hash256 result = id;
+        if (result == null) {
+            result = Hash256.sha256(getSigningPayload());
+            id = result;
+        }
+        return result;
+    }
+
+    public byte[] getSigningPayload() {
+        return signingPayload(getVersion(), transaction, timestamp);
+    }
+
+    /* Version 1 payload is the text used for transactions list hashing, version 2 is the binary encoding:
+     * version (1 byte), sender and receiver (2 bytes length + UTF-8), amount and timestamp (8 bytes, big-endian).
+     * Version 3 has number of outputs (2 bytes) after the sender, followed by receiver and amount of each output. */
+    public static byte[] signingPayload(int version, Transaction transaction, long timestamp) {
+        if (version == TEXT_PAYLOAD_VERSION) {
+            return (transaction.toString() + "\n" + timestamp).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(48 + 48 * transaction.getOutputCount());
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(version);
+            writeString(output, transaction.getSender());
+            if (version == MULTI_OUTPUT_VERSION) {
+                output.writeShort(transaction.getOutputCount());
+                for (int i = 0; i < transaction.getOutputCount(); i++) {
+                    writeString(output, transaction.getReceiver(i));
+                    output.writeLong(transaction.getAmount(i));
+                }
+            } else {
+                writeString(output, transaction.getReceiver());
+                output.writeLong(transaction.getAmount());
+            }
+            output.writeLong(timestamp);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        publicKey = PublicKeyStore.getInstance().canonical(publicKey);
+    }
+
     @Override
     public String toString() {
         return transaction.toString();
@@ -47,14 +214,11 @@ public final class SignedTransaction implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SignedTransaction that = (SignedTransaction) o;
-        return timestamp == that.timestamp &&
-                Objects.equals(transaction, that.transaction);
+        return getId().equals(that.getId());
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(transaction, timestamp);
-        result = 31 * result + Arrays.hashCode(signature);
-        return result;
+        return getId().hashCode();
     }
 }
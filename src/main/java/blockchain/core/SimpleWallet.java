@@ -1,38 +1,43 @@
 package blockchain.core;
 
 import blockchain.encryption.AddressGenerator;
+import blockchain.encryption.SignatureScheme;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.security.InvalidKeyException;
 import java.security.KeyPair;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
 import java.util.Date;
+import java.util.List;
 
 public class SimpleWallet implements Wallet, Serializable {
     private final PublicKey publicKey;
     private final PrivateKey privateKey;
     private final String address;
+    /* Null in wallets saved before signature schemes were introduced, those use RSA keys */
+    private final SignatureScheme signatureScheme;
     private transient Blockchain blockchain;
 
     private static final long serialVersionUID = 1L;
 
     public SimpleWallet() {
-        KeyPair keyPair = AddressGenerator.CreateKeys();
-        publicKey = keyPair.getPublic();
-        privateKey = keyPair.getPrivate();
-        address = AddressGenerator.GenerateAddressFromPublicKey(publicKey.getEncoded());
-        blockchain = Blockchain.getInstance();
+        this(SignatureScheme.RSA);
+    }
+
+    public SimpleWallet(SignatureScheme signatureScheme) {
+        this(signatureScheme.generateKeyPair(), signatureScheme);
     }
 
     public SimpleWallet(KeyPair keyPair) {
+        this(keyPair, SignatureScheme.of(keyPair.getPublic()));
+    }
+
+    public SimpleWallet(KeyPair keyPair, SignatureScheme signatureScheme) {
         publicKey = keyPair.getPublic();
         privateKey = keyPair.getPrivate();
+        this.signatureScheme = signatureScheme;
         address = AddressGenerator.GenerateAddressFromPublicKey(publicKey.getEncoded());
         blockchain = Blockchain.getInstance();
     }
@@ -41,24 +46,25 @@ public class SimpleWallet implements Wallet, Serializable {
     public SignedTransaction createTransaction(String receiverAddress, long amount) {
         Transaction transaction = new Transaction(address, receiverAddress, amount);
         long timestamp = new Date().getTime();
-        String inputForSignature = transaction.toString()
-                + "\n" + timestamp;
-        byte[] input = inputForSignature.getBytes();
-        try {
-            byte[] signature = createDigitalSignature(input);
-            return new SignedTransaction(transaction, timestamp, signature, publicKey.getEncoded());
-        } catch (NoSuchAlgorithmException | SignatureException | InvalidKeyException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+        byte[] input = SignedTransaction.signingPayload(SignedTransaction.CURRENT_VERSION, transaction, timestamp);
+        SignatureScheme scheme = getSignatureScheme();
+        byte[] signature = scheme.sign(privateKey, input);
+        return new SignedTransaction(SignedTransaction.CURRENT_VERSION, transaction, timestamp, signature,
+                publicKey.getEncoded(), scheme);
+    }
+
+    /* One signature and one timestamp for payments to many receivers, receivers and amounts are paired by index */
+    public SignedTransaction createTransaction(List<String> receiverAddresses, List<Long> amounts) {
+        Transaction transaction = new Transaction(address, receiverAddresses, amounts);
+        long timestamp = new Date().getTime();
+        int version = SignedTransaction.MULTI_OUTPUT_VERSION;
+        SignatureScheme scheme = getSignatureScheme();
+        byte[] signature = scheme.sign(privateKey, SignedTransaction.signingPayload(version, transaction, timestamp));
+        return new SignedTransaction(version, transaction, timestamp, signature, publicKey.getEncoded(), scheme);
     }
 
-    private byte[] createDigitalSignature(byte[] input)
-            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
-        Signature signature = Signature.getInstance(Blockchain.SIGNATURE_ALGORITHM);
-        signature.initSign(privateKey);
-        signature.update(input);
-        return signature.sign();
+    public SignatureScheme getSignatureScheme() {
+        return signatureScheme == null ? SignatureScheme.RSA : signatureScheme;
     }
 
     @Override
@@ -66,6 +72,10 @@ public class SimpleWallet implements Wallet, Serializable {
         return blockchain.addTransaction(transaction);
     }
 
+    public List<TransactionResult> sendTransactions(List<SignedTransaction> transactions) {
+        return blockchain.addTransactions(transactions);
+    }
+
     @Override
     public byte[] getPublicKey() {
         return publicKey.getEncoded();
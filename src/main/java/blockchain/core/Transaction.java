@@ -1,34 +1,216 @@
 package blockchain.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.List;
 
+/* Addresses are kept as ids of AddressRegistry, strings are resolved only when asked for. A transaction created from
+ * strings, e.g. decoded from the network, only looks its addresses up. Addresses which aren't registered yet are kept
+ * as strings and registered on the first use of their ids, which happens once the transaction is accepted, so invalid
+ * transactions don't grow the registry. A sender which isn't registered has never received coins.
+ * Fields are not final only because of custom deserialization, transaction is immutable.
+ * A multi-output transaction pays many receivers from one sender. Its outputs are kept in arrays, receiver and amount
+ * fields then hold the first receiver and the total amount, which is what the sender spends. Single output
+ * transactions don't carry the arrays. */
 public class Transaction implements Serializable {
-    private final String sender;
-    private final String receiver;
-    private final long amount;
+    private int senderId;
+    private int receiverId;
+    private long amount;
+    private int[] receiverIds;
+    private long[] amounts;
+    /* Sender followed by receivers, kept only when some of them weren't registered on creation */
+    private transient volatile String[] addresses;
+
+    private static final int UNREGISTERED = -1;
+    private static final long serialVersionUID = -1091524164434244961L;
+
+    /* Addresses are serialized as strings, so the format stays compatible with previously saved simulations */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("sender", String.class),
+            new ObjectStreamField("receiver", String.class),
+            new ObjectStreamField("amount", long.class),
+            new ObjectStreamField("receivers", String[].class),
+            new ObjectStreamField("amounts", long[].class)
+    };
 
     public Transaction(String sender, String receiver, long amount) {
-        this.sender = sender;
-        this.receiver = receiver;
+        int[] ids = lookUp(sender, List.of(receiver));
+        this.senderId = ids[0];
+        this.receiverId = ids[1];
+        this.amount = amount;
+    }
+
+    /* Ids have to be given by AddressRegistry */
+    public Transaction(int senderId, int receiverId, long amount) {
+        this.senderId = senderId;
+        this.receiverId = receiverId;
         this.amount = amount;
     }
 
+    /* Multi-output transaction, receivers and amounts are paired by index. Amounts are summed with overflow checked,
+     * so a total which doesn't fit a long is rejected here rather than wrapping around. */
+    public Transaction(String sender, List<String> receivers, List<Long> amounts) {
+        if (receivers.isEmpty() || receivers.size() != amounts.size()) {
+            throw new IllegalArgumentException("Expected the same, non-zero number of receivers and amounts");
+        }
+        int[] ids = lookUp(sender, receivers);
+        this.senderId = ids[0];
+        this.receiverIds = Arrays.copyOfRange(ids, 1, ids.length);
+        this.amounts = new long[amounts.size()];
+        for (int i = 0; i < this.amounts.length; i++) {
+            this.amounts[i] = amounts.get(i);
+        }
+        this.receiverId = receiverIds[0];
+        this.amount = total(this.amounts);
+    }
+
+    /* Ids of the sender and receivers, UNREGISTERED for unknown addresses, which are then kept as strings */
+    private int[] lookUp(String sender, List<String> receivers) {
+        AddressRegistry registry = AddressRegistry.getInstance();
+        int[] ids = new int[receivers.size() + 1];
+        String[] all = new String[ids.length];
+        boolean registered = true;
+        for (int i = 0; i < ids.length; i++) {
+            all[i] = i == 0 ? sender : receivers.get(i - 1);
+            ids[i] = registry.find(all[i]);
+            registered &= ids[i] != UNREGISTERED;
+        }
+        if (!registered) {
+            this.addresses = all;
+        }
+        return ids;
+    }
+
+    /* Registers an address kept as a string. Racing threads get the same id, so ids are written without locking. */
+    private int register(int index) {
+        int id = AddressRegistry.getInstance().intern(addresses[index]);
+        if (index == 0) {
+            senderId = id;
+        } else if (receiverIds == null) {
+            receiverId = id;
+        } else {
+            receiverIds[index - 1] = id;
+            if (index == 1) {
+                receiverId = id;
+            }
+        }
+        return id;
+    }
+
+    /* Ids have to be given by AddressRegistry, arrays are not copied */
+    public Transaction(int senderId, int[] receiverIds, long[] amounts) {
+        this.senderId = senderId;
+        this.receiverIds = receiverIds;
+        this.amounts = amounts;
+        this.receiverId = receiverIds[0];
+        this.amount = total(amounts);
+    }
+
+    private static long total(long[] amounts) {
+        long total = 0;
+        for (long amount : amounts) {
+            total = Math.addExact(total, amount);
+        }
+        return total;
+    }
+
+    public boolean isMultiOutput() {
+        return receiverIds != null;
+    }
+
+    public int getOutputCount() {
+        return receiverIds == null ? 1 : receiverIds.length;
+    }
+
+    public int getReceiverId(int output) {
+        int id = receiverIds == null ? receiverId : receiverIds[output];
+        return id == UNREGISTERED ? register(output + 1) : id;
+    }
+
+    public long getAmount(int output) {
+        return amounts == null ? amount : amounts[output];
+    }
+
+    public String getReceiver(int output) {
+        int id = receiverIds == null ? receiverId : receiverIds[output];
+        return id == UNREGISTERED ? addresses[output + 1] : AddressRegistry.getInstance().getAddress(id);
+    }
+
     public String getSender() {
-        return sender;
+        return senderId == UNREGISTERED ? addresses[0] : AddressRegistry.getInstance().getAddress(senderId);
     }
 
     public String getReceiver() {
-        return receiver;
+        return getReceiver(0);
+    }
+
+    /* Registers the sender if it isn't yet, validation checks isSenderRegistered first */
+    public int getSenderId() {
+        int id = senderId;
+        return id == UNREGISTERED ? register(0) : id;
     }
 
+    public int getReceiverId() {
+        return getReceiverId(0);
+    }
+
+    /* Checked without registering, the sender may have been registered by another transaction since creation */
+    public boolean isSenderRegistered() {
+        return senderId != UNREGISTERED || AddressRegistry.getInstance().find(addresses[0]) != UNREGISTERED;
+    }
+
+    /* Total amount spent by the sender */
     public long getAmount() {
         return amount;
     }
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("sender", getSender());
+        fields.put("receiver", getReceiver());
+        fields.put("amount", amount);
+        if (receiverIds != null) {
+            String[] receivers = new String[receiverIds.length];
+            for (int i = 0; i < receivers.length; i++) {
+                receivers[i] = getReceiver(i);
+            }
+            fields.put("receivers", receivers);
+            fields.put("amounts", amounts);
+        }
+        oos.writeFields();
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = ois.readFields();
+        AddressRegistry registry = AddressRegistry.getInstance();
+        senderId = registry.intern((String) fields.get("sender", null));
+        receiverId = registry.intern((String) fields.get("receiver", null));
+        amount = fields.get("amount", 0L);
+        /* Transactions saved before multi-output ones were introduced have neither of the arrays */
+        String[] receivers = (String[]) fields.get("receivers", null);
+        if (receivers != null) {
+            receiverIds = new int[receivers.length];
+            for (int i = 0; i < receivers.length; i++) {
+                receiverIds[i] = registry.intern(receivers[i]);
+            }
+            amounts = (long[]) fields.get("amounts", null);
+        }
+    }
+
     @Override
     public String toString() {
-        return sender + " sent " + amount + " VC to " + receiver;
+        if (receiverIds == null) {
+            return getSender() + " sent " + amount + " VC to " + getReceiver();
+        }
+        StringBuilder builder = new StringBuilder(getSender()).append(" sent ").append(amount).append(" VC to");
+        for (int i = 0; i < receiverIds.length; i++) {
+            builder.append(i == 0 ? " " : ", ").append(getReceiver(i)).append(" (").append(amounts[i]).append(")");
+        }
+        return builder.toString();
     }
 
     @Override
@@ -36,13 +218,22 @@ public class Transaction implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Transaction that = (Transaction) o;
-        return amount == that.amount &&
-                Objects.equals(sender, that.sender) &&
-                Objects.equals(receiver, that.receiver);
+        if (amount != that.amount || getOutputCount() != that.getOutputCount() || !Arrays.equals(amounts, that.amounts)
+                || !getSender().equals(that.getSender())) {
+            return false;
+        }
+        for (int i = 0; i < getOutputCount(); i++) {
+            if (!getReceiver(i).equals(that.getReceiver(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /* Based on strings, comparing doesn't register addresses */
     @Override
     public int hashCode() {
-        return Objects.hash(sender, receiver, amount);
+        int hash = 31 * (31 * getSender().hashCode() + getReceiver().hashCode()) + Long.hashCode(amount);
+        return receiverIds == null ? hash : 31 * hash + Arrays.hashCode(amounts);
     }
 }
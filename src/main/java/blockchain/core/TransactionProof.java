@@ -0,0 +1,72 @@
+package blockchain.core;
+
+import blockchain.encryption.MerkleTree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* Proof that a transaction is included in a block: the transaction itself, header of the block, position of the
+ * transaction and Merkle path from its leaf to the transactions hash of the header. Only blocks committing to their
+ * transactions with a Merkle root (version 2 and above) can have proofs. Whether the header is part of the best chain
+ * is up to the verifier, e.g. a HeaderChain. */
+public final class TransactionProof {
+    private final SignedTransaction transaction;
+    private final Block header;
+    private final int index;
+    private final int transactionsCount;
+    private final List<Hash256> path;
+
+    public TransactionProof(SignedTransaction transaction, Block header, int index, int transactionsCount, List<Hash256> path) {
+        this.transaction = transaction;
+        this.header = header;
+        this.index = index;
+        this.transactionsCount = transactionsCount;
+        this.path = Collections.unmodifiableList(new ArrayList<>(path));
+    }
+
+    /* Proofs of transactions at given indexes of a block, its header is kept without transactions */
+    static List<TransactionProof> of(Block block, List<Integer> indexes) {
+        List<SignedTransaction> transactions = block.getTransactions();
+        MerkleTree tree = new MerkleTree(transactions);
+        Block header = block.toHeaderOnly(null);
+        List<TransactionProof> proofs = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            List<Hash256> path = new ArrayList<>();
+            tree.getProof(index).forEach(hash -> path.add(Hash256.wrap(hash)));
+            proofs.add(new TransactionProof(transactions.get(index), header, index, transactions.size(), path));
+        }
+        return proofs;
+    }
+
+    /* Transaction id leads through the path to the transactions hash of the header */
+    public boolean verify() {
+        if (header.getVersion() < Block.MERKLE_ROOT_VERSION) {
+            return false;
+        }
+        List<byte[]> hashes = new ArrayList<>(path.size());
+        path.forEach(hash -> hashes.add(hash.getBytes()));
+        byte[] root = MerkleTree.computeRootFromProof(transaction.getId().getBytes(), index, transactionsCount, hashes);
+        return root != null && Hash256.wrap(root).equals(header.getTransactionsHash());
+    }
+
+    public SignedTransaction getTransaction() {
+        return transaction;
+    }
+
+    public Block getHeader() {
+        return header;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getTransactionsCount() {
+        return transactionsCount;
+    }
+
+    public List<Hash256> getPath() {
+        return path;
+    }
+}
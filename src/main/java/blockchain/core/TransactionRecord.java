@@ -0,0 +1,60 @@
+package blockchain.core;
+
+import blockchain.encryption.SignatureScheme;
+
+import java.nio.ByteBuffer;
+
+/* Read side of a signed transaction. Implemented by SignedTransaction and by flyweight views over transactions kept
+ * in a binary form, so balance replay can go through stored transactions without materializing them. */
+public interface TransactionRecord {
+    int getVersion();
+
+    int getSenderId();
+
+    /* False for a sender never seen by AddressRegistry, stored transactions always have registered addresses */
+    default boolean isSenderRegistered() {
+        return true;
+    }
+
+    /* First receiver of a multi-output transaction */
+    int getReceiverId();
+
+    /* Total amount spent by the sender */
+    long getAmount();
+
+    default int getOutputCount() {
+        return 1;
+    }
+
+    default int getReceiverId(int output) {
+        return getReceiverId();
+    }
+
+    default long getAmount(int output) {
+        return getAmount();
+    }
+
+    /* Passes each receiver with the amount it gets */
+    default void forEachOutput(OutputConsumer action) {
+        int count = getOutputCount();
+        for (int i = 0; i < count; i++) {
+            action.accept(getReceiverId(i), getAmount(i));
+        }
+    }
+
+    long getTimestamp();
+
+    /* Sha256 of the signing payload, see SignedTransaction */
+    Hash256 getId();
+
+    SignatureScheme getSignatureScheme();
+
+    ByteBuffer getSignatureView();
+
+    ByteBuffer getPublicKeyView();
+
+    @FunctionalInterface
+    interface OutputConsumer {
+        void accept(int receiverId, long amount);
+    }
+}
@@ -0,0 +1,14 @@
+package blockchain.core;
+
+/* Outcome of submitting a transaction to the pending list */
+public enum TransactionResult {
+    ACCEPTED,
+    /* Already pending or confirmed, or submitted twice in one batch */
+    DUPLICATE,
+    /* Malformed address or wrong signature */
+    INVALID_SIGNATURE,
+    /* Older than the latest transaction of its sender */
+    STALE_TIMESTAMP,
+    /* Non-positive amount or more than the sender's balance minus its pending transactions */
+    INSUFFICIENT_BALANCE
+}
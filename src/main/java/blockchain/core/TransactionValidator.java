@@ -1,109 +1,39 @@
 package blockchain.core;
 
+import blockchain.encryption.AddressValidator;
+import blockchain.encryption.SignatureScheme;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.security.InvalidKeyException;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
-import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class TransactionValidator {
     private static Logger LOGGER = LoggerFactory.getLogger(TransactionValidator.class);
 
-    /* For security purposes, date of new client transaction must be later than his last transaction. This prevent from
-     * copying the same transaction over again by unauthorized users */
-    public boolean checkTransactionTimeValidity(SignedTransaction signedTransaction, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        String sender = signedTransaction.getTransaction()
-                .getSender();
-        long timestamp = signedTransaction.getTimestamp();
-        Long timeOfClientLastTransaction = matchLatestTransactionOfClient(sender, blocks, pendingTransactionsList)
-                .map(SignedTransaction::getTimestamp)
-                .orElse(0L);
-        if (timestamp < timeOfClientLastTransaction) {
-            LOGGER.warn("Wrong time");
-            return false;
-        }
-        return true;
-    }
-
-    private Optional<SignedTransaction> matchLatestTransactionOfClient(String searchedClient, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        return checkPendingTransactions(searchedClient, pendingTransactionsList)
-                .or(checkBlockchainForTransactions(searchedClient, blocks));
-    }
-
-    private Optional<SignedTransaction> checkPendingTransactions(String searchedClient, List<SignedTransaction> pendingTransactionsList) {
-        return findLastClientTransactionFromList(pendingTransactionsList, searchedClient);
-    }
-
-    private Supplier<Optional<SignedTransaction>> checkBlockchainForTransactions(String searchedClient, List<Block> blocks) {
-        return () -> blocks.stream()
-                .skip(1)
-                .flatMap(block -> block.getTransactions().stream())
-                .filter(filterBySender(searchedClient))
-                .reduce((first, second) -> second);
-    }
-
-    private Optional<SignedTransaction> findLastClientTransactionFromList(List<SignedTransaction> list, String client) {
-        return list.stream()
-                .filter(filterBySender(client))
-                .reduce((first, second) -> second);
-    }
-
-    private Predicate<SignedTransaction> filterBySender(String sender) {
+    private Predicate<SignedTransaction> filterBySender(int sender) {
         return transaction -> transaction.getTransaction()
-                .getSender()
-                .equals(sender);
+                .getSenderId() == sender;
     }
 
-    private Predicate<SignedTransaction> filterByReceiver(String receiver) {
-        return transaction -> transaction.getTransaction()
-                .getReceiver()
-                .equals(receiver);
+    /* Address which has never been seen gets id -1, which matches no transaction */
+    public long coinsOfClient(String client, ChainState chainState, List<SignedTransaction> pendingTransactionsList) {
+        return coinsOfClient(AddressRegistry.getInstance().find(client), chainState, pendingTransactionsList);
     }
 
-    public long coinsOfClient(String client, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        long spend = coinsSpentByClient(client, blocks, pendingTransactionsList);
-        long received = coinsReceivedByClient(client, blocks);
-        long mined = coinsMined(client, blocks);
-        long balance = received + mined - spend;
+    private long coinsOfClient(int client, ChainState chainState, List<SignedTransaction> pendingTransactionsList) {
+        long balance = chainState.getBalance(client) - coinsSpentByClientInPendingList(client, pendingTransactionsList);
         if (balance < 0) {
             throw new RuntimeException("Negative balance occurred, shutting down simulation.");
         }
         return balance;
     }
 
-    private long coinsSpentByClient(String client, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        long coinsFromBlocks = coinsSpentByClientInBlocks(client, blocks);
-        long coinsFromTransactionToPublish = coinsSpentByClientInPendingList(client, pendingTransactionsList);
-        return coinsFromBlocks + coinsFromTransactionToPublish;
-    }
-
-    private long coinsSpentByClientInBlocks(String client, List<Block> blocks) {
-        return blocks.stream()
-                .skip(1)
-                .flatMap(block -> block.getTransactions().stream())
-                .filter(filterBySender(client))
-                .mapToLong(signedTransaction -> signedTransaction.getTransaction().getAmount())
-                .reduce((sum, next) -> sum += next)
-                .orElse(0);
-    }
-
-    private long coinsSpentByClientInPendingList(String client, List<SignedTransaction> pendingTransactionsList) {
+    private long coinsSpentByClientInPendingList(int client, List<SignedTransaction> pendingTransactionsList) {
         return pendingTransactionsList.stream()
                 .filter(filterBySender(client))
                 .mapToLong(signedTransaction -> signedTransaction.getTransaction().getAmount())
@@ -111,64 +41,47 @@ public class TransactionValidator {
                 .orElse(0);
     }
 
-    private long coinsReceivedByClient(String client, List<Block> blocks) {
-        return blocks.stream()
-                .skip(1)
-                .flatMap(block -> block.getTransactions().stream())
-                .filter(filterByReceiver(client))
-                .mapToLong(signedTransaction -> signedTransaction.getTransaction().getAmount())
-                .reduce((sum, next) -> sum += next)
-                .orElse(0);
-    }
-
-    private long coinsMined(String miner, List<Block> blocks) {
-        return blocks.stream()
-                .skip(1)
-                .map(Block::getMinerReward)
-                .filter(reward -> reward.getMiner().equals(miner))
-                .mapToLong(MinerReward::getReward)
-                .reduce((sum, next) -> sum += next)
-                .orElse(0);
+    /* Coins sent to a malformed address could never be spent, such transactions are rejected */
+    public boolean checkAddressesValidity(SignedTransaction signedTransaction) {
+        Transaction transaction = signedTransaction.getTransaction();
+        boolean valid = AddressValidator.isValid(transaction.getSender());
+        for (int i = 0; valid && i < transaction.getOutputCount(); i++) {
+            valid = AddressValidator.isValid(transaction.getReceiver(i));
+        }
+        if (!valid) {
+            LOGGER.error("Malformed address in transaction " + signedTransaction.getId());
+        }
+        return valid;
     }
 
-    public boolean checkBalanceValidity(SignedTransaction signedTransaction, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        double amount = signedTransaction.getTransaction()
-                .getAmount();
-        if (amount <= 0) {
-            LOGGER.warn("Transaction value wrong: " + amount);
+    /* Signing payload covers all outputs only in the multi-output version, so multi-output transactions of other
+     * versions are rejected, as well as outputs which don't pay a positive amount. A negative output would take coins
+     * from its receiver. */
+    public boolean checkOutputsValidity(SignedTransaction signedTransaction) {
+        Transaction transaction = signedTransaction.getTransaction();
+        boolean multiOutputVersion = signedTransaction.getVersion() == SignedTransaction.MULTI_OUTPUT_VERSION;
+        if (transaction.isMultiOutput() != multiOutputVersion || transaction.getOutputCount() > SignedTransaction.MAX_OUTPUTS) {
+            LOGGER.error("Outputs of transaction " + signedTransaction.getId() + " don't match its version " + signedTransaction.getVersion());
             return false;
         }
-        String sender = signedTransaction.getTransaction().getSender();
-        double balance = coinsOfClient(sender, blocks, pendingTransactionsList);
-        if (amount > balance) {
-            LOGGER.warn("Bad balance");
-            return false;
+        for (int i = 0; i < transaction.getOutputCount(); i++) {
+            if (transaction.getAmount(i) <= 0) {
+                LOGGER.error("Transaction value wrong: " + transaction.getAmount(i));
+                return false;
+            }
         }
         return true;
     }
 
+    /* Verification goes through the scheme recorded in the transaction, a key of another scheme fails to decode */
     public boolean checkSignatureValidity(SignedTransaction signedTransaction) {
-        String inputForSignature = signedTransaction.toString() + "\n" + signedTransaction.getTimestamp();
-        byte[] input = inputForSignature.getBytes();
-        byte[] signature = signedTransaction.getSignature();
-        boolean signatureVerification;
-        try {
-            signatureVerification = verifySignature(input, signature, signedTransaction.getPublicKey());
-        } catch (NoSuchAlgorithmException e) {
-            LOGGER.error("Wrong algorithm exception occurred", e);
-            throw new RuntimeException(e);
-        } catch (InvalidKeyException e) {
-            LOGGER.error("Wrong key exception", e);
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        } catch (SignatureException e) {
-            LOGGER.error("Signature exception", e);
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        } catch (InvalidKeySpecException e) {
-            LOGGER.error("KeySpec exception", e);
-            throw new RuntimeException(e);
+        if (!checkOutputsValidity(signedTransaction)) {
+            return false;
         }
+        byte[] input = signedTransaction.getSigningPayload();
+        SignatureScheme scheme = signedTransaction.getSignatureScheme();
+        boolean signatureVerification = scheme.verify(signedTransaction.publicKeyBytes(), input,
+                signedTransaction.signatureBytes());
         if (!signatureVerification) {
             LOGGER.error("Wrong signature.");
             return false;
@@ -176,19 +89,22 @@ public class TransactionValidator {
         return true;
     }
 
-    private boolean verifySignature(byte[] input, byte[] signatureToVerify, byte[] keyBytes)
-            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException, InvalidKeySpecException {
-        Signature signature = Signature.getInstance(Blockchain.SIGNATURE_ALGORITHM);
-        X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(keyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        PublicKey publicKey = keyFactory.generatePublic(pubKeySpec);
-        signature.initVerify(publicKey);
-        signature.update(input);
-        return signature.verify(signatureToVerify);
+    /* Address and signature checks of a batch of transactions. They depend on nothing but the transactions themselves,
+     * so they run in parallel and callers don't need to hold any lock. Passing transactions get ACCEPTED, the rest of
+     * validation is up to the caller. */
+    public TransactionResult[] checkSignatures(List<SignedTransaction> transactions) {
+        TransactionResult[] results = new TransactionResult[transactions.size()];
+        IntStream stream = IntStream.range(0, results.length);
+        (results.length > 1 ? stream.parallel() : stream).forEach(i -> {
+            SignedTransaction transaction = transactions.get(i);
+            boolean valid = checkAddressesValidity(transaction) && checkSignatureValidity(transaction);
+            results[i] = valid ? TransactionResult.ACCEPTED : TransactionResult.INVALID_SIGNATURE;
+        });
+        return results;
     }
 
     /*  -----------------------  */
-    /* Faster way for checking block transactions, this method only checks signatures. Should be enough for most cases. */
+    /* Faster way for checking block transactions, this method only checks addresses and signatures. Should be enough for most cases. */
     public boolean checkTransactionsSignatures(Block block) {
         List<SignedTransaction> transactionsToCheck = block.getTransactions();
         return checkSignaturesOfTransactionsInList(transactionsToCheck);
@@ -196,40 +112,22 @@ public class TransactionValidator {
 
     private boolean checkSignaturesOfTransactionsInList(List<SignedTransaction> transactions) {
         long count = transactions.stream()
-                .filter(this::checkSignatureValidity)
+                .filter(transaction -> checkAddressesValidity(transaction) && checkSignatureValidity(transaction))
                 .count();
 
         return count == transactions.size();
     }
 
-    public boolean checkNewBlockOutgoings(Block newBlock, Map<String, Long> balanceMap) {
-        Map<String, Long> outgoingsOfNewBlock = getMapOfOutgoings(newBlock);
-        long count = outgoingsOfNewBlock.keySet()
-                .stream()
-                .filter(address -> {
-                    Long outgoing = outgoingsOfNewBlock.get(address);
-                    Long balance = balanceMap.get(address);
-                    return balance == null || balance < -1 * outgoing;
-                })
-                .count();
-        return count == 0;
-    }
-
-    /* Returns map containing only spent coins of each address */
-    public Map<String, Long> getMapOfOutgoings(Block block) {
-        Map<String, Long> outgoings = new HashMap<>();
-        block.getTransactions().forEach(updateSenderBalances(outgoings));
+    /* Returns map containing only spent coins of each address id */
+    public BalanceMap getMapOfOutgoings(Block block) {
+        BalanceMap outgoings = new BalanceMap();
+        block.forEachTransaction(transaction -> outgoings.add(transaction.getSenderId(), -transaction.getAmount()));
         return outgoings;
     }
 
-    public boolean checkBalanceMap(Map<String, Long> balanceMap) {
+    public boolean checkBalanceMap(BalanceMap balanceMap) {
         assert balanceMap.size() > 0;
-        double lowestBalance = balanceMap.values()
-                .stream()
-                .mapToLong(Long::longValue)
-                .min()
-                .getAsLong();
-        return lowestBalance >= 0;
+        return balanceMap.minValue() >= 0;
     }
 
     /* In a given part (or whole) blockchain checks for duplicated transactions. Transaction is considered to be duplicated if the
@@ -254,51 +152,17 @@ public class TransactionValidator {
     }
 
     /* This method update map with clients balances based on provided block. Requires balance map prepared of previous block or empty map
-     * if this is first block in blockchain. Recommended to use hash map for efficiency purposes. */
-    public Map<String, Long> updateBalanceMap(Block block, Map<String, Long> balanceMap) {
-        block.getTransactions().forEach(updateBalanceMap(balanceMap));
+     * if this is first block in blockchain. Map is keyed by address ids. */
+    public BalanceMap updateBalanceMap(Block block, BalanceMap balanceMap) {
+        block.forEachTransaction(transaction -> {
+            transaction.forEachOutput(balanceMap::add);
+            balanceMap.add(transaction.getSenderId(), -transaction.getAmount());
+        });
         return balanceMap;
     }
 
-    public Map<String, Long> updateBalanceMap(MinerReward reward, Map<String, Long> balanceMap) {
-        String miner = reward.getMiner();
-        long rewardValue = reward.getReward();
-        if (balanceMap.containsKey(miner)) {
-            long oldBalance = balanceMap.get(miner);
-            balanceMap.replace(miner, oldBalance + rewardValue);
-        } else {
-            balanceMap.put(miner, rewardValue);
-        }
+    public BalanceMap updateBalanceMap(MinerReward reward, BalanceMap balanceMap) {
+        balanceMap.add(reward.getMinerId(), reward.getReward());
         return balanceMap;
     }
-
-    private Consumer<SignedTransaction> updateBalanceMap(Map<String, Long> mapToUpdate) {
-        Consumer<SignedTransaction> updateSendersBalances = updateSenderBalances(mapToUpdate);
-        Consumer<SignedTransaction> updateReceiversBalances = (signedTransaction) -> {
-            String receiver = signedTransaction.getTransaction().getReceiver();
-            long amount = signedTransaction.getTransaction().getAmount();
-            if (mapToUpdate.containsKey(receiver)) {
-                long prevBalance = mapToUpdate.get(receiver);
-                long balance = prevBalance + amount;
-                mapToUpdate.replace(receiver, balance);
-            } else {
-                mapToUpdate.put(receiver, amount);
-            }
-        };
-        return updateReceiversBalances.andThen(updateSendersBalances);
-    }
-
-    private Consumer<SignedTransaction> updateSenderBalances(Map<String, Long> mapToUpdate) {
-        return  (signedTransaction) -> {
-            String sender = signedTransaction.getTransaction().getSender();
-            long amount = signedTransaction.getTransaction().getAmount();
-            if (mapToUpdate.containsKey(sender)) {
-                long prevBalance = mapToUpdate.get(sender);
-                long balance = prevBalance - amount;
-                mapToUpdate.replace(sender, balance);
-            } else {
-                mapToUpdate.put(sender, -amount);
-            }
-        };
-    }
 }
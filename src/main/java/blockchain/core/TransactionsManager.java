@@ -1,5 +1,6 @@
 package blockchain.core;
 
+import blockchain.encryption.MerkleTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,13 +8,20 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 public final class TransactionsManager implements Serializable {
     private final List<SignedTransaction> pendingTransactions;
     private transient TransactionValidator validator;
     private transient Blockchain blockchain;
+    private transient MerkleTree pendingTree;
+    private transient Map<Hash256, SignedTransaction> pendingById;
     private static final long serialVersionUID = 1L;
     public static transient Logger LOGGER = LoggerFactory.getLogger(TransactionsManager.class);
 
@@ -21,53 +29,151 @@ public final class TransactionsManager implements Serializable {
         this.pendingTransactions = new ArrayList<>();
         this.blockchain = blockchain;
         this.validator = new TransactionValidator();
+        this.pendingTree = new MerkleTree();
+        this.pendingById = new HashMap<>();
     }
 
     public TransactionsManager(Blockchain blockchain, List<SignedTransaction> pendingTransactions) {
         this.pendingTransactions = pendingTransactions;
         this.blockchain = blockchain;
         this.validator = new TransactionValidator();
+        this.pendingTree = new MerkleTree(pendingTransactions);
+        this.pendingById = indexById(pendingTransactions);
     }
 
+    private static Set<Hash256> collectIds(List<SignedTransaction> transactions) {
+        return transactions.stream()
+                .map(SignedTransaction::getId)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static Map<Hash256, SignedTransaction> indexById(List<SignedTransaction> transactions) {
+        Map<Hash256, SignedTransaction> index = new HashMap<>();
+        transactions.forEach(transaction -> index.put(transaction.getId(), transaction));
+        return index;
+    }
+
+    /* Id doesn't cover the signature, so a transaction is taken as the pending one only with the same witness.
+     * Otherwise its signature wasn't verified, and the block is checked like one from another node. */
     public boolean checkNewBlockTransactions(Block nextBlock) {
-        List<SignedTransaction> transactions = nextBlock.getTransactions();
-        return pendingTransactions.containsAll(transactions);
+        return nextBlock.getTransactions()
+                .stream()
+                .allMatch(transaction -> {
+                    SignedTransaction pending = pendingById.get(transaction.getId());
+                    return pending != null && pending.hasSameWitness(transaction);
+                });
     }
 
     public void removeTransactionsAddedInNewBlock(Block newBlock) {
-        List<SignedTransaction> transactions = newBlock.getTransactions();
-        pendingTransactions.removeAll(transactions);
+        Set<Hash256> confirmedIds = collectIds(newBlock.getTransactions());
+        if (pendingTransactions.removeIf(transaction -> confirmedIds.contains(transaction.getId()))) {
+            pendingById.keySet().removeAll(confirmedIds);
+            pendingTree = new MerkleTree(pendingTransactions);
+        }
     }
 
     public boolean addTransaction(SignedTransaction transaction) {
-        if (checkTransactionValidity(transaction, blockchain.getBlockList(), pendingTransactions)) {
-            return pendingTransactions.add(transaction);
-        }
-        return false;
+        List<SignedTransaction> single = List.of(transaction);
+        return addTransactions(single, validator.checkSignatures(single)).get(0) == TransactionResult.ACCEPTED;
     }
 
-    public boolean checkTransactionValidity(SignedTransaction signedTransaction, List<Block> blocks, List<SignedTransaction> pendingTransactionsList) {
-        boolean timeValidity = validator.checkTransactionTimeValidity(signedTransaction, blocks, pendingTransactionsList);
-
-        boolean balanceValidity = validator.checkBalanceValidity(signedTransaction, blocks, pendingTransactionsList);
-
-        boolean signatureValidity = validator.checkSignatureValidity(signedTransaction);
+    /* Validates a batch of transactions against one chain state and adds the valid ones to the pending list. Results
+     * of signature checks come from TransactionValidator.checkSignatures, done beforehand. Pending balance changes and
+     * latest times of the batch's senders are collected in one pass over the pending list and kept up to date as
+     * transactions are accepted. Pending transactions are applied in order like block transactions in ChainStateView,
+     * so coins received in an earlier pending transaction can be spent, and the pending list is a valid block body. */
+    public List<TransactionResult> addTransactions(List<SignedTransaction> transactions, TransactionResult[] signatureResults) {
+        ChainState chainState = blockchain.getChainState();
+        Set<Integer> senders = new HashSet<>();
+        transactions.stream()
+                .filter(SignedTransaction::isSenderRegistered)
+                .forEach(transaction -> senders.add(transaction.getSenderId()));
+        Map<Integer, Long> pendingChanges = new HashMap<>();
+        Map<Integer, Long> pendingTimes = new HashMap<>();
+        for (SignedTransaction pending : pendingTransactions) {
+            int sender = pending.getSenderId();
+            if (senders.contains(sender)) {
+                pendingChanges.merge(sender, -pending.getAmount(), Long::sum);
+                pendingTimes.put(sender, pending.getTimestamp());
+            }
+            pending.forEachOutput((receiver, amount) -> {
+                if (senders.contains(receiver)) {
+                    pendingChanges.merge(receiver, amount, Long::sum);
+                }
+            });
+        }
+        List<TransactionResult> results = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            SignedTransaction transaction = transactions.get(i);
+            TransactionResult result = pendingById.containsKey(transaction.getId()) ? TransactionResult.DUPLICATE : signatureResults[i];
+            if (result == TransactionResult.ACCEPTED) {
+                result = chainState.checkOrder(transaction);
+            }
+            /* Order check fails for a sender which isn't registered, getSenderId doesn't register a new one here */
+            int sender = result == TransactionResult.ACCEPTED ? transaction.getSenderId() : -1;
+            if (result == TransactionResult.ACCEPTED && transaction.getTimestamp() < pendingTimes.getOrDefault(sender, 0L)) {
+                result = TransactionResult.STALE_TIMESTAMP;
+            }
+            if (result == TransactionResult.ACCEPTED && (transaction.getAmount() <= 0
+                    || transaction.getAmount() > chainState.getBalance(sender) + pendingChanges.getOrDefault(sender, 0L))) {
+                result = TransactionResult.INSUFFICIENT_BALANCE;
+            }
+            if (result == TransactionResult.ACCEPTED) {
+                pendingById.put(transaction.getId(), transaction);
+                pendingTree.append(transaction);
+                pendingTransactions.add(transaction);
+                pendingChanges.merge(sender, -transaction.getAmount(), Long::sum);
+                pendingTimes.put(sender, transaction.getTimestamp());
+                /* Receivers may not be registered before, so they can't be among senders collected above */
+                transaction.forEachOutput((receiver, amount) -> pendingChanges.merge(receiver, amount, Long::sum));
+            } else {
+                LOGGER.warn("Transaction " + transaction.getId() + " rejected: " + result);
+            }
+            results.add(result);
+        }
+        return results;
+    }
 
-        return timeValidity && balanceValidity && signatureValidity;
+    /* After a reorganization transactions of disconnected blocks are pending again, unless the new branch confirmed
+     * them. All pending transactions are validated again against the new chain state, invalid ones are dropped. */
+    public void restorePending(List<SignedTransaction> returned, Set<Hash256> confirmed) {
+        List<SignedTransaction> candidates = new ArrayList<>(returned.size() + pendingTransactions.size());
+        returned.stream()
+                .filter(transaction -> !confirmed.contains(transaction.getId()))
+                .forEach(candidates::add);
+        pendingTransactions.stream()
+                .filter(transaction -> !confirmed.contains(transaction.getId()))
+                .forEach(candidates::add);
+        pendingTransactions.clear();
+        pendingById.clear();
+        pendingTree = new MerkleTree();
+        long dropped = addTransactions(candidates, validator.checkSignatures(candidates)).stream()
+                .filter(result -> result != TransactionResult.ACCEPTED)
+                .count();
+        if (dropped > 0) {
+            LOGGER.info(dropped + " transactions dropped from the pending list after reorganization.");
+        }
     }
 
     public List<SignedTransaction> getPendingTransactions() {
         return new ArrayList<>(pendingTransactions);
     }
 
+    /* Merkle tree of pending transactions is updated on each new transaction, so the template is ready at any time */
+    public TransactionsTemplate getTransactionsTemplate() {
+        return new TransactionsTemplate(Block.MERKLE_ROOT_VERSION, new ArrayList<>(pendingTransactions), Hash256.wrap(pendingTree.getRoot()));
+    }
+
     private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
         ois.defaultReadObject();
         this.blockchain = Blockchain.getInstance();
         this.validator = new TransactionValidator();
+        this.pendingTree = new MerkleTree(pendingTransactions);
+        this.pendingById = indexById(pendingTransactions);
         LOGGER = LoggerFactory.getLogger(TransactionsManager.class);
     }
 
     public long coinsOfClient(String client) {
-        return validator.coinsOfClient(client, blockchain.getBlockList(), pendingTransactions);
+        return validator.coinsOfClient(client, blockchain.getChainState(), pendingTransactions);
     }
 }
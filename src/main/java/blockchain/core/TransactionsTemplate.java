@@ -0,0 +1,28 @@
+package blockchain.core;
+
+import java.util.List;
+
+/* Snapshot of pending transactions together with their transactions hash, used by miners to build a new block */
+public final class TransactionsTemplate {
+    private final int version;
+    private final List<SignedTransaction> transactions;
+    private final Hash256 transactionsHash;
+
+    public TransactionsTemplate(int version, List<SignedTransaction> transactions, Hash256 transactionsHash) {
+        this.version = version;
+        this.transactions = transactions;
+        this.transactionsHash = transactionsHash;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public List<SignedTransaction> getTransactions() {
+        return transactions;
+    }
+
+    public Hash256 getTransactionsHash() {
+        return transactionsHash;
+    }
+}
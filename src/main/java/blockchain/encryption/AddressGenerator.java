@@ -1,16 +1,10 @@
 package blockchain.encryption;
 
-import blockchain.core.Blockchain;
 import org.bitcoinj.core.Base58;
 
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 
 public final class AddressGenerator {
-    private static KeyPairGenerator keyGen;
-
     public static final int KEY_LENGTH = 1024;
     public static final String ADDRESS_VERSION_NUMBER = "00";
 
@@ -18,18 +12,9 @@ public final class AddressGenerator {
         super();
     }
 
-    static {
-        try {
-            keyGen = KeyPairGenerator.getInstance(Blockchain.KEYS_ALGORITHM);
-            SecureRandom secureRandom = new SecureRandom();
-            keyGen.initialize(KEY_LENGTH, secureRandom);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-    }
-
+    /* Each call uses its own generator, so threads creating wallets don't wait for each other */
     public static KeyPair CreateKeys() {
-        return keyGen.generateKeyPair();
+        return SignatureScheme.RSA.generateKeyPair();
     }
 
     public static String GenerateAddressFromPublicKey(byte[] publicKeyBytes) {
@@ -0,0 +1,56 @@
+package blockchain.encryption;
+
+import org.bitcoinj.core.AddressFormatException;
+import org.bitcoinj.core.Base58;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Checks that a string is a well formed address, as created by AddressGenerator: Base58 encoded version byte,
+ * hash160 of a public key and 4 bytes of checksum. Every transaction names two addresses and the same ones come back
+ * all the time, so addresses found valid are remembered, up to a given number. Invalid ones are not, otherwise
+ * anyone sending garbage could fill the cache. */
+public final class AddressValidator {
+    public static final int ADDRESS_LENGTH = 1 + 20 + 4;
+    public static final int CACHE_CAPACITY = 100_000;
+
+    private static final byte VERSION = EncryptionUtils.decodeHexString(AddressGenerator.ADDRESS_VERSION_NUMBER)[0];
+    private static final Set<String> VALID_ADDRESSES = ConcurrentHashMap.newKeySet();
+
+    private AddressValidator() {
+    }
+
+    public static boolean isValid(String address) {
+        if (address == null) {
+            return false;
+        }
+        if (VALID_ADDRESSES.contains(address)) {
+            return true;
+        }
+        boolean valid = check(address);
+        if (valid && VALID_ADDRESSES.size() < CACHE_CAPACITY) {
+            VALID_ADDRESSES.add(address);
+        }
+        return valid;
+    }
+
+    private static boolean check(String address) {
+        if (address.isEmpty()) {
+            return false;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base58.decode(address);
+        } catch (AddressFormatException e) {
+            return false;
+        }
+        if (bytes.length != ADDRESS_LENGTH || bytes[0] != VERSION) {
+            return false;
+        }
+        byte[] payload = Arrays.copyOf(bytes, ADDRESS_LENGTH - 4);
+        byte[] checksum = EncryptionUtils.generateChecksum(payload);
+        return MessageDigest.isEqual(checksum, Arrays.copyOfRange(bytes, ADDRESS_LENGTH - 4, ADDRESS_LENGTH));
+    }
+}
@@ -5,42 +5,82 @@ import org.bouncycastle.crypto.digests.RIPEMD160Digest;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 
 public final class EncryptionUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /* Value of each ASCII hex digit, -1 for other characters */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    /* Digests are not thread safe and getInstance is a provider lookup, so each thread reuses its own instances */
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+    private static final ThreadLocal<RIPEMD160Digest> RIPEMD160 = ThreadLocal.withInitial(RIPEMD160Digest::new);
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /* Hex encoding & decoding */
     public static String encodeIntoHex(byte[] input) {
-        StringBuilder output = new StringBuilder();
+        char[] output = new char[input.length * 2];
+        encodeIntoHex(input, output, 0);
+        return new String(output);
+    }
+
+    /* Writes 2 lowercase digits per byte into output, starting at a given offset */
+    public static void encodeIntoHex(byte[] input, char[] output, int offset) {
         for (byte b : input) {
-            String hex = Integer.toHexString(0xff & b);
-            if(hex.length() == 1) output.append('0');
-            output.append(hex);
+            output[offset++] = HEX_DIGITS[(b >> 4) & 0x0f];
+            output[offset++] = HEX_DIGITS[b & 0x0f];
         }
-        return output.toString();
     }
 
-    public static byte[] decodeHexString(String hexString) {
-        if (hexString.length() % 2 == 1) {
+    public static byte[] decodeHexString(CharSequence hexString) {
+        int length = hexString.length();
+        if (length % 2 == 1) {
             throw new IllegalArgumentException(
                     "Invalid hexadecimal String supplied.");
         }
 
-        byte[] bytes = new byte[hexString.length() / 2];
-        for (int i = 0; i < hexString.length(); i += 2) {
-            bytes[i / 2] = hexToByte(hexString.substring(i, i + 2));
+        byte[] bytes = new byte[length / 2];
+        for (int i = 0; i < length; i += 2) {
+            bytes[i / 2] = (byte) ((toDigit(hexString.charAt(i)) << 4) + toDigit(hexString.charAt(i + 1)));
         }
         return bytes;
     }
 
-    private static byte hexToByte(String hexString) {
-        int firstDigit = toDigit(hexString.charAt(0));
-        int secondDigit = toDigit(hexString.charAt(1));
-        return (byte) ((firstDigit << 4) + secondDigit);
+    public static byte[] decodeHex(char[] input, int offset, int length) {
+        if (length % 2 == 1) {
+            throw new IllegalArgumentException(
+                    "Invalid hexadecimal String supplied.");
+        }
+
+        byte[] bytes = new byte[length / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((toDigit(input[offset++]) << 4) + toDigit(input[offset++]));
+        }
+        return bytes;
     }
 
     private static int toDigit(char hexChar) {
-        int digit = Character.digit(hexChar, 16);
+        int digit = hexChar < HEX_VALUES.length ? HEX_VALUES[hexChar] : -1;
         if(digit == -1) {
             throw new IllegalArgumentException(
                     "Invalid Hexadecimal Character: "+ hexChar);
@@ -50,43 +90,23 @@ public final class EncryptionUtils {
 
     /* Sha256 generation */
     public static String applySha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            return ConvertHashBytesIntoString(hash);
-        }
-        catch(Exception e) {
-            throw new RuntimeException(e);
-        }
+        return encodeIntoHex(applySha256toBytes(input.getBytes(StandardCharsets.UTF_8)));
     }
 
     public static String applySha256(byte[] input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input);
-            return ConvertHashBytesIntoString(hash);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return encodeIntoHex(applySha256toBytes(input));
     }
 
-    private static String ConvertHashBytesIntoString(byte[] hash) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte elem: hash) {
-            String hex = Integer.toHexString(0xff & elem);
-            if(hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
-        }
-        return hexString.toString();
+    public static byte[] applySha256toBytes(byte[] input) {
+        return SHA256.get().digest(input);
     }
 
-    public static byte[] applySha256toBytes(byte[] input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            return digest.digest(input);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    /* Digest of the calling thread for input fed in parts. It's shared with the methods above, so it has to be
+     * completed with digest, which resets it, before any of them is called on the same thread. */
+    public static MessageDigest sha256Digest() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
     }
 
     public static byte[] applyRIPEMD160(String input) {
@@ -94,20 +114,26 @@ public final class EncryptionUtils {
     }
 
     public static byte[] applyRIPEMD160(byte[] input) {
-        RIPEMD160Digest digest = new RIPEMD160Digest();
+        RIPEMD160Digest digest = RIPEMD160.get();
         digest.update(input, 0, input.length);
         byte[] hash = new byte[20];
         digest.doFinal(hash, 0);
         return hash;
     }
 
+    /* Transactions hash used by blocks of version 1, see MerkleTree for the current one */
     public static String hashListOfTransactions(List<SignedTransaction> transactions) {
-        String reduced = transactions.stream()
-                .map(SignedTransaction::stringForHashing)
-                .map(EncryptionUtils::applySha256)
-                .reduce((sum, next) -> sum += ("\n" + next))
-                .orElse("No transactions");
-        return EncryptionUtils.applySha256(reduced);
+        if (transactions.isEmpty()) {
+            return EncryptionUtils.applySha256("No transactions");
+        }
+        StringBuilder joined = new StringBuilder(transactions.size() * 65);
+        for (SignedTransaction transaction : transactions) {
+            if (joined.length() > 0) {
+                joined.append('\n');
+            }
+            joined.append(applySha256(transaction.stringForHashing()));
+        }
+        return EncryptionUtils.applySha256(joined.toString());
     }
 
     /* Checksum is the first 4 bytes of double sha256 hash of whatever is being checkedsum'ed.  */
@@ -0,0 +1,90 @@
+package blockchain.encryption;
+
+import java.io.Closeable;
+import java.security.KeyPair;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Key pairs of one scheme generated ahead of time by background threads, up to a given depth. Pairs given by preload
+ * (e.g. read from a keystore) are handed out first, in order. When the pool is empty the caller generates a pair by
+ * itself, so taking a pair is never slower than generating it directly. Depth 0 turns background generation off. */
+public class KeyPairPool implements Closeable {
+    private final SignatureScheme scheme;
+    private final Queue<KeyPair> preloaded = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<KeyPair> generated;
+    private final ExecutorService generators;
+    private final LongAdder takenPreloaded = new LongAdder();
+    private final LongAdder takenGenerated = new LongAdder();
+    private final LongAdder generatedByCaller = new LongAdder();
+
+    public KeyPairPool(SignatureScheme scheme, int depth, int threads) {
+        this.scheme = scheme;
+        if (depth > 0 && threads > 0) {
+            generated = new ArrayBlockingQueue<>(depth);
+            generators = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "key-pair-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < threads; i++) {
+                generators.submit(this::generate);
+            }
+        } else {
+            generated = null;
+            generators = null;
+        }
+    }
+
+    private void generate() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                generated.put(scheme.generateKeyPair());
+            }
+        } catch (InterruptedException e) {
+            /* Pool closed */
+        }
+    }
+
+    public void preload(Collection<KeyPair> keyPairs) {
+        preloaded.addAll(keyPairs);
+    }
+
+    public KeyPair take() {
+        KeyPair keyPair = preloaded.poll();
+        if (keyPair != null) {
+            takenPreloaded.increment();
+            return keyPair;
+        }
+        keyPair = generated == null ? null : generated.poll();
+        if (keyPair != null) {
+            takenGenerated.increment();
+            return keyPair;
+        }
+        generatedByCaller.increment();
+        return scheme.generateKeyPair();
+    }
+
+    public SignatureScheme getScheme() {
+        return scheme;
+    }
+
+    /* Stops background generation, pairs left in the pool are dropped */
+    @Override
+    public void close() {
+        if (generators != null) {
+            generators.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Key pairs %s: %d preloaded, %d generated in background, %d generated by caller",
+                scheme, takenPreloaded.sum(), takenGenerated.sum(), generatedByCaller.sum());
+    }
+}
@@ -0,0 +1,159 @@
+package blockchain.encryption;
+
+import blockchain.core.SignedTransaction;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Merkle tree of transactions, used as transactions commitment since protocol version 2.
+ * Leaf is sha256(0x00 | transaction id), inner node is sha256(0x01 | left | right). A node without a pair is
+ * promoted to the next level unchanged. Tree keeps all levels, so appending a transaction recalculates only the path
+ * from the new leaf to the root. Not thread safe. */
+public final class MerkleTree {
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final String EMPTY_TREE_INPUT = "No transactions";
+
+    private final List<List<byte[]>> levels;
+    private final MessageDigest digest;
+
+    public MerkleTree() {
+        this.levels = new ArrayList<>();
+        this.levels.add(new ArrayList<>());
+        this.digest = newDigest();
+    }
+
+    public MerkleTree(List<SignedTransaction> transactions) {
+        this();
+        transactions.forEach(this::append);
+    }
+
+    public void append(SignedTransaction transaction) {
+        appendTransactionHash(transaction.getId().getBytes());
+    }
+
+    public void appendTransactionHash(byte[] transactionHash) {
+        List<byte[]> leaves = levels.get(0);
+        leaves.add(leafHash(digest, transactionHash));
+        int index = leaves.size() - 1;
+        for (int level = 0; levels.get(level).size() > 1; level++) {
+            List<byte[]> nodes = levels.get(level);
+            int parentIndex = index / 2;
+            byte[] parent = index % 2 == 0
+                    ? nodes.get(index)
+                    : nodeHash(digest, nodes.get(index - 1), nodes.get(index));
+            if (level + 1 == levels.size()) {
+                levels.add(new ArrayList<>());
+            }
+            List<byte[]> parents = levels.get(level + 1);
+            if (parentIndex == parents.size()) {
+                parents.add(parent);
+            } else {
+                parents.set(parentIndex, parent);
+            }
+            index = parentIndex;
+        }
+    }
+
+    public int size() {
+        return levels.get(0).size();
+    }
+
+    public byte[] getRoot() {
+        if (size() == 0) {
+            return digest.digest(EMPTY_TREE_INPUT.getBytes(StandardCharsets.UTF_8));
+        }
+        return levels.get(levels.size() - 1).get(0).clone();
+    }
+
+    public String getRootHex() {
+        return EncryptionUtils.encodeIntoHex(getRoot());
+    }
+
+    /* Inclusion proof of the leaf at a given index: hashes of its siblings from the leaf level up. Levels where
+     * the node has no pair and is promoted unchanged contribute nothing. */
+    public List<byte[]> getProof(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("No leaf " + index + " in a tree of " + size());
+        }
+        List<byte[]> proof = new ArrayList<>();
+        for (int level = 0; level < levels.size() - 1; level++) {
+            int sibling = index ^ 1;
+            if (sibling < levels.get(level).size()) {
+                proof.add(levels.get(level).get(sibling).clone());
+            }
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /* Root of a tree of a given size which has a transaction at a given index, calculated from the proof of getProof.
+     * Returns null if the proof has a different number of hashes than such a tree needs. */
+    public static byte[] computeRootFromProof(byte[] transactionHash, int index, int size, List<byte[]> proof) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        byte[] node = leafHash(digest, transactionHash);
+        int used = 0;
+        for (int count = size; count > 1; count = (count + 1) / 2) {
+            boolean promoted = index == count - 1 && count % 2 == 1;
+            if (!promoted) {
+                if (used == proof.size()) {
+                    return null;
+                }
+                byte[] sibling = proof.get(used++);
+                node = index % 2 == 0 ? nodeHash(digest, node, sibling) : nodeHash(digest, sibling, node);
+            }
+            index /= 2;
+        }
+        return used == proof.size() ? node : null;
+    }
+
+    public static String computeRootHex(List<SignedTransaction> transactions) {
+        return EncryptionUtils.encodeIntoHex(computeRoot(transactions));
+    }
+
+    /* Calculates root of a whole list at once, in linear time */
+    public static byte[] computeRoot(List<SignedTransaction> transactions) {
+        MessageDigest digest = newDigest();
+        if (transactions.isEmpty()) {
+            return digest.digest(EMPTY_TREE_INPUT.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[][] nodes = new byte[transactions.size()][];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = leafHash(digest, transactions.get(i).getId().getBytes());
+        }
+        int count = nodes.length;
+        while (count > 1) {
+            int parents = 0;
+            for (int i = 0; i < count; i += 2) {
+                nodes[parents++] = i + 1 < count ? nodeHash(digest, nodes[i], nodes[i + 1]) : nodes[i];
+            }
+            count = parents;
+        }
+        return nodes[0];
+    }
+
+    static byte[] leafHash(MessageDigest digest, byte[] transactionHash) {
+        digest.update(LEAF_PREFIX);
+        return digest.digest(transactionHash);
+    }
+
+    static byte[] nodeHash(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package blockchain.encryption;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Signature algorithms a transaction can be signed with. Id of the scheme is recorded in each transaction, RSA has id 0,
+ * so transactions created before schemes were introduced are read as RSA ones. Public keys are X.509 encoded for
+ * all schemes. secp256k1 is no longer provided by the JDK, BouncyCastle is used for it. An EC key has to be on
+ * secp256k1, the key factory accepts any named or explicit curve. */
+public enum SignatureScheme {
+    RSA(0, "RSA", "SHA256withRSA", null),
+    ECDSA_SECP256K1(1, "EC", "SHA256withECDSA", new BouncyCastleProvider()),
+    ED25519(2, "Ed25519", "Ed25519", null);
+
+    private static final int RSA_KEY_LENGTH = AddressGenerator.KEY_LENGTH;
+    private static final String EC_CURVE = "secp256k1";
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final ECParameterSpec EC_PARAMETERS = curveParameters(EC_CURVE, ECDSA_SECP256K1.provider);
+    /* Keys are cached per scheme after a successful verification, once the cache is full new ones aren't */
+    public static final int MAX_CACHED_KEYS = 100_000;
+
+    private final int id;
+    private final String keyAlgorithm;
+    private final String signatureAlgorithm;
+    private final Provider provider;
+    /* Verified public keys, keyed by their encoding */
+    private final Map<ByteBuffer, PublicKey> decodedKeys = new ConcurrentHashMap<>();
+
+    SignatureScheme(int id, String keyAlgorithm, String signatureAlgorithm, Provider provider) {
+        this.id = id;
+        this.keyAlgorithm = keyAlgorithm;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.provider = provider;
+    }
+
+    private static ECParameterSpec curveParameters(String curve, Provider provider) {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC", provider);
+            parameters.init(new ECGenParameterSpec(curve));
+            return parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public static SignatureScheme fromId(int id) {
+        for (SignatureScheme scheme : values()) {
+            if (scheme.id == id) {
+                return scheme;
+            }
+        }
+        throw new IllegalArgumentException("Unknown signature scheme id " + id);
+    }
+
+    /* Scheme of an existing key, based on the algorithm name reported by the provider which created it */
+    public static SignatureScheme of(PublicKey publicKey) {
+        switch (publicKey.getAlgorithm()) {
+            case "RSA":
+                return RSA;
+            case "EC":
+            case "ECDSA":
+                return ECDSA_SECP256K1;
+            case "Ed25519":
+            case "EdDSA":
+                return ED25519;
+            default:
+                throw new IllegalArgumentException("Unsupported key algorithm " + publicKey.getAlgorithm());
+        }
+    }
+
+    public KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = provider == null
+                    ? KeyPairGenerator.getInstance(keyAlgorithm)
+                    : KeyPairGenerator.getInstance(keyAlgorithm, provider);
+            if (this == RSA) {
+                generator.initialize(RSA_KEY_LENGTH, SECURE_RANDOM);
+            } else if (this == ECDSA_SECP256K1) {
+                generator.initialize(new ECGenParameterSpec(EC_CURVE), SECURE_RANDOM);
+            }
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public byte[] sign(PrivateKey privateKey, byte[] input) {
+        try {
+            Signature signature = newSignature();
+            signature.initSign(privateKey);
+            signature.update(input);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* Malformed keys and signatures make verification fail rather than throw. Only keys which verified a signature
+     * are cached, so random keys sent with invalid transactions don't fill the cache. */
+    public boolean verify(byte[] encodedPublicKey, byte[] input, byte[] signatureToVerify) {
+        try {
+            PublicKey publicKey = decodedKeys.get(ByteBuffer.wrap(encodedPublicKey));
+            boolean cached = publicKey != null;
+            if (!cached) {
+                publicKey = decodePublicKey(encodedPublicKey);
+            }
+            Signature signature = newSignature();
+            signature.initVerify(publicKey);
+            signature.update(input);
+            boolean valid = signature.verify(signatureToVerify);
+            if (valid && !cached && decodedKeys.size() < MAX_CACHED_KEYS) {
+                /* Stored under its own copy, so the cache doesn't depend on the caller's array */
+                decodedKeys.putIfAbsent(ByteBuffer.wrap(encodedPublicKey.clone()), publicKey);
+            }
+            return valid;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public PublicKey decodePublicKey(byte[] encodedPublicKey) throws GeneralSecurityException {
+        KeyFactory keyFactory = provider == null
+                ? KeyFactory.getInstance(keyAlgorithm)
+                : KeyFactory.getInstance(keyAlgorithm, provider);
+        PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(encodedPublicKey));
+        if (this == ECDSA_SECP256K1 && !isOnCurve(publicKey)) {
+            throw new GeneralSecurityException("Key isn't on " + EC_CURVE);
+        }
+        return publicKey;
+    }
+
+    private static boolean isOnCurve(PublicKey publicKey) {
+        if (!(publicKey instanceof ECPublicKey)) {
+            return false;
+        }
+        ECParameterSpec parameters = ((ECPublicKey) publicKey).getParams();
+        return parameters != null && parameters.getCurve().equals(EC_PARAMETERS.getCurve())
+                && parameters.getGenerator().equals(EC_PARAMETERS.getGenerator())
+                && parameters.getOrder().equals(EC_PARAMETERS.getOrder())
+                && parameters.getCofactor() == EC_PARAMETERS.getCofactor();
+    }
+
+    private Signature newSignature() throws GeneralSecurityException {
+        return provider == null
+                ? Signature.getInstance(signatureAlgorithm)
+                : Signature.getInstance(signatureAlgorithm, provider);
+    }
+}
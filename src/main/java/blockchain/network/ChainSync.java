@@ -0,0 +1,280 @@
+package blockchain.network;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.DifficultyAdjuster;
+import blockchain.core.Hash256;
+import blockchain.core.SignedTransaction;
+import blockchain.serialization.BinaryCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* Headers-first synchronization of a node which is behind its peers. Headers are downloaded from one peer and checked
+ * in order (hash, proof of work, link to the previous block, difficulty). Bodies of checked headers are requested
+ * in windows from all connected peers at once, each peer has a limited number of requests in flight. Received bodies
+ * are checked in parallel, in any order, and blocks are appended to the chain in order, in contiguous batches.
+ * Sync state is touched only by the node's processor thread, body checks report back to it. */
+public final class ChainSync {
+    public static final int HEADERS_PER_REQUEST = 500;
+    public static final int BODIES_PER_REQUEST = 16;
+    public static final int REQUESTS_PER_PEER = 4;
+
+    private final String name;
+    private final Blockchain blockchain;
+    private final Transport transport;
+    private final Executor processor;
+    private final ExecutorService checkers;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final DifficultyAdjuster difficultyAdjuster = new DifficultyAdjuster();
+
+    /* Blocks of the local chain followed by downloaded headers, index is block id */
+    private final List<Block> headers;
+    private final int startHeight;
+    private int difficulty;
+    private Peer headersSource;
+    private boolean headersComplete;
+
+    private final Deque<Integer> toRequest = new ArrayDeque<>();
+    /* Windows requested from each peer, in the order of requests, which is also the order of responses */
+    private final Map<Peer, Deque<List<Integer>>> requested = new HashMap<>();
+    private final Map<Integer, Integer> attempts = new HashMap<>();
+    private final Map<Integer, Block> checked = new HashMap<>();
+    private final Set<Peer> bodySources = new HashSet<>();
+    private int nextToAppend;
+    private long start;
+    private long headersTime;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChainSync.class);
+
+    ChainSync(String name, Blockchain blockchain, Transport transport, Executor processor) {
+        this.name = name;
+        this.blockchain = blockchain;
+        this.transport = transport;
+        this.processor = processor;
+        this.headers = blockchain.getBlocks(0, Integer.MAX_VALUE);
+        this.startHeight = headers.size() - 1;
+        this.difficulty = blockchain.getNumberOfZerosRequired();
+        this.nextToAppend = headers.size();
+        this.checkers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, name + "-body-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* Completes with the number of appended blocks */
+    CompletableFuture<Integer> getResult() {
+        return result;
+    }
+
+    boolean isRunning() {
+        return !result.isDone();
+    }
+
+    void start() {
+        start = System.nanoTime();
+        requestHeaders();
+    }
+
+    private void requestHeaders() {
+        List<Peer> peers = transport.getPeers();
+        if (peers.isEmpty()) {
+            finish(false, "no peers to synchronize with");
+            return;
+        }
+        headersSource = peers.get(0);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * Integer.BYTES);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(headers.size());
+            output.writeInt(HEADERS_PER_REQUEST);
+            transport.send(headersSource, MessageType.GET_HEADERS, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void onHeaders(Peer peer, List<Block> received) {
+        if (!isRunning() || peer != headersSource || headersComplete) {
+            return;
+        }
+        for (Block header : received) {
+            Block previous = headers.get(headers.size() - 1);
+            if (header.getId() != headers.size() || !Blockchain.checkHeader(header, previous, difficulty)) {
+                finish(false, "invalid header " + header.getId() + " from " + peer);
+                return;
+            }
+            headers.add(header);
+            difficulty = difficultyAdjuster.nextDifficulty(header, headers, difficulty);
+            toRequest.add(header.getId());
+        }
+        if (received.size() == HEADERS_PER_REQUEST) {
+            requestHeaders();
+        } else {
+            headersComplete = true;
+            headersTime = System.nanoTime() - start;
+        }
+        requestBodies();
+        appendChecked();
+    }
+
+    /* Windows of consecutive ids are handed to peers in turns, while they have free request slots */
+    private void requestBodies() {
+        if (!isRunning()) {
+            return;
+        }
+        List<Peer> peers = transport.getPeers();
+        boolean sent = true;
+        while (!toRequest.isEmpty() && sent) {
+            sent = false;
+            for (Peer peer : peers) {
+                Deque<List<Integer>> windows = requested.computeIfAbsent(peer, key -> new ArrayDeque<>());
+                if (toRequest.isEmpty() || windows.size() >= REQUESTS_PER_PEER) {
+                    continue;
+                }
+                List<Integer> window = new ArrayList<>(BODIES_PER_REQUEST);
+                while (window.size() < BODIES_PER_REQUEST && !toRequest.isEmpty()) {
+                    window.add(toRequest.poll());
+                }
+                windows.add(window);
+                transport.send(peer, MessageType.GET_BLOCK_BODIES, encodeIds(window));
+                sent = true;
+            }
+        }
+    }
+
+    /* Bodies response: number of blocks, then id, hash and transactions of each. Bodies which don't match the
+     * downloaded header, e.g. because the peer is on another branch, are requested again. */
+    void onBodies(Peer peer, DataInput input) throws IOException {
+        Deque<List<Integer>> windows = requested.get(peer);
+        if (!isRunning() || windows == null || windows.isEmpty()) {
+            return;
+        }
+        Set<Integer> unanswered = new HashSet<>(windows.poll());
+        int count = BinaryCodec.readCount(input);
+        for (int i = 0; i < count; i++) {
+            int id = input.readInt();
+            Hash256 hash = BinaryCodec.readHash(input);
+            List<SignedTransaction> transactions = BinaryCodec.readTransactions(input);
+            if (!unanswered.contains(id) || !headers.get(id).getBlockHash().equals(hash)) {
+                continue;
+            }
+            unanswered.remove(id);
+            Block block = headers.get(id).withTransactions(transactions);
+            checkers.execute(() -> {
+                boolean valid = blockchain.checkBody(block);
+                processor.execute(() -> onBodyChecked(block, valid, peer));
+            });
+        }
+        unanswered.forEach(this::retry);
+        requestBodies();
+    }
+
+    private void onBodyChecked(Block block, boolean valid, Peer peer) {
+        if (!isRunning()) {
+            return;
+        }
+        if (!valid) {
+            LOGGER.warn(name + " got invalid body of block " + block.getId() + " from " + peer);
+            retry(block.getId());
+            requestBodies();
+            return;
+        }
+        bodySources.add(peer);
+        checked.put(block.getId(), block);
+        appendChecked();
+    }
+
+    private void retry(int id) {
+        int tries = attempts.merge(id, 1, Integer::sum);
+        if (tries > Math.max(1, transport.getPeers().size())) {
+            finish(false, "no peer has a valid body of block " + id);
+            return;
+        }
+        toRequest.addFirst(id);
+    }
+
+    /* A rejected batch is rolled back by the blockchain as a whole, so only an appended one moves nextToAppend */
+    private void appendChecked() {
+        if (!isRunning()) {
+            return;
+        }
+        List<Block> batch = new ArrayList<>();
+        while (checked.containsKey(nextToAppend + batch.size())) {
+            batch.add(checked.remove(nextToAppend + batch.size()));
+        }
+        if (!batch.isEmpty() && !blockchain.appendCheckedBlocks(batch)) {
+            finish(false, "blocks " + batch.get(0).getId() + "-" + batch.get(batch.size() - 1).getId() + " can't be appended");
+            return;
+        }
+        nextToAppend += batch.size();
+        if (headersComplete && nextToAppend == headers.size()) {
+            finish(true, null);
+        }
+    }
+
+    /* Requests of a lost peer go to others, headers are downloaded again from another peer if needed */
+    void onPeerLost(Peer peer) {
+        if (!isRunning()) {
+            return;
+        }
+        Deque<List<Integer>> windows = requested.remove(peer);
+        if (windows != null) {
+            windows.forEach(window -> window.forEach(this::retry));
+        }
+        if (peer == headersSource && !headersComplete) {
+            requestHeaders();
+        }
+        requestBodies();
+    }
+
+    /* Called once, later calls, e.g. from retries of the rest of a response, are ignored */
+    private void finish(boolean success, String reason) {
+        if (!isRunning()) {
+            return;
+        }
+        int appended = nextToAppend - 1 - startHeight;
+        checkers.shutdown();
+        if (!success) {
+            LOGGER.warn(name + " stopped synchronization after " + appended + " blocks, " + reason);
+            result.complete(appended);
+            return;
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        LOGGER.info(String.format("%s synchronized %d blocks from %d peers in %.3f s (headers %.3f s), %.1f blocks/s",
+                name, appended, bodySources.size(), seconds, headersTime / 1e9, appended / seconds));
+        result.complete(appended);
+    }
+
+    private static byte[] encodeIds(List<Integer> ids) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES * (ids.size() + 1));
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(ids.size());
+            for (int id : ids) {
+                output.writeInt(id);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
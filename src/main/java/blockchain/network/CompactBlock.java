@@ -0,0 +1,103 @@
+package blockchain.network;
+
+import blockchain.core.Block;
+import blockchain.core.SignedTransaction;
+import blockchain.serialization.BinaryCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Block announced as its header and short ids of its transactions, instead of full transactions. Short id is the first
+ * 8 bytes of a transaction id. Receiver rebuilds the block from its pending transactions and asks the sender only
+ * for the ones it doesn't have. Short ids aren't salted, the rare collision is handled like a missing transaction. */
+public final class CompactBlock {
+    public static final int MAX_TRANSACTIONS = Transport.MAX_MESSAGE_SIZE / Long.BYTES;
+
+    private final Block header;
+    private final long[] shortIds;
+
+    private CompactBlock(Block header, long[] shortIds) {
+        this.header = header;
+        this.shortIds = shortIds;
+    }
+
+    public static CompactBlock of(Block block) {
+        List<SignedTransaction> transactions = block.getTransactions();
+        long[] shortIds = new long[transactions.size()];
+        for (int i = 0; i < shortIds.length; i++) {
+            shortIds[i] = shortId(transactions.get(i));
+        }
+        return new CompactBlock(block, shortIds);
+    }
+
+    public static long shortId(SignedTransaction transaction) {
+        return transaction.getId().getLeadingLong();
+    }
+
+    public void write(DataOutput output) throws IOException {
+        BinaryCodec.writeBlockHeader(output, header);
+        output.writeInt(shortIds.length);
+        for (long shortId : shortIds) {
+            output.writeLong(shortId);
+        }
+    }
+
+    public static CompactBlock read(DataInput input) throws IOException {
+        Block header = BinaryCodec.readBlockHeader(input)
+                .setTransactions(new ArrayList<>())
+                .build();
+        int count = BinaryCodec.readCount(input);
+        /* Array is allocated upfront, so the count can't claim more short ids than a message can carry */
+        if (count > MAX_TRANSACTIONS) {
+            throw new IOException("Invalid number of transactions " + count);
+        }
+        long[] shortIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            shortIds[i] = input.readLong();
+        }
+        return new CompactBlock(header, shortIds);
+    }
+
+    public Block getHeader() {
+        return header;
+    }
+
+    public int getTransactionsCount() {
+        return shortIds.length;
+    }
+
+    /* Fills slots of transactions found among given ones, returns indexes of the slots left empty */
+    public int[] fill(Collection<SignedTransaction> available, SignedTransaction[] slots) {
+        Map<Long, SignedTransaction> byShortId = new HashMap<>(available.size() * 2);
+        Set<Long> ambiguous = new HashSet<>();
+        for (SignedTransaction transaction : available) {
+            /* Colliding short ids are ambiguous, such transactions are requested in full */
+            if (byShortId.putIfAbsent(shortId(transaction), transaction) != null) {
+                ambiguous.add(shortId(transaction));
+            }
+        }
+        ambiguous.forEach(byShortId::remove);
+        int[] missing = new int[shortIds.length];
+        int missingCount = 0;
+        for (int i = 0; i < shortIds.length; i++) {
+            slots[i] = byShortId.get(shortIds[i]);
+            if (slots[i] == null) {
+                missing[missingCount++] = i;
+            }
+        }
+        return Arrays.copyOf(missing, missingCount);
+    }
+
+    public Block toBlock(SignedTransaction[] transactions) {
+        return header.withTransactions(new ArrayList<>(Arrays.asList(transactions)));
+    }
+}
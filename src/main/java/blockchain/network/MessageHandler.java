@@ -0,0 +1,12 @@
+package blockchain.network;
+
+/* Receives messages of a transport. Called on the transport's selector thread, so it should hand longer work off. */
+public interface MessageHandler {
+    void onMessage(Peer peer, MessageType type, byte[] payload);
+
+    default void onConnected(Peer peer) {
+    }
+
+    default void onDisconnected(Peer peer) {
+    }
+}
@@ -0,0 +1,36 @@
+package blockchain.network;
+
+/* Type of a network message, sent as the first byte of its frame */
+public enum MessageType {
+    TRANSACTION(1),
+    BLOCK(2),
+    COMPACT_BLOCK(3),
+    GET_BLOCK_TRANSACTIONS(4),
+    BLOCK_TRANSACTIONS(5),
+    INVENTORY(6),
+    GET_TRANSACTIONS(7),
+    TRANSACTIONS(8),
+    GET_HEADERS(9),
+    HEADERS(10),
+    GET_BLOCK_BODIES(11),
+    BLOCK_BODIES(12);
+
+    private final int id;
+
+    MessageType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public static MessageType fromId(int id) {
+        for (MessageType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown message type " + id);
+    }
+}
@@ -0,0 +1,778 @@
+package blockchain.network;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.SignedTransaction;
+import blockchain.core.TransactionResult;
+import blockchain.serialization.BinaryCodec;
+import blockchain.storage.FileRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Participant of an in-process network. Each node has its own blockchain (blocks, pending transactions, difficulty)
+ * and a transport. Transactions and blocks accepted by a node are flooded to all its peers, each one is handled
+ * at most once per node. Received messages are processed on a single thread, in arrival order, so validation
+ * doesn't hold the selector thread up. Arrival times (System.nanoTime) of recent items are kept to measure propagation.
+ * A transaction id is remembered as seen only once the transaction is accepted. Rejected transactions are remembered
+ * with their witness until the next block, as their validity may change with it, so a copy with a different
+ * signature sent under the same id can't keep the valid one out.
+ * With compact blocks enabled blocks are relayed as CompactBlock, transactions missing from the pending list are
+ * requested from the peer which announced the block. Full blocks are accepted either way.
+ * With inventory batching enabled transactions are announced by ids, collected per peer and sent every flush interval
+ * or once a batch is full, peers ask for the ids they haven't seen. Ids a peer already knows are never announced to it
+ * again. Otherwise full transactions are pushed to all peers right away.
+ * A node which is behind can synchronize with ChainSync, block announcements are ignored until it's done.
+ * Bodies kept in a block store on disk are served with zero copy, encoded bytes go from the data file to the socket. */
+public class Node implements MessageHandler, Closeable {
+    /* Number of recently relayed blocks kept to answer requests for their transactions */
+    public static final int RELAYED_BLOCKS_CAPACITY = 64;
+    /* Number of recently accepted transactions kept to answer requests for them */
+    public static final int RELAYED_TRANSACTIONS_CAPACITY = 10_000;
+    /* An id requested from one peer can be requested from another one after this time */
+    public static final long TRANSACTION_REQUEST_TIMEOUT = 2_000_000_000L; //nanoseconds
+    /* Missing transactions of a compact block are asked from another peer which announced it after this time */
+    public static final long BLOCK_TRANSACTIONS_TIMEOUT = 2_000_000_000L; //nanoseconds
+    /* Numbers of recent ids remembered as seen, with arrival times */
+    public static final int SEEN_TRANSACTIONS_CAPACITY = 100_000;
+    public static final int SEEN_BLOCKS_CAPACITY = 10_000;
+    /* Number of transactions rejected since the last block which are remembered */
+    public static final int REJECTED_TRANSACTIONS_CAPACITY = 10_000;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String name;
+    private final boolean compactBlocks;
+    private final int inventoryBatchSize;
+    private final Blockchain blockchain;
+    private final Transport transport;
+    private final ScheduledExecutorService processor;
+    private final Set<Hash256> seenTransactions = Collections.newSetFromMap(recent(SEEN_TRANSACTIONS_CAPACITY));
+    private final Set<Hash256> seenBlocks = Collections.newSetFromMap(recent(SEEN_BLOCKS_CAPACITY));
+    private final Map<Hash256, SignedTransaction> rejectedTransactions = recent(REJECTED_TRANSACTIONS_CAPACITY);
+    private final Map<Hash256, Long> transactionArrivals = recent(SEEN_TRANSACTIONS_CAPACITY);
+    private final Map<Hash256, Long> blockArrivals = recent(SEEN_BLOCKS_CAPACITY);
+    private final Map<Hash256, Block> relayedBlocks = recent(RELAYED_BLOCKS_CAPACITY);
+    private final Map<Hash256, SignedTransaction> relayedTransactions = recent(RELAYED_TRANSACTIONS_CAPACITY);
+    private final Map<Peer, PeerInventory> inventories = new ConcurrentHashMap<>();
+    /* Requested transaction ids mapped to System.nanoTime of the request, touched only by the processor thread */
+    private final Map<Hash256, Long> requestedTransactions = new HashMap<>();
+    private volatile ChainSync sync;
+    private volatile boolean zeroCopyServing = true;
+    private final AtomicLong transactionsAccepted = new AtomicLong();
+    private final AtomicLong processingCpuTime = new AtomicLong();
+    /* Compact blocks waiting for requested transactions, touched only by the processor thread */
+    private final Map<Hash256, IncompleteBlock> incompleteBlocks = new HashMap<>();
+    private final AtomicLong compactBlocksReceived = new AtomicLong();
+    private final AtomicLong compactBlocksCompleteFromPool = new AtomicLong();
+    private final AtomicLong transactionsRequested = new AtomicLong();
+    private final List<Long> reconstructionTimes = Collections.synchronizedList(new ArrayList<>());
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Node.class);
+
+    public Node(String name) throws IOException {
+        this(name, true);
+    }
+
+    public Node(String name, boolean compactBlocks) throws IOException {
+        this(name, compactBlocks, 0, 0);
+    }
+
+    /* Batch size 0 disables inventories */
+    public Node(String name, boolean compactBlocks, int inventoryBatchSize, long inventoryFlushInterval) throws IOException {
+        this.name = name;
+        this.compactBlocks = compactBlocks;
+        this.inventoryBatchSize = inventoryBatchSize;
+        this.blockchain = Blockchain.newInstance();
+        this.processor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-processor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (inventoryBatchSize > 0) {
+            processor.scheduleWithFixedDelay(this::flushInventories, inventoryFlushInterval, inventoryFlushInterval, TimeUnit.MILLISECONDS);
+        }
+        if (compactBlocks) {
+            long period = TimeUnit.NANOSECONDS.toMillis(BLOCK_TRANSACTIONS_TIMEOUT) / 4;
+            processor.scheduleWithFixedDelay(this::expireBlockRequests, period, period, TimeUnit.MILLISECONDS);
+        }
+        this.transport = new Transport(name, this);
+    }
+
+    /* Map which keeps only the most recently added entries */
+    private static <K, V> Map<K, V> recent(int capacity) {
+        return Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    public void connect(Node other) throws IOException {
+        transport.connect(other.transport.getAddress());
+    }
+
+    /* Entry point for transactions created by clients of this node */
+    public boolean submitTransaction(SignedTransaction transaction) {
+        if (isKnown(transaction)) {
+            return false;
+        }
+        long start = THREADS.getCurrentThreadCpuTime();
+        boolean accepted = acceptTransaction(transaction, null);
+        processingCpuTime.addAndGet(THREADS.getCurrentThreadCpuTime() - start);
+        return accepted;
+    }
+
+    /* Announces a block which was already appended to this node's chain, e.g. by its miner */
+    public void publishBlock(Block block) {
+        if (seenBlocks.add(block.getBlockHash())) {
+            blockArrivals.put(block.getBlockHash(), System.nanoTime());
+            rejectedTransactions.clear();
+            relay(block, null);
+        }
+    }
+
+    /* Keeps transactions of this node's blocks in a body store at a given path, see Blockchain.useLazyTransactions */
+    public void useBlockStore(String path, long cacheCapacity) {
+        blockchain.useLazyTransactions(path, cacheCapacity);
+    }
+
+    /* Without zero copy, bodies are always loaded as transactions and encoded again */
+    public void setZeroCopyServing(boolean zeroCopyServing) {
+        this.zeroCopyServing = zeroCopyServing;
+    }
+
+    /* Downloads blocks the peers have and this node doesn't, completes with the number of appended blocks */
+    public CompletableFuture<Integer> synchronize() {
+        ChainSync newSync = new ChainSync(name, blockchain, transport, processor);
+        sync = newSync;
+        processor.execute(newSync::start);
+        return newSync.getResult();
+    }
+
+    private boolean isSyncing() {
+        ChainSync current = sync;
+        return current != null && current.isRunning();
+    }
+
+    @Override
+    public void onMessage(Peer peer, MessageType type, byte[] payload) {
+        processor.execute(() -> {
+            long start = THREADS.getCurrentThreadCpuTime();
+            process(peer, type, payload);
+            processingCpuTime.addAndGet(THREADS.getCurrentThreadCpuTime() - start);
+        });
+    }
+
+    @Override
+    public void onConnected(Peer peer) {
+        inventories.put(peer, new PeerInventory());
+    }
+
+    /* Blocks waiting for transactions from a lost peer are asked from another peer which announced them */
+    @Override
+    public void onDisconnected(Peer peer) {
+        inventories.remove(peer);
+        processor.execute(() -> {
+            if (isSyncing()) {
+                sync.onPeerLost(peer);
+            }
+        });
+        processor.execute(() -> new ArrayList<>(incompleteBlocks.entrySet()).forEach(entry -> {
+            entry.getValue().announcers.remove(peer);
+            if (entry.getValue().source == peer) {
+                retry(entry.getKey(), entry.getValue());
+            }
+        }));
+    }
+
+    private void process(Peer peer, MessageType type, byte[] payload) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            switch (type) {
+                case TRANSACTION:
+                    SignedTransaction transaction = BinaryCodec.readTransaction(input);
+                    if (!isKnown(transaction)) {
+                        acceptTransaction(transaction, peer);
+                    }
+                    break;
+                case BLOCK:
+                    receiveBlock(BinaryCodec.readBlock(input), peer);
+                    break;
+                case COMPACT_BLOCK:
+                    receiveCompactBlock(CompactBlock.read(input), peer);
+                    break;
+                case GET_BLOCK_TRANSACTIONS:
+                    sendBlockTransactions(input, peer);
+                    break;
+                case BLOCK_TRANSACTIONS:
+                    receiveBlockTransactions(input, peer);
+                    break;
+                case INVENTORY:
+                    receiveInventory(BinaryCodec.readHashes(input), peer);
+                    break;
+                case GET_TRANSACTIONS:
+                    sendTransactions(BinaryCodec.readHashes(input), peer);
+                    break;
+                case TRANSACTIONS:
+                    receiveTransactions(BinaryCodec.readTransactions(input), peer);
+                    break;
+                case GET_HEADERS:
+                    sendHeaders(input.readInt(), input.readInt(), peer);
+                    break;
+                case HEADERS:
+                    if (isSyncing()) {
+                        sync.onHeaders(peer, readHeaders(input));
+                    }
+                    break;
+                case GET_BLOCK_BODIES:
+                    sendBodies(input, peer);
+                    break;
+                case BLOCK_BODIES:
+                    if (isSyncing()) {
+                        sync.onBodies(peer, input);
+                    }
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(name + " dropped malformed " + type + " message from " + peer, e);
+        }
+    }
+
+    /* Accepted transaction, or one rejected since the last block with the same signature */
+    private boolean isKnown(SignedTransaction transaction) {
+        if (seenTransactions.contains(transaction.getId())) {
+            return true;
+        }
+        SignedTransaction rejected = rejectedTransactions.get(transaction.getId());
+        return rejected != null && rejected.hasSameWitness(transaction);
+    }
+
+    private boolean acceptTransaction(SignedTransaction transaction, Peer source) {
+        if (!blockchain.addTransaction(transaction)) {
+            rejectedTransactions.put(transaction.getId(), transaction);
+            return false;
+        }
+        relayAccepted(transaction, source);
+        return true;
+    }
+
+    /* Transactions of one message are validated and added to the pending list as one batch */
+    private void acceptTransactions(List<SignedTransaction> transactions, Peer source) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        List<TransactionResult> results = blockchain.addTransactions(transactions);
+        for (int i = 0; i < transactions.size(); i++) {
+            if (results.get(i) == TransactionResult.ACCEPTED) {
+                relayAccepted(transactions.get(i), source);
+            } else {
+                rejectedTransactions.put(transactions.get(i).getId(), transactions.get(i));
+            }
+        }
+    }
+
+    private void relayAccepted(SignedTransaction transaction, Peer source) {
+        seenTransactions.add(transaction.getId());
+        transactionArrivals.put(transaction.getId(), System.nanoTime());
+        transactionsAccepted.incrementAndGet();
+        if (inventoryBatchSize > 0) {
+            announce(transaction);
+        } else {
+            transport.broadcast(MessageType.TRANSACTION, encode(transaction), source);
+        }
+    }
+
+    /* The peer a transaction came from already knows it, so it's skipped by its inventory */
+    private void announce(SignedTransaction transaction) {
+        relayedTransactions.put(transaction.getId(), transaction);
+        inventories.forEach((peer, inventory) -> {
+            List<Hash256> batch = inventory.announce(transaction.getId(), inventoryBatchSize);
+            if (batch != null) {
+                sendHashes(peer, MessageType.INVENTORY, batch);
+            }
+        });
+    }
+
+    private void flushInventories() {
+        long start = THREADS.getCurrentThreadCpuTime();
+        long now = System.nanoTime();
+        requestedTransactions.values().removeIf(requested -> now - requested > TRANSACTION_REQUEST_TIMEOUT);
+        inventories.forEach((peer, inventory) -> {
+            List<Hash256> batch = inventory.drain();
+            if (!batch.isEmpty()) {
+                sendHashes(peer, MessageType.INVENTORY, batch);
+            }
+        });
+        processingCpuTime.addAndGet(THREADS.getCurrentThreadCpuTime() - start);
+    }
+
+    private void receiveInventory(List<Hash256> ids, Peer peer) {
+        PeerInventory inventory = inventories.get(peer);
+        long now = System.nanoTime();
+        List<Hash256> wanted = new ArrayList<>();
+        for (Hash256 id : ids) {
+            if (inventory != null) {
+                inventory.markKnown(id);
+            }
+            if (seenTransactions.contains(id)) {
+                continue;
+            }
+            Long requested = requestedTransactions.get(id);
+            if (requested == null || now - requested > TRANSACTION_REQUEST_TIMEOUT) {
+                requestedTransactions.put(id, now);
+                wanted.add(id);
+            }
+        }
+        if (!wanted.isEmpty()) {
+            sendHashes(peer, MessageType.GET_TRANSACTIONS, wanted);
+        }
+    }
+
+    /* Transactions which are no longer kept are left out of the answer */
+    private void sendTransactions(List<Hash256> ids, Peer peer) {
+        List<SignedTransaction> found = new ArrayList<>(ids.size());
+        for (Hash256 id : ids) {
+            SignedTransaction transaction = relayedTransactions.get(id);
+            if (transaction != null) {
+                found.add(transaction);
+            }
+        }
+        if (!found.isEmpty()) {
+            transport.send(peer, MessageType.TRANSACTIONS, encode(found));
+        }
+    }
+
+    private void receiveTransactions(List<SignedTransaction> transactions, Peer peer) {
+        PeerInventory inventory = inventories.get(peer);
+        List<SignedTransaction> unseen = new ArrayList<>(transactions.size());
+        for (SignedTransaction transaction : transactions) {
+            Hash256 id = transaction.getId();
+            requestedTransactions.remove(id);
+            if (inventory != null) {
+                inventory.markKnown(id);
+            }
+            if (!isKnown(transaction)) {
+                unseen.add(transaction);
+            }
+        }
+        acceptTransactions(unseen, peer);
+    }
+
+    /* Transactions of the block which didn't reach this node yet are validated and added to the pending list first,
+     * a block extending the chain is appended only if all of its transactions are pending. Blocks of other branches
+     * are kept by the blockchain, they're relayed only once their branch becomes the main chain. The hash doesn't
+     * cover witnesses, so a block is remembered as seen only once appended, a copy with a bad signature doesn't
+     * shadow the valid one. */
+    private void receiveBlock(Block block, Peer source) {
+        if (isSyncing() || seenBlocks.contains(block.getBlockHash()) || !blockchain.isCandidate(block)) {
+            return;
+        }
+        appendBlock(block, source);
+    }
+
+    private boolean appendBlock(Block block, Peer source) {
+        List<SignedTransaction> unseen = new ArrayList<>();
+        for (SignedTransaction transaction : block.getTransactions()) {
+            if (!isKnown(transaction)) {
+                unseen.add(transaction);
+            }
+        }
+        acceptTransactions(unseen, source);
+        if (blockchain.appendNextBlock(block)) {
+            seenBlocks.add(block.getBlockHash());
+            block.getTransactions().forEach(transaction -> seenTransactions.add(transaction.getId()));
+            blockArrivals.put(block.getBlockHash(), System.nanoTime());
+            rejectedTransactions.clear();
+            relay(block, source);
+            return true;
+        }
+        LOGGER.debug(name + " rejected block " + block.getId() + " from " + source);
+        return false;
+    }
+
+    private void relay(Block block, Peer except) {
+        if (compactBlocks) {
+            relayedBlocks.put(block.getBlockHash(), block);
+            transport.broadcast(MessageType.COMPACT_BLOCK, encode(CompactBlock.of(block)), except);
+        } else {
+            transport.broadcast(MessageType.BLOCK, encode(block), except);
+        }
+    }
+
+    /* A compact block is remembered as seen only once it's appended. While its transactions are requested, peers
+     * which announce it too are kept to ask them if the request fails, times out or gives an invalid block. */
+    private void receiveCompactBlock(CompactBlock compactBlock, Peer source) {
+        Block header = compactBlock.getHeader();
+        Hash256 hash = header.getBlockHash();
+        if (isSyncing() || seenBlocks.contains(hash)) {
+            return;
+        }
+        IncompleteBlock requested = incompleteBlocks.get(hash);
+        if (requested != null) {
+            if (requested.source != source && !requested.announcers.contains(source)) {
+                requested.announcers.add(source);
+            }
+            return;
+        }
+        compactBlocksReceived.incrementAndGet();
+        /* A known block or one forking off too deep would be dropped anyway, its transactions aren't worth asking for */
+        if (!blockchain.isCandidate(header)) {
+            LOGGER.debug(name + " rejected block " + header.getId() + " from " + source);
+            return;
+        }
+        long start = System.nanoTime();
+        SignedTransaction[] transactions = new SignedTransaction[compactBlock.getTransactionsCount()];
+        int[] missing = compactBlock.fill(blockchain.getTransactionsToPublish(), transactions);
+        if (missing.length == 0) {
+            compactBlocksCompleteFromPool.incrementAndGet();
+            completeBlock(compactBlock, transactions, start, source);
+            return;
+        }
+        IncompleteBlock incomplete = new IncompleteBlock(compactBlock, transactions, missing, start, source);
+        incompleteBlocks.put(hash, incomplete);
+        request(hash, incomplete);
+    }
+
+    private void request(Hash256 hash, IncompleteBlock incomplete) {
+        transactionsRequested.addAndGet(incomplete.missing.length);
+        incomplete.requested = System.nanoTime();
+        transport.send(incomplete.source, MessageType.GET_BLOCK_TRANSACTIONS, encodeRequest(hash, incomplete.missing));
+    }
+
+    /* Asks the next peer which announced the block. Without one the block is forgotten, so that a later announcement
+     * starts over. */
+    private void retry(Hash256 hash, IncompleteBlock incomplete) {
+        Peer next = incomplete.announcers.poll();
+        if (next == null) {
+            incompleteBlocks.remove(hash);
+            LOGGER.debug(name + " gave up on transactions of block " + incomplete.compactBlock.getHeader().getId());
+            return;
+        }
+        for (int index : incomplete.missing) {
+            incomplete.transactions[index] = null;
+        }
+        incomplete.source = next;
+        incompleteBlocks.put(hash, incomplete);
+        request(hash, incomplete);
+    }
+
+    private void expireBlockRequests() {
+        long now = System.nanoTime();
+        new ArrayList<>(incompleteBlocks.entrySet()).forEach(entry -> {
+            if (now - entry.getValue().requested > BLOCK_TRANSACTIONS_TIMEOUT) {
+                retry(entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    private boolean completeBlock(CompactBlock compactBlock, SignedTransaction[] transactions, long start, Peer source) {
+        if (appendBlock(compactBlock.toBlock(transactions), source)) {
+            reconstructionTimes.add(System.nanoTime() - start);
+            return true;
+        }
+        return false;
+    }
+
+    /* Request: block hash, number of indexes, indexes. Requests for unknown blocks or with indexes out of range aren't
+     * answered, the requesting peer asks another one after a timeout. */
+    private void sendBlockTransactions(DataInputStream input, Peer peer) throws IOException {
+        Hash256 blockHash = BinaryCodec.readHash(input);
+        int count = BinaryCodec.readCount(input);
+        Block block = relayedBlocks.get(blockHash);
+        if (block == null) {
+            LOGGER.debug(name + " got a request for transactions of unknown block from " + peer);
+            return;
+        }
+        List<SignedTransaction> transactions = block.getTransactions();
+        List<SignedTransaction> requested = new ArrayList<>(BinaryCodec.initialCapacity(count));
+        for (int i = 0; i < count; i++) {
+            int index = input.readInt();
+            if (index < 0 || index >= transactions.size()) {
+                LOGGER.debug(name + " got a request for transaction " + index + " out of block " + block.getId() + " from " + peer);
+                return;
+            }
+            requested.add(transactions.get(index));
+        }
+        transport.send(peer, MessageType.BLOCK_TRANSACTIONS, encodeResponse(blockHash, requested));
+    }
+
+    /* Only an answer of the peer asked last is used, a wrong one or a block which turns out invalid is asked again */
+    private void receiveBlockTransactions(DataInputStream input, Peer peer) throws IOException {
+        Hash256 blockHash = BinaryCodec.readHash(input);
+        List<SignedTransaction> received = BinaryCodec.readTransactions(input);
+        IncompleteBlock incomplete = incompleteBlocks.get(blockHash);
+        if (incomplete == null || incomplete.source != peer) {
+            return;
+        }
+        if (received.size() != incomplete.missing.length) {
+            LOGGER.debug(name + " got " + received.size() + " of " + incomplete.missing.length + " requested transactions from " + peer);
+            retry(blockHash, incomplete);
+            return;
+        }
+        for (int i = 0; i < received.size(); i++) {
+            incomplete.transactions[incomplete.missing[i]] = received.get(i);
+        }
+        incompleteBlocks.remove(blockHash);
+        if (!completeBlock(incomplete.compactBlock, incomplete.transactions, incomplete.start, peer) && !isKnownBlock(incomplete)) {
+            retry(blockHash, incomplete);
+        }
+    }
+
+    private boolean isKnownBlock(IncompleteBlock incomplete) {
+        return !blockchain.isCandidate(incomplete.compactBlock.getHeader());
+    }
+
+    private static byte[] encode(SignedTransaction transaction) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            DataOutputStream output = new DataOutputStream(bytes);
+            BinaryCodec.writeTransaction(output, transaction, new byte[512]);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(Block block) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream output = new DataOutputStream(bytes);
+            BinaryCodec.writeBlock(output, block);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Headers response: number of headers, then headers from a requested id on */
+    private void sendHeaders(int fromId, int maxCount, Peer peer) {
+        List<Block> blocks = blockchain.getBlocks(Math.max(1, fromId), Math.min(maxCount, ChainSync.HEADERS_PER_REQUEST));
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * blocks.size() + Integer.BYTES);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(blocks.size());
+            for (Block block : blocks) {
+                BinaryCodec.writeBlockHeader(output, block);
+            }
+            output.flush();
+            transport.send(peer, MessageType.HEADERS, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Block> readHeaders(DataInputStream input) throws IOException {
+        int count = BinaryCodec.readCount(input);
+        List<Block> headers = new ArrayList<>(Math.min(count, ChainSync.HEADERS_PER_REQUEST));
+        for (int i = 0; i < count; i++) {
+            headers.add(BinaryCodec.readBlockHeader(input).build());
+        }
+        return headers;
+    }
+
+    /* Bodies request: number of ids and the ids. Blocks this node doesn't have are left out of the response.
+     * Stored bodies are the same bytes as encoded transactions, so they're sent as file regions, next to small
+     * buffers with ids and hashes. Other bodies are encoded into those buffers. */
+    private void sendBodies(DataInputStream input, Peer peer) throws IOException {
+        /* Ids over a window aren't answered, a request can't make this node read its whole store */
+        int count = Math.min(BinaryCodec.readCount(input), ChainSync.BODIES_PER_REQUEST);
+        List<Block> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            found.addAll(blockchain.getBlocks(Math.max(1, input.readInt()), 1));
+        }
+        List<Object> parts = new ArrayList<>(2 * found.size() + 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(found.size());
+        for (Block block : found) {
+            output.writeInt(block.getId());
+            output.write(block.getBlockHash().getBytes());
+            FileRegion stored = zeroCopyServing ? blockchain.getStoredBody(block.getId()) : null;
+            if (stored != null) {
+                output.flush();
+                parts.add(bytes.toByteArray());
+                parts.add(stored);
+                bytes.reset();
+            } else {
+                BinaryCodec.writeTransactions(output, block.getTransactions());
+            }
+        }
+        output.flush();
+        parts.add(bytes.toByteArray());
+        transport.send(peer, MessageType.BLOCK_BODIES, parts);
+    }
+
+    private static byte[] encode(List<SignedTransaction> transactions) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512 * transactions.size() + Integer.BYTES);
+            DataOutputStream output = new DataOutputStream(bytes);
+            BinaryCodec.writeTransactions(output, transactions);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void sendHashes(Peer peer, MessageType type, List<Hash256> hashes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES + Hash256.LENGTH * hashes.size());
+            DataOutputStream output = new DataOutputStream(bytes);
+            BinaryCodec.writeHashes(output, hashes);
+            output.flush();
+            transport.send(peer, type, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(CompactBlock compactBlock) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            DataOutputStream output = new DataOutputStream(bytes);
+            compactBlock.write(output);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeRequest(Hash256 blockHash, int[] indexes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Hash256.LENGTH + Integer.BYTES * (indexes.length + 1));
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.write(blockHash.getBytes());
+            output.writeInt(indexes.length);
+            for (int index : indexes) {
+                output.writeInt(index);
+            }
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeResponse(Hash256 blockHash, List<SignedTransaction> transactions) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512 * (transactions.size() + 1));
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.write(blockHash.getBytes());
+            BinaryCodec.writeTransactions(output, transactions);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Blockchain getBlockchain() {
+        return blockchain;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /* Hash of each transaction and block this node accepted, mapped to System.nanoTime of the acceptance */
+    public Map<Hash256, Long> getTransactionArrivals() {
+        return transactionArrivals;
+    }
+
+    public Map<Hash256, Long> getBlockArrivals() {
+        return blockArrivals;
+    }
+
+    public long getTransactionsAccepted() {
+        return transactionsAccepted.get();
+    }
+
+    /* CPU time spent handling messages, submitted transactions and inventory flushes, in nanoseconds */
+    public long getProcessingCpuTime() {
+        return processingCpuTime.get();
+    }
+
+    public long getCompactBlocksReceived() {
+        return compactBlocksReceived.get();
+    }
+
+    /* Compact blocks rebuilt without asking for any transaction */
+    public long getCompactBlocksCompleteFromPool() {
+        return compactBlocksCompleteFromPool.get();
+    }
+
+    public long getTransactionsRequested() {
+        return transactionsRequested.get();
+    }
+
+    /* Nanoseconds from receiving a compact block to appending the rebuilt block, including the round trip
+     * for missing transactions */
+    public List<Long> getReconstructionTimes() {
+        return reconstructionTimes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+        processor.shutdownNow();
+        blockchain.closeBodyStorage();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /* Touched only by the processor thread */
+    private static final class IncompleteBlock {
+        private final CompactBlock compactBlock;
+        private final SignedTransaction[] transactions;
+        private final int[] missing;
+        private final long start;
+        /* Peer asked for the missing transactions, other peers which announced the block */
+        private Peer source;
+        private final Deque<Peer> announcers = new ArrayDeque<>();
+        private long requested;
+
+        private IncompleteBlock(CompactBlock compactBlock, SignedTransaction[] transactions, int[] missing, long start, Peer source) {
+            this.compactBlock = compactBlock;
+            this.transactions = transactions;
+            this.missing = missing;
+            this.start = start;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package blockchain.network;
+
+import blockchain.storage.FileRegion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/* Frame queued for sending. Apart from buffers it may contain file regions, which are transferred from the file
+ * straight to the socket. Keeps its progress, so it can be written over several selector rounds. */
+final class OutgoingMessage {
+    private final Object[] parts;
+    private final long size;
+    private int current;
+    private long regionTransferred;
+
+    private OutgoingMessage(Object[] parts, long size) {
+        this.parts = parts;
+        this.size = size;
+    }
+
+    static OutgoingMessage of(ByteBuffer frame) {
+        return new OutgoingMessage(new Object[]{frame}, frame.remaining());
+    }
+
+    /* Parts are byte arrays or file regions, they are preceded by the frame header */
+    static OutgoingMessage of(MessageType type, List<?> parts, int maxMessageSize) {
+        long payloadSize = 0;
+        Object[] frameParts = new Object[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            Object part = parts.get(i);
+            if (part instanceof byte[] bytes) {
+                payloadSize += bytes.length;
+                frameParts[i + 1] = ByteBuffer.wrap(bytes);
+            } else if (part instanceof FileRegion region) {
+                payloadSize += region.getCount();
+                frameParts[i + 1] = region;
+            } else {
+                throw new IllegalArgumentException("Unsupported message part " + part);
+            }
+        }
+        if (payloadSize + 1 > maxMessageSize) {
+            throw new IllegalArgumentException("Message of " + payloadSize + " bytes exceeds the limit.");
+        }
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1);
+        header.putInt((int) payloadSize + 1)
+                .put((byte) type.getId())
+                .flip();
+        frameParts[0] = header;
+        return new OutgoingMessage(frameParts, header.remaining() + payloadSize);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /* Returns true once the whole message is written */
+    boolean writeTo(SocketChannel channel) throws IOException {
+        while (current < parts.length) {
+            Object part = parts[current];
+            if (part instanceof ByteBuffer buffer) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+            } else {
+                FileRegion region = (FileRegion) part;
+                regionTransferred += region.transferTo(channel, regionTransferred);
+                if (regionTransferred < region.getCount()) {
+                    return false;
+                }
+                regionTransferred = 0;
+            }
+            current++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+package blockchain.network;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Connection to another node. Frames waiting to be sent are queued by any thread and written by the transport's
+ * selector thread, which also owns the read buffer. */
+public final class Peer {
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final SocketAddress remoteAddress;
+    private final Queue<OutgoingMessage> outgoing = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private volatile boolean closed;
+
+    Peer(SocketChannel channel, SocketAddress remoteAddress) {
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    Queue<OutgoingMessage> getOutgoing() {
+        return outgoing;
+    }
+
+    ByteBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
+    /* Grows the buffer so that a frame of a given size fits, content waiting in the buffer is kept */
+    void ensureReadCapacity(int frameSize) {
+        if (readBuffer.capacity() < frameSize) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(frameSize, readBuffer.capacity() * 2));
+            readBuffer.flip();
+            grown.put(readBuffer);
+            readBuffer = grown;
+        }
+    }
+
+    void countSent(long bytes) {
+        sentMessages.incrementAndGet();
+        sentBytes.addAndGet(bytes);
+    }
+
+    void countReceived(int bytes) {
+        receivedMessages.incrementAndGet();
+        receivedBytes.addAndGet(bytes);
+    }
+
+    void markClosed() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getSentMessages() {
+        return sentMessages.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Peer " + remoteAddress;
+    }
+}
@@ -0,0 +1,48 @@
+package blockchain.network;
+
+import blockchain.core.Hash256;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Transaction ids a node knows one of its peers has, because the peer announced or sent them or they were announced
+ * to it, and ids waiting for the next announcement to that peer. Known ids are bounded, the oldest are forgotten
+ * first, which at worst makes a transaction announced twice. */
+final class PeerInventory {
+    static final int KNOWN_CAPACITY = 50_000;
+
+    private final Set<Hash256> known = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Hash256, Boolean> eldest) {
+            return size() > KNOWN_CAPACITY;
+        }
+    });
+    private List<Hash256> queued = new ArrayList<>();
+
+    synchronized void markKnown(Hash256 id) {
+        known.add(id);
+    }
+
+    synchronized boolean isKnown(Hash256 id) {
+        return known.contains(id);
+    }
+
+    /* Queues an id unless the peer already knows it, returns a full batch which the caller has to send, otherwise null */
+    synchronized List<Hash256> announce(Hash256 id, int batchSize) {
+        if (!known.add(id)) {
+            return null;
+        }
+        queued.add(id);
+        return queued.size() >= batchSize ? drain() : null;
+    }
+
+    synchronized List<Hash256> drain() {
+        List<Hash256> batch = queued;
+        queued = new ArrayList<>();
+        return batch;
+    }
+}
@@ -0,0 +1,295 @@
+package blockchain.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Non-blocking TCP transport on the loopback interface, one selector thread per transport. Messages are framed as
+ * length (4 bytes, covers type and payload), type (1 byte) and payload. Sending only queues a frame and wakes the
+ * selector up, all socket operations happen on the selector thread. Payload can be assembled from parts, including
+ * file regions sent with FileChannel.transferTo. */
+public class Transport implements Closeable {
+    public static final int MAX_MESSAGE_SIZE = 32 * 1024 * 1024;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + 1;
+
+    private final String name;
+    private final MessageHandler handler;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final InetSocketAddress address;
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    /* Work which has to run on the selector thread: registering connections and write interest */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    /* Bytes of all frames sent by this transport, indexed by message type id */
+    private final AtomicLongArray sentBytesByType = new AtomicLongArray(256);
+    private volatile boolean running = true;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Transport.class);
+
+    public Transport(String name, MessageHandler handler) throws IOException {
+        this.name = name;
+        this.handler = handler;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.address = (InetSocketAddress) server.getLocalAddress();
+        this.selectorThread = new Thread(this::run, name + "-transport");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public List<Peer> getPeers() {
+        return peers;
+    }
+
+    public void connect(InetSocketAddress remote) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Peer peer = new Peer(channel, remote);
+        runOnSelector(() -> {
+            try {
+                peer.setKey(channel.register(selector, SelectionKey.OP_CONNECT, peer));
+                if (channel.connect(remote)) {
+                    connected(peer);
+                }
+            } catch (IOException e) {
+                LOGGER.warn(name + " can't connect to " + remote, e);
+                close(peer);
+            }
+        });
+    }
+
+    public void send(Peer peer, MessageType type, byte[] payload) {
+        send(peer, type, OutgoingMessage.of(frame(type, payload)));
+    }
+
+    /* Payload made of byte arrays and file regions, regions must stay unchanged until the message is written */
+    public void send(Peer peer, MessageType type, List<?> parts) {
+        send(peer, type, OutgoingMessage.of(type, parts, MAX_MESSAGE_SIZE));
+    }
+
+    /* Sends a message to all connected peers except a given one (usually the one it came from), which can be null */
+    public void broadcast(MessageType type, byte[] payload, Peer except) {
+        ByteBuffer frame = frame(type, payload);
+        for (Peer peer : peers) {
+            if (peer != except) {
+                send(peer, type, OutgoingMessage.of(frame.duplicate()));
+            }
+        }
+    }
+
+    private static ByteBuffer frame(MessageType type, byte[] payload) {
+        if (payload.length + 1 > MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes exceeds the limit.");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        frame.putInt(payload.length + 1)
+                .put((byte) type.getId())
+                .put(payload)
+                .flip();
+        return frame;
+    }
+
+    private void send(Peer peer, MessageType type, OutgoingMessage message) {
+        if (peer.isClosed()) {
+            return;
+        }
+        peer.getOutgoing().add(message);
+        peer.countSent(message.size());
+        sentBytesByType.addAndGet(type.getId(), message.size());
+        runOnSelector(() -> {
+            SelectionKey key = peer.getKey();
+            if (key != null && key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        });
+    }
+
+    private void runOnSelector(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                LOGGER.error(name + " transport failed", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Peer peer = (Peer) key.attachment();
+        try {
+            if (key.isConnectable() && peer.getChannel().finishConnect()) {
+                connected(peer);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(peer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(peer);
+            }
+        } catch (IOException e) {
+            LOGGER.debug(name + " lost connection to " + peer, e);
+            close(peer);
+        } catch (RuntimeException e) {
+            LOGGER.warn(name + " dropped " + peer + " after a malformed message", e);
+            close(peer);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Peer peer = new Peer(channel, channel.getRemoteAddress());
+            peer.setKey(channel.register(selector, SelectionKey.OP_READ, peer));
+            peers.add(peer);
+            handler.onConnected(peer);
+        } catch (IOException e) {
+            LOGGER.warn(name + " can't accept a connection", e);
+        }
+    }
+
+    /* Frames queued before the connection was established are written right away */
+    private void connected(Peer peer) {
+        int interest = peer.getOutgoing().isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        peer.getKey().interestOps(interest);
+        peers.add(peer);
+        handler.onConnected(peer);
+    }
+
+    private void read(Peer peer) throws IOException {
+        int read = peer.getChannel().read(peer.getReadBuffer());
+        if (read == -1) {
+            close(peer);
+            return;
+        }
+        ByteBuffer buffer = peer.getReadBuffer();
+        buffer.flip();
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 1 || length > MAX_MESSAGE_SIZE) {
+                throw new IOException("Invalid message length " + length);
+            }
+            if (buffer.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            buffer.getInt();
+            MessageType type = MessageType.fromId(buffer.get());
+            byte[] payload = new byte[length - 1];
+            buffer.get(payload);
+            peer.countReceived(Integer.BYTES + length);
+            handler.onMessage(peer, type, payload);
+        }
+        int pending = buffer.remaining() >= Integer.BYTES ? Integer.BYTES + buffer.getInt(buffer.position()) : 0;
+        buffer.compact();
+        peer.ensureReadCapacity(pending);
+    }
+
+    private void write(Peer peer) throws IOException {
+        Queue<OutgoingMessage> outgoing = peer.getOutgoing();
+        OutgoingMessage message;
+        while ((message = outgoing.peek()) != null) {
+            if (!message.writeTo(peer.getChannel())) {
+                return;
+            }
+            outgoing.poll();
+        }
+        peer.getKey().interestOps(SelectionKey.OP_READ);
+    }
+
+    private void close(Peer peer) {
+        peer.markClosed();
+        peers.remove(peer);
+        SelectionKey key = peer.getKey();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            peer.getChannel().close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing connection", e);
+        }
+        handler.onDisconnected(peer);
+    }
+
+    public long getSentMessages() {
+        return peers.stream().mapToLong(Peer::getSentMessages).sum();
+    }
+
+    public long getSentBytes() {
+        return peers.stream().mapToLong(Peer::getSentBytes).sum();
+    }
+
+    public long getSentBytes(MessageType type) {
+        return sentBytesByType.get(type.getId());
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Peer peer : peers) {
+            peer.getChannel().close();
+        }
+        server.close();
+        selector.close();
+    }
+}
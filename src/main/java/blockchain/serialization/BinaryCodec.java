@@ -0,0 +1,188 @@
+package blockchain.serialization;
+
+import blockchain.core.Block;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.encryption.SignatureScheme;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Compact binary encoding of transactions and blocks, used by the block bodies file and by network messages.
+ * Transaction: version and signature scheme id (1 byte, low and high nibble), sender, receiver (modified UTF-8),
+ * amount, timestamp (8 bytes each), signature and public key (2 bytes length + content). Multi-output version has
+ * number of outputs (2 bytes) followed by receiver and amount of each output in place of receiver and amount.
+ * Block: version, id (4 bytes each), timestamp (8 bytes), transactions hash, nonce (4 bytes), previous hash, hash
+ * (32 bytes each), miner name, miner reward (presence flag, miner, value) and transactions (4 bytes count + each one).
+ * All numbers are big-endian. */
+public final class BinaryCodec {
+    /* RSA has id 0, so transactions encoded before schemes were introduced are read unchanged */
+    private static final int SCHEME_SHIFT = 4;
+    private static final int VERSION_MASK = 0x0f;
+    /* Counts come from the network, lists grow as elements are actually read instead of trusting them upfront */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private BinaryCodec() {
+    }
+
+    /* Scratch buffer is used to copy signature and key out of their views, the returned one is grown if needed */
+    public static byte[] writeTransaction(DataOutput output, SignedTransaction signedTransaction, byte[] scratch) throws IOException {
+        Transaction transaction = signedTransaction.getTransaction();
+        output.writeByte(signedTransaction.getSignatureScheme().getId() << SCHEME_SHIFT | signedTransaction.getVersion());
+        output.writeUTF(transaction.getSender());
+        if (signedTransaction.getVersion() == SignedTransaction.MULTI_OUTPUT_VERSION) {
+            output.writeShort(transaction.getOutputCount());
+            for (int i = 0; i < transaction.getOutputCount(); i++) {
+                output.writeUTF(transaction.getReceiver(i));
+                output.writeLong(transaction.getAmount(i));
+            }
+        } else {
+            output.writeUTF(transaction.getReceiver());
+            output.writeLong(transaction.getAmount());
+        }
+        output.writeLong(signedTransaction.getTimestamp());
+        scratch = writeView(output, signedTransaction.getSignatureView(), scratch);
+        return writeView(output, signedTransaction.getPublicKeyView(), scratch);
+    }
+
+    private static byte[] writeView(DataOutput output, ByteBuffer view, byte[] scratch) throws IOException {
+        int length = view.remaining();
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        view.get(scratch, 0, length);
+        output.writeShort(length);
+        output.write(scratch, 0, length);
+        return scratch;
+    }
+
+    public static SignedTransaction readTransaction(DataInput input) throws IOException {
+        int versionAndScheme = input.readUnsignedByte();
+        int version = versionAndScheme & VERSION_MASK;
+        SignatureScheme scheme = SignatureScheme.fromId(versionAndScheme >>> SCHEME_SHIFT);
+        Transaction transaction = version == SignedTransaction.MULTI_OUTPUT_VERSION
+                ? readMultiOutputTransaction(input) : new Transaction(input.readUTF(), input.readUTF(), input.readLong());
+        long timestamp = input.readLong();
+        byte[] signature = new byte[input.readUnsignedShort()];
+        input.readFully(signature);
+        byte[] publicKey = new byte[input.readUnsignedShort()];
+        input.readFully(publicKey);
+        return new SignedTransaction(version, transaction, timestamp, signature, publicKey, scheme);
+    }
+
+    private static Transaction readMultiOutputTransaction(DataInput input) throws IOException {
+        String sender = input.readUTF();
+        int count = input.readUnsignedShort();
+        if (count == 0 || count > SignedTransaction.MAX_OUTPUTS) {
+            throw new IOException("Invalid number of outputs " + count);
+        }
+        List<String> receivers = new ArrayList<>(count);
+        List<Long> amounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            receivers.add(input.readUTF());
+            amounts.add(input.readLong());
+        }
+        return new Transaction(sender, receivers, amounts);
+    }
+
+    public static void writeTransactions(DataOutput output, List<SignedTransaction> transactions) throws IOException {
+        output.writeInt(transactions.size());
+        byte[] scratch = new byte[512];
+        for (SignedTransaction signedTransaction : transactions) {
+            scratch = writeTransaction(output, signedTransaction, scratch);
+        }
+    }
+
+    public static List<SignedTransaction> readTransactions(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<SignedTransaction> transactions = new ArrayList<>(initialCapacity(count));
+        for (int i = 0; i < count; i++) {
+            transactions.add(readTransaction(input));
+        }
+        return transactions;
+    }
+
+    public static void writeBlockHeader(DataOutput output, Block block) throws IOException {
+        output.writeInt(block.getVersion());
+        output.writeInt(block.getId());
+        output.writeLong(block.getTimestamp());
+        output.write(block.getTransactionsHash().getBytes());
+        output.writeInt(block.getNonce());
+        output.write(block.getPreviousBlockHash().getBytes());
+        output.write(block.getBlockHash().getBytes());
+        output.writeUTF(block.getMinerName() == null ? "" : block.getMinerName());
+        MinerReward reward = block.getMinerReward();
+        output.writeBoolean(reward != null);
+        if (reward != null) {
+            output.writeUTF(reward.getMiner());
+            output.writeLong(reward.getReward());
+        }
+    }
+
+    /* Returns a builder with all header fields set, transactions are left to the caller */
+    public static Block.Builder readBlockHeader(DataInput input) throws IOException {
+        Block.Builder builder = Block.newBuilder()
+                .setVersion(input.readInt())
+                .setId(input.readInt())
+                .setTimestamp(input.readLong())
+                .setTransactionsHash(readHash(input))
+                .setNonce(input.readInt())
+                .setPreviousHash(readHash(input))
+                .setHash(readHash(input))
+                .setMinerName(input.readUTF());
+        MinerReward reward = input.readBoolean() ? new MinerReward(input.readUTF(), input.readLong()) : null;
+        return builder.setMinerReward(reward);
+    }
+
+    public static void writeBlock(DataOutput output, Block block) throws IOException {
+        writeBlockHeader(output, block);
+        writeTransactions(output, block.getTransactions());
+    }
+
+    public static Block readBlock(DataInput input) throws IOException {
+        Block.Builder builder = readBlockHeader(input);
+        return builder.setTransactions(readTransactions(input))
+                .build();
+    }
+
+    public static void writeHashes(DataOutput output, List<Hash256> hashes) throws IOException {
+        output.writeInt(hashes.size());
+        for (Hash256 hash : hashes) {
+            output.write(hash.getBytes());
+        }
+    }
+
+    public static List<Hash256> readHashes(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<Hash256> hashes = new ArrayList<>(initialCapacity(count));
+        for (int i = 0; i < count; i++) {
+            hashes.add(readHash(input));
+        }
+        return hashes;
+    }
+
+    /* Number of elements which follow, a negative one can't come from a valid message */
+    public static int readCount(DataInput input) throws IOException {
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of elements " + count);
+        }
+        return count;
+    }
+
+    public static int initialCapacity(int count) {
+        return Math.min(count, MAX_INITIAL_CAPACITY);
+    }
+
+    public static Hash256 readHash(DataInput input) throws IOException {
+        byte[] hash = new byte[Hash256.LENGTH];
+        input.readFully(hash);
+        return Hash256.wrap(hash);
+    }
+}
@@ -1,16 +1,61 @@
 package blockchain.serialization;
 
 import blockchain.core.Block;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BlockDeserializer implements JsonDeserializer<Block> {
     @Override
     public Block deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        return null;
+        JsonObject jsonBlock = json.getAsJsonObject();
+        Block.Builder builder = Block.newBuilder()
+                .setId(jsonBlock.get("Id").getAsInt())
+                .setTimestamp(jsonBlock.get("Timestamp").getAsLong())
+                .setNonce(jsonBlock.get("nonce").getAsInt())
+                .setHash(Hash256.fromHex(jsonBlock.get("blockHash").getAsString()));
+
+        /* Genesis block is exported without some of the fields, builder defaults are used for them.
+         * Blocks exported before versioning was introduced have no version. */
+        if (jsonBlock.has("Version")) {
+            builder.setVersion(jsonBlock.get("Version").getAsInt());
+        }
+        if (jsonBlock.has("TransactionsHash")) {
+            builder.setTransactionsHash(Hash256.fromHex(jsonBlock.get("TransactionsHash").getAsString()));
+        }
+        if (jsonBlock.has("prevHash")) {
+            builder.setPreviousHash(Hash256.fromHex(jsonBlock.get("prevHash").getAsString()));
+        }
+        if (jsonBlock.has("minerName")) {
+            builder.setMinerName(jsonBlock.get("minerName").getAsString());
+        }
+        JsonElement rewardElement = jsonBlock.get("MinerReward");
+        if (rewardElement != null && !rewardElement.isJsonNull()) {
+            JsonObject jsonReward = rewardElement.getAsJsonObject();
+            MinerReward reward = new MinerReward(jsonReward.get("miner").getAsString(), jsonReward.get("reward").getAsLong());
+            builder.setMinerReward(reward);
+        }
+
+        List<SignedTransaction> transactions = new ArrayList<>();
+        JsonElement transactionsElement = jsonBlock.get("Transactions");
+        if (transactionsElement != null && transactionsElement.isJsonArray()) {
+            JsonArray transactionsArray = transactionsElement.getAsJsonArray();
+            for (JsonElement transactionElement : transactionsArray) {
+                transactions.add(context.deserialize(transactionElement, SignedTransaction.class));
+            }
+        }
+        builder.setTransactions(transactions);
+
+        return builder.build();
     }
 }
@@ -1,7 +1,9 @@
 package blockchain.serialization;
 
 import blockchain.core.Block;
+import blockchain.core.MinerReward;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
@@ -13,15 +15,24 @@ public class BlockSerializer implements JsonSerializer<Block> {
     @Override
     public JsonElement serialize(Block src, Type typeOfSrc, JsonSerializationContext context) {
         JsonObject jsonBlock = new JsonObject();
+        jsonBlock.addProperty("Version", src.getVersion());
         jsonBlock.addProperty("Id", src.getId());
         jsonBlock.addProperty("Timestamp", src.getTimestamp());
-        jsonBlock.addProperty("TransactionsHash", src.getTransactionsHash());
+        jsonBlock.addProperty("TransactionsHash", src.getTransactionsHash().toHex());
         jsonBlock.addProperty("nonce", src.getNonce());
-        jsonBlock.addProperty("prevHash", src.getPreviousBlockHash());
-        jsonBlock.addProperty("blockHash", src.getBlockHash());
+        jsonBlock.addProperty("prevHash", src.getPreviousBlockHash().toHex());
+        jsonBlock.addProperty("blockHash", src.getBlockHash().toHex());
         jsonBlock.addProperty("minerName", src.getMinerName());
 
-        JsonElement rewardElement = context.serialize(src.getMinerReward());
+        /* Reward is written field by field, as it keeps miner address as registry id in memory */
+        JsonElement rewardElement = JsonNull.INSTANCE;
+        MinerReward reward = src.getMinerReward();
+        if (reward != null) {
+            JsonObject jsonReward = new JsonObject();
+            jsonReward.addProperty("miner", reward.getMiner());
+            jsonReward.addProperty("reward", reward.getReward());
+            rewardElement = jsonReward;
+        }
         JsonElement transactionElement = context.serialize(src.getTransactions());
 
         jsonBlock.add("MinerReward", rewardElement);
@@ -0,0 +1,63 @@
+package blockchain.serialization;
+
+import blockchain.core.Block;
+import blockchain.core.SignedTransaction;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/* Reads blockchain exported by Blockchain.saveBlockchainAsJson one block at a time, so the whole document
+ * never has to be kept in memory. */
+public class BlockStreamReader implements Iterator<Block>, Closeable {
+    private final JsonReader reader;
+    private final Gson gson;
+    private boolean arrayOpened;
+
+    public BlockStreamReader(Reader source) {
+        this.reader = new JsonReader(source);
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(Block.class, new BlockDeserializer())
+                .registerTypeAdapter(SignedTransaction.class, new TransactionDeserializer())
+                .create();
+    }
+
+    public BlockStreamReader(String path) throws IOException {
+        this(new BufferedReader(new FileReader(path)));
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!arrayOpened) {
+                reader.beginArray();
+                arrayOpened = true;
+            }
+            return reader.peek() != JsonToken.END_ARRAY && reader.peek() != JsonToken.END_DOCUMENT;
+        } catch (IOException e) {
+            throw new JsonParseException("Error reading blocks stream", e);
+        }
+    }
+
+    @Override
+    public Block next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return gson.fromJson(reader, Block.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -3,6 +3,8 @@ package blockchain.serialization;
 import blockchain.core.SignedTransaction;
 import blockchain.core.Transaction;
 import blockchain.encryption.EncryptionUtils;
+import blockchain.encryption.SignatureScheme;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -10,24 +12,51 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TransactionDeserializer implements JsonDeserializer<SignedTransaction> {
 
     @Override
     public SignedTransaction deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
         JsonObject jsonObject = json.getAsJsonObject();
+        /* Transactions exported before versioning was introduced have no version */
+        int version = jsonObject.has("Version") ? jsonObject.get("Version").getAsInt() : SignedTransaction.TEXT_PAYLOAD_VERSION;
         String sender = jsonObject.get("sender")
                 .getAsString();
-        String receiver = jsonObject.get("receiver")
-                .getAsString();
-        long amount = jsonObject.get("amount")
-                .getAsLong();
-        Transaction transaction = new Transaction(sender, receiver, amount);
+        Transaction transaction;
+        if (version == SignedTransaction.MULTI_OUTPUT_VERSION) {
+            transaction = deserializeOutputs(sender, jsonObject.getAsJsonArray("outputs"));
+        } else {
+            String receiver = jsonObject.get("receiver")
+                    .getAsString();
+            long amount = jsonObject.get("amount")
+                    .getAsLong();
+            transaction = new Transaction(sender, receiver, amount);
+        }
         long timestamp = jsonObject.get("Timestamp")
                 .getAsLong();
         byte[] publicKey = EncryptionUtils.decodeHexString(jsonObject.get("PublicKey").getAsString());
         byte[] signature = EncryptionUtils.decodeHexString(jsonObject.get("Signature").getAsString());
 
-        return new SignedTransaction(transaction, timestamp, signature, publicKey);
+        /* Transactions exported before signature schemes were introduced have no scheme, all of them are RSA signed */
+        SignatureScheme scheme = jsonObject.has("Scheme")
+                ? SignatureScheme.valueOf(jsonObject.get("Scheme").getAsString()) : SignatureScheme.RSA;
+
+        return new SignedTransaction(version, transaction, timestamp, signature, publicKey, scheme);
+    }
+
+    private static Transaction deserializeOutputs(String sender, JsonArray outputs) {
+        if (outputs.size() > SignedTransaction.MAX_OUTPUTS) {
+            throw new JsonParseException("Transaction has " + outputs.size() + " outputs");
+        }
+        List<String> receivers = new ArrayList<>(outputs.size());
+        List<Long> amounts = new ArrayList<>(outputs.size());
+        for (JsonElement element : outputs) {
+            JsonObject output = element.getAsJsonObject();
+            receivers.add(output.get("receiver").getAsString());
+            amounts.add(output.get("amount").getAsLong());
+        }
+        return new Transaction(sender, receivers, amounts);
     }
 }
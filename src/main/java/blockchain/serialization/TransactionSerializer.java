@@ -1,7 +1,9 @@
 package blockchain.serialization;
 
 import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
 import blockchain.encryption.EncryptionUtils;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
@@ -13,10 +15,16 @@ public class TransactionSerializer implements JsonSerializer<SignedTransaction>
     @Override
     public JsonElement serialize(SignedTransaction src, Type typeOfSrc, JsonSerializationContext context) {
         JsonObject transactionJson = new JsonObject();
+        transactionJson.addProperty("Version", src.getVersion());
         transactionJson.addProperty("sender", src.getTransaction().getSender());
-        transactionJson.addProperty("receiver", src.getTransaction().getReceiver());
-        transactionJson.addProperty("amount", src.getTransaction().getAmount());
+        if (src.getVersion() == SignedTransaction.MULTI_OUTPUT_VERSION) {
+            transactionJson.add("outputs", serializeOutputs(src.getTransaction()));
+        } else {
+            transactionJson.addProperty("receiver", src.getTransaction().getReceiver());
+            transactionJson.addProperty("amount", src.getTransaction().getAmount());
+        }
         transactionJson.addProperty("Timestamp", src.getTimestamp());
+        transactionJson.addProperty("Scheme", src.getSignatureScheme().name());
 
         String publicKey = EncryptionUtils.encodeIntoHex(src.getPublicKey());
         String signature = EncryptionUtils.encodeIntoHex(src.getSignature());
@@ -26,4 +34,15 @@ public class TransactionSerializer implements JsonSerializer<SignedTransaction>
 
         return transactionJson;
     }
+
+    private static JsonArray serializeOutputs(Transaction transaction) {
+        JsonArray outputs = new JsonArray();
+        for (int i = 0; i < transaction.getOutputCount(); i++) {
+            JsonObject output = new JsonObject();
+            output.addProperty("receiver", transaction.getReceiver(i));
+            output.addProperty("amount", transaction.getAmount(i));
+            outputs.add(output);
+        }
+        return outputs;
+    }
 }
@@ -1,19 +1,26 @@
 package blockchain.simulation;
 
+import blockchain.api.ApiServer;
 import blockchain.core.Blockchain;
+import blockchain.core.Wallet;
+import blockchain.encryption.KeyPairPool;
+import blockchain.encryption.SignatureScheme;
 import blockchain.simulation.clients.Client;
 import blockchain.simulation.clients.Miner;
 import blockchain.simulation.config.Configuration;
 import blockchain.simulation.config.ConfigurationManager;
+import blockchain.storage.KeyPairStore;
 import blockchain.utils.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -31,6 +38,8 @@ public final class BlockchainSimulator {
     public static final String PENDING_TRANSACTIONS_FILENAME = "pending_transactions";
     public static final String MINERS_FILENAME = "miners";
     public static final String CLIENTS_FILENAME = "clients";
+    public static final String BLOCK_BODIES_FILENAME = "block_bodies";
+    public static final String CHECKPOINT_FILENAME = "checkpoint";
 
     private static ConfigurationManager configurationManager;
     private static Configuration config;
@@ -41,6 +50,7 @@ public final class BlockchainSimulator {
     private List<Client> clients;
     private final ExecutorService minersThreadPool;
     private final ScheduledExecutorService clientsService;
+    private LoadGenerator loadGenerator;
 
     public BlockchainSimulator() {
         blockChain = Blockchain.getInstance();
@@ -61,26 +71,64 @@ public final class BlockchainSimulator {
         }
     }
 
+    public static Configuration getConfiguration() {
+        return config;
+    }
+
     private static void loadConfiguration() throws FileNotFoundException {
         configurationManager.loadConfiguration(CONFIG_FILEPATH);
         config = configurationManager.getCurrentConfiguration();
     }
 
-    private void initializeMiners() {
+    /* Key pairs are taken from the keystore first, if configured, the rest comes from the background pool.
+     * Newly generated pairs are appended to the keystore, so the next run doesn't generate them again. Pairs of
+     * other schemes are kept in the keystore. */
+    private void initializeMinersAndClients() {
+        SignatureScheme scheme = config.getSignatureScheme();
+        KeyPairStore keyPairStore = config.getKeyStorePath() == null ? null : new KeyPairStore(config.getKeyStorePath());
+        List<KeyPair> storedKeyPairs = keyPairStore == null ? new ArrayList<>() : keyPairStore.load(scheme);
+        List<KeyPair> usedKeyPairs = new ArrayList<>();
+        long start = System.nanoTime();
+        try (KeyPairPool pool = new KeyPairPool(scheme, config.getKeyPairPoolDepth(), config.getKeyPairPoolThreads())) {
+            pool.preload(storedKeyPairs);
+            initializeMiners(pool, usedKeyPairs);
+            initializeClients(pool, usedKeyPairs);
+            LOGGER.info(pool.toString());
+        }
+        LOGGER.info(String.format("Created %d miners and %d clients in %d ms.", miners.size(), clients.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        if (keyPairStore != null && usedKeyPairs.size() > storedKeyPairs.size()) {
+            try {
+                keyPairStore.append(usedKeyPairs.subList(storedKeyPairs.size(), usedKeyPairs.size()));
+            } catch (IOException e) {
+                LOGGER.error("Error saving keystore", e);
+            }
+        }
+    }
+
+    private void initializeMiners(KeyPairPool pool, List<KeyPair> usedKeyPairs) {
         for (int i = 0; i < config.getNumberOfMiners(); i++) {
-            miners.add(new Miner(this, String.valueOf(i)));
+            KeyPair keyPair = pool.take();
+            usedKeyPairs.add(keyPair);
+            miners.add(new Miner(this, String.valueOf(i), keyPair));
         }
     }
 
-    private void initializeClients() {
+    private void initializeClients(KeyPairPool pool, List<KeyPair> usedKeyPairs) {
         int numOfClients = config.getNumberOfClients();
         for (int i = 0; i < numOfClients; i++) {
-            clients.add(new Client("Client " + i));
+            KeyPair keyPair = pool.take();
+            usedKeyPairs.add(keyPair);
+            clients.add(new Client("Client " + i, keyPair));
         }
     }
 
     private void runMinersAndClients() {
         miners.forEach(minersThreadPool::submit);
+        if (config.getLoadProfile() != null) {
+            startLoad();
+            return;
+        }
         Runnable clientsActivity = () -> {
             Random random = new Random();
             int clientId = random.nextInt(config.getNumberOfClients());
@@ -96,11 +144,23 @@ public final class BlockchainSimulator {
         clientsService.scheduleWithFixedDelay(clientsActivity, config.getInitialClientsDelay(), config.getClientsTransactionsDelay(), TimeUnit.MILLISECONDS);
     }
 
+    /* Clients and miners send to each other at the rate of the load profile instead of at fixed delays */
+    private void startLoad() {
+        List<Client> participants = Stream.concat(clients.stream(), miners.stream().map(Miner::getClient))
+                .collect(Collectors.toList());
+        List<Wallet> senders = participants.stream().map(Client::getWallet).collect(Collectors.toList());
+        List<String> receivers = participants.stream().map(Client::getAddress).collect(Collectors.toList());
+        loadGenerator = new LoadGenerator(blockChain, blockChain::addTransaction, senders, receivers,
+                config.getLoadProfile(), config.getLoadRate(), config.getLoadPeriod());
+        loadGenerator.start(config.getInitialClientsDelay());
+    }
+
     public void run() {
         loadSimulationProgress();
         if (blockChain.size() >= config.getAssumedBlockchainSize()) {
             return;
         }
+        ApiServer api = startApi();
         runMinersAndClients();
         synchronized (this) {
             try {
@@ -109,13 +169,31 @@ public final class BlockchainSimulator {
                 LOGGER.warn("InterruptedException during waiting", e);
             }
         }
+        if (loadGenerator != null) {
+            loadGenerator.close();
+        }
         minersThreadPool.shutdown();
         clientsService.shutdown();
+        if (api != null) {
+            api.close();
+        }
 
         saveSimulationProgress();
         blockChain.saveBlockchainAsJson(BlockchainSimulator.SERIALIZATION_PATH + BlockchainSimulator.BLOCKCHAIN_FILENAME + ".json");
     }
 
+    private ApiServer startApi() {
+        if (config.getApiPort() <= 0) {
+            return null;
+        }
+        try {
+            return new ApiServer(blockChain, config.getApiPort());
+        } catch (IOException e) {
+            LOGGER.error("Error starting API on port " + config.getApiPort(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public int getAssumedSize() {
         return config.getAssumedBlockchainSize();
     }
@@ -149,7 +227,28 @@ public final class BlockchainSimulator {
 
     @SuppressWarnings("unchecked")
     public void loadSimulationProgress() {
-        blockChain.loadBlockchainContent(BlockchainSimulator.SERIALIZATION_PATH + BlockchainSimulator.BLOCKCHAIN_FILENAME);
+        String blocksPath = BlockchainSimulator.SERIALIZATION_PATH + BlockchainSimulator.BLOCKCHAIN_FILENAME;
+        String jsonPath = blocksPath + ".json";
+        blockChain.setFullCheckOnLoading(config.isUseFullTransactionsCheckOnLoading());
+        if (config.getCheckpointInterval() > 0) {
+            blockChain.useCheckpoints(SERIALIZATION_PATH, CHECKPOINT_FILENAME, config.getCheckpointInterval());
+        }
+        if (config.isUseLazyTransactionBodies()) {
+            try {
+                Files.createDirectories(Paths.get(SERIALIZATION_PATH));
+            } catch (IOException e) {
+                LOGGER.error("Error during creating output folder", e);
+            }
+            blockChain.useLazyTransactions(SERIALIZATION_PATH + BLOCK_BODIES_FILENAME, config.getTransactionsCacheCapacity());
+        } else if (config.isUseOffHeapTransactionBodies()) {
+            blockChain.useOffHeapTransactions();
+        }
+        if (Files.notExists(Paths.get(blocksPath)) && Files.exists(Paths.get(jsonPath))) {
+            LOGGER.info("Serialized blockchain not found, importing blocks from " + jsonPath);
+            blockChain.importBlockchainFromJson(jsonPath);
+        } else {
+            blockChain.loadBlockchainContent(blocksPath);
+        }
         blockChain.loadPendingTransactions(BlockchainSimulator.SERIALIZATION_PATH + BlockchainSimulator.PENDING_TRANSACTIONS_FILENAME);
         try {
             miners = (ArrayList<Miner>) SerializationUtils.deserialize(SERIALIZATION_PATH + MINERS_FILENAME);
@@ -159,8 +258,7 @@ public final class BlockchainSimulator {
             LOGGER.info("Exception occurred during loading miners and clients. Creating new clients and miners...");
             miners.clear();
             clients.clear();
-            initializeMiners();
-            initializeClients();
+            initializeMinersAndClients();
         } catch (ClassNotFoundException e) {
             LOGGER.error("Class not found.", e);
             throw new RuntimeException(e);
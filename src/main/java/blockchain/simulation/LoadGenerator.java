@@ -0,0 +1,239 @@
+package blockchain.simulation;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Wallet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/* Open-loop load: transactions are due at times given by a load profile, whatever the state of the system, so when
+ * signing or validation falls behind they queue up instead of slowing the load down. Senders take turns, each
+ * transaction records when it was due, submitted, admitted to the pending list and first seen in a block of the
+ * observed chain. Latencies are counted from the due time, so waiting in the queue is part of them. A sender without
+ * enough coins skips its turn. */
+public final class LoadGenerator implements Closeable {
+    public static final long POLL_INTERVAL = 20; //milliseconds
+    public static final int MAX_AMOUNT = 3;
+
+    private final Blockchain observed;
+    private final Predicate<SignedTransaction> submitter;
+    private final List<Wallet> senders;
+    private final List<String> receivers;
+    private final LoadProfile profile;
+    private final double rate;
+    private final long periodNanos;
+    private final ThreadPoolExecutor signers;
+    private final ScheduledExecutorService poller;
+    private final Thread dispatcher;
+    /* Admitted transactions not seen in a block yet, by id */
+    private final Map<Hash256, Submission> pending = new ConcurrentHashMap<>();
+    private final List<Submission> submissions = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile long dispatched;
+    private long start;
+    private int scannedHeight;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    public LoadGenerator(Blockchain observed, Predicate<SignedTransaction> submitter, List<Wallet> senders,
+                         List<String> receivers, LoadProfile profile, double rate, long periodMillis) {
+        this.observed = observed;
+        this.submitter = submitter;
+        this.senders = senders;
+        this.receivers = receivers;
+        this.profile = profile;
+        this.rate = rate;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.signers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), daemon("load-signer"));
+        this.poller = Executors.newSingleThreadScheduledExecutor(daemon("load-poller"));
+        this.dispatcher = daemon("load-dispatcher").newThread(this::dispatch);
+        this.scannedHeight = observed.getLast().getId();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /* Load starts after a given delay, counted into due times of no transaction */
+    public void start(long delayMillis) {
+        start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        dispatcher.start();
+        poller.scheduleWithFixedDelay(this::pollBlocks, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        LOGGER.info(String.format("Load generator started: %s profile, %.1f transactions/s, %d senders.", profile, rate, senders.size()));
+    }
+
+    private void dispatch() {
+        while (running) {
+            long due = start + profile.dueNanos(dispatched, rate, periodNanos);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            long index = dispatched++;
+            signers.execute(() -> send(index, due));
+        }
+    }
+
+    /* Transactions of one sender are created and submitted one at a time, timestamps of a sender can't go back */
+    private void send(long index, long due) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Wallet sender = senders.get((int) (index % senders.size()));
+        int receiverIndex = random.nextInt(receivers.size());
+        String receiver = receivers.get(receiverIndex);
+        if (receiver.equals(sender.getAddress())) {
+            receiver = receivers.get((receiverIndex + 1) % receivers.size());
+        }
+        if (observed.coinsOfClient(sender.getAddress()) < MAX_AMOUNT) {
+            skipped.incrementAndGet();
+            return;
+        }
+        synchronized (sender) {
+            SignedTransaction transaction = sender.createTransaction(receiver, 1 + random.nextInt(MAX_AMOUNT));
+            Submission submission = new Submission(due, System.nanoTime());
+            /* Registered before submitting, the transaction may be mined before submitter returns */
+            pending.put(transaction.getId(), submission);
+            if (submitter.test(transaction)) {
+                submission.admitted = System.nanoTime();
+            } else {
+                pending.remove(transaction.getId());
+                rejected.incrementAndGet();
+            }
+            submissions.add(submission);
+        }
+    }
+
+    /* Inclusion time is when a block is first seen on the observed chain, blocks replaced by a reorganization later
+     * still count */
+    private void pollBlocks() {
+        List<Block> blocks = observed.getBlocks(scannedHeight + 1, Integer.MAX_VALUE);
+        if (blocks.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Block block : blocks) {
+            for (SignedTransaction transaction : block.getTransactions()) {
+                Submission submission = pending.remove(transaction.getId());
+                if (submission != null) {
+                    submission.included = now;
+                }
+            }
+        }
+        scannedHeight = blocks.get(blocks.size() - 1).getId();
+    }
+
+    /* Stops the load, transactions waiting for a signer are dropped, those being sent are let finish. Then scans
+     * blocks appended since the last poll and logs the report. */
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> unsent = new ArrayList<>();
+        signers.getQueue().drainTo(unsent);
+        signers.shutdown();
+        poller.shutdown();
+        try {
+            signers.awaitTermination(10, TimeUnit.SECONDS);
+            poller.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pollBlocks();
+        report(unsent.size());
+    }
+
+    private void report(long notSent) {
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        List<Long> submitted = new ArrayList<>();
+        List<Long> admitted = new ArrayList<>();
+        List<Long> confirmed = new ArrayList<>();
+        synchronized (submissions) {
+            for (Submission submission : submissions) {
+                submitted.add(submission.submitted - submission.due);
+                if (submission.admitted != 0) {
+                    admitted.add(submission.admitted - submission.due);
+                }
+                if (submission.included != 0) {
+                    confirmed.add(submission.included - submission.due);
+                }
+            }
+        }
+        LOGGER.info(String.format("Load: %s at %.1f transactions/s for %.1f s, %d due, %d submitted, %d admitted, " +
+                        "%d rejected, %d skipped without coins, %d not sent before the end.", profile, rate, seconds,
+                dispatched, submitted.size(), admitted.size(), rejected.get(), skipped.get(), notSent));
+        logLatency("Submission", submitted);
+        logLatency("Admission", admitted);
+        logLatency("Confirmation", confirmed);
+        LOGGER.info(String.format("Throughput: %.1f transactions/s offered, %.1f admitted, %.1f confirmed, %d admitted transactions " +
+                "still pending.", dispatched / seconds, admitted.size() / seconds, confirmed.size() / seconds, pending.size()));
+    }
+
+    private static void logLatency(String name, List<Long> latencies) {
+        if (latencies.isEmpty()) {
+            LOGGER.info(name + " latency: no transactions.");
+            return;
+        }
+        Collections.sort(latencies);
+        LOGGER.info(String.format("%s latency of %d transactions: p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms.",
+                name, latencies.size(), percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.99) / 1e6,
+                percentile(latencies, 0.999) / 1e6, latencies.get(latencies.size() - 1) / 1e6));
+    }
+
+    private static double percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    public int getConfirmedCount() {
+        synchronized (submissions) {
+            return (int) submissions.stream().filter(submission -> submission.included != 0).count();
+        }
+    }
+
+    private static final class Submission {
+        private final long due;
+        private final long submitted;
+        private volatile long admitted;
+        private volatile long included;
+
+        private Submission(long due, long submitted) {
+            this.due = due;
+            this.submitted = submitted;
+        }
+    }
+}
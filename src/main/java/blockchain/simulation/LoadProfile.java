@@ -0,0 +1,36 @@
+package blockchain.simulation;
+
+/* Shape of an open-loop load, as the time at which each transaction is due. Rate is in transactions per second,
+ * period is the length of a ramp or the time between bursts. All profiles reach the same average rate. */
+public enum LoadProfile {
+    /* Transactions evenly spaced at the rate */
+    CONSTANT {
+        @Override
+        public long dueNanos(long index, double rate, long periodNanos) {
+            return (long) (index / rate * 1e9);
+        }
+    },
+    /* Rate grows linearly from zero to the target over the period, then stays */
+    RAMP {
+        @Override
+        public long dueNanos(long index, double rate, long periodNanos) {
+            double period = periodNanos / 1e9;
+            double rampTransactions = rate * period / 2;
+            if (index < rampTransactions) {
+                return (long) (Math.sqrt(2 * period * index / rate) * 1e9);
+            }
+            return (long) ((index / rate + period / 2) * 1e9);
+        }
+    },
+    /* All transactions of a period at once, at its start */
+    BURST {
+        @Override
+        public long dueNanos(long index, double rate, long periodNanos) {
+            long burstSize = Math.max(1, Math.round(rate * periodNanos / 1e9));
+            return index / burstSize * periodNanos;
+        }
+    };
+
+    /* Time from the start of the load at which a transaction with a given index, counted from 0, is due */
+    public abstract long dueNanos(long index, double rate, long periodNanos);
+}
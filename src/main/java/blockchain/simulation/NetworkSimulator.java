@@ -0,0 +1,304 @@
+package blockchain.simulation;
+
+import blockchain.api.ApiServer;
+import blockchain.core.Hash256;
+import blockchain.core.SimpleWallet;
+import blockchain.core.Wallet;
+import blockchain.encryption.KeyPairPool;
+import blockchain.network.MessageType;
+import blockchain.network.Node;
+import blockchain.simulation.clients.NodeMiner;
+import blockchain.simulation.config.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/* Simulation of a network of independent nodes in one process. Nodes are fully connected over loopback, each one
+ * runs its own miners, clients send transactions to random nodes. Nothing is saved, the simulation ends with
+ * propagation latency and traffic statistics, then a new node joins and synchronizes the whole chain. */
+public final class NetworkSimulator {
+    public static final long CONNECT_TIMEOUT = 10_000; //milliseconds
+    public static final long SIMULATION_TIMEOUT = 30 * 60 * 1000; //milliseconds
+    public static final long SYNC_TIMEOUT = 5 * 60 * 1000; //milliseconds
+
+    private final Configuration config;
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<NodeMiner> miners = new ArrayList<>();
+    private final List<SimpleWallet> clients = new ArrayList<>();
+    private final ExecutorService minersThreadPool;
+    private final ScheduledExecutorService clientsService;
+    /* Directory of nodes' block stores, used with lazy transaction bodies */
+    private Path storesDirectory;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetworkSimulator.class);
+
+    public NetworkSimulator(Configuration config) {
+        this.config = config;
+        this.minersThreadPool = Executors.newFixedThreadPool(config.getNumberOfNodes() * config.getNumberOfMiners(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.clientsService = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        startNodes();
+        /* Transactions submitted through the API are relayed by the first node like its clients' ones */
+        Node apiNode = nodes.get(0);
+        ApiServer api = config.getApiPort() > 0 ? new ApiServer(apiNode.getBlockchain(), apiNode::submitTransaction, config.getApiPort()) : null;
+        initializeMinersAndClients();
+        long start = System.nanoTime();
+        miners.forEach(minersThreadPool::submit);
+        LoadGenerator load = config.getLoadProfile() != null ? startLoad() : null;
+        if (load == null) {
+            clientsService.scheduleWithFixedDelay(this::clientsActivity, config.getInitialClientsDelay(),
+                    config.getClientsTransactionsDelay(), TimeUnit.MILLISECONDS);
+        }
+        long deadline = System.currentTimeMillis() + SIMULATION_TIMEOUT;
+        while (nodes.stream().anyMatch(node -> node.getBlockchain().size() < getAssumedSize())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (load != null) {
+            load.close();
+        }
+        clientsService.shutdownNow();
+        minersThreadPool.shutdownNow();
+        if (api != null) {
+            api.close();
+        }
+        report(seconds);
+        synchronizeLateNode();
+        for (Node node : nodes) {
+            node.close();
+        }
+        deleteStores();
+    }
+
+    private void deleteStores() throws IOException {
+        if (storesDirectory == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(storesDirectory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(storesDirectory);
+    }
+
+    private void startNodes() throws IOException, InterruptedException {
+        for (int i = 0; i < config.getNumberOfNodes(); i++) {
+            nodes.add(newNode("Node " + i));
+        }
+        for (int i = 1; i < nodes.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                nodes.get(i).connect(nodes.get(j));
+            }
+        }
+        waitForPeers(nodes, nodes.size() - 1);
+        LOGGER.info(String.format("Started %d fully connected nodes.", nodes.size()));
+    }
+
+    private static void waitForPeers(List<Node> nodes, int peers) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (nodes.stream().anyMatch(node -> node.getTransport().getPeers().size() < peers)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Nodes failed to connect in " + CONNECT_TIMEOUT + " ms.");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void synchronizeLateNode() throws IOException, InterruptedException {
+        try (Node late = newNode("Node " + nodes.size() + " (late)")) {
+            for (Node node : nodes) {
+                late.connect(node);
+            }
+            waitForPeers(List.of(late), nodes.size());
+            int synced = late.synchronize().get(SYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            Hash256 tip = late.getBlockchain().getLast().getBlockHash();
+            long sharingTip = nodes.stream()
+                    .filter(node -> node.getBlockchain().getLast().getBlockHash().equals(tip))
+                    .count();
+            LOGGER.info(String.format("Late node appended %d blocks, its tip is shared by %d of %d nodes.", synced, sharingTip, nodes.size()));
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.error("Late node failed to synchronize.", e);
+        }
+    }
+
+    /* Each node gets its own block store if lazy transaction bodies are enabled, stores don't outlive the simulation */
+    private Node newNode(String name) throws IOException {
+        Node node = new Node(name, config.isUseCompactBlocks(), config.getInventoryBatchSize(), config.getInventoryFlushInterval());
+        if (config.isUseLazyTransactionBodies()) {
+            if (storesDirectory == null) {
+                storesDirectory = Files.createTempDirectory("network-nodes");
+            }
+            node.useBlockStore(storesDirectory.resolve(name.replace(' ', '_')).toString(), config.getTransactionsCacheCapacity());
+        }
+        node.setZeroCopyServing(config.isUseZeroCopyServing());
+        return node;
+    }
+
+    private void initializeMinersAndClients() {
+        try (KeyPairPool pool = new KeyPairPool(config.getSignatureScheme(), config.getKeyPairPoolDepth(), config.getKeyPairPoolThreads())) {
+            for (Node node : nodes) {
+                for (int i = 0; i < config.getNumberOfMiners(); i++) {
+                    String name = node.getName() + " miner " + i;
+                    miners.add(new NodeMiner(node, new SimpleWallet(pool.take()), name, this));
+                }
+            }
+            for (int i = 0; i < config.getNumberOfClients(); i++) {
+                clients.add(new SimpleWallet(pool.take()));
+            }
+        }
+    }
+
+    /* Clients and miners send to random nodes at the rate of the load profile, inclusion is observed on the first node */
+    private LoadGenerator startLoad() {
+        List<Wallet> senders = new ArrayList<>(clients);
+        miners.forEach(miner -> senders.add(miner.getWallet()));
+        List<String> receivers = senders.stream().map(Wallet::getAddress).collect(Collectors.toList());
+        Random random = new Random();
+        LoadGenerator load = new LoadGenerator(nodes.get(0).getBlockchain(),
+                transaction -> nodes.get(random.nextInt(nodes.size())).submitTransaction(transaction),
+                senders, receivers, config.getLoadProfile(), config.getLoadRate(), config.getLoadPeriod());
+        load.start(config.getInitialClientsDelay());
+        return load;
+    }
+
+    private void clientsActivity() {
+        Random random = new Random();
+        SimpleWallet sender = clients.get(random.nextInt(clients.size()));
+        Node node = nodes.get(random.nextInt(nodes.size()));
+        long balance = node.getBlockchain().coinsOfClient(sender.getAddress());
+        if (balance > 0) {
+            long toSend = Math.max(1, random.nextInt((int) (balance / 4) + 1));
+            node.submitTransaction(sender.createTransaction(randomAddress(sender.getAddress()), toSend));
+        }
+    }
+
+    public String randomAddress(String excluded) {
+        List<String> addresses = new ArrayList<>();
+        clients.forEach(client -> addresses.add(client.getAddress()));
+        miners.forEach(miner -> addresses.add(miner.getAddress()));
+        addresses.remove(excluded);
+        return addresses.get(new Random().nextInt(addresses.size()));
+    }
+
+    public int getAssumedSize() {
+        return config.getAssumedBlockchainSize();
+    }
+
+    private void report(double seconds) {
+        long tips = nodes.stream()
+                .map(node -> node.getBlockchain().getLast().getBlockHash())
+                .distinct()
+                .count();
+        LOGGER.info(String.format("%d nodes reached height %d in %.1f s, %d distinct chain tips.",
+                nodes.size(), getAssumedSize(), seconds, tips));
+        LOGGER.info(String.format("Forks: %d reorganizations, deepest %d blocks, %d side blocks and %d orphans kept.",
+                nodes.stream().mapToLong(node -> node.getBlockchain().getReorganizations()).sum(),
+                nodes.stream().mapToInt(node -> node.getBlockchain().getDeepestReorganization()).max().orElse(0),
+                nodes.stream().mapToInt(node -> node.getBlockchain().getSideBlocksCount()).sum(),
+                nodes.stream().mapToInt(node -> node.getBlockchain().getOrphansCount()).sum()));
+        logPropagation("Block", nodes.stream().map(Node::getBlockArrivals).collect(Collectors.toList()));
+        logPropagation("Transaction", nodes.stream().map(Node::getTransactionArrivals).collect(Collectors.toList()));
+        long messages = nodes.stream().mapToLong(node -> node.getTransport().getSentMessages()).sum();
+        long bytes = nodes.stream().mapToLong(node -> node.getTransport().getSentBytes()).sum();
+        LOGGER.info(String.format("Traffic: %d messages, %d bytes, %.1f messages/s, %.1f KB/s.",
+                messages, bytes, messages / seconds, bytes / seconds / 1024));
+        logBlockRelay();
+        logLoad(seconds, bytes);
+    }
+
+    /* Cost of a transaction on a node: everything a node sends and all CPU time of its processing, divided by
+     * transactions it accepted */
+    private void logLoad(double seconds, long bytes) {
+        long accepted = nodes.stream().mapToLong(Node::getTransactionsAccepted).sum();
+        long cpuTime = nodes.stream().mapToLong(Node::getProcessingCpuTime).sum();
+        if (accepted == 0) {
+            return;
+        }
+        LOGGER.info(String.format("Load: %.1f transactions/s per node, %.0f bytes sent and %.1f us of CPU per accepted transaction.",
+                accepted / seconds / nodes.size(), (double) bytes / accepted, cpuTime / 1e3 / accepted));
+    }
+
+    private void logBlockRelay() {
+        long[] bytesByType = new long[MessageType.values().length];
+        for (Node node : nodes) {
+            for (MessageType type : MessageType.values()) {
+                bytesByType[type.ordinal()] += node.getTransport().getSentBytes(type);
+            }
+        }
+        long blockBytes = bytesByType[MessageType.BLOCK.ordinal()] + bytesByType[MessageType.COMPACT_BLOCK.ordinal()]
+                + bytesByType[MessageType.GET_BLOCK_TRANSACTIONS.ordinal()] + bytesByType[MessageType.BLOCK_TRANSACTIONS.ordinal()];
+        LOGGER.info(String.format("Block relay: %d bytes, %d in full blocks, %d in compact blocks, %d in requests, %d in responses.",
+                blockBytes, bytesByType[MessageType.BLOCK.ordinal()], bytesByType[MessageType.COMPACT_BLOCK.ordinal()],
+                bytesByType[MessageType.GET_BLOCK_TRANSACTIONS.ordinal()], bytesByType[MessageType.BLOCK_TRANSACTIONS.ordinal()]));
+        if (!config.isUseCompactBlocks()) {
+            return;
+        }
+        long received = nodes.stream().mapToLong(Node::getCompactBlocksReceived).sum();
+        long fromPool = nodes.stream().mapToLong(Node::getCompactBlocksCompleteFromPool).sum();
+        long requested = nodes.stream().mapToLong(Node::getTransactionsRequested).sum();
+        List<Long> times = new ArrayList<>();
+        for (Node node : nodes) {
+            synchronized (node.getReconstructionTimes()) {
+                times.addAll(node.getReconstructionTimes());
+            }
+        }
+        Collections.sort(times);
+        if (times.isEmpty()) {
+            LOGGER.info(String.format("Compact blocks: %d received, none rebuilt.", received));
+            return;
+        }
+        LOGGER.info(String.format("Compact blocks: %d received, %d rebuilt from pending transactions alone, %d transactions requested, " +
+                        "reconstruction p50 %.2f ms, max %.2f ms.", received, fromPool, requested,
+                percentile(times, 0.5) / 1e6, times.get(times.size() - 1) / 1e6));
+    }
+
+    /* Propagation time of an item is the time between its first and its last acceptance, only items accepted
+     * by all nodes are counted */
+    private void logPropagation(String itemName, List<Map<Hash256, Long>> arrivals) {
+        Map<Hash256, List<Long>> times = new HashMap<>();
+        arrivals.forEach(nodeArrivals -> nodeArrivals.forEach((hash, time) ->
+                times.computeIfAbsent(hash, key -> new ArrayList<>()).add(time)));
+        List<Long> propagation = times.values().stream()
+                .filter(nodeTimes -> nodeTimes.size() == nodes.size())
+                .map(nodeTimes -> Collections.max(nodeTimes) - Collections.min(nodeTimes))
+                .sorted()
+                .collect(Collectors.toList());
+        if (propagation.isEmpty()) {
+            LOGGER.info(itemName + " propagation: no items reached all nodes.");
+            return;
+        }
+        LOGGER.info(String.format("%s propagation: %d of %d reached all nodes, p50 %.2f ms, p99 %.2f ms, max %.2f ms.",
+                itemName, propagation.size(), times.size(), percentile(propagation, 0.5) / 1e6,
+                percentile(propagation, 0.99) / 1e6, propagation.get(propagation.size() - 1) / 1e6));
+    }
+
+    private static double percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
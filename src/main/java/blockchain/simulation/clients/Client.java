@@ -1,19 +1,33 @@
 package blockchain.simulation.clients;
 
 import blockchain.core.SimpleWallet;
+import blockchain.encryption.SignatureScheme;
 import blockchain.core.Wallet;
 import blockchain.core.SignedTransaction;
 
 import java.io.Serializable;
+import java.security.KeyPair;
 import java.util.Objects;
 
 public class Client implements Serializable {
     private final Wallet wallet;
     private final String name;
 
+    /* Value generated for the class before constructors were added, keeps previously saved simulations readable */
+    private static final long serialVersionUID = -6273204046819145063L;
+
     public Client(String name) {
+        this(name, SignatureScheme.RSA);
+    }
+
+    public Client(String name, SignatureScheme signatureScheme) {
+        this.name = name;
+        this.wallet = new SimpleWallet(signatureScheme);
+    }
+
+    public Client(String name, KeyPair keyPair) {
         this.name = name;
-        this.wallet = new SimpleWallet();
+        this.wallet = new SimpleWallet(keyPair);
     }
 
     public void sendTransactionToBlockchain(String receiver, long amount) {
@@ -37,6 +51,10 @@ public class Client implements Serializable {
         return wallet.getAddress();
     }
 
+    public Wallet getWallet() {
+        return wallet;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
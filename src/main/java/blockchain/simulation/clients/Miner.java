@@ -3,11 +3,13 @@ package blockchain.simulation.clients;
 import blockchain.core.Block;
 import blockchain.core.Blockchain;
 import blockchain.core.MinerReward;
+import blockchain.encryption.SignatureScheme;
 import blockchain.simulation.clients.factories.BlockFactory;
 import blockchain.simulation.BlockchainSimulator;
 
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.security.KeyPair;
 import java.util.Random;
 
 public class Miner implements Runnable, Serializable {
@@ -17,11 +19,22 @@ public class Miner implements Runnable, Serializable {
     private transient BlockchainSimulator simulator;
     private Client client;
 
+    /* Value generated for the class before constructors were added, keeps previously saved simulations readable */
+    private static final long serialVersionUID = 6492002053565231742L;
+
     public Miner(BlockchainSimulator simulator, String minerName) {
+        this(simulator, minerName, new Client("Miner " + minerName, SignatureScheme.RSA));
+    }
+
+    public Miner(BlockchainSimulator simulator, String minerName, KeyPair keyPair) {
+        this(simulator, minerName, new Client("Miner " + minerName, keyPair));
+    }
+
+    private Miner(BlockchainSimulator simulator, String minerName, Client client) {
         this.blockChain = Blockchain.getInstance();
         this.factory = new BlockFactory(blockChain);
         this.minerName = minerName;
-        this.client = new Client("Miner " + minerName);
+        this.client = client;
         this.simulator = simulator;
     }
 
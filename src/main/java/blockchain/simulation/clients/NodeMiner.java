@@ -0,0 +1,59 @@
+package blockchain.simulation.clients;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.MinerReward;
+import blockchain.core.SimpleWallet;
+import blockchain.network.Node;
+import blockchain.simulation.NetworkSimulator;
+import blockchain.simulation.clients.factories.BlockFactory;
+
+import java.util.Random;
+
+/* Miner of one network node. Works like Miner, but on the node's own chain, and announces its blocks to the network */
+public class NodeMiner implements Runnable {
+    private final Node node;
+    private final SimpleWallet wallet;
+    private final String minerName;
+    private final BlockFactory factory;
+    private final NetworkSimulator simulator;
+
+    public NodeMiner(Node node, SimpleWallet wallet, String minerName, NetworkSimulator simulator) {
+        this.node = node;
+        this.wallet = wallet;
+        this.minerName = minerName;
+        this.factory = new BlockFactory(node.getBlockchain());
+        this.simulator = simulator;
+    }
+
+    @Override
+    public void run() {
+        Blockchain blockchain = node.getBlockchain();
+        while (simulator.getAssumedSize() > blockchain.size() && !Thread.currentThread().isInterrupted()) {
+            MinerReward reward = new MinerReward(wallet.getAddress(), Blockchain.REWARD_VALUE);
+            Block block = factory.createNewBlock(reward, minerName);
+            if (blockchain.appendNextBlock(block)) {
+                node.publishBlock(block);
+                prepareTransaction();
+            }
+        }
+    }
+
+    private void prepareTransaction() {
+        long coins = node.getBlockchain().coinsOfClient(wallet.getAddress());
+        if (coins < 4) {
+            return;
+        }
+        long amount = 1 + new Random().nextInt((int) coins / 4);
+        String receiver = simulator.randomAddress(wallet.getAddress());
+        node.submitTransaction(wallet.createTransaction(receiver, amount));
+    }
+
+    public String getAddress() {
+        return wallet.getAddress();
+    }
+
+    public SimpleWallet getWallet() {
+        return wallet;
+    }
+}
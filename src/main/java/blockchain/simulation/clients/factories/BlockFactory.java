@@ -2,12 +2,14 @@ package blockchain.simulation.clients.factories;
 
 import blockchain.core.Block;
 import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
 import blockchain.core.MinerReward;
-import blockchain.core.SignedTransaction;
+import blockchain.core.TransactionsTemplate;
 import blockchain.encryption.EncryptionUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Date;
-import java.util.List;
 import java.util.Random;
 
 public class BlockFactory implements Factory {
@@ -27,34 +29,42 @@ public class BlockFactory implements Factory {
     }
 
     private Block.Builder generateBlockBuilder(MinerReward reward) {
-        List<SignedTransaction> transactions = blockChain.getTransactionsToPublish();
-        String transactionHash = EncryptionUtils.hashListOfTransactions(transactions);
+        TransactionsTemplate template = blockChain.getTransactionsTemplate();
+        Hash256 transactionHash = template.getTransactionsHash();
         setNumberOfStartingZeros(blockChain.getNumberOfZerosRequired());
         int id = blockChain.getLast().getId() + 1;
-        String prevHash = blockChain.getLast()
+        Hash256 prevHash = blockChain.getLast()
                 .getBlockHash();
         NonceHashTimeWrapper foundNonceHashAndTime = findNonceHashAndTime(id, prevHash, transactionHash, reward);
         return Block.newBuilder()
+                .setVersion(template.getVersion())
                 .setId(id)
                 .setTimestamp(foundNonceHashAndTime.timestamp)
                 .setTransactionsHash(transactionHash)
                 .setNonce(foundNonceHashAndTime.nonce)
                 .setPreviousHash(prevHash)
                 .setHash(foundNonceHashAndTime.hash)
-                .setTransactions(transactions)
+                .setTransactions(template.getTransactions())
                 .setMinerReward(reward);
     }
 
-    private NonceHashTimeWrapper findNonceHashAndTime(int id, String prevHash, String transactionHash, MinerReward reward) {
-        String startingZeros = "0".repeat(Math.max(0, numberOfStartingZeros));
-        int nonce;
-        String newBlockHash;
+    /* Same input as Block.calculateHash, but constant parts are encoded once and one digest is reused for all tries */
+    private NonceHashTimeWrapper findNonceHashAndTime(int id, Hash256 prevHash, Hash256 transactionHash, MinerReward reward) {
+        int requiredZeroBits = 4 * Math.max(0, numberOfStartingZeros);
         Random random = new Random();
         long time = new Date().getTime();
+        byte[] prefix = (reward.toString() + id + time).getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = (prevHash.toHex() + transactionHash.toHex()).getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = EncryptionUtils.sha256Digest();
+        int nonce;
+        Hash256 newBlockHash;
         do {
             nonce = random.nextInt((int) Math.pow(10, numberOfStartingZeros + 4));
-            newBlockHash = EncryptionUtils.applySha256(reward.toString() + id + time + nonce + prevHash + transactionHash);
-        } while (!newBlockHash.substring(0, numberOfStartingZeros).equals(startingZeros));
+            digest.update(prefix);
+            digest.update(Integer.toString(nonce).getBytes(StandardCharsets.UTF_8));
+            digest.update(suffix);
+            newBlockHash = Hash256.wrap(digest.digest());
+        } while (newBlockHash.leadingZeroBits() < requiredZeroBits);
         return new NonceHashTimeWrapper(nonce, newBlockHash, time);
     }
 
@@ -64,10 +74,10 @@ public class BlockFactory implements Factory {
 
     private static class NonceHashTimeWrapper {
         private int nonce;
-        private String hash;
+        private Hash256 hash;
         private long timestamp;
 
-        private NonceHashTimeWrapper(int nonce, String hash, long timestamp) {
+        private NonceHashTimeWrapper(int nonce, Hash256 hash, long timestamp) {
             this.nonce = nonce;
             this.hash = hash;
             this.timestamp = timestamp;
@@ -1,5 +1,8 @@
 package blockchain.simulation.config;
 
+import blockchain.encryption.SignatureScheme;
+import blockchain.simulation.LoadProfile;
+
 public class Configuration {
     /* Base configuration, used if no specific config file is provided or file is missing some particular information. */
     private int numberOfMiners = 4;
@@ -8,6 +11,23 @@ public class Configuration {
     private int initialClientsDelay = 100; //milliseconds
     private int clientsTransactionsDelay = 500; //milliseconds
     private boolean useFullTransactionsCheckOnLoading = false;
+    private boolean useLazyTransactionBodies = false;
+    private boolean useOffHeapTransactionBodies = false;
+    private long transactionsCacheCapacity = 10000; //number of transactions
+    private int checkpointInterval = 100; //blocks, 0 disables checkpoints
+    private SignatureScheme signatureScheme = SignatureScheme.RSA;
+    private int keyPairPoolDepth = 64; //key pairs, 0 disables background generation
+    private int keyPairPoolThreads = 0; //0 uses all available processors
+    private String keyStorePath = null; //file of pre-generated key pairs, null disables it
+    private int numberOfNodes = 1; //more than 1 runs the in-process network simulation
+    private boolean useCompactBlocks = true; //nodes relay blocks as header and short transaction ids
+    private int inventoryBatchSize = 32; //transaction ids per announcement, 0 makes nodes push full transactions
+    private int inventoryFlushInterval = 50; //milliseconds
+    private boolean useZeroCopyServing = true; //nodes serve stored block bodies straight from files
+    private int apiPort = 0; //port of the local HTTP API, 0 disables it
+    private LoadProfile loadProfile = null; //open-loop load of clients, null keeps clients sending at fixed delays
+    private double loadRate = 100; //transactions per second
+    private int loadPeriod = 10000; //milliseconds, length of a ramp or time between bursts
 
     public Configuration() {
         super();
@@ -60,4 +80,142 @@ public class Configuration {
     public void setUseFullTransactionsCheckOnLoading(boolean useFullTransactionsCheckOnLoading) {
         this.useFullTransactionsCheckOnLoading = useFullTransactionsCheckOnLoading;
     }
+
+    public boolean isUseLazyTransactionBodies() {
+        return useLazyTransactionBodies;
+    }
+
+    public void setUseLazyTransactionBodies(boolean useLazyTransactionBodies) {
+        this.useLazyTransactionBodies = useLazyTransactionBodies;
+    }
+
+    public boolean isUseOffHeapTransactionBodies() {
+        return useOffHeapTransactionBodies;
+    }
+
+    public void setUseOffHeapTransactionBodies(boolean useOffHeapTransactionBodies) {
+        this.useOffHeapTransactionBodies = useOffHeapTransactionBodies;
+    }
+
+    public long getTransactionsCacheCapacity() {
+        return transactionsCacheCapacity;
+    }
+
+    public void setTransactionsCacheCapacity(long transactionsCacheCapacity) {
+        this.transactionsCacheCapacity = transactionsCacheCapacity;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /* Unknown scheme name in config file is read as null, RSA is used then */
+    public SignatureScheme getSignatureScheme() {
+        return signatureScheme == null ? SignatureScheme.RSA : signatureScheme;
+    }
+
+    public void setSignatureScheme(SignatureScheme signatureScheme) {
+        this.signatureScheme = signatureScheme;
+    }
+
+    public int getKeyPairPoolDepth() {
+        return keyPairPoolDepth;
+    }
+
+    public void setKeyPairPoolDepth(int keyPairPoolDepth) {
+        this.keyPairPoolDepth = keyPairPoolDepth;
+    }
+
+    public int getKeyPairPoolThreads() {
+        return keyPairPoolThreads > 0 ? keyPairPoolThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setKeyPairPoolThreads(int keyPairPoolThreads) {
+        this.keyPairPoolThreads = keyPairPoolThreads;
+    }
+
+    public String getKeyStorePath() {
+        return keyStorePath;
+    }
+
+    public void setKeyStorePath(String keyStorePath) {
+        this.keyStorePath = keyStorePath;
+    }
+
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public void setNumberOfNodes(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    public boolean isUseCompactBlocks() {
+        return useCompactBlocks;
+    }
+
+    public void setUseCompactBlocks(boolean useCompactBlocks) {
+        this.useCompactBlocks = useCompactBlocks;
+    }
+
+    public int getInventoryBatchSize() {
+        return inventoryBatchSize;
+    }
+
+    public void setInventoryBatchSize(int inventoryBatchSize) {
+        this.inventoryBatchSize = inventoryBatchSize;
+    }
+
+    public int getInventoryFlushInterval() {
+        return inventoryFlushInterval;
+    }
+
+    public void setInventoryFlushInterval(int inventoryFlushInterval) {
+        this.inventoryFlushInterval = inventoryFlushInterval;
+    }
+
+    public boolean isUseZeroCopyServing() {
+        return useZeroCopyServing;
+    }
+
+    public void setUseZeroCopyServing(boolean useZeroCopyServing) {
+        this.useZeroCopyServing = useZeroCopyServing;
+    }
+
+    public int getApiPort() {
+        return apiPort;
+    }
+
+    public void setApiPort(int apiPort) {
+        this.apiPort = apiPort;
+    }
+
+    /* Unknown profile name in config file is read as null, clients use fixed delays then */
+    public LoadProfile getLoadProfile() {
+        return loadProfile;
+    }
+
+    public void setLoadProfile(LoadProfile loadProfile) {
+        this.loadProfile = loadProfile;
+    }
+
+    public double getLoadRate() {
+        return loadRate;
+    }
+
+    public void setLoadRate(double loadRate) {
+        this.loadRate = loadRate;
+    }
+
+    public int getLoadPeriod() {
+        return loadPeriod;
+    }
+
+    public void setLoadPeriod(int loadPeriod) {
+        this.loadPeriod = loadPeriod;
+    }
 }
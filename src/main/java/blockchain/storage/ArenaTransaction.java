@@ -0,0 +1,141 @@
+package blockchain.storage;
+
+import blockchain.core.Hash256;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.core.TransactionRecord;
+import blockchain.encryption.SignatureScheme;
+
+import java.nio.ByteBuffer;
+
+/* Flyweight view of a transaction stored in TransactionArena, reads fields directly from the off-heap buffer.
+ * One instance is moved over many transactions, so it must not be kept by callers. */
+public final class ArenaTransaction implements TransactionRecord {
+    static final int HEADER_SIZE = 1 + 1 + 4 + 4 + 8 + 8 + 4 + 2 + 2;
+    static final int OUTPUT_SIZE = 4 + 8;
+
+    private static final int SCHEME = 1;
+    private static final int SENDER = 2;
+    private static final int RECEIVER = 6;
+    private static final int AMOUNT = 10;
+    private static final int TIMESTAMP = 18;
+    private static final int PUBLIC_KEY = 26;
+    private static final int SIGNATURE_LENGTH = 30;
+    private static final int OUTPUTS = 32;
+
+    private final TransactionArena arena;
+    private ByteBuffer chunk;
+    private int offset;
+
+    ArenaTransaction(TransactionArena arena) {
+        this.arena = arena;
+    }
+
+    void moveTo(ByteBuffer chunk, int offset) {
+        this.chunk = chunk;
+        this.offset = offset;
+    }
+
+    int length() {
+        return HEADER_SIZE + signatureLength() + storedOutputs() * OUTPUT_SIZE;
+    }
+
+    private int signatureLength() {
+        return chunk.getShort(offset + SIGNATURE_LENGTH) & 0xffff;
+    }
+
+    /* 0 for single output transactions, their receiver and amount are in the header only */
+    private int storedOutputs() {
+        return chunk.getShort(offset + OUTPUTS) & 0xffff;
+    }
+
+    private int outputOffset(int output) {
+        return offset + HEADER_SIZE + signatureLength() + output * OUTPUT_SIZE;
+    }
+
+    @Override
+    public int getVersion() {
+        return chunk.get(offset) & 0xff;
+    }
+
+    @Override
+    public SignatureScheme getSignatureScheme() {
+        return SignatureScheme.fromId(chunk.get(offset + SCHEME));
+    }
+
+    @Override
+    public int getSenderId() {
+        return chunk.getInt(offset + SENDER);
+    }
+
+    @Override
+    public int getReceiverId() {
+        return chunk.getInt(offset + RECEIVER);
+    }
+
+    @Override
+    public long getAmount() {
+        return chunk.getLong(offset + AMOUNT);
+    }
+
+    @Override
+    public int getOutputCount() {
+        return Math.max(1, storedOutputs());
+    }
+
+    @Override
+    public int getReceiverId(int output) {
+        return storedOutputs() == 0 ? getReceiverId() : chunk.getInt(outputOffset(output));
+    }
+
+    @Override
+    public long getAmount(int output) {
+        return storedOutputs() == 0 ? getAmount() : chunk.getLong(outputOffset(output) + 4);
+    }
+
+    @Override
+    public long getTimestamp() {
+        return chunk.getLong(offset + TIMESTAMP);
+    }
+
+    @Override
+    public ByteBuffer getSignatureView() {
+        return chunk.slice(offset + HEADER_SIZE, signatureLength()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer getPublicKeyView() {
+        return ByteBuffer.wrap(publicKey()).asReadOnlyBuffer();
+    }
+
+    private byte[] publicKey() {
+        return arena.publicKey(chunk.getInt(offset + PUBLIC_KEY));
+    }
+
+    /* Id needs the signing payload, which has address strings, so the transaction is copied first */
+    @Override
+    public Hash256 getId() {
+        return toSignedTransaction().getId();
+    }
+
+    /* Copies the transaction onto heap */
+    public SignedTransaction toSignedTransaction() {
+        byte[] signature = new byte[signatureLength()];
+        chunk.get(offset + HEADER_SIZE, signature);
+        Transaction transaction;
+        int outputs = storedOutputs();
+        if (outputs == 0) {
+            transaction = new Transaction(getSenderId(), getReceiverId(), getAmount());
+        } else {
+            int[] receiverIds = new int[outputs];
+            long[] amounts = new long[outputs];
+            for (int i = 0; i < outputs; i++) {
+                receiverIds[i] = chunk.getInt(outputOffset(i));
+                amounts[i] = chunk.getLong(outputOffset(i) + 4);
+            }
+            transaction = new Transaction(getSenderId(), receiverIds, amounts);
+        }
+        return new SignedTransaction(getVersion(), transaction, getTimestamp(), signature, publicKey(),
+                getSignatureScheme());
+    }
+}
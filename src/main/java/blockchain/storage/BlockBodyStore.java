@@ -0,0 +1,165 @@
+package blockchain.storage;
+
+import blockchain.core.BlockBodyStorage;
+import blockchain.core.SignedTransaction;
+import blockchain.serialization.BinaryCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/* Append-only on-disk store of block bodies (transactions lists). Bodies are kept in a data file, while an index file
+ * holds (block id, offset, length) records. The last record for a given id wins, so a block replaced at the same
+ * height simply gets a new record. Whole index is kept in memory, reads go through the LRU cache. */
+public class BlockBodyStore implements BlockBodyStorage, Closeable {
+    private static final int INDEX_RECORD_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final TransactionsCache cache;
+    private long[] offsets;
+    private int[] lengths;
+
+    public BlockBodyStore(String path, long cacheCapacity) throws IOException {
+        Path dataPath = Paths.get(path + ".dat");
+        Path indexPath = Paths.get(path + ".idx");
+        this.dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cache = new TransactionsCache(cacheCapacity);
+        this.offsets = new long[64];
+        this.lengths = new int[64];
+        Arrays.fill(lengths, -1);
+        readIndex();
+    }
+
+    private void readIndex() throws IOException {
+        long dataSize = dataChannel.size();
+        long records = indexChannel.size() / INDEX_RECORD_SIZE;
+        ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+        for (long i = 0; i < records; i++) {
+            record.clear();
+            indexChannel.read(record, i * INDEX_RECORD_SIZE);
+            record.flip();
+            int blockId = record.getInt();
+            long offset = record.getLong();
+            int length = record.getInt();
+            /* Skips records of bodies which weren't fully written */
+            if (offset + length <= dataSize) {
+                setIndexEntry(blockId, offset, length);
+            }
+        }
+        indexChannel.position(records * INDEX_RECORD_SIZE);
+    }
+
+    private void setIndexEntry(int blockId, long offset, int length) {
+        if (blockId >= offsets.length) {
+            int newLength = Math.max(offsets.length * 2, blockId + 1);
+            offsets = Arrays.copyOf(offsets, newLength);
+            int oldLength = lengths.length;
+            lengths = Arrays.copyOf(lengths, newLength);
+            Arrays.fill(lengths, oldLength, newLength, -1);
+        }
+        offsets[blockId] = offset;
+        lengths[blockId] = length;
+    }
+
+    public synchronized boolean contains(int blockId) {
+        return blockId < lengths.length && lengths[blockId] >= 0;
+    }
+
+    @Override
+    public synchronized void write(int blockId, List<SignedTransaction> transactions) {
+        try {
+            byte[] body = encode(transactions);
+            long offset = dataChannel.size();
+            dataChannel.write(ByteBuffer.wrap(body), offset);
+
+            ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+            record.putInt(blockId).putLong(offset).putInt(body.length).flip();
+            while (record.hasRemaining()) {
+                indexChannel.write(record);
+            }
+            setIndexEntry(blockId, offset, body.length);
+            cache.put(blockId, Collections.unmodifiableList(transactions));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing body of block " + blockId, e);
+        }
+    }
+
+    @Override
+    public List<SignedTransaction> loadTransactions(int blockId) {
+        List<SignedTransaction> cached = cache.get(blockId);
+        if (cached != null) {
+            return cached;
+        }
+        long offset;
+        int length;
+        synchronized (this) {
+            if (!contains(blockId)) {
+                throw new IllegalStateException("No body stored for block " + blockId);
+            }
+            offset = offsets[blockId];
+            length = lengths[blockId];
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (dataChannel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of body file");
+                }
+            }
+            List<SignedTransaction> transactions = Collections.unmodifiableList(decode(buffer.array()));
+            cache.put(blockId, transactions);
+            return transactions;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading body of block " + blockId, e);
+        }
+    }
+
+    /* Location of an encoded body in the data file, the encoding is the one of BinaryCodec.writeTransactions */
+    public synchronized FileRegion getRegion(int blockId) {
+        if (!contains(blockId)) {
+            return null;
+        }
+        return new FileRegion(dataChannel, offsets[blockId], lengths[blockId]);
+    }
+
+    public void flush() throws IOException {
+        dataChannel.force(false);
+        indexChannel.force(false);
+    }
+
+    public TransactionsCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        dataChannel.close();
+        indexChannel.close();
+    }
+
+    private static byte[] encode(List<SignedTransaction> transactions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        BinaryCodec.writeTransactions(output, transactions);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<SignedTransaction> decode(byte[] body) throws IOException {
+        return BinaryCodec.readTransactions(new DataInputStream(new ByteArrayInputStream(body)));
+    }
+}
@@ -0,0 +1,102 @@
+package blockchain.storage;
+
+import blockchain.core.ChainState;
+import blockchain.utils.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/* Keeps checkpoints of the chain state as files named <prefix>_<height>. Each checkpoint is written into a temporary
+ * file first and then atomically moved, so a crash never leaves a partially written checkpoint. */
+public class CheckpointStore {
+    public static final int KEPT_CHECKPOINTS = 2;
+
+    private final Path directory;
+    private final String prefix;
+    private final int interval;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointStore.class);
+
+    public CheckpointStore(String directory, String prefix, int interval) {
+        this.directory = Paths.get(directory);
+        this.prefix = prefix;
+        this.interval = interval;
+    }
+
+    public boolean isDue(int height) {
+        return interval > 0 && height > 0 && height % interval == 0;
+    }
+
+    public void write(ChainState state) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(prefix + "_" + state.getHeight());
+        Path temporary = directory.resolve(prefix + "_" + state.getHeight() + ".tmp");
+        SerializationUtils.serialize(state, temporary.toString());
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        removeOldCheckpoints();
+    }
+
+    private void removeOldCheckpoints() throws IOException {
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = KEPT_CHECKPOINTS; i < checkpoints.size(); i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+    }
+
+    /* Returns the latest readable checkpoint accepted by a given predicate, e.g. one that matches loaded blocks */
+    public Optional<ChainState> loadLatest(Predicate<ChainState> matchesChain) {
+        try {
+            for (Path checkpoint : listCheckpoints()) {
+                try {
+                    ChainState state = (ChainState) SerializationUtils.deserialize(checkpoint.toString());
+                    if (matchesChain.test(state)) {
+                        return Optional.of(state);
+                    }
+                    LOGGER.info("Checkpoint " + checkpoint.getFileName() + " doesn't match blockchain, skipping.");
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    LOGGER.warn("Error reading checkpoint " + checkpoint.getFileName(), e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error listing checkpoints, path" + directory, e);
+        }
+        return Optional.empty();
+    }
+
+    /* Checkpoints sorted from the latest */
+    private List<Path> listCheckpoints() throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        if (Files.notExists(directory)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "_*")) {
+            for (Path path : stream) {
+                if (parseHeight(path) >= 0) {
+                    checkpoints.add(path);
+                }
+            }
+        }
+        checkpoints.sort(Comparator.comparingInt(CheckpointStore::parseHeight).reversed());
+        return checkpoints;
+    }
+
+    private static int parseHeight(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(name.lastIndexOf('_') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
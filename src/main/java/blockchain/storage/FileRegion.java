@@ -0,0 +1,28 @@
+package blockchain.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/* Range of bytes in a file, which can be transferred to a channel without copying it through the java heap */
+public final class FileRegion {
+    private final FileChannel channel;
+    private final long position;
+    private final long count;
+
+    public FileRegion(FileChannel channel, long position, long count) {
+        this.channel = channel;
+        this.position = position;
+        this.count = count;
+    }
+
+    /* Transfers bytes of the region which follow a given number of already transferred ones, returns number of bytes
+     * transferred by this call, which for a non-blocking target may be anything down to 0 */
+    public long transferTo(WritableByteChannel target, long transferred) throws IOException {
+        return channel.transferTo(position + transferred, count - transferred, target);
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
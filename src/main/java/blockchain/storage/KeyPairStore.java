@@ -0,0 +1,66 @@
+package blockchain.storage;
+
+import blockchain.encryption.SignatureScheme;
+import blockchain.utils.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/* File of pre-generated key pairs. Lets repeated runs skip key generation and get the same wallets, so benchmark runs
+ * are comparable. The file is written into a temporary file first and then atomically moved, like checkpoints. */
+public class KeyPairStore {
+    private final Path path;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyPairStore.class);
+
+    public KeyPairStore(String path) {
+        this.path = Paths.get(path);
+    }
+
+    /* Returns stored pairs of a given scheme, an empty list if the file is missing or unreadable. Pairs of other
+     * schemes stay in the file. */
+    public List<KeyPair> load(SignatureScheme scheme) {
+        return loadAll().stream()
+                .filter(keyPair -> SignatureScheme.of(keyPair.getPublic()) == scheme)
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<KeyPair> loadAll() {
+        if (Files.notExists(path)) {
+            return new ArrayList<>();
+        }
+        try {
+            return (List<KeyPair>) SerializationUtils.deserialize(path.toString());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Keystore " + path + " can't be read, key pairs will be generated.", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /* Adds pairs after the stored ones, of all schemes */
+    public void append(List<KeyPair> keyPairs) throws IOException {
+        List<KeyPair> all = loadAll();
+        all.addAll(keyPairs);
+        save(all);
+    }
+
+    public void save(List<KeyPair> keyPairs) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = Paths.get(path + ".tmp");
+        SerializationUtils.serialize(new ArrayList<>(keyPairs), temporary.toString());
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,169 @@
+package blockchain.storage;
+
+import blockchain.core.BlockBodyStorage;
+import blockchain.core.PublicKeyStore;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.core.TransactionRecord;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/* Off-heap store of confirmed transactions. Bodies are appended in binary form to direct buffers (chunks), so a long
+ * chain is kept as a few large buffers instead of millions of small objects the garbage collector has to trace.
+ * Transaction layout: version, signature scheme id (1 byte each), sender id, receiver id (4 bytes each), amount,
+ * timestamp (8 bytes each), public key index (4 bytes), signature length, number of outputs (2 bytes each) and signature.
+ * Outputs of multi-output transactions (receiver id and amount each) follow the signature, the header then holds
+ * the first receiver and the total amount, single output transactions store 0 outputs. Addresses are
+ * AddressRegistry ids, public keys are canonical instances of PublicKeyStore kept once on heap. Contents live as long as the process does. */
+public class TransactionArena implements BlockBodyStorage {
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final List<byte[]> publicKeys = new ArrayList<>();
+    private final Map<byte[], Integer> publicKeyIndexes = new IdentityHashMap<>();
+    private ByteBuffer current;
+    /* Per block id: chunk index and offset of the first transaction, number of transactions (-1 if absent) */
+    private int[] blockChunks = new int[64];
+    private int[] blockOffsets = new int[64];
+    private int[] blockCounts = new int[64];
+    private long usedBytes;
+    private long transactions;
+
+    public TransactionArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public TransactionArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+        Arrays.fill(blockCounts, -1);
+    }
+
+    public synchronized boolean contains(int blockId) {
+        return blockId < blockCounts.length && blockCounts[blockId] >= 0;
+    }
+
+    /* Body written again for the same id replaces the previous one, space of the old body is not reclaimed */
+    @Override
+    public synchronized void write(int blockId, List<SignedTransaction> body) {
+        int size = 0;
+        for (SignedTransaction signedTransaction : body) {
+            size += ArenaTransaction.HEADER_SIZE + signedTransaction.getSignatureView().remaining()
+                    + storedOutputs(signedTransaction) * ArenaTransaction.OUTPUT_SIZE;
+        }
+        if (current == null || current.remaining() < size) {
+            current = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+            chunks.add(current);
+        }
+        ensureCapacity(blockId);
+        blockChunks[blockId] = chunks.size() - 1;
+        blockOffsets[blockId] = current.position();
+        blockCounts[blockId] = body.size();
+        for (SignedTransaction signedTransaction : body) {
+            ByteBuffer signature = signedTransaction.getSignatureView();
+            current.put((byte) signedTransaction.getVersion())
+                    .put((byte) signedTransaction.getSignatureScheme().getId())
+                    .putInt(signedTransaction.getSenderId())
+                    .putInt(signedTransaction.getReceiverId())
+                    .putLong(signedTransaction.getAmount())
+                    .putLong(signedTransaction.getTimestamp())
+                    .putInt(publicKeyIndex(signedTransaction.getPublicKeyView()))
+                    .putShort((short) signature.remaining())
+                    .putShort((short) storedOutputs(signedTransaction))
+                    .put(signature);
+            Transaction transaction = signedTransaction.getTransaction();
+            for (int i = 0; i < storedOutputs(signedTransaction); i++) {
+                current.putInt(transaction.getReceiverId(i)).putLong(transaction.getAmount(i));
+            }
+        }
+        usedBytes += size;
+        transactions += body.size();
+    }
+
+    private static int storedOutputs(SignedTransaction signedTransaction) {
+        return signedTransaction.getTransaction().isMultiOutput() ? signedTransaction.getOutputCount() : 0;
+    }
+
+    private void ensureCapacity(int blockId) {
+        if (blockId >= blockCounts.length) {
+            int length = Math.max(blockId + 1, blockCounts.length * 2);
+            blockChunks = Arrays.copyOf(blockChunks, length);
+            blockOffsets = Arrays.copyOf(blockOffsets, length);
+            int oldLength = blockCounts.length;
+            blockCounts = Arrays.copyOf(blockCounts, length);
+            Arrays.fill(blockCounts, oldLength, length, -1);
+        }
+    }
+
+    /* Keys are canonical (shared by all transactions of a sender), so they are told apart by identity */
+    private int publicKeyIndex(ByteBuffer keyView) {
+        byte[] canonical = PublicKeyStore.getInstance().canonical(keyView);
+        Integer index = publicKeyIndexes.get(canonical);
+        if (index == null) {
+            index = publicKeys.size();
+            publicKeys.add(canonical);
+            publicKeyIndexes.put(canonical, index);
+        }
+        return index;
+    }
+
+    synchronized byte[] publicKey(int index) {
+        return publicKeys.get(index);
+    }
+
+    @Override
+    public List<SignedTransaction> loadTransactions(int blockId) {
+        List<SignedTransaction> body = new ArrayList<>();
+        forEachTransaction(blockId, record -> body.add(((ArenaTransaction) record).toSignedTransaction()));
+        return body;
+    }
+
+    /* Passes one flyweight view, moved over consecutive transactions of the block */
+    @Override
+    public void forEachTransaction(int blockId, Consumer<? super TransactionRecord> action) {
+        ByteBuffer chunk;
+        int offset;
+        int count;
+        synchronized (this) {
+            if (!contains(blockId)) {
+                throw new IllegalStateException("Body of block " + blockId + " not found in transaction arena.");
+            }
+            chunk = chunks.get(blockChunks[blockId]);
+            offset = blockOffsets[blockId];
+            count = blockCounts[blockId];
+        }
+        ArenaTransaction view = new ArenaTransaction(this);
+        for (int i = 0; i < count; i++) {
+            view.moveTo(chunk, offset);
+            action.accept(view);
+            offset += view.length();
+        }
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return chunks.stream()
+                .mapToLong(ByteBuffer::capacity)
+                .sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Transaction arena: %d transactions, %d bytes used, %d bytes reserved off-heap in %d chunks",
+                transactions, usedBytes, getReservedBytes(), chunks.size());
+    }
+}
@@ -0,0 +1,88 @@
+package blockchain.storage;
+
+import blockchain.core.SignedTransaction;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* LRU cache of block bodies. Capacity is expressed in number of transactions rather than number of blocks,
+ * as block sizes can differ a lot. */
+public class TransactionsCache {
+    private final LinkedHashMap<Integer, List<SignedTransaction>> cache;
+    private final long capacity;
+    private long cachedTransactions;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TransactionsCache(long capacity) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.capacity = capacity;
+    }
+
+    public synchronized List<SignedTransaction> get(int blockId) {
+        List<SignedTransaction> transactions = cache.get(blockId);
+        if (transactions == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return transactions;
+    }
+
+    public synchronized void put(int blockId, List<SignedTransaction> transactions) {
+        List<SignedTransaction> replaced = cache.put(blockId, transactions);
+        if (replaced != null) {
+            cachedTransactions -= replaced.size();
+        }
+        cachedTransactions += transactions.size();
+        evictIfNeeded();
+    }
+
+    public synchronized void remove(int blockId) {
+        List<SignedTransaction> removed = cache.remove(blockId);
+        if (removed != null) {
+            cachedTransactions -= removed.size();
+        }
+    }
+
+    /* Always keeps the most recently used entry, even if it alone exceeds capacity */
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Integer, List<SignedTransaction>>> iterator = cache.entrySet().iterator();
+        while (cachedTransactions > capacity && cache.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Integer, List<SignedTransaction>> eldest = iterator.next();
+            cachedTransactions -= eldest.getValue().size();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getCachedTransactions() {
+        return cachedTransactions;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Transactions cache: %d blocks, %d/%d transactions, hits %d, misses %d, hit rate %.2f%%, evictions %d",
+                cache.size(), cachedTransactions, capacity, hits, misses, getHitRate() * 100, evictions);
+    }
+}
@@ -0,0 +1,127 @@
+package blockchain.api;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import blockchain.core.SimpleWallet;
+import blockchain.core.TransactionsTemplate;
+import blockchain.serialization.TransactionSerializer;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Blockchain blockchain;
+    private ApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blockchain = Blockchain.newInstance();
+        server = new ApiServer(blockchain, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonObject json(HttpResponse<String> response) {
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
+    private Block mineBlock(SimpleWallet miner) {
+        TransactionsTemplate template = blockchain.getTransactionsTemplate();
+        Block last = blockchain.getLast();
+        MinerReward reward = new MinerReward(miner.getAddress(), Blockchain.REWARD_VALUE);
+        long time = last.getTimestamp() + 40_000;
+        int nonce = 0;
+        Hash256 hash;
+        do {
+            nonce++;
+            hash = Block.calculateHash(reward, last.getId() + 1, time, nonce, last.getBlockHash(), template.getTransactionsHash());
+        } while (hash.leadingZeroBits() < 4 * blockchain.getNumberOfZerosRequired());
+        Block block = Block.newBuilder()
+                .setVersion(template.getVersion())
+                .setId(last.getId() + 1)
+                .setTimestamp(time)
+                .setTransactionsHash(template.getTransactionsHash())
+                .setNonce(nonce)
+                .setPreviousHash(last.getBlockHash())
+                .setHash(hash)
+                .setTransactions(template.getTransactions())
+                .setMinerReward(reward)
+                .build();
+        assertTrue(blockchain.appendNextBlock(block));
+        return block;
+    }
+
+    @Test
+    void testQueries() throws Exception {
+        HttpResponse<String> mempool = get("/mempool");
+        assertEquals(200, mempool.statusCode());
+        assertEquals(0, json(mempool).get("pendingTransactions").getAsInt());
+        assertEquals(0, json(mempool).get("height").getAsInt());
+
+        HttpResponse<String> genesis = get("/blocks/0");
+        assertEquals(200, genesis.statusCode());
+        assertEquals(0, json(genesis).get("Id").getAsInt());
+        assertEquals(404, get("/blocks/1").statusCode());
+        assertEquals(404, get("/blocks/" + "ab".repeat(Hash256.LENGTH)).statusCode());
+        assertEquals(400, get("/blocks/latest").statusCode());
+
+        HttpResponse<String> balance = get("/balances/" + new SimpleWallet().getAddress());
+        assertEquals(200, balance.statusCode());
+        assertEquals(0, json(balance).get("balance").getAsLong());
+    }
+
+    @Test
+    void testSubmitTransaction() throws Exception {
+        SimpleWallet miner = new SimpleWallet();
+        Block block = mineBlock(miner);
+        SignedTransaction transaction = miner.createTransaction(new SimpleWallet().getAddress(), 40);
+        String body = new GsonBuilder().registerTypeAdapter(SignedTransaction.class, new TransactionSerializer()).create()
+                .toJson(transaction, SignedTransaction.class);
+
+        HttpResponse<String> accepted = post("/transactions", body);
+        assertEquals(202, accepted.statusCode());
+        assertEquals(transaction.getId().toHex(), json(accepted).get("id").getAsString());
+        assertEquals(1, blockchain.getTransactionsToPublish().size());
+        assertEquals(60, json(get("/balances/" + miner.getAddress())).get("balance").getAsLong());
+
+        /* Already pending */
+        assertEquals(422, post("/transactions", body).statusCode());
+        assertEquals(400, post("/transactions", "{\"sender\": 1}").statusCode());
+        assertEquals(405, get("/transactions").statusCode());
+
+        HttpResponse<String> byHash = get("/blocks/" + block.getBlockHash().toHex());
+        assertEquals(200, byHash.statusCode());
+        assertEquals(1, json(byHash).get("Id").getAsInt());
+        assertEquals(1, json(get("/mempool")).get("pendingTransactions").getAsInt());
+    }
+}
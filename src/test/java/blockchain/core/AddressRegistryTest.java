@@ -0,0 +1,90 @@
+package blockchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressRegistryTest {
+    private final AddressRegistry registry = AddressRegistry.getInstance();
+
+    @Test
+    void testIntern() {
+        int id = registry.intern("registryFirst");
+        assertEquals(id, registry.intern(new String("registryFirst")));
+        assertNotEquals(id, registry.intern("registrySecond"));
+        assertEquals("registryFirst", registry.getAddress(id));
+        assertEquals(id, registry.find("registryFirst"));
+        assertEquals(-1, registry.find("registryNeverSeen"));
+        assertThrows(IllegalArgumentException.class, () -> registry.getAddress(-1));
+    }
+
+    @Test
+    void testConcurrentIntern() {
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 5000)
+                .parallel()
+                .forEach(i -> ids.add(registry.intern("concurrent" + (i % 2500))));
+        assertEquals(2500, ids.size());
+        Set<String> addresses = new HashSet<>();
+        ids.forEach(id -> addresses.add(registry.getAddress(id)));
+        assertEquals(2500, addresses.size());
+    }
+
+    @Test
+    void testTransactionSerializationKeepsAddresses() throws IOException, ClassNotFoundException {
+        Transaction transaction = new Transaction("registrySender", "registryReceiver", 15);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(transaction);
+            output.writeObject(new MinerReward("registryMiner", 100));
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Transaction deserialized = (Transaction) input.readObject();
+            assertEquals(transaction, deserialized);
+            assertEquals("registrySender", deserialized.getSender());
+            assertEquals(registry.find("registryReceiver"), deserialized.getReceiverId());
+            MinerReward reward = (MinerReward) input.readObject();
+            assertEquals("registryMiner gets 100 VC", reward.toString());
+        }
+    }
+
+    @Test
+    void testTransactionRegistersAddressesOnUse() {
+        Transaction transaction = new Transaction("lazySender", List.of("lazyFirst", "lazySecond"), List.of(1L, 2L));
+        assertFalse(transaction.isSenderRegistered());
+        assertEquals("lazySender", transaction.getSender());
+        assertEquals("lazyFirst", transaction.getReceiver(0));
+        assertEquals(-1, registry.find("lazySender"));
+        assertEquals(-1, registry.find("lazyFirst"));
+
+        int secondId = transaction.getReceiverId(1);
+        assertEquals(secondId, registry.find("lazySecond"));
+        assertEquals(-1, registry.find("lazyFirst"));
+        int senderId = registry.intern("lazySender");
+        assertTrue(transaction.isSenderRegistered());
+        assertEquals(senderId, transaction.getSenderId());
+        assertEquals(transaction, new Transaction("lazySender", List.of("lazyFirst", "lazySecond"), List.of(1L, 2L)));
+    }
+
+    @Test
+    void testMinerRewardRegistersMinerOnUse() {
+        MinerReward reward = new MinerReward("lazyMiner", 100);
+        assertEquals("lazyMiner gets 100 VC", reward.toString());
+        assertEquals(-1, registry.find("lazyMiner"));
+        int minerId = reward.getMinerId();
+        assertEquals(minerId, registry.find("lazyMiner"));
+        assertEquals("lazyMiner", reward.getMiner());
+        assertEquals(minerId, new MinerReward("lazyMiner", 50).getMinerId());
+    }
+}
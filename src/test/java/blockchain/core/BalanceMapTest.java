@@ -0,0 +1,80 @@
+package blockchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceMapTest {
+
+    @Test
+    void testAddAndGet() {
+        BalanceMap map = new BalanceMap();
+        assertFalse(map.containsKey(3));
+        assertEquals(0, map.get(3));
+        assertEquals(-5, map.getOrDefault(3, -5));
+        assertEquals(10, map.add(3, 10));
+        assertEquals(4, map.add(3, -6));
+        assertTrue(map.containsKey(3));
+        assertEquals(1, map.size());
+
+        map.putMin(3, 7);
+        assertEquals(4, map.get(3));
+        map.putMin(3, -2);
+        assertEquals(-2, map.get(3));
+        map.putMin(8, 9);
+        assertEquals(9, map.get(8));
+        assertEquals(-2, map.minValue());
+        assertEquals(Long.MAX_VALUE, new BalanceMap().minValue());
+
+        assertFalse(map.containsKey(-1));
+        assertEquals(0, map.get(-1));
+        assertThrows(IllegalArgumentException.class, () -> map.add(-1, 1));
+    }
+
+    @Test
+    void testMatchesHashMap() {
+        Random random = new Random(7);
+        BalanceMap map = new BalanceMap();
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int id = random.nextInt(5000);
+            long delta = random.nextInt(200) - 100;
+            map.add(id, delta);
+            expected.merge(id, delta, Long::sum);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((id, value) -> assertEquals(value, map.get(id)));
+        Map<Integer, Long> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    void testEqualsAndCopy() {
+        BalanceMap small = new BalanceMap();
+        BalanceMap large = new BalanceMap(1000);
+        for (int id = 0; id < 50; id++) {
+            small.add(id, id);
+            large.add(49 - id, 49 - id);
+        }
+        assertEquals(small, large);
+        assertEquals(small.hashCode(), large.hashCode());
+
+        BalanceMap copy = small.copy();
+        copy.add(0, 1);
+        assertNotEquals(small, copy);
+        assertEquals(0, small.get(0));
+
+        /* Zero entry, e.g. left by a reverted block, equals a missing one */
+        copy = small.copy();
+        copy.add(100, 5);
+        copy.add(100, -5);
+        assertEquals(small, copy);
+        assertEquals(small.hashCode(), copy.hashCode());
+        assertEquals(copy, small);
+    }
+}
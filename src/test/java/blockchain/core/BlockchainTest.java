@@ -0,0 +1,475 @@
+package blockchain.core;
+
+import blockchain.serialization.BlockSerializer;
+import blockchain.serialization.TransactionSerializer;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockchainTest {
+    private static SimpleWallet miner;
+    private static List<Block> sharedBlocks;
+
+    @BeforeAll
+    static void beforeAll() {
+        miner = new SimpleWallet();
+        Blockchain blockchain = Blockchain.newInstance();
+        for (int i = 0; i < 3; i++) {
+            mineBlock(blockchain);
+        }
+        sharedBlocks = blockchain.getBlocks(1, Integer.MAX_VALUE);
+    }
+
+    /* Block 40 seconds after a given one, so difficulty goes down and mining stays fast */
+    private static Block buildBlock(Block last, int difficulty, List<SignedTransaction> transactions) {
+        MinerReward reward = new MinerReward(miner.getAddress(), Blockchain.REWARD_VALUE);
+        Hash256 transactionsHash = Blockchain.hashTransactions(Block.MERKLE_ROOT_VERSION, transactions);
+        int id = last.getId() + 1;
+        long time = last.getTimestamp() + 40_000;
+        int nonce = 0;
+        Hash256 hash;
+        do {
+            nonce++;
+            hash = Block.calculateHash(reward, id, time, nonce, last.getBlockHash(), transactionsHash);
+        } while (hash.leadingZeroBits() < 4 * difficulty);
+        return Block.newBuilder()
+                .setVersion(Block.MERKLE_ROOT_VERSION)
+                .setId(id)
+                .setTimestamp(time)
+                .setTransactionsHash(transactionsHash)
+                .setNonce(nonce)
+                .setPreviousHash(last.getBlockHash())
+                .setHash(hash)
+                .setTransactions(transactions)
+                .setMinerReward(reward)
+                .build();
+    }
+
+    private static Block mineBlock(Blockchain blockchain) {
+        Block block = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), blockchain.getTransactionsToPublish());
+        assertTrue(blockchain.appendNextBlock(block));
+        return block;
+    }
+
+    /* Two chains sharing the first 3 blocks */
+    private static List<Blockchain> forkedChains() {
+        Blockchain first = Blockchain.newInstance();
+        Blockchain second = Blockchain.newInstance();
+        assertTrue(first.appendCheckedBlocks(sharedBlocks));
+        assertTrue(second.appendCheckedBlocks(sharedBlocks));
+        return List.of(first, second);
+    }
+
+    @Test
+    void testReorganizationToBranchWithMoreWork() {
+        SimpleWallet receiver = new SimpleWallet();
+        List<Blockchain> chains = forkedChains();
+        Blockchain first = chains.get(0);
+        Blockchain second = chains.get(1);
+
+        SignedTransaction transaction = miner.createTransaction(receiver.getAddress(), 30);
+        assertTrue(first.addTransaction(transaction));
+        mineBlock(first);
+        assertEquals(30, first.coinsOfClient(receiver.getAddress()));
+        List<Block> branch = new ArrayList<>();
+        branch.add(mineBlock(second));
+        branch.add(mineBlock(second));
+
+        /* Same work as the main chain, the chain stays */
+        assertFalse(first.appendNextBlock(branch.get(0)));
+        assertEquals(4, first.size());
+        assertEquals(1, first.getSideBlocksCount());
+        assertEquals(0, first.getReorganizations());
+
+        assertTrue(first.appendNextBlock(branch.get(1)));
+        assertEquals(second.getLast().getBlockHash(), first.getLast().getBlockHash());
+        assertEquals(1, first.getReorganizations());
+        assertEquals(1, first.getDeepestReorganization());
+        /* Disconnected block is kept, its transaction is pending again */
+        assertEquals(1, first.getSideBlocksCount());
+        assertTrue(first.getTransactionsToPublish().contains(transaction));
+        assertEquals(0, first.coinsOfClient(receiver.getAddress()));
+        assertEquals(5 * Blockchain.REWARD_VALUE - 30, first.coinsOfClient(miner.getAddress()));
+        assertEquals(second.getNumberOfZerosRequired(), first.getNumberOfZerosRequired());
+
+        /* Mining goes on on the new branch */
+        Block next = mineBlock(first);
+        assertFalse(first.getTransactionsToPublish().contains(transaction));
+        assertTrue(second.addTransaction(transaction));
+        assertTrue(second.appendNextBlock(next));
+    }
+
+    @Test
+    void testOrphanConnectedWhenParentArrives() {
+        List<Blockchain> chains = forkedChains();
+        Blockchain first = chains.get(0);
+        Blockchain second = chains.get(1);
+        Block parent = mineBlock(second);
+        Block child = mineBlock(second);
+
+        assertFalse(first.appendNextBlock(child));
+        assertEquals(1, first.getOrphansCount());
+        assertFalse(first.appendNextBlock(child));
+
+        assertTrue(first.appendNextBlock(parent));
+        assertEquals(0, first.getOrphansCount());
+        assertEquals(child.getBlockHash(), first.getLast().getBlockHash());
+        assertFalse(first.isCandidate(child));
+    }
+
+    @Test
+    void testOrphanWithoutRewardRejected() {
+        Blockchain blockchain = forkedChains().get(0);
+        Block last = blockchain.getLast();
+        Block orphan = Block.newBuilder()
+                .setVersion(Block.MERKLE_ROOT_VERSION)
+                .setId(last.getId() + 2)
+                .setTimestamp(last.getTimestamp() + 80_000)
+                .setTransactionsHash(Blockchain.hashTransactions(Block.MERKLE_ROOT_VERSION, List.of()))
+                .setPreviousHash(Hash256.ZERO)
+                .setHash(Hash256.ZERO)
+                .setTransactions(List.of())
+                .build();
+        assertFalse(blockchain.appendNextBlock(orphan));
+        assertEquals(0, blockchain.getOrphansCount());
+    }
+
+    @Test
+    void testInvalidBranchKeepsChain() {
+        SimpleWallet receiver = new SimpleWallet();
+        List<Blockchain> chains = forkedChains();
+        Blockchain first = chains.get(0);
+        Blockchain second = chains.get(1);
+        Block tip = mineBlock(first);
+
+        /* Branch block spending coins of an address which has none */
+        SignedTransaction overspending = receiver.createTransaction(miner.getAddress(), 10);
+        Block invalid = buildBlock(second.getLast(), second.getNumberOfZerosRequired(), List.of(overspending));
+        Block onInvalid = buildBlock(invalid, second.getNumberOfZerosRequired(), new ArrayList<>());
+
+        assertFalse(first.appendNextBlock(invalid));
+        assertFalse(first.appendNextBlock(onInvalid));
+        assertEquals(tip.getBlockHash(), first.getLast().getBlockHash());
+        assertEquals(0, first.getReorganizations());
+        assertEquals(4 * Blockchain.REWARD_VALUE, first.coinsOfClient(miner.getAddress()));
+    }
+
+    @Test
+    void testBatchSubmission() throws InterruptedException {
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain blockchain = Blockchain.newInstance();
+        mineBlock(blockchain);
+        SignedTransaction older = miner.createTransaction(receiver.getAddress(), 10);
+        Thread.sleep(2);
+        SignedTransaction first = miner.createTransaction(receiver.getAddress(), 40);
+        SignedTransaction second = miner.createTransaction(receiver.getAddress(), 50);
+        SignedTransaction overspending = miner.createTransaction(receiver.getAddress(), 20);
+        SignedTransaction malformed = miner.createTransaction("not an address", 1);
+
+        List<TransactionResult> results = blockchain.addTransactions(List.of(first, first, second, overspending, malformed, older));
+        assertEquals(List.of(TransactionResult.ACCEPTED, TransactionResult.DUPLICATE, TransactionResult.ACCEPTED,
+                TransactionResult.INSUFFICIENT_BALANCE, TransactionResult.INVALID_SIGNATURE, TransactionResult.STALE_TIMESTAMP), results);
+        assertEquals(List.of(first, second), blockchain.getTransactionsToPublish());
+        assertEquals(Blockchain.REWARD_VALUE - 90, blockchain.coinsOfClient(miner.getAddress()));
+        assertFalse(blockchain.addTransaction(first));
+
+        /* Accepted transactions go into the next block like single ones */
+        mineBlock(blockchain);
+        assertEquals(90, blockchain.coinsOfClient(receiver.getAddress()));
+        assertTrue(blockchain.getTransactionsToPublish().isEmpty());
+    }
+
+    @Test
+    void testMultiOutputTransaction() {
+        List<SimpleWallet> receivers = List.of(new SimpleWallet(), new SimpleWallet(), new SimpleWallet());
+        List<Blockchain> chains = forkedChains();
+        Blockchain blockchain = chains.get(0);
+        SignedTransaction payment = miner.createTransaction(
+                List.of(receivers.get(0).getAddress(), receivers.get(1).getAddress(), receivers.get(2).getAddress()),
+                List.of(10L, 20L, 30L));
+        SignedTransaction overspending = miner.createTransaction(List.of(receivers.get(0).getAddress()),
+                List.of(3 * Blockchain.REWARD_VALUE - 59));
+        assertEquals(List.of(TransactionResult.ACCEPTED, TransactionResult.INSUFFICIENT_BALANCE),
+                blockchain.addTransactions(List.of(payment, overspending)));
+        assertEquals(3 * Blockchain.REWARD_VALUE - 60, blockchain.coinsOfClient(miner.getAddress()));
+
+        Block block = mineBlock(blockchain);
+        for (int i = 0; i < receivers.size(); i++) {
+            assertEquals(10 * (i + 1), blockchain.coinsOfClient(receivers.get(i).getAddress()));
+        }
+        /* Batch append and a chain state replayed from blocks give the same result */
+        Blockchain other = chains.get(1);
+        assertTrue(other.appendCheckedBlocks(List.of(block)));
+        assertEquals(30, other.coinsOfClient(receivers.get(2).getAddress()));
+        ChainState replayed = new ChainState();
+        other.getBlockList().stream().skip(1).forEach(replayed::apply);
+        assertEquals(30, replayed.getBalance(receivers.get(2).getAddress()));
+    }
+
+    @Test
+    void testLightClientFollowsReorganization() {
+        SimpleWallet receiver = new SimpleWallet();
+        List<Blockchain> chains = forkedChains();
+        Blockchain first = chains.get(0);
+        Blockchain second = chains.get(1);
+        LightClient minerClient = new LightClient(miner.getAddress());
+        LightClient receiverClient = new LightClient(receiver.getAddress());
+
+        SignedTransaction payment = miner.createTransaction(List.of(receiver.getAddress(), new SimpleWallet().getAddress()),
+                List.of(25L, 5L));
+        assertTrue(first.addTransaction(payment));
+        Block block = mineBlock(first);
+        assertEquals(4, minerClient.sync(first));
+        assertEquals(4, receiverClient.sync(first));
+        assertEquals(first.coinsOfClient(miner.getAddress()), minerClient.getBalance());
+        assertEquals(25, receiverClient.getBalance());
+        assertEquals(List.of(payment), receiverClient.getTransactions());
+        assertEquals(1, receiverClient.confirmPayment(first, payment.getId(), 4));
+
+        TransactionProof proof = first.getTransactionProof(payment.getId(), 0);
+        assertEquals(block.getBlockHash(), proof.getHeader().getBlockHash());
+        assertTrue(proof.verify());
+        TransactionProof forged = new TransactionProof(miner.createTransaction(receiver.getAddress(), 25),
+                proof.getHeader(), proof.getIndex(), proof.getTransactionsCount(), proof.getPath());
+        assertFalse(forged.verify());
+        assertEquals(0, receiverClient.getHeaderChain().getConfirmations(forged));
+
+        /* Branch without the payment wins, the light clients follow it */
+        assertFalse(first.appendNextBlock(mineBlock(second)));
+        assertTrue(first.appendNextBlock(mineBlock(second)));
+        assertEquals(second.getLast().getBlockHash(), first.getLast().getBlockHash());
+        receiverClient.sync(first);
+        minerClient.sync(first);
+        assertEquals(1, receiverClient.getHeaderChain().getReorganizations());
+        assertEquals(first.getLast().getBlockHash(), receiverClient.getHeaderChain().getTip().getBlockHash());
+        assertEquals(0, receiverClient.getBalance());
+        assertEquals(0, receiverClient.confirmPayment(first, payment.getId(), 4));
+        assertEquals(first.coinsOfClient(miner.getAddress()) + 30, minerClient.getBalance());
+    }
+
+    @Test
+    void testHeaderChainRejectsInvalidHeaders() {
+        HeaderChain headers = new HeaderChain();
+        assertTrue(headers.addHeaders(sharedBlocks));
+        assertTrue(headers.addHeaders(sharedBlocks.subList(1, 3)));
+        assertEquals(3, headers.getHeight());
+
+        Block last = sharedBlocks.get(2);
+        Block tampered = Block.newBuilder()
+                .setVersion(last.getVersion())
+                .setId(last.getId() + 1)
+                .setTimestamp(last.getTimestamp() + 40_000)
+                .setTransactionsHash(last.getTransactionsHash())
+                .setNonce(0)
+                .setPreviousHash(last.getBlockHash())
+                .setHash(last.getBlockHash())
+                .setMinerReward(last.getMinerReward())
+                .build();
+        assertFalse(headers.addHeaders(List.of(tampered)));
+        Blockchain blockchain = forkedChains().get(0);
+        Block next = buildBlock(last, blockchain.getNumberOfZerosRequired(), new ArrayList<>());
+        assertFalse(headers.addHeaders(List.of(next, sharedBlocks.get(1))));
+        assertEquals(3, headers.getHeight());
+        assertEquals(last.getBlockHash(), headers.getTip().getBlockHash());
+
+        assertTrue(headers.addHeaders(List.of(next)));
+        assertEquals(next.getBlockHash(), headers.getTip().getBlockHash());
+    }
+
+    @Test
+    void testConfirmedTransactionCantBeReplayed() throws InterruptedException {
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain blockchain = forkedChains().get(0);
+        SignedTransaction first = miner.createTransaction(receiver.getAddress(), 30);
+        assertTrue(blockchain.addTransaction(first));
+        mineBlock(blockchain);
+        Thread.sleep(2);
+        SignedTransaction second = miner.createTransaction(receiver.getAddress(), 31);
+        assertTrue(blockchain.addTransaction(second));
+        mineBlock(blockchain);
+        assertEquals(61, blockchain.coinsOfClient(receiver.getAddress()));
+
+        /* Older transaction is stale, the latest one was confirmed with its time */
+        assertFalse(blockchain.addTransaction(first));
+        assertFalse(blockchain.addTransaction(second));
+        for (SignedTransaction replayed : List.of(first, second)) {
+            Block block = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), List.of(replayed));
+            assertFalse(blockchain.appendNextBlock(block));
+            assertFalse(blockchain.appendCheckedBlocks(List.of(block)));
+        }
+        assertEquals(61, blockchain.coinsOfClient(receiver.getAddress()));
+        assertEquals(5, blockchain.size());
+    }
+
+    @Test
+    void testDebitsCheckedInOrder() {
+        SimpleWallet empty = new SimpleWallet();
+        Blockchain blockchain = forkedChains().get(0);
+        /* Net balance of the address is positive at the end of the block, but it spends before it receives */
+        SignedTransaction overspending = empty.createTransaction(miner.getAddress(), 10);
+        SignedTransaction funding = miner.createTransaction(empty.getAddress(), 50);
+        Block block = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), List.of(overspending, funding));
+        assertFalse(blockchain.appendCheckedBlocks(List.of(block)));
+        assertFalse(blockchain.appendNextBlock(block));
+
+        Block valid = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), List.of(funding));
+        Block spending = buildBlock(valid, blockchain.getNumberOfZerosRequired(), List.of(overspending));
+        assertTrue(blockchain.appendCheckedBlocks(List.of(valid, spending)));
+        assertEquals(40, blockchain.coinsOfClient(empty.getAddress()));
+    }
+
+    /* Pending list, appended blocks and full verification on loading apply transactions of a block in the same order */
+    @Test
+    void testCoinsReceivedInBlockSpentInSameBlock(@TempDir Path directory) throws InterruptedException {
+        SimpleWallet empty = new SimpleWallet();
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain blockchain = forkedChains().get(0);
+        assertTrue(blockchain.addTransaction(miner.createTransaction(empty.getAddress(), 50)));
+        Thread.sleep(2);
+        assertTrue(blockchain.addTransaction(empty.createTransaction(receiver.getAddress(), 30)));
+        Block block = mineBlock(blockchain);
+        assertEquals(2, block.getTransactions().size());
+        assertEquals(20, blockchain.coinsOfClient(empty.getAddress()));
+        assertEquals(30, blockchain.coinsOfClient(receiver.getAddress()));
+
+        String path = directory.resolve("blocks").toString();
+        blockchain.saveBlockchainContent(path);
+        Blockchain loaded = Blockchain.newInstance();
+        loaded.setFullCheckOnLoading(true);
+        assertDoesNotThrow(() -> loaded.loadBlockchainContent(path));
+        assertEquals(blockchain.size(), loaded.size());
+        assertEquals(30, loaded.coinsOfClient(receiver.getAddress()));
+    }
+
+    @Test
+    void testBlockWithMalformedAddressRejected() {
+        Blockchain blockchain = forkedChains().get(0);
+        SignedTransaction malformed = miner.createTransaction("not an address", 10);
+        assertFalse(blockchain.addTransaction(malformed));
+        Block block = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), List.of(malformed));
+        assertFalse(blockchain.checkBody(block));
+        assertFalse(blockchain.appendNextBlock(block));
+        assertEquals(3, blockchain.size());
+    }
+
+    @Test
+    void testPendingIdWithForgedSignatureRejected() {
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain blockchain = forkedChains().get(0);
+        SignedTransaction transaction = miner.createTransaction(receiver.getAddress(), 30);
+        assertTrue(blockchain.addTransaction(transaction));
+        byte[] signature = transaction.getSignature();
+        signature[signature.length / 2] ^= 1;
+        SignedTransaction forged = new SignedTransaction(transaction.getVersion(), transaction.getTransaction(),
+                transaction.getTimestamp(), signature, transaction.getPublicKey(), transaction.getSignatureScheme());
+        assertEquals(transaction.getId(), forged.getId());
+
+        Block block = buildBlock(blockchain.getLast(), blockchain.getNumberOfZerosRequired(), List.of(forged));
+        assertFalse(blockchain.appendNextBlock(block));
+        assertEquals(List.of(transaction), blockchain.getTransactionsToPublish());
+
+        mineBlock(blockchain);
+        assertEquals(30, blockchain.coinsOfClient(receiver.getAddress()));
+    }
+
+    @Test
+    void testRejectedTransactionDoesntRegisterAddresses() {
+        SimpleWallet sender = new SimpleWallet();
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain blockchain = forkedChains().get(0);
+        assertFalse(blockchain.addTransaction(sender.createTransaction(receiver.getAddress(), 10)));
+        assertEquals(-1, AddressRegistry.getInstance().find(sender.getAddress()));
+        assertEquals(-1, AddressRegistry.getInstance().find(receiver.getAddress()));
+    }
+
+    /* Same format as Blockchain.saveBlockchainAsJson, for chains which a blockchain wouldn't accept */
+    private static void writeJson(List<Block> blocks, Path path) throws IOException {
+        String json = new GsonBuilder()
+                .registerTypeAdapter(Block.class, new BlockSerializer())
+                .registerTypeAdapter(SignedTransaction.class, new TransactionSerializer())
+                .create()
+                .toJson(blocks.toArray(new Block[0]));
+        Files.writeString(path, json);
+    }
+
+    @Test
+    void testImportFromJson(@TempDir Path directory) {
+        SimpleWallet receiver = new SimpleWallet();
+        Blockchain source = forkedChains().get(0);
+        assertTrue(source.addTransaction(miner.createTransaction(receiver.getAddress(), 25)));
+        mineBlock(source);
+        String path = directory.resolve("blockchain.json").toString();
+        source.saveBlockchainAsJson(path);
+
+        Blockchain imported = Blockchain.newInstance();
+        assertEquals(4, imported.importBlockchainFromJson(path));
+        assertEquals(source.size(), imported.size());
+        assertEquals(source.getLast().getBlockHash(), imported.getLast().getBlockHash());
+        assertEquals(25, imported.coinsOfClient(receiver.getAddress()));
+        assertEquals(source.coinsOfClient(miner.getAddress()), imported.coinsOfClient(miner.getAddress()));
+    }
+
+    @Test
+    void testImportSkipsPresentBlocks(@TempDir Path directory) {
+        List<Blockchain> chains = forkedChains();
+        Blockchain source = chains.get(0);
+        mineBlock(source);
+        mineBlock(source);
+        String path = directory.resolve("blockchain.json").toString();
+        source.saveBlockchainAsJson(path);
+
+        Blockchain target = chains.get(1);
+        assertEquals(2, target.importBlockchainFromJson(path));
+        assertEquals(source.getLast().getBlockHash(), target.getLast().getBlockHash());
+        assertEquals(0, target.importBlockchainFromJson(path));
+        assertEquals(source.size(), target.size());
+    }
+
+    @Test
+    void testImportStopsOnDifferingBlock(@TempDir Path directory) {
+        List<Blockchain> chains = forkedChains();
+        Blockchain source = chains.get(0);
+        mineBlock(source);
+        mineBlock(source);
+        String path = directory.resolve("blockchain.json").toString();
+        source.saveBlockchainAsJson(path);
+
+        Blockchain target = chains.get(1);
+        assertTrue(target.addTransaction(miner.createTransaction(new SimpleWallet().getAddress(), 5)));
+        Block own = mineBlock(target);
+        assertEquals(0, target.importBlockchainFromJson(path));
+        assertEquals(own.getBlockHash(), target.getLast().getBlockHash());
+        assertEquals(4, target.size());
+    }
+
+    @Test
+    void testImportRollsBackBatchWithInvalidBlock(@TempDir Path directory) throws IOException {
+        Blockchain source = forkedChains().get(0);
+        Block valid = mineBlock(source);
+        /* Spends more than the sender has, with valid proof of work */
+        SignedTransaction overspending = new SimpleWallet().createTransaction(miner.getAddress(), 10);
+        Block invalid = buildBlock(valid, source.getNumberOfZerosRequired(), List.of(overspending));
+        List<Block> blocks = new ArrayList<>(source.getBlockList());
+        blocks.add(invalid);
+        Path path = directory.resolve("blockchain.json");
+        writeJson(blocks, path);
+
+        Blockchain imported = Blockchain.newInstance();
+        assertEquals(0, imported.importBlockchainFromJson(path.toString()));
+        assertEquals(0, imported.size());
+        assertEquals(0, imported.coinsOfClient(miner.getAddress()));
+        /* Nothing of the rolled back batch is left, the valid part can still be imported */
+        writeJson(source.getBlockList(), path);
+        assertEquals(4, imported.importBlockchainFromJson(path.toString()));
+        assertEquals(valid.getBlockHash(), imported.getLast().getBlockHash());
+    }
+}
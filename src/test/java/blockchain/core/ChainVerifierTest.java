@@ -0,0 +1,175 @@
+package blockchain.core;
+
+import blockchain.utils.SerializationUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainVerifierTest {
+    private static final int CHAIN_SIZE = 40;
+    private static final int DIFFICULTY = 1;
+
+    private static ForkJoinPool pool;
+    private static ChainVerifier verifier;
+    private static SimpleWallet firstWallet;
+    private static SimpleWallet secondWallet;
+    private static int[] difficulties;
+
+    @BeforeAll
+    static void beforeAll() throws IOException, ClassNotFoundException {
+        pool = new ForkJoinPool(4);
+        verifier = new ChainVerifier(new TransactionValidator(), pool);
+        firstWallet = new SimpleWallet((KeyPair) SerializationUtils.deserialize("src/test/resources/pair1"));
+        secondWallet = new SimpleWallet((KeyPair) SerializationUtils.deserialize("src/test/resources/pair2"));
+        difficulties = new int[CHAIN_SIZE + 1];
+        Arrays.fill(difficulties, DIFFICULTY);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        pool.shutdown();
+    }
+
+    private static Block genesis() {
+        return Block.newBuilder()
+                .setId(0)
+                .setTimestamp(0)
+                .setHash(Hash256.ZERO)
+                .setTransactions(new ArrayList<>())
+                .build();
+    }
+
+    private static Block mineBlock(int id, Block previous, List<SignedTransaction> transactions) {
+        MinerReward reward = new MinerReward(firstWallet.getAddress(), Blockchain.REWARD_VALUE);
+        Hash256 transactionsHash = Blockchain.hashTransactions(Block.LIST_HASH_VERSION, transactions);
+        long timestamp = id * 1000L;
+        int nonce = 0;
+        Hash256 hash;
+        do {
+            nonce++;
+            hash = Block.calculateHash(reward, id, timestamp, nonce, previous.getBlockHash(), transactionsHash);
+        } while (!hash.toHex().startsWith("0".repeat(DIFFICULTY)));
+        return Block.newBuilder()
+                .setId(id)
+                .setTimestamp(timestamp)
+                .setTransactionsHash(transactionsHash)
+                .setNonce(nonce)
+                .setPreviousHash(previous.getBlockHash())
+                .setHash(hash)
+                .setMinerReward(reward)
+                .setTransactions(transactions)
+                .build();
+    }
+
+    /* Block 5 transfers coins from the first wallet to the second one, given block spends them from the second wallet */
+    private static List<Block> prepareChain(int spendingBlock, long spentAmount) {
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(genesis());
+        for (int id = 1; id <= CHAIN_SIZE; id++) {
+            List<SignedTransaction> transactions = new ArrayList<>();
+            if (id == 5) {
+                transactions.add(firstWallet.createTransaction(secondWallet.getAddress(), 50));
+            }
+            if (id == spendingBlock) {
+                transactions.add(secondWallet.createTransaction(firstWallet.getAddress(), spentAmount));
+            }
+            blocks.add(mineBlock(id, blocks.get(id - 1), transactions));
+        }
+        return blocks;
+    }
+
+    private static ChainState stateOf(List<Block> blocks) {
+        ChainState chainState = new ChainState();
+        blocks.stream()
+                .skip(1)
+                .forEach(chainState::apply);
+        return chainState;
+    }
+
+    @Test
+    void testValidChain() {
+        List<Block> blocks = prepareChain(30, 50);
+        assertTrue(verifier.verify(blocks, difficulties, stateOf(blocks)));
+    }
+
+    @Test
+    void testNegativeBalance() {
+        List<Block> blocks = prepareChain(30, 51);
+        assertFalse(verifier.verify(blocks, difficulties, stateOf(blocks)));
+
+        /* Coins received in a block can be spent later in the same block, but not before they're received */
+        List<Block> sameBlock = prepareChain(5, 10);
+        assertTrue(verifier.verify(sameBlock, difficulties, stateOf(sameBlock)));
+        List<Block> spentFirst = new ArrayList<>(sameBlock.subList(0, 6));
+        List<SignedTransaction> reversed = new ArrayList<>(spentFirst.get(5).getTransactions());
+        Collections.reverse(reversed);
+        spentFirst.set(5, mineBlock(5, spentFirst.get(4), reversed));
+        assertFalse(verifier.verify(spentFirst, difficulties, stateOf(spentFirst)));
+    }
+
+    /* Reverting a block which paid a new address leaves a zero balance the verifier doesn't have */
+    @Test
+    void testRevertedChainStateMatches() {
+        List<Block> blocks = prepareChain(30, 50);
+        ChainState chainState = stateOf(blocks);
+        Block last = blocks.get(CHAIN_SIZE);
+        List<SignedTransaction> transactions = new ArrayList<>();
+        transactions.add(firstWallet.createTransaction(new SimpleWallet().getAddress(), 10));
+        Block reverted = mineBlock(CHAIN_SIZE + 1, last, transactions);
+        chainState.revert(reverted, last.getBlockHash(), chainState.applyWithUndo(reverted));
+        assertTrue(verifier.verify(blocks, difficulties, chainState));
+    }
+
+    @Test
+    void testBrokenLink() {
+        List<Block> blocks = prepareChain(30, 50);
+        ChainState chainState = stateOf(blocks);
+        blocks.set(20, mineBlock(20, genesis(), new ArrayList<>()));
+        assertFalse(verifier.verify(blocks, difficulties, chainState));
+    }
+
+    @Test
+    void testWrongSignature() {
+        List<Block> blocks = prepareChain(30, 50);
+        Block original = blocks.get(30);
+        SignedTransaction signed = original.getTransactions().get(0);
+        SignedTransaction forged = new SignedTransaction(new Transaction(signed.getTransaction().getSender(), signed.getTransaction().getReceiver(), 10),
+                signed.getTimestamp(), signed.getSignature(), signed.getPublicKey());
+        List<SignedTransaction> forgedList = new ArrayList<>();
+        forgedList.add(forged);
+        blocks.set(30, mineBlock(30, blocks.get(29), forgedList));
+        assertFalse(verifier.verify(blocks, difficulties, stateOf(blocks)));
+    }
+
+    @Test
+    void testChainStateMismatch() {
+        List<Block> blocks = prepareChain(30, 50);
+        assertFalse(verifier.verify(blocks, difficulties, stateOf(blocks.subList(0, CHAIN_SIZE))));
+    }
+
+    @Test
+    void testRangeSummaryCombine() {
+        List<Block> blocks = prepareChain(30, 50);
+        ChainVerifier.RangeSummary sequential = new ChainVerifier.RangeSummary();
+        ChainVerifier.RangeSummary first = new ChainVerifier.RangeSummary();
+        ChainVerifier.RangeSummary second = new ChainVerifier.RangeSummary();
+        for (int i = 1; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            sequential.apply(block);
+            (i < 20 ? first : second).apply(block);
+        }
+        ChainVerifier.RangeSummary combined = first.combine(second);
+        assertEquals(sequential.getBalanceChanges(), combined.getBalanceChanges());
+        assertEquals(sequential.getLowestBalances(), combined.getLowestBalances());
+    }
+}
@@ -0,0 +1,46 @@
+package blockchain.core;
+
+import blockchain.encryption.EncryptionUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Hash256Test {
+
+    @Test
+    void testHexRoundTrip() {
+        String hex = EncryptionUtils.applySha256("blockchain");
+        Hash256 hash = Hash256.fromHex(hex);
+        assertEquals(hex, hash.toHex());
+        assertEquals(hash, Hash256.sha256("blockchain".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(hash.hashCode(), Hash256.fromHex(hex).hashCode());
+        assertArrayEquals(EncryptionUtils.decodeHexString(hex), hash.getBytes());
+    }
+
+    @Test
+    void testZeroHash() {
+        assertSame(Hash256.ZERO, Hash256.fromHex("0"));
+        assertSame(Hash256.ZERO, Hash256.fromHex(""));
+        assertEquals("0", Hash256.ZERO.toHex());
+        assertEquals(256, Hash256.ZERO.leadingZeroBits());
+        assertEquals(Hash256.ZERO, Hash256.wrap(new byte[Hash256.LENGTH]));
+    }
+
+    @Test
+    void testLeadingZeroBits() {
+        assertEquals(0, Hash256.fromHex("f" + "0".repeat(63)).leadingZeroBits());
+        assertEquals(15, Hash256.fromHex("0001" + "f".repeat(60)).leadingZeroBits());
+        assertEquals(64 + 7, Hash256.fromHex("0".repeat(16) + "01" + "f".repeat(46)).leadingZeroBits());
+        assertEquals(255, Hash256.fromHex("0".repeat(63) + "1").leadingZeroBits());
+    }
+
+    @Test
+    void testNotEquals() {
+        Hash256 hash = Hash256.sha256(new byte[]{1});
+        assertNotEquals(hash, Hash256.sha256(new byte[]{2}));
+        assertNotEquals(hash, Hash256.ZERO);
+        assertThrows(IllegalArgumentException.class, () -> Hash256.wrap(new byte[31]));
+    }
+}
@@ -0,0 +1,54 @@
+package blockchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicKeyStoreTest {
+    private final PublicKeyStore store = PublicKeyStore.getInstance();
+
+    @Test
+    void testCanonical() {
+        byte[] key = new byte[]{10, 20, 30, 40};
+        byte[] canonical = store.canonical(key);
+        long deduplicated = store.getDeduplicatedBytes();
+        assertSame(canonical, store.canonical(new byte[]{10, 20, 30, 40}));
+        assertEquals(deduplicated + 4, store.getDeduplicatedBytes());
+        assertNotSame(canonical, store.canonical(new byte[]{10, 20, 30, 41}));
+    }
+
+    @Test
+    void testTransactionsShareKey() throws IOException, ClassNotFoundException {
+        Transaction transaction = new Transaction("keySender", "keyReceiver", 5);
+        SignedTransaction first = new SignedTransaction(transaction, 1L, new byte[]{1}, new byte[]{7, 7, 7});
+        SignedTransaction second = new SignedTransaction(transaction, 2L, new byte[]{2}, new byte[]{7, 7, 7});
+        assertSame(first.publicKeyBytes(), second.publicKeyBytes());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(first);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            SignedTransaction deserialized = (SignedTransaction) input.readObject();
+            assertSame(first.publicKeyBytes(), deserialized.publicKeyBytes());
+        }
+    }
+
+    @Test
+    void testReadOnlyViews() {
+        SignedTransaction signed = new SignedTransaction(new Transaction("keySender", "keyReceiver", 5), 3L, new byte[]{1, 2}, new byte[]{7, 7, 8});
+        ByteBuffer view = signed.getPublicKeyView();
+        assertTrue(view.isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[]{7, 7, 8}), view);
+        assertThrows(ReadOnlyBufferException.class, () -> view.put(0, (byte) 1));
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2}), signed.getSignatureView());
+    }
+}
@@ -0,0 +1,87 @@
+package blockchain.core;
+
+import blockchain.encryption.EncryptionUtils;
+import blockchain.utils.SerializationUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedTransactionTest {
+    private static final byte[] dummyBytes = new byte[]{1};
+
+    @Test
+    void testTextPayload() {
+        Transaction transaction = new Transaction("sender", "receiver", 200);
+        SignedTransaction signed = new SignedTransaction(transaction, 1999L, dummyBytes, dummyBytes);
+        assertEquals(SignedTransaction.TEXT_PAYLOAD_VERSION, signed.getVersion());
+        assertArrayEquals("sender sent 200 VC to receiver\n1999".getBytes(StandardCharsets.UTF_8), signed.getSigningPayload());
+        /* Id of a text payload transaction is the hash used by transactions list hashing */
+        assertEquals("b728093a3a2fd31d3c8d15a90a548212a7038cd1059a8f67e6ed14e76eb17236", signed.getId().toHex());
+    }
+
+    @Test
+    void testBinaryPayload() {
+        Transaction transaction = new Transaction("s", "rc", 1);
+        byte[] payload = SignedTransaction.signingPayload(SignedTransaction.BINARY_PAYLOAD_VERSION, transaction, 2);
+        String expected = "02" + "0001" + "73" + "0002" + "7263" + "0000000000000001" + "0000000000000002";
+        assertEquals(expected, EncryptionUtils.encodeIntoHex(payload));
+    }
+
+    @Test
+    void testMultiOutputPayload() {
+        Transaction transaction = new Transaction("s", List.of("rc", "r"), List.of(1L, 2L));
+        byte[] payload = SignedTransaction.signingPayload(SignedTransaction.MULTI_OUTPUT_VERSION, transaction, 2);
+        String expected = "03" + "0001" + "73" + "0002" + "0002" + "7263" + "0000000000000001"
+                + "0001" + "72" + "0000000000000002" + "0000000000000002";
+        assertEquals(expected, EncryptionUtils.encodeIntoHex(payload));
+        assertEquals(3, transaction.getAmount());
+        assertThrows(ArithmeticException.class, () -> new Transaction("s", List.of("r", "r"), List.of(Long.MAX_VALUE, 1L)));
+    }
+
+    @Test
+    void testIdAndEquality() {
+        Transaction transaction = new Transaction("sender", "receiver", 200);
+        SignedTransaction text = new SignedTransaction(transaction, 1999L, dummyBytes, dummyBytes);
+        SignedTransaction sameText = new SignedTransaction(transaction, 1999L, new byte[]{2}, dummyBytes);
+        SignedTransaction binary = new SignedTransaction(SignedTransaction.BINARY_PAYLOAD_VERSION, transaction, 1999L, dummyBytes, dummyBytes);
+        assertSame(text.getId(), text.getId());
+        assertEquals(text, sameText);
+        assertEquals(text.hashCode(), sameText.hashCode());
+        assertNotEquals(text, binary);
+        assertEquals(Hash256.sha256(binary.getSigningPayload()), binary.getId());
+    }
+
+    @Test
+    void testWalletSignatureIsValid() throws IOException, ClassNotFoundException {
+        SimpleWallet wallet = new SimpleWallet((KeyPair) SerializationUtils.deserialize("src/test/resources/pair1"));
+        SignedTransaction signed = wallet.createTransaction("receiver", 10);
+        assertEquals(SignedTransaction.CURRENT_VERSION, signed.getVersion());
+        TransactionValidator validator = new TransactionValidator();
+        assertTrue(validator.checkSignatureValidity(signed));
+
+        SignedTransaction changedVersion = new SignedTransaction(SignedTransaction.TEXT_PAYLOAD_VERSION, signed.getTransaction(),
+                signed.getTimestamp(), signed.getSignature(), signed.getPublicKey());
+        assertFalse(validator.checkSignatureValidity(changedVersion));
+    }
+
+    @Test
+    void testWalletMultiOutputSignatureIsValid() throws IOException, ClassNotFoundException {
+        SimpleWallet wallet = new SimpleWallet((KeyPair) SerializationUtils.deserialize("src/test/resources/pair1"));
+        SignedTransaction signed = wallet.createTransaction(List.of("first", "second"), List.of(10L, 20L));
+        assertEquals(SignedTransaction.MULTI_OUTPUT_VERSION, signed.getVersion());
+        TransactionValidator validator = new TransactionValidator();
+        assertTrue(validator.checkSignatureValidity(signed));
+
+        /* Version 2 payload would cover the first receiver and the total only */
+        SignedTransaction changedVersion = new SignedTransaction(SignedTransaction.BINARY_PAYLOAD_VERSION, signed.getTransaction(),
+                signed.getTimestamp(), signed.getSignature(), signed.getPublicKey());
+        assertFalse(validator.checkSignatureValidity(changedVersion));
+        SignedTransaction negativeOutput = wallet.createTransaction(List.of("first", "second"), List.of(40L, -10L));
+        assertFalse(validator.checkSignatureValidity(negativeOutput));
+    }
+}
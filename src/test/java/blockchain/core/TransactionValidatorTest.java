@@ -1,5 +1,6 @@
 package blockchain.core;
 
+import blockchain.encryption.SignatureScheme;
 import blockchain.utils.SerializationUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -13,9 +14,7 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +23,9 @@ class TransactionValidatorTest {
     private static String firstClient;
     private static String secondClient;
     private static String thirdClient;
+    private static int firstId;
+    private static int secondId;
+    private static int thirdId;
     private static byte[] dummyBytes;
     private static List<Block> exampleBlocks;
     private static List<SignedTransaction> exampleTransactions;
@@ -35,6 +37,10 @@ class TransactionValidatorTest {
         firstClient = "FC";
         secondClient = "SC";
         thirdClient = "TC";
+        AddressRegistry registry = AddressRegistry.getInstance();
+        firstId = registry.intern(firstClient);
+        secondId = registry.intern(secondClient);
+        thirdId = registry.intern(thirdClient);
         dummyBytes = new byte[]{1};
         exampleBlocks = prepareExampleBlocks();
         exampleTransactions = preparePendingTransactions();
@@ -87,51 +93,35 @@ class TransactionValidatorTest {
         return pendingTransactions;
     }
 
-    @Test
-    void testCheckTransactionTimeValidity() {
-        //Client 1, has later transactions both in blocks and pending list
-        Transaction firstClientTransaction = new Transaction(firstClient, secondClient, 30);
-        SignedTransaction incorrect = new SignedTransaction(firstClientTransaction, 4, dummyBytes, dummyBytes);
-        assertFalse(validator.checkTransactionTimeValidity(incorrect, exampleBlocks, new ArrayList<>()));
-        assertFalse(validator.checkTransactionTimeValidity(incorrect, new ArrayList<>(), exampleTransactions));
-        assertFalse(validator.checkTransactionTimeValidity(incorrect, exampleBlocks, exampleTransactions));
-
-        //Client 2, has only earlier transactions
-        Transaction secondClientTransaction = new Transaction(secondClient, thirdClient, 30);
-        SignedTransaction correct = new SignedTransaction(secondClientTransaction, 13, dummyBytes, dummyBytes);
-        assertTrue(validator.checkTransactionTimeValidity(correct, exampleBlocks, exampleTransactions));
-        assertTrue(validator.checkTransactionTimeValidity(correct, new ArrayList<>(), exampleTransactions));
-        assertTrue(validator.checkTransactionTimeValidity(correct, exampleBlocks, new ArrayList<>()));
-
-        //Later than transaction in blocks earlier than transaction in pending list
-        SignedTransaction mixed = new SignedTransaction(firstClientTransaction, 7, dummyBytes, dummyBytes);
-        assertFalse(validator.checkTransactionTimeValidity(mixed, new ArrayList<>(), exampleTransactions));
-        assertTrue(validator.checkTransactionTimeValidity(mixed, exampleBlocks, new ArrayList<>()));
-        assertFalse(validator.checkTransactionTimeValidity(mixed, exampleBlocks, exampleTransactions));
+    private static ChainState prepareChainState() {
+        ChainState chainState = new ChainState();
+        exampleBlocks.stream()
+                .skip(1)
+                .forEach(chainState::apply);
+        return chainState;
     }
 
     @Test
-    void testCoinsOfClient() {
-        assertEquals(70, validator.coinsOfClient(firstClient, exampleBlocks, new ArrayList<>()));
-        assertEquals(60, validator.coinsOfClient(firstClient, exampleBlocks, exampleTransactions));
-
-        assertEquals(130, validator.coinsOfClient(secondClient, exampleBlocks, new ArrayList<>()));
-        assertEquals(120, validator.coinsOfClient(secondClient, exampleBlocks, exampleTransactions));
+    void testCheckOrderWithChainState() {
+        ChainState chainState = prepareChainState();
+        Transaction firstClientTransaction = new Transaction(firstClient, secondClient, 30);
+        SignedTransaction incorrect = new SignedTransaction(firstClientTransaction, 4, dummyBytes, dummyBytes);
+        assertEquals(TransactionResult.STALE_TIMESTAMP, chainState.checkOrder(incorrect));
 
-        assertEquals(0, validator.coinsOfClient(thirdClient, exampleBlocks, new ArrayList<>()));
-        assertEquals(0, validator.coinsOfClient(thirdClient, exampleBlocks, exampleTransactions));
+        SignedTransaction later = new SignedTransaction(firstClientTransaction, 7, dummyBytes, dummyBytes);
+        assertEquals(TransactionResult.ACCEPTED, chainState.checkOrder(later));
+        assertEquals(TransactionResult.DUPLICATE, chainState.checkOrder(exampleBlocks.get(2).getTransactions().get(0)));
     }
 
     @Test
-    void testCheckBalanceValidity() {
-        Transaction negativeAmount = new Transaction(firstClient, secondClient, -150);
-        SignedTransaction signedNegativeAmount = new SignedTransaction(negativeAmount, 10, dummyBytes, dummyBytes);
-        assertFalse(validator.checkBalanceValidity(signedNegativeAmount, exampleBlocks, exampleTransactions));
-
-        Transaction highAmount = new Transaction(firstClient, secondClient, 65);
-        SignedTransaction signedHighAmount = new SignedTransaction(highAmount, 10, dummyBytes, dummyBytes);
-        assertTrue(validator.checkBalanceValidity(signedHighAmount, exampleBlocks, new ArrayList<>()));
-        assertFalse(validator.checkBalanceValidity(signedHighAmount, exampleBlocks, exampleTransactions));
+    void testCoinsOfClientWithChainState() {
+        ChainState chainState = prepareChainState();
+        assertEquals(2, chainState.getHeight());
+        assertEquals(70, validator.coinsOfClient(firstClient, chainState, new ArrayList<>()));
+        assertEquals(60, validator.coinsOfClient(firstClient, chainState, exampleTransactions));
+        assertEquals(130, validator.coinsOfClient(secondClient, chainState, new ArrayList<>()));
+        assertEquals(120, validator.coinsOfClient(secondClient, chainState, exampleTransactions));
+        assertEquals(0, validator.coinsOfClient(thirdClient, chainState, exampleTransactions));
     }
 
     @Test
@@ -153,37 +143,54 @@ class TransactionValidatorTest {
     }
 
     @Test
-    void testCheckNewBlockOutgoings() {
-        Map<String, Long> balanceMap = new HashMap<>();
-        balanceMap.put(firstClient, 10L);
-        balanceMap.put(secondClient, 10L);
-        balanceMap.put(thirdClient, 10L);
-        assertTrue(validator.checkNewBlockOutgoings(newBlock, balanceMap));
-
-        balanceMap.replace(firstClient, -10L);
-        assertFalse(validator.checkNewBlockOutgoings(newBlock, balanceMap));
+    void testCheckSignatureValidityOfRecordedScheme() {
+        KeyPair keyPair = SignatureScheme.ED25519.generateKeyPair();
+        Transaction dummy = new Transaction(firstClient, secondClient, 10);
+        long timestamp = 1000L;
+        byte[] input = SignedTransaction.signingPayload(SignedTransaction.CURRENT_VERSION, dummy, timestamp);
+        byte[] sign = SignatureScheme.ED25519.sign(keyPair.getPrivate(), input);
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+
+        SignedTransaction signedTransaction = new SignedTransaction(SignedTransaction.CURRENT_VERSION, dummy, timestamp,
+                sign, publicKey, SignatureScheme.ED25519);
+        assertTrue(validator.checkSignatureValidity(signedTransaction));
+        SignedTransaction wrongScheme = new SignedTransaction(SignedTransaction.CURRENT_VERSION, dummy, timestamp,
+                sign, publicKey, SignatureScheme.RSA);
+        assertFalse(validator.checkSignatureValidity(wrongScheme));
+    }
+
+    @Test
+    void testCheckAddressesValidity() {
+        String address = "19eA3hUfKRt7aZymavdQFXg5EZ6KCVKxr8";
+        String otherAddress = "157mSkBby2tXzSjxUx8PzMVQXJvzZ4rpqH";
+        SignedTransaction valid = new SignedTransaction(new Transaction(address, otherAddress, 10), 10, dummyBytes, dummyBytes);
+        assertTrue(validator.checkAddressesValidity(valid));
+        SignedTransaction malformedReceiver = new SignedTransaction(new Transaction(address, secondClient, 10), 10, dummyBytes, dummyBytes);
+        assertFalse(validator.checkAddressesValidity(malformedReceiver));
+        SignedTransaction malformedSender = new SignedTransaction(new Transaction(firstClient, otherAddress, 10), 10, dummyBytes, dummyBytes);
+        assertFalse(validator.checkAddressesValidity(malformedSender));
     }
 
     @Test
     void testCheckBalanceMap() {
-        Map<String, Long> balanceMap = new HashMap<>();
-        balanceMap.put(firstClient, 10L);
-        balanceMap.put(secondClient, 10L);
-        balanceMap.put(thirdClient, 10L);
+        BalanceMap balanceMap = new BalanceMap();
+        balanceMap.put(firstId, 10L);
+        balanceMap.put(secondId, 10L);
+        balanceMap.put(thirdId, 10L);
         assertTrue(validator.checkBalanceMap(balanceMap));
 
-        balanceMap.replace(firstClient, -10L);
+        balanceMap.put(firstId, -10L);
         assertFalse(validator.checkBalanceMap(balanceMap));
     }
 
     @Test
     void testGetMapOfOutgoings() {
-        Map<String, Long> mapOfOutgoings = validator.getMapOfOutgoings(exampleBlocks.get(2));
-        assertEquals(-30, mapOfOutgoings.get(firstClient).longValue());
+        BalanceMap mapOfOutgoings = validator.getMapOfOutgoings(exampleBlocks.get(2));
+        assertEquals(-30, mapOfOutgoings.get(firstId));
 
-        Map<String, Long> mapOfPending = validator.getMapOfOutgoings(newBlock);
-        assertEquals(-10, mapOfPending.get(firstClient));
-        assertEquals(-10, mapOfPending.get(secondClient));
+        BalanceMap mapOfPending = validator.getMapOfOutgoings(newBlock);
+        assertEquals(-10, mapOfPending.get(firstId));
+        assertEquals(-10, mapOfPending.get(secondId));
     }
 
     @Test
@@ -198,20 +205,20 @@ class TransactionValidatorTest {
 
     @Test
     void testUpdateBalanceMap() {
-        Map<String, Long> balanceMap = new HashMap<>();
-        balanceMap.put(firstClient, 10L);
-        balanceMap.put(secondClient, 10L);
-        balanceMap.put(thirdClient, 10L);
+        BalanceMap balanceMap = new BalanceMap();
+        balanceMap.put(firstId, 10L);
+        balanceMap.put(secondId, 10L);
+        balanceMap.put(thirdId, 10L);
 
         validator.updateBalanceMap(newBlock, balanceMap);
-        assertEquals(0, balanceMap.get(firstClient));
-        assertEquals(0, balanceMap.get(secondClient));
-        assertEquals(30, balanceMap.get(thirdClient));
+        assertEquals(0, balanceMap.get(firstId));
+        assertEquals(0, balanceMap.get(secondId));
+        assertEquals(30, balanceMap.get(thirdId));
 
         MinerReward reward = new MinerReward(secondClient, 100);
         validator.updateBalanceMap(reward, balanceMap);
-        assertEquals(0, balanceMap.get(firstClient));
-        assertEquals(100, balanceMap.get(secondClient));
-        assertEquals(30, balanceMap.get(thirdClient));
+        assertEquals(0, balanceMap.get(firstId));
+        assertEquals(100, balanceMap.get(secondId));
+        assertEquals(30, balanceMap.get(thirdId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package blockchain.encryption;
+
+import org.bitcoinj.core.Base58;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressValidatorTest {
+
+    @Test
+    void testValidAddresses() {
+        assertTrue(AddressValidator.isValid("19eA3hUfKRt7aZymavdQFXg5EZ6KCVKxr8"));
+        /* Second check is answered from the cache */
+        assertTrue(AddressValidator.isValid("19eA3hUfKRt7aZymavdQFXg5EZ6KCVKxr8"));
+        byte[] key = SignatureScheme.ED25519.generateKeyPair().getPublic().getEncoded();
+        assertTrue(AddressValidator.isValid(AddressGenerator.GenerateAddressFromPublicKey(key)));
+    }
+
+    @Test
+    void testMalformedAddresses() {
+        assertFalse(AddressValidator.isValid(null));
+        assertFalse(AddressValidator.isValid(""));
+        assertFalse(AddressValidator.isValid("FC"));
+        /* 0, O, I and l are not Base58 digits */
+        assertFalse(AddressValidator.isValid("19eA3hUfKRt7aZymavdQFXg5EZ6KCVKx0O"));
+        /* Last character changed, so the checksum doesn't match */
+        assertFalse(AddressValidator.isValid("19eA3hUfKRt7aZymavdQFXg5EZ6KCVKxr9"));
+
+        byte[] bytes = Base58.decode("19eA3hUfKRt7aZymavdQFXg5EZ6KCVKxr8");
+        bytes[0] = 1;
+        assertFalse(AddressValidator.isValid(Base58.encode(bytes)));
+    }
+}
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 class EncryptionUtilsTest {
 
@@ -27,6 +29,34 @@ class EncryptionUtilsTest {
         assertThrows(IllegalArgumentException.class, () -> EncryptionUtils.decodeHexString(wrongHexString));
     }
 
+    @Test
+    void testHexWithCharArrays() {
+        char[] output = new char[2 + testHex.length()];
+        output[0] = '[';
+        output[1] = '[';
+        EncryptionUtils.encodeIntoHex(testHexBytes, output, 2);
+        assertEquals("[[" + testHex, new String(output));
+        assertArrayEquals(testHexBytes, EncryptionUtils.decodeHex(output, 2, testHex.length()));
+        assertArrayEquals(testHexBytes, EncryptionUtils.decodeHexString(testHex.toUpperCase()));
+        assertThrows(IllegalArgumentException.class, () -> EncryptionUtils.decodeHexString("0g"));
+        assertThrows(IllegalArgumentException.class, () -> EncryptionUtils.decodeHexString("0\u0660"));
+    }
+
+    @Test
+    void testDigestsReusedAcrossThreads() {
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            hashes.add(EncryptionUtils.applySha256("input" + i));
+        }
+        for (int round = 0; round < 3; round++) {
+            List<String> parallel = IntStream.range(0, 64)
+                    .parallel()
+                    .mapToObj(i -> EncryptionUtils.applySha256("input" + i))
+                    .collect(Collectors.toList());
+            assertEquals(hashes, parallel);
+        }
+    }
+
     @Test
     void testApplySha256() {
         assertEquals("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", EncryptionUtils.applySha256(testInput));
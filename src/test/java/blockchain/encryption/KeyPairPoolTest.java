@@ -0,0 +1,43 @@
+package blockchain.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyPairPoolTest {
+
+    @Test
+    void testPreloadedTakenFirst() {
+        KeyPair first = SignatureScheme.ED25519.generateKeyPair();
+        KeyPair second = SignatureScheme.ED25519.generateKeyPair();
+        try (KeyPairPool pool = new KeyPairPool(SignatureScheme.ED25519, 0, 0)) {
+            pool.preload(List.of(first, second));
+            assertSame(first, pool.take());
+            assertSame(second, pool.take());
+            KeyPair generated = pool.take();
+            assertEquals(SignatureScheme.ED25519, SignatureScheme.of(generated.getPublic()));
+            assertEquals("Key pairs ED25519: 2 preloaded, 0 generated in background, 1 generated by caller", pool.toString());
+        }
+    }
+
+    @Test
+    void testBackgroundGeneration() throws InterruptedException {
+        try (KeyPairPool pool = new KeyPairPool(SignatureScheme.ED25519, 4, 2)) {
+            /* Gives generators time to fill the pool */
+            Thread.sleep(500);
+            Set<String> addresses = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                KeyPair keyPair = pool.take();
+                assertEquals(SignatureScheme.ED25519, SignatureScheme.of(keyPair.getPublic()));
+                addresses.add(AddressGenerator.GenerateAddressFromPublicKey(keyPair.getPublic().getEncoded()));
+            }
+            assertEquals(20, addresses.size());
+            assertFalse(pool.toString().contains(" 0 generated in background"));
+        }
+    }
+}
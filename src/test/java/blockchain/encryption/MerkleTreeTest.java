@@ -0,0 +1,91 @@
+package blockchain.encryption;
+
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleTreeTest {
+    private static final byte[] dummyBytes = new byte[]{0};
+
+    private static List<SignedTransaction> prepareTransactions(int count) {
+        List<SignedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(new SignedTransaction(new Transaction("sender", "receiver", i + 1), 1000L + i, dummyBytes, dummyBytes));
+        }
+        return transactions;
+    }
+
+    @Test
+    void testEmptyTree() {
+        String expectedHashWithEmptyList = "6ca1aa5edf136278a39a5593cdae47d776a5b8d489f23de573eb7c90f6c7f9a0"; //hashed "No transactions"
+        assertEquals(expectedHashWithEmptyList, new MerkleTree().getRootHex());
+        assertEquals(expectedHashWithEmptyList, MerkleTree.computeRootHex(new ArrayList<>()));
+    }
+
+    @Test
+    void testRootOfThreeTransactions() throws NoSuchAlgorithmException {
+        List<SignedTransaction> transactions = prepareTransactions(3);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[][] leaves = new byte[3][];
+        for (int i = 0; i < 3; i++) {
+            byte[] transactionHash = digest.digest(transactions.get(i).stringForHashing().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            leaves[i] = digest.digest(transactionHash);
+        }
+        digest.update((byte) 1);
+        digest.update(leaves[0]);
+        byte[] firstPair = digest.digest(leaves[1]);
+        /* Third leaf has no pair, so it is promoted unchanged */
+        digest.update((byte) 1);
+        digest.update(firstPair);
+        byte[] root = digest.digest(leaves[2]);
+
+        assertEquals(EncryptionUtils.encodeIntoHex(root), MerkleTree.computeRootHex(transactions));
+        assertEquals(EncryptionUtils.encodeIntoHex(root), new MerkleTree(transactions).getRootHex());
+    }
+
+    @Test
+    void testIncrementalAppendMatchesFullComputation() {
+        List<SignedTransaction> transactions = prepareTransactions(37);
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < transactions.size(); i++) {
+            tree.append(transactions.get(i));
+            assertEquals(i + 1, tree.size());
+            assertEquals(MerkleTree.computeRootHex(transactions.subList(0, i + 1)), tree.getRootHex());
+        }
+    }
+
+    @Test
+    void testOrderMatters() {
+        List<SignedTransaction> transactions = prepareTransactions(2);
+        List<SignedTransaction> reversed = List.of(transactions.get(1), transactions.get(0));
+        assertNotEquals(MerkleTree.computeRootHex(transactions), MerkleTree.computeRootHex(reversed));
+    }
+
+    @Test
+    void testProofOfEachLeafLeadsToRoot() {
+        for (int size = 1; size <= 9; size++) {
+            List<SignedTransaction> transactions = prepareTransactions(size);
+            MerkleTree tree = new MerkleTree(transactions);
+            for (int index = 0; index < size; index++) {
+                byte[] transactionHash = transactions.get(index).getId().getBytes();
+                List<byte[]> proof = tree.getProof(index);
+                assertArrayEquals(tree.getRoot(), MerkleTree.computeRootFromProof(transactionHash, index, size, proof));
+                /* Another position or tree size needs another path */
+                byte[] moved = MerkleTree.computeRootFromProof(transactionHash, (index + 1) % size, size, proof);
+                assertTrue(size == 1 || moved == null || !Arrays.equals(tree.getRoot(), moved));
+                assertNull(MerkleTree.computeRootFromProof(transactionHash, index, 2 * size + 1, proof));
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> new MerkleTree(prepareTransactions(2)).getProof(2));
+    }
+}
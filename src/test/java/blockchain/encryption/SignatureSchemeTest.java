@@ -0,0 +1,62 @@
+package blockchain.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureSchemeTest {
+    private static final byte[] PAYLOAD = "FC sent 10 VC to SC\n1000".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testSignAndVerify() {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            KeyPair keyPair = scheme.generateKeyPair();
+            byte[] publicKey = keyPair.getPublic().getEncoded();
+            byte[] signature = scheme.sign(keyPair.getPrivate(), PAYLOAD);
+            assertTrue(scheme.verify(publicKey, PAYLOAD, signature), scheme.name());
+
+            byte[] tampered = PAYLOAD.clone();
+            tampered[0] ^= 1;
+            assertFalse(scheme.verify(publicKey, tampered, signature), scheme.name());
+            assertFalse(scheme.verify(publicKey, PAYLOAD, new byte[]{1, 2, 3}), scheme.name());
+            assertEquals(scheme, SignatureScheme.of(keyPair.getPublic()));
+        }
+    }
+
+    @Test
+    void testKeyOfOtherSchemeRejected() {
+        KeyPair edKeys = SignatureScheme.ED25519.generateKeyPair();
+        byte[] signature = SignatureScheme.ED25519.sign(edKeys.getPrivate(), PAYLOAD);
+        byte[] publicKey = edKeys.getPublic().getEncoded();
+        assertFalse(SignatureScheme.RSA.verify(publicKey, PAYLOAD, signature));
+        assertFalse(SignatureScheme.ECDSA_SECP256K1.verify(publicKey, PAYLOAD, signature));
+    }
+
+    @Test
+    void testKeyOnOtherCurveRejected() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(PAYLOAD);
+        assertFalse(SignatureScheme.ECDSA_SECP256K1.verify(keyPair.getPublic().getEncoded(), PAYLOAD, signer.sign()));
+    }
+
+    @Test
+    void testFromId() {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            assertEquals(scheme, SignatureScheme.fromId(scheme.getId()));
+        }
+        /* Transactions without recorded scheme have id 0 */
+        assertEquals(SignatureScheme.RSA, SignatureScheme.fromId(0));
+        assertThrows(IllegalArgumentException.class, () -> SignatureScheme.fromId(15));
+    }
+}
@@ -0,0 +1,106 @@
+package blockchain.network;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SimpleWallet;
+import blockchain.core.TransactionsTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainSyncTest {
+
+    /* Blocks are 40 seconds apart, so difficulty goes down and mining stays fast */
+    private static void mineBlocks(Blockchain blockchain, int count, SimpleWallet miner) {
+        long time = System.currentTimeMillis() - (count + 1) * 40_000L;
+        for (int id = blockchain.size() + 1; count-- > 0; id++) {
+            TransactionsTemplate template = blockchain.getTransactionsTemplate();
+            Block last = blockchain.getLast();
+            MinerReward reward = new MinerReward(miner.getAddress(), Blockchain.REWARD_VALUE);
+            time += 40_000;
+            int nonce = 0;
+            Hash256 hash;
+            do {
+                nonce++;
+                hash = Block.calculateHash(reward, id, time, nonce, last.getBlockHash(), template.getTransactionsHash());
+            } while (hash.leadingZeroBits() < 4 * blockchain.getNumberOfZerosRequired());
+            Block block = Block.newBuilder()
+                    .setVersion(template.getVersion())
+                    .setId(id)
+                    .setTimestamp(time)
+                    .setTransactionsHash(template.getTransactionsHash())
+                    .setNonce(nonce)
+                    .setPreviousHash(last.getBlockHash())
+                    .setHash(hash)
+                    .setTransactions(template.getTransactions())
+                    .setMinerReward(reward)
+                    .build();
+            assertTrue(blockchain.appendNextBlock(block));
+        }
+    }
+
+    private static void waitForPeers(Node node, int peers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (node.getTransport().getPeers().size() < peers && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(peers, node.getTransport().getPeers().size());
+    }
+
+    @Test
+    void testSynchronizeFromTwoPeers() throws Exception {
+        SimpleWallet miner = new SimpleWallet();
+        try (Node first = new Node("first"); Node second = new Node("second"); Node late = new Node("late")) {
+            mineBlocks(first.getBlockchain(), 8, miner);
+            List<Block> blocks = first.getBlockchain().getBlocks(1, Integer.MAX_VALUE);
+            assertTrue(second.getBlockchain().appendCheckedBlocks(blocks));
+            late.connect(first);
+            late.connect(second);
+            waitForPeers(late, 2);
+
+            assertEquals(8, late.synchronize().get(10, TimeUnit.SECONDS));
+            assertEquals(8, late.getBlockchain().size());
+            assertEquals(first.getBlockchain().getLast().getBlockHash(), late.getBlockchain().getLast().getBlockHash());
+            assertEquals(first.getBlockchain().coinsOfClient(miner.getAddress()), late.getBlockchain().coinsOfClient(miner.getAddress()));
+
+            /* Nothing more to download */
+            assertEquals(0, late.synchronize().get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testSynchronizeFromBlockStores(@TempDir Path tempDir) throws Exception {
+        SimpleWallet miner = new SimpleWallet();
+        try (Node first = new Node("first"); Node second = new Node("second"); Node late = new Node("late")) {
+            first.useBlockStore(tempDir.resolve("first").toString(), 100);
+            second.useBlockStore(tempDir.resolve("second").toString(), 100);
+            second.setZeroCopyServing(false);
+            /* More than one window of bodies, so both peers serve some */
+            mineBlocks(first.getBlockchain(), 2 * ChainSync.BODIES_PER_REQUEST, miner);
+            assertNotNull(first.getBlockchain().getStoredBody(6));
+            assertTrue(second.getBlockchain().appendCheckedBlocks(first.getBlockchain().getBlocks(1, Integer.MAX_VALUE)));
+            late.connect(first);
+            late.connect(second);
+            waitForPeers(late, 2);
+
+            assertEquals(2 * ChainSync.BODIES_PER_REQUEST, late.synchronize().get(10, TimeUnit.SECONDS));
+            assertEquals(first.getBlockchain().getLast().getBlockHash(), late.getBlockchain().getLast().getBlockHash());
+            assertTrue(first.getTransport().getSentBytes(MessageType.BLOCK_BODIES) > 0);
+            assertTrue(second.getTransport().getSentBytes(MessageType.BLOCK_BODIES) > 0);
+        }
+    }
+
+    @Test
+    void testSynchronizeWithoutPeers() throws Exception {
+        try (Node alone = new Node("alone")) {
+            assertEquals(0, alone.synchronize().get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package blockchain.network;
+
+import blockchain.core.Block;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.serialization.BinaryCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactBlockTest {
+
+    private static List<SignedTransaction> prepareTransactions(int count) {
+        List<SignedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(new SignedTransaction(new Transaction("FC", "SC", i + 1), 10 + i, new byte[]{1, 2, 3}, new byte[]{4, 5}));
+        }
+        return transactions;
+    }
+
+    private static Block prepareBlock(List<SignedTransaction> transactions) {
+        return Block.newBuilder()
+                .setVersion(2)
+                .setId(5)
+                .setTimestamp(1000)
+                .setTransactionsHash(Hash256.sha256("transactions".getBytes(StandardCharsets.UTF_8)))
+                .setNonce(7)
+                .setPreviousHash(Hash256.ZERO)
+                .setHash(Hash256.sha256("block".getBytes(StandardCharsets.UTF_8)))
+                .setMinerName("Miner")
+                .setMinerReward(new MinerReward("FC", 100))
+                .setTransactions(transactions)
+                .build();
+    }
+
+    private static CompactBlock roundTrip(CompactBlock compactBlock) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        compactBlock.write(new DataOutputStream(bytes));
+        return CompactBlock.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void testRebuildFromPendingTransactions() throws IOException {
+        List<SignedTransaction> transactions = prepareTransactions(4);
+        Block block = prepareBlock(transactions);
+        CompactBlock received = roundTrip(CompactBlock.of(block));
+        assertEquals(4, received.getTransactionsCount());
+
+        /* Receiver has all but the second transaction, plus one not in the block */
+        List<SignedTransaction> pending = new ArrayList<>(transactions);
+        pending.remove(1);
+        pending.add(prepareTransactions(6).get(5));
+        SignedTransaction[] slots = new SignedTransaction[received.getTransactionsCount()];
+        int[] missing = received.fill(pending, slots);
+        assertArrayEquals(new int[]{1}, missing);
+
+        slots[1] = transactions.get(1);
+        Block rebuilt = received.toBlock(slots);
+        assertEquals(transactions, rebuilt.getTransactions());
+        assertEquals(block.getBlockHash(), rebuilt.getBlockHash());
+        assertEquals(block.getTransactionsHash(), rebuilt.getTransactionsHash());
+        assertEquals(block.getNonce(), rebuilt.getNonce());
+        assertEquals("Miner", rebuilt.getMinerName());
+        assertEquals(100, rebuilt.getMinerReward().getReward());
+    }
+
+    @Test
+    void testEmptyBlock() throws IOException {
+        CompactBlock received = roundTrip(CompactBlock.of(prepareBlock(new ArrayList<>())));
+        int[] missing = received.fill(prepareTransactions(2), new SignedTransaction[0]);
+        assertEquals(0, missing.length);
+        assertTrue(received.toBlock(new SignedTransaction[0]).getTransactions().isEmpty());
+    }
+
+    @Test
+    void testCountOverMessageSizeRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        BinaryCodec.writeBlockHeader(output, prepareBlock(new ArrayList<>()));
+        output.writeInt(Integer.MAX_VALUE);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThrows(IOException.class, () -> CompactBlock.read(input));
+    }
+}
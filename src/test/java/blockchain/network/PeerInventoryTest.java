@@ -0,0 +1,50 @@
+package blockchain.network;
+
+import blockchain.core.Hash256;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerInventoryTest {
+
+    private static Hash256 id(int i) {
+        return Hash256.sha256(("transaction " + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBatching() {
+        PeerInventory inventory = new PeerInventory();
+        assertNull(inventory.announce(id(1), 3));
+        assertNull(inventory.announce(id(2), 3));
+        assertEquals(List.of(id(1), id(2), id(3)), inventory.announce(id(3), 3));
+        assertTrue(inventory.drain().isEmpty());
+
+        assertNull(inventory.announce(id(4), 3));
+        assertEquals(List.of(id(4)), inventory.drain());
+    }
+
+    @Test
+    void testKnownIdsAreNotAnnounced() {
+        PeerInventory inventory = new PeerInventory();
+        inventory.markKnown(id(1));
+        assertNull(inventory.announce(id(1), 1));
+        assertEquals(List.of(id(2)), inventory.announce(id(2), 1));
+        /* Announced ids become known as well */
+        assertNull(inventory.announce(id(2), 1));
+        assertTrue(inventory.isKnown(id(2)));
+        assertFalse(inventory.isKnown(id(3)));
+    }
+
+    @Test
+    void testKnownIdsAreBounded() {
+        PeerInventory inventory = new PeerInventory();
+        for (int i = 0; i <= PeerInventory.KNOWN_CAPACITY; i++) {
+            inventory.markKnown(id(i));
+        }
+        assertFalse(inventory.isKnown(id(0)));
+        assertTrue(inventory.isKnown(id(PeerInventory.KNOWN_CAPACITY)));
+    }
+}
@@ -0,0 +1,103 @@
+package blockchain.network;
+
+import blockchain.storage.FileRegion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransportTest {
+
+    private static class RecordingHandler implements MessageHandler {
+        private final List<byte[]> payloads = new CopyOnWriteArrayList<>();
+        private final List<MessageType> types = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received;
+        private final CountDownLatch connected = new CountDownLatch(1);
+
+        RecordingHandler(int expectedMessages) {
+            received = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public void onMessage(Peer peer, MessageType type, byte[] payload) {
+            types.add(type);
+            payloads.add(payload);
+            received.countDown();
+        }
+
+        @Override
+        public void onConnected(Peer peer) {
+            connected.countDown();
+        }
+    }
+
+    @Test
+    void testMessagesArriveInOrder() throws IOException, InterruptedException {
+        RecordingHandler receiverHandler = new RecordingHandler(3);
+        RecordingHandler senderHandler = new RecordingHandler(0);
+        try (Transport receiver = new Transport("receiver", receiverHandler);
+             Transport sender = new Transport("sender", senderHandler)) {
+            sender.connect(receiver.getAddress());
+            assertTrue(senderHandler.connected.await(5, TimeUnit.SECONDS));
+            Peer peer = sender.getPeers().get(0);
+
+            /* Larger than the initial read buffer, so it's assembled from several reads */
+            byte[] large = new byte[300_000];
+            for (int i = 0; i < large.length; i++) {
+                large[i] = (byte) i;
+            }
+            sender.send(peer, MessageType.TRANSACTION, new byte[]{1, 2, 3});
+            sender.send(peer, MessageType.BLOCK, large);
+            sender.send(peer, MessageType.TRANSACTION, new byte[0]);
+
+            assertTrue(receiverHandler.received.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(MessageType.TRANSACTION, MessageType.BLOCK, MessageType.TRANSACTION), receiverHandler.types);
+            assertArrayEquals(new byte[]{1, 2, 3}, receiverHandler.payloads.get(0));
+            assertArrayEquals(large, receiverHandler.payloads.get(1));
+            assertEquals(0, receiverHandler.payloads.get(2).length);
+            assertEquals(3, sender.getSentMessages());
+            assertEquals(3 * 5 + 3 + large.length, sender.getSentBytes());
+        }
+    }
+
+    @Test
+    void testFileRegionParts(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path file = tempDir.resolve("data");
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 7);
+        }
+        Files.write(file, content);
+        RecordingHandler receiverHandler = new RecordingHandler(1);
+        RecordingHandler senderHandler = new RecordingHandler(0);
+        try (Transport receiver = new Transport("receiver", receiverHandler);
+             Transport sender = new Transport("sender", senderHandler);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            sender.connect(receiver.getAddress());
+            assertTrue(senderHandler.connected.await(5, TimeUnit.SECONDS));
+            Peer peer = sender.getPeers().get(0);
+
+            /* Buffer, a region from the middle of the file, buffer */
+            sender.send(peer, MessageType.BLOCK_BODIES, List.of(new byte[]{1, 2}, new FileRegion(channel, 1000, 150_000), new byte[]{3}));
+
+            assertTrue(receiverHandler.received.await(5, TimeUnit.SECONDS));
+            byte[] payload = receiverHandler.payloads.get(0);
+            assertEquals(2 + 150_000 + 1, payload.length);
+            assertArrayEquals(new byte[]{1, 2}, Arrays.copyOfRange(payload, 0, 2));
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 151_000), Arrays.copyOfRange(payload, 2, 150_002));
+            assertEquals(3, payload[payload.length - 1]);
+            assertEquals(5 + payload.length, sender.getSentBytes(MessageType.BLOCK_BODIES));
+        }
+    }
+}
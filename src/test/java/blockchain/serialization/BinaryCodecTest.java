@@ -0,0 +1,75 @@
+package blockchain.serialization;
+
+import blockchain.core.Block;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.encryption.SignatureScheme;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    @Test
+    void testBlockRoundTrip() throws IOException {
+        SignedTransaction first = new SignedTransaction(new Transaction("FC", "SC", 5), 10,
+                new byte[]{1, 2, 3}, new byte[]{4, 5});
+        SignedTransaction second = new SignedTransaction(SignedTransaction.BINARY_PAYLOAD_VERSION,
+                new Transaction("SC", "FC", 2), 11, new byte[]{6}, new byte[]{7, 8}, SignatureScheme.ED25519);
+        SignedTransaction third = new SignedTransaction(SignedTransaction.MULTI_OUTPUT_VERSION,
+                new Transaction("FC", List.of("SC", "TC", "SC"), List.of(1L, 2L, 3L)), 12, new byte[]{9}, new byte[]{4, 5});
+        Block block = Block.newBuilder()
+                .setVersion(1)
+                .setId(3)
+                .setTimestamp(1234)
+                .setTransactionsHash(Hash256.sha256("transactions".getBytes(StandardCharsets.UTF_8)))
+                .setNonce(42)
+                .setPreviousHash(Hash256.ZERO)
+                .setHash(Hash256.sha256("block".getBytes(StandardCharsets.UTF_8)))
+                .setMinerName("Miner")
+                .setTransactions(List.of(first, second, third))
+                .setMinerReward(new MinerReward("FC", 100))
+                .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeBlock(new DataOutputStream(bytes), block);
+        Block decoded = BinaryCodec.readBlock(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(block.getId(), decoded.getId());
+        assertEquals(block.getTimestamp(), decoded.getTimestamp());
+        assertEquals(block.getNonce(), decoded.getNonce());
+        assertEquals(block.getTransactionsHash(), decoded.getTransactionsHash());
+        assertEquals(block.getPreviousBlockHash(), decoded.getPreviousBlockHash());
+        assertEquals(block.getBlockHash(), decoded.getBlockHash());
+        assertEquals("Miner", decoded.getMinerName());
+        assertEquals("FC", decoded.getMinerReward().getMiner());
+        assertEquals(100, decoded.getMinerReward().getReward());
+        assertEquals(block.getTransactions(), decoded.getTransactions());
+        assertEquals(SignatureScheme.ED25519, decoded.getTransactions().get(1).getSignatureScheme());
+        assertEquals(third.getTransaction(), decoded.getTransactions().get(2).getTransaction());
+        assertEquals(6, decoded.getTransactions().get(2).getAmount());
+    }
+
+    @Test
+    void testUntrustedCounts() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(Integer.MAX_VALUE);
+        output.writeInt(-1);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray(), 0, 4));
+        /* Huge count runs out of data instead of allocating for it upfront */
+        assertThrows(IOException.class, () -> BinaryCodec.readTransactions(input));
+        DataInputStream negative = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray(), 4, 4));
+        assertThrows(IOException.class, () -> BinaryCodec.readHashes(negative));
+    }
+}
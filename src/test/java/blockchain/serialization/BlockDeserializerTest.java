@@ -0,0 +1,102 @@
+package blockchain.serialization;
+
+import blockchain.core.Block;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockDeserializerTest {
+    private static Gson gson;
+    private static Block genesis;
+    private static Block block;
+
+    @BeforeAll
+    static void beforeAll() {
+        gson = new GsonBuilder()
+                .registerTypeAdapter(Block.class, new BlockSerializer())
+                .registerTypeAdapter(SignedTransaction.class, new TransactionSerializer())
+                .registerTypeAdapter(Block.class, new BlockDeserializer())
+                .registerTypeAdapter(SignedTransaction.class, new TransactionDeserializer())
+                .create();
+        genesis = Block.newBuilder()
+                .setId(0)
+                .setTimestamp(0)
+                .setHash(Hash256.ZERO)
+                .setMinerName("")
+                .setTransactions(new ArrayList<>())
+                .setMinerReward(null)
+                .build();
+
+        List<SignedTransaction> transactions = new ArrayList<>();
+        transactions.add(new SignedTransaction(new Transaction("FC", "SC", 30), 5, new byte[]{1, 2}, new byte[]{3, 4}));
+        transactions.add(new SignedTransaction(new Transaction("SC", "TC", 10), 7, new byte[]{5}, new byte[]{6}));
+        transactions.add(new SignedTransaction(SignedTransaction.MULTI_OUTPUT_VERSION,
+                new Transaction("TC", List.of("FC", "SC"), List.of(2L, 3L)), 9, new byte[]{7}, new byte[]{8}));
+        block = Block.newBuilder()
+                .setId(1)
+                .setTimestamp(10)
+                .setTransactionsHash(Hash256.sha256(new byte[]{1}))
+                .setNonce(42)
+                .setPreviousHash(Hash256.ZERO)
+                .setHash(Hash256.sha256(new byte[]{2}))
+                .setMinerName("1")
+                .setMinerReward(new MinerReward("FC", 100))
+                .setTransactions(transactions)
+                .build();
+    }
+
+    @Test
+    void testDeserialize() {
+        String json = gson.toJson(block);
+        /* Miner address is exported as string, not as in-memory registry id */
+        assertTrue(json.contains("\"MinerReward\":{\"miner\":\"FC\",\"reward\":100}"));
+        Block deserialized = gson.fromJson(json, Block.class);
+        assertEquals(block.getId(), deserialized.getId());
+        assertEquals(block.getTimestamp(), deserialized.getTimestamp());
+        assertEquals(block.getTransactionsHash(), deserialized.getTransactionsHash());
+        assertEquals(block.getNonce(), deserialized.getNonce());
+        assertEquals(block.getPreviousBlockHash(), deserialized.getPreviousBlockHash());
+        assertEquals(block.getBlockHash(), deserialized.getBlockHash());
+        assertEquals(block.getMinerName(), deserialized.getMinerName());
+        assertEquals(block.getMinerReward().toString(), deserialized.getMinerReward().toString());
+        assertEquals(block.getTransactions(), deserialized.getTransactions());
+        assertArrayEquals(block.getTransactions().get(0).getSignature(), deserialized.getTransactions().get(0).getSignature());
+        assertArrayEquals(block.getTransactions().get(0).getPublicKey(), deserialized.getTransactions().get(0).getPublicKey());
+        assertTrue(json.contains("\"outputs\":[{\"receiver\":\"FC\",\"amount\":2},{\"receiver\":\"SC\",\"amount\":3}]"));
+        assertEquals(block.getTransactions().get(2).getTransaction(), deserialized.getTransactions().get(2).getTransaction());
+    }
+
+    @Test
+    void testDeserializeGenesis() {
+        Block deserialized = gson.fromJson(gson.toJson(genesis), Block.class);
+        assertEquals(0, deserialized.getId());
+        assertEquals(Hash256.ZERO, deserialized.getBlockHash());
+        assertNull(deserialized.getMinerReward());
+        assertTrue(deserialized.getTransactions().isEmpty());
+    }
+
+    @Test
+    void testBlockStreamReader() throws IOException {
+        String json = gson.toJson(new Block[]{genesis, block});
+        List<Block> read = new ArrayList<>();
+        try (BlockStreamReader reader = new BlockStreamReader(new StringReader(json))) {
+            reader.forEachRemaining(read::add);
+        }
+        assertEquals(2, read.size());
+        assertEquals(0, read.get(0).getId());
+        assertEquals(1, read.get(1).getId());
+        assertEquals(block.getTransactions(), read.get(1).getTransactions());
+    }
+}
@@ -0,0 +1,64 @@
+package blockchain.simulation;
+
+import blockchain.core.Block;
+import blockchain.core.Blockchain;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import blockchain.core.SimpleWallet;
+import blockchain.core.TransactionsTemplate;
+import blockchain.core.Wallet;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+    private final Blockchain blockchain = Blockchain.newInstance();
+
+    private Block mineBlock(SimpleWallet miner) {
+        TransactionsTemplate template = blockchain.getTransactionsTemplate();
+        Block last = blockchain.getLast();
+        MinerReward reward = new MinerReward(miner.getAddress(), Blockchain.REWARD_VALUE);
+        long time = last.getTimestamp() + 40_000;
+        int nonce = 0;
+        Hash256 hash;
+        do {
+            nonce++;
+            hash = Block.calculateHash(reward, last.getId() + 1, time, nonce, last.getBlockHash(), template.getTransactionsHash());
+        } while (hash.leadingZeroBits() < 4 * blockchain.getNumberOfZerosRequired());
+        Block block = Block.newBuilder()
+                .setVersion(template.getVersion())
+                .setId(last.getId() + 1)
+                .setTimestamp(time)
+                .setTransactionsHash(template.getTransactionsHash())
+                .setNonce(nonce)
+                .setPreviousHash(last.getBlockHash())
+                .setHash(hash)
+                .setTransactions(template.getTransactions())
+                .setMinerReward(reward)
+                .build();
+        assertTrue(blockchain.appendNextBlock(block));
+        return block;
+    }
+
+    @Test
+    void testTransactionsConfirmedByBlock() throws InterruptedException {
+        SimpleWallet sender = new SimpleWallet();
+        SimpleWallet empty = new SimpleWallet();
+        mineBlock(sender);
+        List<Wallet> senders = List.of(sender, empty);
+        List<String> receivers = List.of(sender.getAddress(), empty.getAddress(), new SimpleWallet().getAddress());
+        LoadGenerator load = new LoadGenerator(blockchain, blockchain::addTransaction, senders, receivers,
+                LoadProfile.CONSTANT, 100, 1000);
+        load.start(0);
+        Thread.sleep(300);
+        Block block = mineBlock(sender);
+        load.close();
+
+        assertTrue(load.getDispatched() > 0);
+        assertFalse(block.getTransactions().isEmpty());
+        assertEquals(block.getTransactions().size(), load.getConfirmedCount());
+        assertTrue(blockchain.coinsOfClient(empty.getAddress()) > 0);
+    }
+}
@@ -0,0 +1,42 @@
+package blockchain.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadProfileTest {
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void testConstantSpacing() {
+        assertEquals(0, LoadProfile.CONSTANT.dueNanos(0, 100, PERIOD));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), LoadProfile.CONSTANT.dueNanos(1, 100, PERIOD));
+        assertEquals(TimeUnit.SECONDS.toNanos(5), LoadProfile.CONSTANT.dueNanos(500, 100, PERIOD));
+    }
+
+    @Test
+    void testRampReachesRate() {
+        /* 500 transactions during the 10 second ramp, then 100 per second */
+        assertEquals(0, LoadProfile.RAMP.dueNanos(0, 100, PERIOD));
+        assertEquals(PERIOD / 2, LoadProfile.RAMP.dueNanos(125, 100, PERIOD), 1000);
+        assertEquals(PERIOD, LoadProfile.RAMP.dueNanos(500, 100, PERIOD), 1000);
+        assertEquals(PERIOD + TimeUnit.SECONDS.toNanos(1), LoadProfile.RAMP.dueNanos(600, 100, PERIOD), 1000);
+        long previous = -1;
+        for (int i = 0; i < 1000; i++) {
+            long due = LoadProfile.RAMP.dueNanos(i, 100, PERIOD);
+            assertTrue(due >= previous);
+            previous = due;
+        }
+    }
+
+    @Test
+    void testBurstsAtPeriodStarts() {
+        assertEquals(0, LoadProfile.BURST.dueNanos(999, 100, PERIOD));
+        assertEquals(PERIOD, LoadProfile.BURST.dueNanos(1000, 100, PERIOD));
+        assertEquals(2 * PERIOD, LoadProfile.BURST.dueNanos(2500, 100, PERIOD));
+        /* At least one transaction per burst */
+        assertEquals(3 * PERIOD, LoadProfile.BURST.dueNanos(3, 0.01, PERIOD));
+    }
+}
@@ -0,0 +1,91 @@
+package blockchain.storage;
+
+import blockchain.core.Block;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockBodyStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private static List<SignedTransaction> prepareTransactions(int count, long timestamp) {
+        List<SignedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction("FC", "SC", i + 1);
+            transactions.add(new SignedTransaction(transaction, timestamp + i, new byte[]{1, 2, 3}, new byte[]{4, 5}));
+        }
+        return transactions;
+    }
+
+    @Test
+    void testWriteAndLoad() throws IOException {
+        String path = tempDir.resolve("bodies").toString();
+        List<SignedTransaction> first = prepareTransactions(3, 10);
+        List<SignedTransaction> second = prepareTransactions(2, 20);
+        try (BlockBodyStore store = new BlockBodyStore(path, 100)) {
+            store.write(1, first);
+            store.write(2, second);
+            assertTrue(store.contains(1));
+            assertFalse(store.contains(3));
+            assertEquals(first, store.loadTransactions(1));
+        }
+
+        /* Reopened store reads bodies from disk */
+        try (BlockBodyStore store = new BlockBodyStore(path, 100)) {
+            assertEquals(first, store.loadTransactions(1));
+            assertEquals(second, store.loadTransactions(2));
+            assertArrayEquals(new byte[]{1, 2, 3}, store.loadTransactions(2).get(0).getSignature());
+            assertEquals(1, store.getCache().getHits());
+            assertEquals(2, store.getCache().getMisses());
+
+            /* The last written body for the same id wins */
+            store.write(2, first);
+            assertEquals(first, store.loadTransactions(2));
+        }
+        try (BlockBodyStore store = new BlockBodyStore(path, 100)) {
+            assertEquals(first, store.loadTransactions(2));
+        }
+    }
+
+    @Test
+    void testCacheEviction() throws IOException {
+        try (BlockBodyStore store = new BlockBodyStore(tempDir.resolve("bodies").toString(), 4)) {
+            store.write(1, prepareTransactions(2, 10));
+            store.write(2, prepareTransactions(2, 20));
+            store.write(3, prepareTransactions(2, 30));
+            TransactionsCache cache = store.getCache();
+            assertEquals(1, cache.getEvictions());
+            assertEquals(4, cache.getCachedTransactions());
+
+            store.loadTransactions(3);
+            store.loadTransactions(1);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+            assertEquals(0.5, cache.getHitRate());
+        }
+    }
+
+    @Test
+    void testHeaderOnlyBlock() throws IOException {
+        try (BlockBodyStore store = new BlockBodyStore(tempDir.resolve("bodies").toString(), 10)) {
+            List<SignedTransaction> transactions = prepareTransactions(2, 10);
+            Block block = Block.newBuilder()
+                    .setId(1)
+                    .setTransactions(transactions)
+                    .build();
+            store.write(1, block.getTransactions());
+            Block header = block.toHeaderOnly(store);
+            assertTrue(header.isHeaderOnly());
+            assertEquals(transactions, header.getTransactions());
+        }
+    }
+}
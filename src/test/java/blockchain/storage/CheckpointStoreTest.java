@@ -0,0 +1,57 @@
+package blockchain.storage;
+
+import blockchain.core.Block;
+import blockchain.core.ChainState;
+import blockchain.core.Hash256;
+import blockchain.core.MinerReward;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private static Block rewardBlock(int id) {
+        return Block.newBuilder()
+                .setId(id)
+                .setHash(Hash256.sha256(new byte[]{(byte) id}))
+                .setMinerReward(new MinerReward("FC", 100))
+                .setTransactions(new ArrayList<>())
+                .build();
+    }
+
+    @Test
+    void testWriteAndLoadLatest() throws IOException {
+        CheckpointStore store = new CheckpointStore(tempDir.toString(), "checkpoint", 2);
+        assertFalse(store.isDue(1));
+        assertTrue(store.isDue(2));
+
+        ChainState state = new ChainState();
+        for (int id = 1; id <= 3; id++) {
+            state.apply(rewardBlock(id));
+            store.write(state);
+        }
+        /* Only the latest checkpoints are kept */
+        assertFalse(Files.exists(tempDir.resolve("checkpoint_1")));
+        assertTrue(Files.exists(tempDir.resolve("checkpoint_3")));
+
+        Optional<ChainState> latest = store.loadLatest(s -> true);
+        assertTrue(latest.isPresent());
+        assertEquals(3, latest.get().getHeight());
+        assertEquals(300, latest.get().getBalance("FC"));
+
+        Optional<ChainState> matching = store.loadLatest(s -> s.getLastBlockHash().equals(Hash256.sha256(new byte[]{2})));
+        assertTrue(matching.isPresent());
+        assertEquals(200, matching.get().getBalance("FC"));
+
+        assertTrue(store.loadLatest(s -> false).isEmpty());
+    }
+}
@@ -0,0 +1,46 @@
+package blockchain.storage;
+
+import blockchain.encryption.SignatureScheme;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyPairStoreTest {
+
+    @Test
+    void testSaveAndLoad(@TempDir Path directory) throws IOException {
+        KeyPairStore store = new KeyPairStore(directory.resolve("keys").resolve("keystore").toString());
+        assertTrue(store.load(SignatureScheme.ED25519).isEmpty());
+
+        KeyPair edKeys = SignatureScheme.ED25519.generateKeyPair();
+        KeyPair ecKeys = SignatureScheme.ECDSA_SECP256K1.generateKeyPair();
+        store.save(List.of(edKeys, ecKeys));
+
+        List<KeyPair> loaded = store.load(SignatureScheme.ED25519);
+        assertEquals(1, loaded.size());
+        assertEquals(edKeys.getPublic(), loaded.get(0).getPublic());
+        assertEquals(edKeys.getPrivate(), loaded.get(0).getPrivate());
+        assertEquals(ecKeys.getPublic(), store.load(SignatureScheme.ECDSA_SECP256K1).get(0).getPublic());
+        assertTrue(store.load(SignatureScheme.RSA).isEmpty());
+    }
+
+    @Test
+    void testAppendKeepsOtherSchemes(@TempDir Path directory) throws IOException {
+        KeyPairStore store = new KeyPairStore(directory.resolve("keystore").toString());
+        KeyPair ecKeys = SignatureScheme.ECDSA_SECP256K1.generateKeyPair();
+        store.save(List.of(SignatureScheme.ED25519.generateKeyPair(), ecKeys));
+
+        KeyPair newKeys = SignatureScheme.ED25519.generateKeyPair();
+        store.append(List.of(newKeys));
+
+        assertEquals(2, store.load(SignatureScheme.ED25519).size());
+        assertEquals(newKeys.getPublic(), store.load(SignatureScheme.ED25519).get(1).getPublic());
+        assertEquals(ecKeys.getPublic(), store.load(SignatureScheme.ECDSA_SECP256K1).get(0).getPublic());
+    }
+}
@@ -0,0 +1,122 @@
+package blockchain.storage;
+
+import blockchain.core.Block;
+import blockchain.core.SignedTransaction;
+import blockchain.core.Transaction;
+import blockchain.core.TransactionRecord;
+import blockchain.encryption.SignatureScheme;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionArenaTest {
+
+    private static List<SignedTransaction> prepareTransactions(int count, long timestamp) {
+        List<SignedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction("FC", "SC", i + 1);
+            transactions.add(new SignedTransaction(SignedTransaction.BINARY_PAYLOAD_VERSION, transaction, timestamp + i,
+                    new byte[]{1, 2, (byte) i}, new byte[]{4, 5}, SignatureScheme.values()[i % SignatureScheme.values().length]));
+        }
+        return transactions;
+    }
+
+    @Test
+    void testWriteAndLoad() {
+        /* Small chunks force bodies to be spread over several buffers */
+        TransactionArena arena = new TransactionArena(128);
+        List<SignedTransaction> first = prepareTransactions(3, 10);
+        List<SignedTransaction> second = prepareTransactions(5, 20);
+        arena.write(1, first);
+        arena.write(2, second);
+        arena.write(3, new ArrayList<>());
+        assertTrue(arena.contains(3));
+        assertFalse(arena.contains(4));
+
+        assertEquals(first, arena.loadTransactions(1));
+        assertEquals(second, arena.loadTransactions(2));
+        assertTrue(arena.loadTransactions(3).isEmpty());
+        SignedTransaction loaded = arena.loadTransactions(2).get(4);
+        assertArrayEquals(new byte[]{1, 2, 4}, loaded.getSignature());
+        assertArrayEquals(new byte[]{4, 5}, loaded.getPublicKey());
+        assertEquals("FC", loaded.getTransaction().getSender());
+        assertEquals(SignedTransaction.BINARY_PAYLOAD_VERSION, loaded.getVersion());
+        assertEquals(SignatureScheme.ECDSA_SECP256K1, loaded.getSignatureScheme());
+        assertTrue(arena.getReservedBytes() >= arena.getUsedBytes());
+        assertThrows(IllegalStateException.class, () -> arena.loadTransactions(4));
+    }
+
+    @Test
+    void testMultiOutputTransaction() {
+        TransactionArena arena = new TransactionArena(128);
+        SignedTransaction multiOutput = new SignedTransaction(SignedTransaction.MULTI_OUTPUT_VERSION,
+                new Transaction("FC", List.of("SC", "TC"), List.of(7L, 8L)), 30, new byte[]{1}, new byte[]{4, 5});
+        List<SignedTransaction> body = new ArrayList<>(prepareTransactions(1, 10));
+        body.add(multiOutput);
+        body.addAll(prepareTransactions(1, 40));
+        arena.write(1, body);
+
+        List<SignedTransaction> loaded = arena.loadTransactions(1);
+        assertEquals(body, loaded);
+        assertEquals(multiOutput.getTransaction(), loaded.get(1).getTransaction());
+        List<Long> outputs = new ArrayList<>();
+        arena.forEachTransaction(1, record -> record.forEachOutput((receiver, amount) -> outputs.add(amount)));
+        assertEquals(List.of(1L, 7L, 8L, 1L), outputs);
+    }
+
+    @Test
+    void testFlyweightView() {
+        TransactionArena arena = new TransactionArena();
+        List<SignedTransaction> body = prepareTransactions(4, 100);
+        arena.write(7, body);
+        List<TransactionRecord> seen = new ArrayList<>();
+        long[] amounts = {0};
+        arena.forEachTransaction(7, record -> {
+            int index = seen.size();
+            seen.add(record);
+            SignedTransaction expected = body.get(index);
+            assertEquals(expected.getSenderId(), record.getSenderId());
+            assertEquals(expected.getReceiverId(), record.getReceiverId());
+            assertEquals(expected.getTimestamp(), record.getTimestamp());
+            assertEquals(expected.getSignatureScheme(), record.getSignatureScheme());
+            assertEquals(expected.getSignatureView(), record.getSignatureView());
+            assertEquals(ByteBuffer.wrap(new byte[]{4, 5}), record.getPublicKeyView());
+            assertTrue(record.getSignatureView().isReadOnly());
+            amounts[0] += record.getAmount();
+        });
+        assertEquals(1 + 2 + 3 + 4, amounts[0]);
+        /* The same view is moved over all transactions */
+        assertSame(seen.get(0), seen.get(3));
+    }
+
+    @Test
+    void testHeaderOnlyBlockSerializedWithBody() throws IOException, ClassNotFoundException {
+        TransactionArena arena = new TransactionArena();
+        List<SignedTransaction> body = prepareTransactions(2, 50);
+        Block block = Block.newBuilder()
+                .setId(1)
+                .setTransactions(body)
+                .build();
+        arena.write(1, body);
+        Block header = block.toHeaderOnly(arena);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(header);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Block deserialized = (Block) input.readObject();
+            assertFalse(deserialized.isHeaderOnly());
+            assertEquals(body, deserialized.getTransactions());
+        }
+    }
+}